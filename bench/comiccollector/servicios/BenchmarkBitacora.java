@@ -0,0 +1,56 @@
+package comiccollector.servicios;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Mide operaciones durables por segundo de la bitácora con group commit,
+ * variando la cantidad de hilos que registran a la vez y la ventana de durabilidad.
+ *
+ * Uso: java -cp out comiccollector.servicios.BenchmarkBitacora [registrosPorHilo]
+ */
+public class BenchmarkBitacora {
+
+    public static void main(String[] args) throws Exception {
+        int registrosPorHilo = args.length > 0 ? Integer.parseInt(args[0]) : 2_000;
+        int[] hilosPosibles = {1, 4, 16, 64};
+        long[] ventanas = {0, 500, 2_000};
+
+        System.out.println(String.format(Locale.ROOT, "%8s %12s %14s %16s", "Hilos", "Ventana(us)", "ops/s", "registros/fsync"));
+        for (long ventana : ventanas) {
+            for (int hilos : hilosPosibles) {
+                File dir = Files.createTempDirectory("ccs-bitacora-").toFile();
+                File archivo = new File(dir, "operaciones.log");
+                BitacoraOperaciones bitacora = new BitacoraOperaciones(archivo, ventana);
+                bitacora.abrir(null);
+
+                List<Thread> trabajadores = new ArrayList<>();
+                long inicio = System.nanoTime();
+                for (int h = 0; h < hilos; h++) {
+                    final String rut = GeneradorDatosSinteticos.rut(h + 1);
+                    Thread t = new Thread(() -> {
+                        for (int i = 0; i < registrosPorHilo; i++) {
+                            bitacora.registrar(BitacoraOperaciones.COMPRA, rut, "001", "1");
+                        }
+                    });
+                    trabajadores.add(t);
+                    t.start();
+                }
+                for (Thread t : trabajadores) {
+                    t.join();
+                }
+                double segundos = (System.nanoTime() - inicio) / 1e9;
+                long total = (long) hilos * registrosPorHilo;
+                System.out.println(String.format(Locale.ROOT, "%8d %12d %14.0f %16.1f", hilos, ventana,
+                        total / segundos, (double) bitacora.getRegistrosEscritos() / Math.max(1, bitacora.getLotesEscritos())));
+
+                bitacora.cerrar();
+                archivo.delete();
+                dir.delete();
+            }
+        }
+    }
+}
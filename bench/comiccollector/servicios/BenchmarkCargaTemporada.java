@@ -0,0 +1,323 @@
+package comiccollector.servicios;
+
+import comiccollector.excepciones.EmailYaRegistradoException;
+import comiccollector.excepciones.ProductoYaReservadoException;
+import comiccollector.excepciones.RutInvalidoException;
+import comiccollector.modelos.Comic;
+import comiccollector.modelos.LineaPedido;
+import comiccollector.modelos.Usuario;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Simulación de temporada para dimensionar hardware. Genera (o reutiliza) un catálogo grande con
+ * GeneradorDatosSinteticos.PerfilCatalogo, usuarios con RUT válido y una CargaTrabajo con sesgo y
+ * peaks de lanzamiento, y la reproduce contra ComicCollectorSystem a la tasa pedida con N hilos.
+ *
+ * La reproducción es de lazo abierto: cada operación tiene su instante programado y la latencia
+ * se mide desde ese instante, no desde que un hilo quedó libre. Así, si el sistema no da abasto,
+ * la cola que se forma aparece en los percentiles (no se esconde bajando el ritmo).
+ *
+ * Al final verifica la consistencia del stock: por producto, inicial - vendido - reservado = final,
+ * sin stocks negativos; los historiales de compra crecieron en lo vendido y los usuarios en lo registrado.
+ *
+ * Uso: java -cp out comiccollector.servicios.BenchmarkCargaTemporada [--carpeta dir] [--carga archivo]
+ *      [--productos n] [--usuarios n] [--operaciones n] [--tasa ops/s] [--hilos n]
+ *      [--peaks n] [--factor-peak x] [--semilla n]
+ * Con --carpeta se reutilizan los datos si ya existen; con --carga se lee la carga si el archivo
+ * existe o se guarda ahí la generada. Termina con código 1 si encuentra inconsistencias.
+ */
+public class BenchmarkCargaTemporada {
+
+    private static final char[] TIPOS = {CargaTrabajo.COMPRA, CargaTrabajo.PEDIDO, CargaTrabajo.RESERVA, CargaTrabajo.REGISTRO};
+    private static final String[] NOMBRES = {"compra", "pedido", "reserva", "registro"};
+
+    // Lo que observó un hilo: latencias por tipo y fase, resultados y unidades por producto
+    private static class Observado {
+        final long[][] latencias = new long[TIPOS.length * 2][256];
+        final int[] cantidad = new int[TIPOS.length * 2];
+        final long[] servicioNanos = new long[TIPOS.length];
+        final long[] aceptadas = new long[TIPOS.length];
+        final long[] rechazadas = new long[TIPOS.length];
+        final long[] errores = new long[TIPOS.length];
+        final Map<String, Integer> vendidas = new HashMap<>();
+        final Map<String, Integer> reservadas = new HashMap<>();
+        long atrasoMaximo;
+
+        void agregar(int serie, long nanos) {
+            if (cantidad[serie] == latencias[serie].length) {
+                latencias[serie] = Arrays.copyOf(latencias[serie], cantidad[serie] * 2);
+            }
+            latencias[serie][cantidad[serie]++] = nanos;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        File carpeta = null;
+        File archivoCarga = null;
+        long productos = 100_000;
+        long usuarios = 50_000;
+        int hilos = 16;
+        long semilla = 42;
+        CargaTrabajo.Parametros parametros = new CargaTrabajo.Parametros();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--carpeta": carpeta = new File(args[i + 1]); break;
+                case "--carga": archivoCarga = new File(args[i + 1]); break;
+                case "--productos": productos = Long.parseLong(args[i + 1]); break;
+                case "--usuarios": usuarios = Long.parseLong(args[i + 1]); break;
+                case "--operaciones": parametros.operaciones = Integer.parseInt(args[i + 1]); break;
+                case "--tasa": parametros.tasaPorSegundo = Double.parseDouble(args[i + 1]); break;
+                case "--hilos": hilos = Integer.parseInt(args[i + 1]); break;
+                case "--peaks": parametros.peaks = Integer.parseInt(args[i + 1]); break;
+                case "--factor-peak": parametros.factorPeak = Double.parseDouble(args[i + 1]); break;
+                case "--semilla": semilla = Long.parseLong(args[i + 1]); break;
+                default: System.out.println("Opción desconocida: " + args[i]);
+            }
+        }
+
+        boolean temporal = carpeta == null;
+        if (temporal) carpeta = Files.createTempDirectory("ccs-temporada-").toFile();
+        if (!new File(carpeta, "comics.csv").exists()) {
+            long inicio = System.nanoTime();
+            GeneradorDatosSinteticos generador = new GeneradorDatosSinteticos(semilla);
+            if (!carpeta.exists() && !carpeta.mkdirs()) throw new IllegalStateException("No se pudo crear " + carpeta);
+            generador.generarComics(new File(carpeta, "comics.csv"), productos, new GeneradorDatosSinteticos.PerfilCatalogo());
+            generador.generarUsuarios(new File(carpeta, "usuarios.txt"), usuarios);
+            System.out.printf(Locale.ROOT, "Datos generados en %s (%d productos, %d usuarios) en %.1f s%n",
+                    carpeta, productos, usuarios, (System.nanoTime() - inicio) / 1e9);
+        }
+
+        ComicCollectorSystem sistema = new ComicCollectorSystem(carpeta);
+        CargaTrabajo carga;
+        if (archivoCarga != null && archivoCarga.exists()) {
+            carga = CargaTrabajo.leer(archivoCarga);
+            System.out.println("Carga leída de " + archivoCarga);
+        } else {
+            // Los usuarios sintéticos van numerados desde 1: los nuevos siguen después del último
+            long primerNuevo = 1 + sistema.getUsuarios().size();
+            carga = CargaTrabajo.generar(sistema, parametros, primerNuevo, semilla);
+            if (archivoCarga != null) {
+                carga.guardar(archivoCarga);
+                System.out.println("Carga guardada en " + archivoCarga);
+            }
+        }
+        List<CargaTrabajo.Operacion> ops = carga.getOperaciones();
+
+        // Estado inicial para la verificación
+        Map<String, Integer> stockInicial = new HashMap<>();
+        for (Comic c : sistema.getComics()) {
+            stockInicial.put(c.getCodigo(), c.getCantidadDisponible());
+        }
+        long comprasIniciales = totalCompras(sistema);
+        int usuariosIniciales = sistema.getUsuarios().size();
+
+        System.out.printf(Locale.ROOT, "Reproduciendo %d operaciones en %.1f s programados con %d hilos...%n",
+                ops.size(), carga.duracionNanos() / 1e9, hilos);
+        AtomicInteger siguiente = new AtomicInteger();
+        List<Observado> observados = new ArrayList<>();
+        List<Thread> trabajadores = new ArrayList<>();
+        long origen = System.nanoTime() + 50_000_000L;
+        for (int h = 0; h < hilos; h++) {
+            Observado propio = new Observado();
+            observados.add(propio);
+            Thread t = new Thread(() -> reproducir(sistema, ops, siguiente, origen, propio), "carga-" + h);
+            trabajadores.add(t);
+            t.start();
+        }
+        for (Thread t : trabajadores) {
+            t.join();
+        }
+        double segundos = (System.nanoTime() - origen) / 1e9;
+
+        // Reporte
+        Observado total = new Observado();
+        for (Observado o : observados) {
+            for (int i = 0; i < TIPOS.length; i++) {
+                total.aceptadas[i] += o.aceptadas[i];
+                total.rechazadas[i] += o.rechazadas[i];
+                total.errores[i] += o.errores[i];
+                total.servicioNanos[i] += o.servicioNanos[i];
+            }
+            o.vendidas.forEach((k, v) -> total.vendidas.merge(k, v, Integer::sum));
+            o.reservadas.forEach((k, v) -> total.reservadas.merge(k, v, Integer::sum));
+            total.atrasoMaximo = Math.max(total.atrasoMaximo, o.atrasoMaximo);
+        }
+        System.out.printf(Locale.ROOT, "Programado %.0f ops/s, logrado %.0f ops/s (%d ops en %.1f s), atraso máximo %.1f ms%n",
+                ops.size() / (carga.duracionNanos() / 1e9), ops.size() / segundos, ops.size(), segundos,
+                total.atrasoMaximo / 1e6);
+        System.out.println(String.format(Locale.ROOT, "%-10s %-6s %9s %9s %9s %7s %9s %9s %9s %9s %9s",
+                "operación", "fase", "cantidad", "aceptadas", "rechazos", "errores", "serv. µs", "p50 ms", "p99 ms", "p99.9 ms", "máx ms"));
+        long[] todas = new long[0];
+        for (int i = 0; i < TIPOS.length; i++) {
+            long ejecutadas = total.aceptadas[i] + total.rechazadas[i] + total.errores[i];
+            for (int fase = 0; fase < 2; fase++) {
+                long[] latencias = unir(observados, i * 2 + fase);
+                todas = concatenar(todas, latencias);
+                if (latencias.length == 0) continue;
+                Arrays.sort(latencias);
+                System.out.println(String.format(Locale.ROOT, "%-10s %-6s %9d %9s %9s %7s %9s %9.2f %9.2f %9.2f %9.2f",
+                        fase == 0 ? NOMBRES[i] : "", fase == 0 ? "normal" : "peak", latencias.length,
+                        fase == 0 ? Long.toString(total.aceptadas[i]) : "",
+                        fase == 0 ? Long.toString(total.rechazadas[i]) : "",
+                        fase == 0 ? Long.toString(total.errores[i]) : "",
+                        fase == 0 ? String.format(Locale.ROOT, "%.1f", ejecutadas == 0 ? 0 : total.servicioNanos[i] / 1e3 / ejecutadas) : "",
+                        percentil(latencias, 0.50), percentil(latencias, 0.99), percentil(latencias, 0.999),
+                        latencias[latencias.length - 1] / 1e6));
+            }
+        }
+        Arrays.sort(todas);
+        System.out.println(String.format(Locale.ROOT, "%-10s %-6s %9d %9s %9s %7s %9s %9.2f %9.2f %9.2f %9.2f",
+                "total", "", todas.length, "", "", "", "", percentil(todas, 0.50), percentil(todas, 0.99),
+                percentil(todas, 0.999), todas[todas.length - 1] / 1e6));
+
+        boolean ok = verificar(sistema, stockInicial, total, comprasIniciales, usuariosIniciales);
+        sistema.cerrar();
+        if (temporal) borrar(carpeta);
+        System.out.println(ok ? "OK. Stock consistente." : "FALLÓ la verificación de stock.");
+        if (!ok) System.exit(1);
+    }
+
+    private static void reproducir(ComicCollectorSystem sistema, List<CargaTrabajo.Operacion> ops,
+                                   AtomicInteger siguiente, long origen, Observado observado) {
+        int i;
+        while ((i = siguiente.getAndIncrement()) < ops.size()) {
+            CargaTrabajo.Operacion op = ops.get(i);
+            long programado = origen + op.instanteNanos;
+            long espera;
+            while ((espera = programado - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(espera);
+            }
+            long inicio = System.nanoTime();
+            observado.atrasoMaximo = Math.max(observado.atrasoMaximo, inicio - programado);
+            int tipo = indice(op.tipo);
+            try {
+                ejecutar(sistema, op, observado);
+                observado.aceptadas[tipo]++;
+            } catch (IllegalArgumentException | RutInvalidoException | EmailYaRegistradoException
+                     | ProductoYaReservadoException e) {
+                observado.rechazadas[tipo]++;
+            } catch (Exception e) {
+                observado.errores[tipo]++;
+            }
+            long fin = System.nanoTime();
+            observado.servicioNanos[tipo] += fin - inicio;
+            observado.agregar(tipo * 2 + (op.enPeak ? 1 : 0), fin - programado);
+        }
+    }
+
+    private static void ejecutar(ComicCollectorSystem sistema, CargaTrabajo.Operacion op, Observado observado)
+            throws Exception {
+        switch (op.tipo) {
+            case CargaTrabajo.COMPRA:
+                sistema.realizarCompra(op.rut, op.codigos[0], op.cantidades[0]);
+                observado.vendidas.merge(op.codigos[0], op.cantidades[0], Integer::sum);
+                break;
+            case CargaTrabajo.PEDIDO:
+                List<LineaPedido> lineas = new ArrayList<>(op.codigos.length);
+                for (int j = 0; j < op.codigos.length; j++) {
+                    lineas.add(new LineaPedido(op.codigos[j], op.cantidades[j]));
+                }
+                sistema.realizarComprasLote(op.rut, lineas);
+                for (int j = 0; j < op.codigos.length; j++) {
+                    observado.vendidas.merge(op.codigos[j], op.cantidades[j], Integer::sum);
+                }
+                break;
+            case CargaTrabajo.RESERVA:
+                sistema.hacerReserva(op.rut, op.codigos[0], op.cantidades[0]);
+                observado.reservadas.merge(op.codigos[0], op.cantidades[0], Integer::sum);
+                break;
+            default:
+                long n = op.usuarioNuevo;
+                sistema.registrarUsuario(GeneradorDatosSinteticos.rut(n), "Usuario " + n,
+                        GeneradorDatosSinteticos.email(n), GeneradorDatosSinteticos.celular(n));
+        }
+    }
+
+    private static boolean verificar(ComicCollectorSystem sistema, Map<String, Integer> stockInicial, Observado total,
+                                     long comprasIniciales, int usuariosIniciales) {
+        boolean ok = true;
+        long vendidas = 0;
+        for (Comic c : sistema.getComics()) {
+            Integer inicial = stockInicial.get(c.getCodigo());
+            if (inicial == null) continue;
+            int esperado = inicial - total.vendidas.getOrDefault(c.getCodigo(), 0)
+                    - total.reservadas.getOrDefault(c.getCodigo(), 0);
+            if (c.getCantidadDisponible() < 0 || c.getCantidadDisponible() != esperado) {
+                if (ok) System.out.println("ERROR. Stock de " + c.getCodigo() + ": " + c.getCantidadDisponible() + ", se esperaba " + esperado);
+                ok = false;
+            }
+        }
+        for (int v : total.vendidas.values()) {
+            vendidas += v;
+        }
+        long compras = totalCompras(sistema) - comprasIniciales;
+        if (compras != vendidas) {
+            System.out.println("ERROR. Los historiales crecieron en " + compras + " unidades, se vendieron " + vendidas);
+            ok = false;
+        }
+        long registrados = total.aceptadas[indice(CargaTrabajo.REGISTRO)];
+        if (sistema.getUsuarios().size() != usuariosIniciales + registrados) {
+            System.out.println("ERROR. Hay " + sistema.getUsuarios().size() + " usuarios, se esperaban " + (usuariosIniciales + registrados));
+            ok = false;
+        }
+        return ok;
+    }
+
+    private static long totalCompras(ComicCollectorSystem sistema) {
+        long total = 0;
+        for (Usuario u : sistema.getUsuarios()) {
+            total += u.totalCompras();
+        }
+        return total;
+    }
+
+    private static int indice(char tipo) {
+        for (int i = 0; i < TIPOS.length; i++) {
+            if (TIPOS[i] == tipo) return i;
+        }
+        throw new IllegalArgumentException("Tipo de operación desconocido: " + tipo);
+    }
+
+    private static long[] unir(List<Observado> observados, int serie) {
+        int total = 0;
+        for (Observado o : observados) total += o.cantidad[serie];
+        long[] resultado = new long[total];
+        int pos = 0;
+        for (Observado o : observados) {
+            System.arraycopy(o.latencias[serie], 0, resultado, pos, o.cantidad[serie]);
+            pos += o.cantidad[serie];
+        }
+        return resultado;
+    }
+
+    private static long[] concatenar(long[] a, long[] b) {
+        long[] resultado = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, resultado, a.length, b.length);
+        return resultado;
+    }
+
+    private static double percentil(long[] ordenados, double fraccion) {
+        int i = (int) Math.min(ordenados.length - 1, Math.ceil(fraccion * ordenados.length) - 1);
+        return ordenados[Math.max(0, i)] / 1e6;
+    }
+
+    private static void borrar(File dir) {
+        File[] archivos = dir.listFiles();
+        if (archivos != null) {
+            for (File f : archivos) {
+                f.delete();
+            }
+        }
+        dir.delete();
+    }
+}
@@ -0,0 +1,215 @@
+package comiccollector.servicios;
+
+import comiccollector.modelos.LineaPedido;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Suite de benchmarks de las rutas críticas de ComicCollectorSystem.
+ *
+ * Uso (desde la raíz del proyecto):
+ *   javac -d out $(find src bench -name "*.java")
+ *   java -Xmx8g -cp out comiccollector.servicios.BenchmarkComicCollector
+ *        --tamanos 10,1000,100000,1000000,10000000 --salida linea_base.csv
+ *
+ * Opciones: --tamanos (catálogos a medir), --calentamiento, --iteraciones, --milis (por iteración),
+ * --solo (nombre de benchmark) y --salida (CSV con los resultados para comparar entre versiones).
+ */
+public class BenchmarkComicCollector {
+
+    private static final int POOL = 4096;
+    private static final int PRODUCTOS_POR_PEDIDO = 10;
+
+    public static void main(String[] args) throws Exception {
+        long[] tamanos = {10, 1_000, 100_000};
+        int calentamiento = 3;
+        int iteraciones = 5;
+        long milis = 1000;
+        String salida = null;
+        String solo = null;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--tamanos":
+                    String[] partes = args[i + 1].split(",");
+                    tamanos = new long[partes.length];
+                    for (int j = 0; j < partes.length; j++) tamanos[j] = Long.parseLong(partes[j].trim());
+                    break;
+                case "--calentamiento":
+                    calentamiento = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--iteraciones":
+                    iteraciones = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--milis":
+                    milis = Long.parseLong(args[i + 1]);
+                    break;
+                case "--salida":
+                    salida = args[i + 1];
+                    break;
+                case "--solo":
+                    solo = args[i + 1];
+                    break;
+                default:
+                    System.out.println("Opción desconocida: " + args[i]);
+            }
+        }
+
+        MedidorRendimiento medidor = new MedidorRendimiento(calentamiento, iteraciones, milis);
+        System.out.println(MedidorRendimiento.cabecera());
+        for (long tamano : tamanos) {
+            File dir = Files.createTempDirectory("ccs-bench-" + tamano + "-").toFile();
+            try {
+                ejecutarTamano(medidor, dir, tamano, solo);
+            } finally {
+                borrarRecursivo(dir);
+            }
+        }
+        if (salida != null) {
+            medidor.guardarCSV(salida);
+            System.out.println("Resultados guardados en: " + salida);
+        }
+    }
+
+    private static void ejecutarTamano(MedidorRendimiento medidor, File dir, long productos, String solo) throws Exception {
+        long usuarios = Math.max(10, Math.min(productos, 100_000));
+        long reservas = Math.max(1, Math.min(productos / 10, 100_000));
+        GeneradorDatosSinteticos generador = new GeneradorDatosSinteticos(42);
+        generador.generarDirectorio(dir, productos, usuarios, reservas);
+
+        ComicCollectorSystem sistema = new ComicCollectorSystem(dir);
+        Random random = new Random(7);
+
+        // Pools precalculados para no medir la generación de claves
+        String[] codigos = new String[POOL];
+        String[] codigosEnTienda = new String[POOL];
+        String[] codigosPreventa = new String[POOL];
+        String[] ruts = new String[POOL];
+        String[] nombres = new String[POOL];
+        for (int i = 0; i < POOL; i++) {
+            long n = 1 + Math.floorMod(random.nextLong(), productos);
+            codigos[i] = GeneradorDatosSinteticos.codigo(n);
+            long enTienda = n % 10 == 0 ? Math.max(1, n - 1) : n;
+            codigosEnTienda[i] = GeneradorDatosSinteticos.codigo(enTienda);
+            long preventa = Math.min(productos, 10 * (1 + Math.floorMod(random.nextLong(), Math.max(1, productos / 10))));
+            codigosPreventa[i] = GeneradorDatosSinteticos.codigo(preventa);
+            ruts[i] = GeneradorDatosSinteticos.rut(1 + Math.floorMod(random.nextLong(), usuarios));
+            // En minúsculas para que también pase por la normalización
+            nombres[i] = (GeneradorDatosSinteticos.SERIES[random.nextInt(GeneradorDatosSinteticos.SERIES.length)]
+                    + " " + (1 + random.nextInt(500))).toLowerCase();
+        }
+        boolean hayPreventas = productos >= 10;
+
+        // Primero los cargadores, antes de que las escrituras hagan crecer los archivos
+        if (debeCorrer(solo, "cargarComicsDesdeCSV")) {
+            String archivo = new File(dir, "comics.csv").getPath();
+            medidor.medir("cargarComicsDesdeCSV", productos,
+                    i -> new ComicCollectorSystem(dir, false).cargarComicsDesdeCSV(archivo));
+        }
+        if (debeCorrer(solo, "cargarReservasDesdeTxt")) {
+            ComicCollectorSystem base = new ComicCollectorSystem(dir);
+            medidor.medir("cargarReservasDesdeTxt", productos,
+                    i -> base.cargarReservasDesdeTxt());
+        }
+        if (debeCorrer(solo, "arranqueCompleto")) {
+            medidor.medir("arranqueCompleto", productos, i -> new ComicCollectorSystem(dir).cerrar());
+        }
+        if (debeCorrer(solo, "arranqueConInstantanea")) {
+            sistema.guardarInstantanea();
+            medidor.medir("arranqueConInstantanea", productos, i -> new ComicCollectorSystem(dir).cerrar());
+            new File(dir, "estado.snapshot").delete();
+        }
+        if (debeCorrer(solo, "buscarComicPorCodigo")) {
+            medidor.medir("buscarComicPorCodigo", productos,
+                    i -> sistema.buscarComicPorCodigo(codigos[(int) (i & (POOL - 1))]));
+        }
+        if (debeCorrer(solo, "buscarPorNombre")) {
+            medidor.medir("buscarPorNombre", productos,
+                    i -> sistema.buscarPorNombre(nombres[(int) (i & (POOL - 1))]));
+        }
+        if (debeCorrer(solo, "buscarComics")) {
+            // Autocompletar: prefijos de 3 a 6 letras de los nombres, y de vez en cuando con un error de tipeo
+            String[] consultas = new String[POOL];
+            for (int i = 0; i < POOL; i++) {
+                String nombre = nombres[i];
+                String consulta = nombre.substring(0, Math.min(nombre.length(), 3 + random.nextInt(4)));
+                if (i % 8 == 0) consulta = nombre.substring(0, nombre.indexOf(' ')).replaceFirst("[aeiou]", "");
+                consultas[i] = consulta;
+            }
+            medidor.medir("buscarComics", productos,
+                    i -> sistema.buscarComics(consultas[(int) (i & (POOL - 1))], 10));
+        }
+        if (debeCorrer(solo, "lanzamientosProximos")) {
+            medidor.medir("lanzamientosProximos", productos, i -> sistema.lanzamientosProximos(30));
+        }
+        if (debeCorrer(solo, "realizarCompra")) {
+            medidor.medir("realizarCompra", productos,
+                    i -> sistema.realizarCompra(ruts[(int) (i & (POOL - 1))], codigosEnTienda[(int) ((i * 31) & (POOL - 1))], 1));
+        }
+        if (debeCorrer(solo, "realizarComprasLote")) {
+            // Pedidos de 10 productos; comparar ns/op con 10 veces realizarCompra
+            List<List<LineaPedido>> pedidos = new ArrayList<>(POOL);
+            for (int i = 0; i < POOL; i++) {
+                List<LineaPedido> lineas = new ArrayList<>(PRODUCTOS_POR_PEDIDO);
+                for (int k = 0; k < PRODUCTOS_POR_PEDIDO; k++) {
+                    lineas.add(new LineaPedido(codigosEnTienda[random.nextInt(POOL)], 1));
+                }
+                pedidos.add(lineas);
+            }
+            medidor.medir("realizarComprasLote", productos,
+                    i -> sistema.realizarComprasLote(ruts[(int) (i & (POOL - 1))], pedidos.get((int) ((i * 31) & (POOL - 1)))));
+        }
+        if (debeCorrer(solo, "posicionEnRanking")) {
+            medidor.medir("posicionEnRanking", productos,
+                    i -> sistema.posicionEnRanking(ruts[(int) (i & (POOL - 1))]));
+        }
+        if (debeCorrer(solo, "topUsuarios")) {
+            medidor.medir("topUsuarios", productos, i -> sistema.topUsuarios(10));
+        }
+        if (hayPreventas && debeCorrer(solo, "hacerReserva")) {
+            medidor.medir("hacerReserva", productos,
+                    i -> sistema.hacerReserva(ruts[(int) (i & (POOL - 1))], codigosPreventa[(int) ((i * 31) & (POOL - 1))], 1));
+        }
+        if (debeCorrer(solo, "registrarUsuario")) {
+            medidor.medir("registrarUsuario", productos, i -> {
+                long n = usuarios + 1 + i;
+                sistema.registrarUsuario(GeneradorDatosSinteticos.rut(n), "usuario bench",
+                        GeneradorDatosSinteticos.email(n), GeneradorDatosSinteticos.celular(n));
+            });
+        }
+        if (debeCorrer(solo, "guardarCambiosInventario")) {
+            // Guardado tras 10 compras: debe costar lo mismo con cualquier tamaño de catálogo
+            medidor.medir("guardarCambiosInventario", productos, i -> {
+                for (int k = 0; k < 10; k++) {
+                    sistema.realizarCompra(ruts[(int) ((i + k) & (POOL - 1))], codigosEnTienda[(int) ((i * 31 + k) & (POOL - 1))], 1);
+                }
+                sistema.guardarCambiosInventario();
+            });
+        }
+        if (debeCorrer(solo, "fusionarInventario")) {
+            // Reescritura completa de comics.csv, lo que antes costaba cada guardado
+            medidor.medir("fusionarInventario", productos, i -> sistema.fusionarInventario());
+        }
+        sistema.cerrar();
+    }
+
+    private static boolean debeCorrer(String solo, String nombre) {
+        return solo == null || solo.equals(nombre);
+    }
+
+    private static void borrarRecursivo(File dir) throws Exception {
+        List<File> archivos = new ArrayList<>();
+        try (Stream<Path> rutas = Files.walk(dir.toPath())) {
+            rutas.sorted(Comparator.reverseOrder()).forEach(p -> archivos.add(p.toFile()));
+        }
+        for (File f : archivos) {
+            f.delete();
+        }
+    }
+}
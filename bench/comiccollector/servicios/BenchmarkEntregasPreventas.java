@@ -0,0 +1,71 @@
+package comiccollector.servicios;
+
+import comiccollector.modelos.ReservaCompra;
+import comiccollector.modelos.Usuario;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.Locale;
+
+/**
+ * Mide la entrega diaria de preventas durante un año simulado: cada día se entregan las reservas
+ * cuyos productos llegan ese día. Se compara con revisar los historiales de todos los usuarios
+ * cada día, que es lo que habría que hacer sin la agenda.
+ *
+ * Uso: java -cp out comiccollector.servicios.BenchmarkEntregasPreventas [productos] [usuarios] [reservas]
+ */
+public class BenchmarkEntregasPreventas {
+
+    private static final int DIAS = 366;
+
+    public static void main(String[] args) throws Exception {
+        long productos = args.length > 0 ? Long.parseLong(args[0]) : 100_000;
+        long usuarios = args.length > 1 ? Long.parseLong(args[1]) : 100_000;
+        long reservas = args.length > 2 ? Long.parseLong(args[2]) : 500_000;
+
+        File dir = Files.createTempDirectory("ccs-entregas-").toFile();
+        new GeneradorDatosSinteticos(42).generarDirectorio(dir, productos, usuarios, reservas);
+        ComicCollectorSystem sistema = new ComicCollectorSystem(dir);
+        LocalDate hoy = LocalDate.now();
+        System.out.println("Reservas pendientes al arrancar: " + sistema.getEntregasPendientes());
+
+        // Recorrido de todos los historiales, un día cualquiera (no modifica nada)
+        long inicio = System.nanoTime();
+        long vencidas = 0;
+        for (Usuario u : sistema.getUsuarios()) {
+            for (ReservaCompra rc : u.getHistorialReservas()) {
+                LocalDate fecha = rc.getComic().getFechaLlegada();
+                if (fecha == null || !fecha.isAfter(hoy.plusDays(1))) vencidas++;
+            }
+        }
+        double msRecorrido = (System.nanoTime() - inicio) / 1e6;
+
+        long entregadas = 0;
+        long peorDia = 0;
+        inicio = System.nanoTime();
+        for (int d = 0; d < DIAS; d++) {
+            long inicioDia = System.nanoTime();
+            entregadas += sistema.procesarEntregas(hoy.plusDays(d));
+            peorDia = Math.max(peorDia, System.nanoTime() - inicioDia);
+        }
+        double msAgenda = (System.nanoTime() - inicio) / 1e6;
+
+        System.out.println(String.format(Locale.ROOT, "Agenda     : %d entregas en %d días, %.1f ms en total, %.2f ms/día, peor día %.2f ms",
+                entregadas, DIAS, msAgenda, msAgenda / DIAS, peorDia / 1e6));
+        System.out.println(String.format(Locale.ROOT, "Recorrido  : %.2f ms/día revisando %d usuarios (%d vencidas ese día) -> %.1f ms por año",
+                msRecorrido, usuarios, vencidas, msRecorrido * DIAS));
+        if (sistema.getEntregasPendientes() != 0) {
+            throw new IllegalStateException("Quedaron reservas sin entregar.");
+        }
+        sistema.cerrar();
+
+        File[] archivos = dir.listFiles();
+        if (archivos != null) {
+            for (File f : archivos) {
+                f.delete();
+            }
+        }
+        dir.delete();
+    }
+}
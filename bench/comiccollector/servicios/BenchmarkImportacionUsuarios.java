@@ -0,0 +1,107 @@
+package comiccollector.servicios;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.nio.file.Files;
+import java.util.Locale;
+
+/**
+ * Mide la importación masiva de usuarios contra el registro uno a uno.
+ * El archivo trae además filas inválidas (RUT, celular, email mal escritos) y emails repetidos,
+ * que deben terminar en el reporte de rechazos.
+ *
+ * Uso: java -cp out comiccollector.servicios.BenchmarkImportacionUsuarios [usuarios] [muestraUnoAUno]
+ */
+public class BenchmarkImportacionUsuarios {
+
+    // Cada cuántas filas se mete una inválida y una repetida
+    private static final int CADA = 100;
+
+    public static void main(String[] args) throws Exception {
+        long cantidad = args.length > 0 ? Long.parseLong(args[0]) : 1_000_000;
+        int muestra = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+
+        File dir = Files.createTempDirectory("ccs-importacion-").toFile();
+        File validos = new File(dir, "validos.txt");
+        File entrada = new File(dir, "entrada.txt");
+        new GeneradorDatosSinteticos(42).generarUsuarios(validos, cantidad);
+        long esperadosRechazos = mezclarInvalidos(validos, entrada);
+        validos.delete();
+
+        // Importación masiva sobre un sistema vacío
+        ComicCollectorSystem sistema = new ComicCollectorSystem(dir, false);
+        long inicio = System.nanoTime();
+        ImportadorUsuarios.Resultado resultado = sistema.importarUsuarios(entrada);
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+        System.out.println(String.format(Locale.ROOT, "Importación: %d líneas, %d aceptados, %d rechazos (esperados %d) en %.2f s -> %.0f usuarios/s",
+                resultado.getLeidas(), resultado.getAceptados(), resultado.getRechazos().size(), esperadosRechazos,
+                segundos, resultado.getLeidas() / segundos));
+        if (resultado.getRechazos().size() != esperadosRechazos || sistema.getUsuarios().size() != resultado.getAceptados()) {
+            throw new IllegalStateException("La importación no calza con lo esperado.");
+        }
+        sistema.cerrar();
+
+        // Registro uno a uno sobre una muestra, como se haría desde el menú
+        File dirUnoAUno = Files.createTempDirectory("ccs-registro-").toFile();
+        ComicCollectorSystem otro = new ComicCollectorSystem(dirUnoAUno, false);
+        inicio = System.nanoTime();
+        for (long i = 1; i <= muestra; i++) {
+            otro.registrarUsuario(GeneradorDatosSinteticos.rut(i), "Usuario " + i,
+                    GeneradorDatosSinteticos.email(i), GeneradorDatosSinteticos.celular(i));
+        }
+        segundos = (System.nanoTime() - inicio) / 1e9;
+        System.out.println(String.format(Locale.ROOT, "Uno a uno  : %d usuarios en %.2f s -> %.0f usuarios/s",
+                muestra, segundos, muestra / segundos));
+        otro.cerrar();
+
+        borrar(dir);
+        borrar(dirUnoAUno);
+    }
+
+    // Copia el archivo metiendo filas inválidas y emails repetidos; retorna cuántas deben rechazarse
+    private static long mezclarInvalidos(File origen, File destino) throws Exception {
+        long rechazos = 0;
+        long fila = 0;
+        try (BufferedReader br = new BufferedReader(new FileReader(origen), 1 << 16);
+             BufferedWriter bw = new BufferedWriter(new FileWriter(destino), 1 << 16)) {
+            String linea;
+            while ((linea = br.readLine()) != null) {
+                bw.write(linea);
+                bw.newLine();
+                fila++;
+                if (fila % CADA == 0) {
+                    String[] partes = linea.split("\\|");
+                    switch ((int) (fila / CADA % 3)) {
+                        case 0:
+                            bw.write("12345678|Sin RUT|otro" + fila + "@correo.cl|91234567");
+                            break;
+                        case 1:
+                            bw.write(GeneradorDatosSinteticos.rut(10_000_000 + fila) + "|Celular malo|otro" + fila + "@correo.cl|123");
+                            break;
+                        default:
+                            bw.write(GeneradorDatosSinteticos.rut(10_000_000 + fila) + "|Sin arroba|otro" + fila + "correo.cl|91234567");
+                    }
+                    bw.newLine();
+                    // Mismo email que la fila anterior, con otro RUT
+                    bw.write(GeneradorDatosSinteticos.rut(20_000_000 + fila) + "|Repetido|" + partes[2] + "|" + partes[3]);
+                    bw.newLine();
+                    rechazos += 2;
+                }
+            }
+        }
+        return rechazos;
+    }
+
+    private static void borrar(File dir) {
+        File[] archivos = dir.listFiles();
+        if (archivos != null) {
+            for (File f : archivos) {
+                f.delete();
+            }
+        }
+        dir.delete();
+    }
+}
@@ -0,0 +1,63 @@
+package comiccollector.servicios;
+
+import comiccollector.modelos.Comic;
+import comiccollector.modelos.Usuario;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Mide cuánta memoria ocupa el historial de compras: usuarios con muchas compras repartidas con
+ * sesgo Zipf sobre un catálogo (coleccionistas que vuelven a comprar sus series), heap usado tras
+ * un GC completo antes y después de registrar las compras, y el costo de totalCompras().
+ *
+ * Uso: java -Xmx4g -cp out comiccollector.servicios.BenchmarkMemoriaHistorial [usuarios] [comprasPorUsuario] [productos]
+ */
+public class BenchmarkMemoriaHistorial {
+
+    public static void main(String[] args) throws Exception {
+        int usuarios = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int comprasPorUsuario = args.length > 1 ? Integer.parseInt(args[1]) : 1_000;
+        int productos = args.length > 2 ? Integer.parseInt(args[2]) : 50_000;
+
+        Comic[] catalogo = new Comic[productos];
+        for (int i = 0; i < productos; i++) {
+            catalogo[i] = new Comic(GeneradorDatosSinteticos.codigo(i + 1), "Cómic", "Serie " + (i % 500),
+                    "Autor " + (i % 200), 100, null, 3990);
+        }
+        CargaTrabajo.Zipf zipf = new CargaTrabajo.Zipf(productos, 1.1);
+        Random random = new Random(7);
+        Usuario[] lista = new Usuario[usuarios];
+        for (int u = 0; u < usuarios; u++) {
+            lista[u] = new Usuario(GeneradorDatosSinteticos.rut(u), "Usuario " + u,
+                    GeneradorDatosSinteticos.email(u), GeneradorDatosSinteticos.celular(u));
+        }
+
+        long antes = heapUsado();
+        for (int u = 0; u < usuarios; u++) {
+            for (int k = 0; k < comprasPorUsuario; k++) {
+                lista[u].agregarCompra(catalogo[zipf.muestra(random)], 1 + random.nextInt(3));
+            }
+        }
+        long despues = heapUsado();
+        long total = 0;
+        long inicio = System.nanoTime();
+        for (int r = 0; r < 100; r++) {
+            for (Usuario u : lista) total += u.totalCompras();
+        }
+        double nanosTotal = (System.nanoTime() - inicio) / (100.0 * usuarios);
+        System.out.println(String.format(Locale.ROOT,
+                "%,d usuarios x %,d compras: %.1f MB, %.0f bytes por usuario, %.1f bytes por compra, totalCompras %.1f ns (%d)",
+                usuarios, comprasPorUsuario, (despues - antes) / 1e6, (despues - antes) / (double) usuarios,
+                (despues - antes) / ((double) usuarios * comprasPorUsuario), nanosTotal, total));
+    }
+
+    private static long heapUsado() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
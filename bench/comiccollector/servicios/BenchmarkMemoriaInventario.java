@@ -0,0 +1,48 @@
+package comiccollector.servicios;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.util.Locale;
+
+/**
+ * Mide cuánta memoria ocupa el catálogo cargado: heap usado tras un GC completo, con y sin el
+ * catálogo en memoria, dividido por la cantidad de productos. Incluye el inventario y los índices
+ * de búsqueda (sin usuarios ni reservas).
+ *
+ * Uso: java -Xmx8g -cp out comiccollector.servicios.BenchmarkMemoriaInventario [productos...]
+ */
+public class BenchmarkMemoriaInventario {
+
+    public static void main(String[] args) throws Exception {
+        long[] tamanos = args.length > 0 ? new long[args.length] : new long[]{100_000, 1_000_000};
+        for (int i = 0; i < args.length; i++) {
+            tamanos[i] = Long.parseLong(args[i]);
+        }
+        for (long productos : tamanos) {
+            File dir = Files.createTempDirectory("ccs-memoria-").toFile();
+            File csv = new File(dir, "comics.csv");
+            new GeneradorDatosSinteticos(42).generarComics(csv, productos);
+
+            long antes = heapUsado();
+            ComicCollectorSystem sistema = new ComicCollectorSystem(dir, false);
+            sistema.cargarComicsDesdeCSV(csv.getPath());
+            long despues = heapUsado();
+            System.out.println(String.format(Locale.ROOT, "%,d productos: %.1f MB, %.0f bytes por producto (en tienda: %d)",
+                    productos, (despues - antes) / 1e6, (despues - antes) / (double) productos,
+                    sistema.getComics().size()));
+            csv.delete();
+            dir.delete();
+        }
+    }
+
+    private static long heapUsado() throws InterruptedException {
+        MemoryMXBean memoria = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return memoria.getHeapMemoryUsage().getUsed();
+    }
+}
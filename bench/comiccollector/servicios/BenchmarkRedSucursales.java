@@ -0,0 +1,153 @@
+package comiccollector.servicios;
+
+import comiccollector.modelos.Comic;
+import comiccollector.modelos.Comprador;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Red de sucursales: arma varias sucursales con catálogo y usuarios propios, compra desde varios
+ * hilos enviando cada compra a una sucursal al azar (con usuarios inscritos en cualquier sucursal,
+ * que se copian al vuelo) y revisa que el stock de cada sucursal y el ranking de la red calcen con
+ * lo vendido. Mide además la búsqueda "dónde hay stock" en todas y el rearmado de la red al reabrir.
+ *
+ * Uso: java -cp out comiccollector.servicios.BenchmarkRedSucursales [sucursales] [productos] [usuarios] [compras]
+ */
+public class BenchmarkRedSucursales {
+
+    private static final int HILOS = 8;
+    private static final int BUSQUEDAS = 200;
+
+    public static void main(String[] args) throws Exception {
+        int cantidadSucursales = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int productos = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        int usuarios = args.length > 2 ? Integer.parseInt(args[2]) : 20_000;
+        int compras = args.length > 3 ? Integer.parseInt(args[3]) : 20_000;
+
+        File base = Files.createTempDirectory("ccs-red-").toFile();
+        List<String> nombres = new ArrayList<>();
+        for (int s = 0; s < cantidadSucursales; s++) {
+            String nombre = "sucursal" + (s + 1);
+            nombres.add(nombre);
+            File dir = new File(base, nombre);
+            dir.mkdirs();
+            new GeneradorDatosSinteticos(42 + s).generarComics(new File(dir, "comics.csv"), productos);
+            // Cada usuario se inscribe en una sola sucursal
+            try (BufferedWriter bw = new BufferedWriter(new FileWriter(new File(dir, "usuarios.txt")))) {
+                for (long u = 1 + s; u <= usuarios; u += cantidadSucursales) {
+                    bw.write(GeneradorDatosSinteticos.rut(u) + "|Usuario " + u + "|"
+                            + GeneradorDatosSinteticos.email(u) + "|" + GeneradorDatosSinteticos.celular(u));
+                    bw.newLine();
+                }
+            }
+        }
+
+        long inicio = System.nanoTime();
+        RedSucursales red = new RedSucursales(base, nombres);
+        System.out.println(String.format(Locale.ROOT, "Apertura   : %d sucursales, %d productos c/u, %d usuarios en %.2f s",
+                cantidadSucursales, productos, red.cantidadUsuarios(), (System.nanoTime() - inicio) / 1e9));
+        if (red.cantidadUsuarios() != usuarios) {
+            throw new IllegalStateException("La red tiene " + red.cantidadUsuarios() + " usuarios, se esperaban " + usuarios);
+        }
+
+        // Compras repartidas entre sucursales; las preventas se rechazan y no cuentan
+        AtomicLongArray vendidas = new AtomicLongArray(cantidadSucursales);
+        Thread[] hilos = new Thread[HILOS];
+        inicio = System.nanoTime();
+        for (int h = 0; h < HILOS; h++) {
+            hilos[h] = new Thread(() -> {
+                ThreadLocalRandom r = ThreadLocalRandom.current();
+                for (int i = 0; i < compras / HILOS; i++) {
+                    int s = r.nextInt(cantidadSucursales);
+                    String rut = GeneradorDatosSinteticos.rut(1 + r.nextInt(usuarios));
+                    String codigo = GeneradorDatosSinteticos.codigo(1 + r.nextInt(productos));
+                    int cantidad = 1 + r.nextInt(3);
+                    try {
+                        red.realizarCompra(nombres.get(s), rut, codigo, cantidad);
+                        vendidas.addAndGet(s, cantidad);
+                    } catch (IllegalArgumentException e) {
+                        // Preventa o sin stock
+                    }
+                }
+            });
+            hilos[h].start();
+        }
+        for (Thread t : hilos) {
+            t.join();
+        }
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+        System.out.println(String.format(Locale.ROOT, "Compras    : %d intentos desde %d hilos en %.2f s -> %.0f compras/s",
+                compras / HILOS * HILOS, HILOS, segundos, compras / HILOS * HILOS / segundos));
+
+        long totalVendido = 0;
+        for (int s = 0; s < cantidadSucursales; s++) {
+            long descontado = 0;
+            for (Comic c : red.getSucursal(nombres.get(s)).getComics()) {
+                descontado += GeneradorDatosSinteticos.STOCK_INICIAL - c.getCantidadDisponible();
+            }
+            if (descontado != vendidas.get(s)) {
+                throw new IllegalStateException(nombres.get(s) + ": se descontaron " + descontado + " unidades y se vendieron " + vendidas.get(s));
+            }
+            totalVendido += descontado;
+        }
+        long enRanking = 0;
+        for (RedSucursales.UsuarioRed u : red.getRankingUsuarios()) {
+            enRanking += u.totalCompras();
+        }
+        if (enRanking != totalVendido) {
+            throw new IllegalStateException("El ranking de la red suma " + enRanking + " unidades y se vendieron " + totalVendido);
+        }
+
+        // Búsqueda en todas las sucursales
+        inicio = System.nanoTime();
+        int encontrados = 0;
+        for (int i = 0; i < BUSQUEDAS; i++) {
+            String serie = GeneradorDatosSinteticos.SERIES[i % GeneradorDatosSinteticos.SERIES.length];
+            encontrados += red.buscarConStock(serie + " " + (1 + i), 10).size();
+        }
+        System.out.println(String.format(Locale.ROOT, "Búsqueda   : %.2f ms por consulta en %d sucursales (%d resultados con stock)",
+                (System.nanoTime() - inicio) / 1e6 / BUSQUEDAS, cantidadSucursales, encontrados));
+
+        // Al reabrir, los usuarios y el ranking de la red se arman con lo guardado en cada sucursal
+        List<String> topAntes = resumen(red.topUsuarios(20));
+        red.cerrar();
+        inicio = System.nanoTime();
+        RedSucursales reabierta = new RedSucursales(base, nombres);
+        double segundosReapertura = (System.nanoTime() - inicio) / 1e9;
+        List<String> topDespues = resumen(reabierta.topUsuarios(20));
+        reabierta.cerrar();
+        if (!topAntes.equals(topDespues)) {
+            throw new IllegalStateException("El ranking cambió al reabrir:\n  " + topAntes + "\n  " + topDespues);
+        }
+        System.out.println(String.format(Locale.ROOT, "Reapertura : %.2f s, ranking de la red igual. %d unidades vendidas en total.",
+                segundosReapertura, totalVendido));
+        System.out.println("OK. Stock y ranking de la red consistentes.");
+        borrar(base);
+    }
+
+    private static List<String> resumen(List<? extends Comprador> top) {
+        List<String> resumen = new ArrayList<>();
+        for (Comprador u : top) {
+            resumen.add(u.getRut() + "=" + u.totalCompras());
+        }
+        return resumen;
+    }
+
+    private static void borrar(File archivo) {
+        File[] hijos = archivo.listFiles();
+        if (hijos != null) {
+            for (File h : hijos) {
+                borrar(h);
+            }
+        }
+        archivo.delete();
+    }
+}
@@ -0,0 +1,82 @@
+package comiccollector.servicios;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Locale;
+
+/**
+ * Mide la compactación de usuarios.txt y reservas.txt: espacio en disco y tiempo de la carga
+ * completa antes y después, con una parte de los productos en preventa eliminados (sus reservas
+ * quedan muertas). Se mide la carga completa, sin instantánea, que es la que lee todo el historial.
+ *
+ * Uso: java -cp out comiccollector.servicios.BenchmarkRegistrosSegmentados [productos] [usuarios] [reservas] [eliminados]
+ */
+public class BenchmarkRegistrosSegmentados {
+
+    public static void main(String[] args) throws Exception {
+        long productos = args.length > 0 ? Long.parseLong(args[0]) : 100_000;
+        long usuarios = args.length > 1 ? Long.parseLong(args[1]) : 100_000;
+        long reservas = args.length > 2 ? Long.parseLong(args[2]) : 2_000_000;
+        long eliminados = args.length > 3 ? Long.parseLong(args[3]) : productos / 40;
+
+        File dir = Files.createTempDirectory("ccs-segmentos-").toFile();
+        new GeneradorDatosSinteticos(42).generarDirectorio(dir, productos, usuarios, reservas);
+        ComicCollectorSystem sistema = new ComicCollectorSystem(dir);
+        // Las reservas van a los productos múltiplos de 10: se eliminan los primeros de esos
+        for (long i = 1; i <= eliminados; i++) {
+            sistema.eliminarComic(GeneradorDatosSinteticos.codigo(10 * i));
+        }
+        sistema.cerrar();
+
+        long bytesAntes = bytesRegistros(dir);
+        double msAntes = arranqueCompleto(dir);
+
+        sistema = new ComicCollectorSystem(dir);
+        long inicio = System.nanoTime();
+        int descartadas = sistema.compactarRegistros(0);
+        double msCompactar = (System.nanoTime() - inicio) / 1e6;
+        sistema.cerrar();
+
+        long bytesDespues = bytesRegistros(dir);
+        double msDespues = arranqueCompleto(dir);
+
+        System.out.println(String.format(Locale.ROOT, "Compactación: %d líneas descartadas en %.0f ms", descartadas, msCompactar));
+        System.out.println(String.format(Locale.ROOT, "En disco    : %.1f MB -> %.1f MB", bytesAntes / 1e6, bytesDespues / 1e6));
+        System.out.println(String.format(Locale.ROOT, "Carga completa: %.0f ms -> %.0f ms", msAntes, msDespues));
+        borrar(dir);
+    }
+
+    // Mejor de tres arranques sin instantánea
+    private static double arranqueCompleto(File dir) {
+        double mejor = Double.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            new File(dir, "estado.snapshot").delete();
+            long inicio = System.nanoTime();
+            ComicCollectorSystem sistema = new ComicCollectorSystem(dir);
+            mejor = Math.min(mejor, (System.nanoTime() - inicio) / 1e6);
+            sistema.cerrar();
+        }
+        return mejor;
+    }
+
+    private static long bytesRegistros(File dir) {
+        long total = 0;
+        File[] archivos = dir.listFiles((d, nombre) -> nombre.startsWith("usuarios.") || nombre.startsWith("reservas."));
+        if (archivos != null) {
+            for (File f : archivos) {
+                total += f.length();
+            }
+        }
+        return total;
+    }
+
+    private static void borrar(File dir) {
+        File[] archivos = dir.listFiles();
+        if (archivos != null) {
+            for (File f : archivos) {
+                f.delete();
+            }
+        }
+        dir.delete();
+    }
+}
@@ -0,0 +1,205 @@
+package comiccollector.servicios;
+
+import comiccollector.modelos.Comic;
+import comiccollector.modelos.Usuario;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Réplica de lectura por loopback: un primario vende desde varios hilos mientras una réplica
+ * conectada por TCP atiende búsquedas, listados y ranking. Muestra el retraso de la réplica durante
+ * la carga y revisa al final que su stock, usuarios y ranking calcen con los del primario, que vea
+ * un alta y una importación hechas en el primario, y que rechace las escrituras.
+ *
+ * Uso: java -cp out comiccollector.servicios.BenchmarkReplicacion [productos] [usuarios] [compras]
+ */
+public class BenchmarkReplicacion {
+
+    private static final int HILOS = 4;
+    private static final int IMPORTADOS = 1_000;
+    private static final long PLAZO_MILLIS = 60_000;
+
+    public static void main(String[] args) throws Exception {
+        int productos = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int usuarios = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+        int compras = args.length > 2 ? Integer.parseInt(args[2]) : 20_000;
+
+        File base = Files.createTempDirectory("ccs-replicacion-").toFile();
+        File dirPrimario = new File(base, "primario");
+        new GeneradorDatosSinteticos(42).generarDirectorio(dirPrimario, productos, usuarios, 0);
+        ComicCollectorSystem primario = new ComicCollectorSystem(dirPrimario);
+        ServidorReplicacion servidor = new ServidorReplicacion(primario);
+        servidor.iniciar(0);
+
+        long inicio = System.nanoTime();
+        ReplicaLectura replica = new ReplicaLectura(new File(base, "replica"),
+                InetAddress.getLoopbackAddress().getHostAddress(), servidor.getPuerto());
+        replica.iniciar();
+        if (!replica.esperarLsn(0, PLAZO_MILLIS)) throw new IllegalStateException("La réplica no recibió el estado.");
+        System.out.println(String.format(Locale.ROOT, "Arranque   : estado de %d productos y %d usuarios recibido en %.2f s",
+                replica.getSistema().getComics().size(), replica.getSistema().getUsuarios().size(),
+                (System.nanoTime() - inicio) / 1e9));
+
+        // Ventas en el primario; consultas en la réplica y muestreo del retraso
+        AtomicBoolean vendiendo = new AtomicBoolean(true);
+        AtomicLong consultas = new AtomicLong();
+        Thread lector = new Thread(() -> {
+            int i = 0;
+            while (vendiendo.get()) {
+                ComicCollectorSystem s = replica.getSistema();
+                String serie = GeneradorDatosSinteticos.SERIES[i % GeneradorDatosSinteticos.SERIES.length];
+                s.buscarComics(serie + " " + (1 + i % 500), 10);
+                s.topUsuarios(10);
+                s.listarInventario(-1, 20, null, ListadoInventario.Disponibilidad.EN_STOCK);
+                consultas.incrementAndGet();
+                i++;
+            }
+        }, "consultas-replica");
+        long[] maximos = new long[2];
+        Thread muestreo = new Thread(() -> {
+            MetricasSistema m;
+            while (vendiendo.get()) {
+                m = replica.getSistema().getMetricas();
+                maximos[0] = Math.max(maximos[0], m.getRetrasoReplicaRegistros());
+                maximos[1] = Math.max(maximos[1], m.getRetrasoReplicaMillis());
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "muestreo-retraso");
+        lector.start();
+        muestreo.start();
+
+        Thread[] hilos = new Thread[HILOS];
+        inicio = System.nanoTime();
+        for (int h = 0; h < HILOS; h++) {
+            hilos[h] = new Thread(() -> {
+                ThreadLocalRandom r = ThreadLocalRandom.current();
+                for (int i = 0; i < compras / HILOS; i++) {
+                    try {
+                        primario.realizarCompra(GeneradorDatosSinteticos.rut(1 + r.nextInt(usuarios)),
+                                GeneradorDatosSinteticos.codigo(1 + r.nextInt(productos)), 1 + r.nextInt(3));
+                    } catch (IllegalArgumentException e) {
+                        // Preventa o sin stock
+                    }
+                }
+            });
+            hilos[h].start();
+        }
+        for (Thread t : hilos) {
+            t.join();
+        }
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+        long lsnFinal = primario.getBitacora().getUltimoLsn();
+        long finVentas = System.nanoTime();
+        if (!replica.esperarLsn(lsnFinal, PLAZO_MILLIS)) throw new IllegalStateException("La réplica no alcanzó al primario.");
+        double alcance = (System.nanoTime() - finVentas) / 1e6;
+        vendiendo.set(false);
+        lector.join();
+        muestreo.join();
+        System.out.println(String.format(Locale.ROOT, "Ventas     : %d intentos desde %d hilos en %.2f s -> %.0f compras/s en el primario",
+                compras / HILOS * HILOS, HILOS, segundos, compras / HILOS * HILOS / segundos));
+        System.out.println(String.format(Locale.ROOT, "Réplica    : %d consultas (búsqueda + top + página) en paralelo -> %.0f consultas/s",
+                consultas.get(), consultas.get() / segundos));
+        System.out.println(String.format(Locale.ROOT, "Retraso    : máximo %d registros y %d ms durante la carga; al día %.1f ms después de la última venta",
+                maximos[0], maximos[1], alcance));
+
+        comparar(primario, replica.getSistema());
+
+        // Lo que pasa por la bitácora llega como registro: un alta y un registro de usuario
+        primario.agregarComic(new Comic(null, "Manga", "Replicado", "Autor Replicado", 10, null, 1990));
+        long nuevo = usuarios + IMPORTADOS + 1;
+        primario.registrarUsuario(GeneradorDatosSinteticos.rut(nuevo), "Usuario Replicado",
+                GeneradorDatosSinteticos.email(nuevo), GeneradorDatosSinteticos.celular(nuevo));
+        if (!replica.esperarLsn(primario.getBitacora().getUltimoLsn(), PLAZO_MILLIS)
+                || replica.getSistema().buscarPorNombre("Replicado").isEmpty()
+                || replica.getSistema().buscarUsuarioPorRut(GeneradorDatosSinteticos.rut(nuevo)) == null) {
+            throw new IllegalStateException("La réplica no ve el alta o el registro hechos en el primario.");
+        }
+
+        // La importación no pasa por la bitácora: la réplica recibe el estado completo de nuevo
+        File importacion = new File(base, "importacion.txt");
+        try (BufferedWriter bw = new BufferedWriter(new FileWriter(importacion))) {
+            for (long u = usuarios + 1; u <= usuarios + IMPORTADOS; u++) {
+                bw.write(GeneradorDatosSinteticos.rut(u) + "|Usuario " + u + "|" + GeneradorDatosSinteticos.email(u)
+                        + "|" + GeneradorDatosSinteticos.celular(u));
+                bw.newLine();
+            }
+        }
+        primario.importarUsuarios(importacion);
+        inicio = System.nanoTime();
+        long limite = System.currentTimeMillis() + PLAZO_MILLIS;
+        while (replica.getSistema().getUsuarios().size() != primario.getUsuarios().size()) {
+            if (System.currentTimeMillis() > limite) throw new IllegalStateException("La réplica no recibió la importación.");
+            Thread.sleep(5);
+        }
+        System.out.println(String.format(Locale.ROOT, "Importación: %d usuarios visibles en la réplica %.0f ms después (estado completo)",
+                IMPORTADOS, (System.nanoTime() - inicio) / 1e6));
+        comparar(primario, replica.getSistema());
+
+        // La réplica no acepta escrituras ni las deja a medias
+        Comic muestra = replica.getSistema().buscarComicPorCodigo(GeneradorDatosSinteticos.codigo(1));
+        int stockAntes = muestra.getCantidadDisponible();
+        try {
+            replica.getSistema().realizarCompra(GeneradorDatosSinteticos.rut(1), muestra.getCodigo(), 1);
+            throw new IllegalStateException("La réplica aceptó una compra.");
+        } catch (IllegalStateException e) {
+            if (!e.getMessage().contains("solo lectura") || muestra.getCantidadDisponible() != stockAntes) throw e;
+        }
+
+        replica.cerrar();
+        servidor.detener();
+        primario.cerrar();
+        System.out.println("OK. La réplica calza con el primario.");
+        borrar(base);
+    }
+
+    private static void comparar(ComicCollectorSystem primario, ComicCollectorSystem replica) {
+        if (primario.getComics().size() != replica.getComics().size()
+                || primario.getUsuarios().size() != replica.getUsuarios().size()) {
+            throw new IllegalStateException("Catálogo o usuarios distintos: " + primario.getComics().size() + "/"
+                    + replica.getComics().size() + " productos, " + primario.getUsuarios().size() + "/"
+                    + replica.getUsuarios().size() + " usuarios");
+        }
+        for (Comic c : primario.getComics()) {
+            Comic copia = replica.buscarComicPorCodigo(c.getCodigo());
+            if (copia == null || copia.getCantidadDisponible() != c.getCantidadDisponible()) {
+                throw new IllegalStateException("Stock distinto en " + c.getCodigo() + ": " + c.getCantidadDisponible()
+                        + " en el primario, " + (copia == null ? "nada" : copia.getCantidadDisponible()) + " en la réplica");
+            }
+        }
+        if (!resumen(primario.topUsuarios(20)).equals(resumen(replica.topUsuarios(20)))) {
+            throw new IllegalStateException("El ranking de la réplica no calza con el del primario.");
+        }
+    }
+
+    private static List<String> resumen(List<Usuario> top) {
+        List<String> resumen = new ArrayList<>();
+        for (Usuario u : top) {
+            resumen.add(u.getRut() + "=" + u.totalCompras());
+        }
+        return resumen;
+    }
+
+    private static void borrar(File archivo) {
+        File[] hijos = archivo.listFiles();
+        if (hijos != null) {
+            for (File h : hijos) {
+                borrar(h);
+            }
+        }
+        archivo.delete();
+    }
+}
@@ -0,0 +1,228 @@
+package comiccollector.servicios;
+
+import comiccollector.util.ServidorApi;
+
+import java.io.File;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Prueba de carga local de la API HTTP. Varias "cajas" (hilos virtuales cliente) piden sin pausa
+ * durante un tiempo fijo una mezcla de búsquedas, fichas de producto, compras, pedidos, reservas,
+ * consultas de ranking y registros. Reporta peticiones por segundo y latencias p50/p99/p99.9/máx,
+ * en total y por tipo de petición.
+ *
+ * Uso: java -cp out comiccollector.servicios.BenchmarkServidorApi [clientes] [segundos] [productos] [usuarios]
+ */
+public class BenchmarkServidorApi {
+
+    private static final String[] TIPOS = {"buscar", "producto", "compra", "pedido", "reserva", "ranking", "registro"};
+    // Porcentaje de cada tipo, en el orden de TIPOS
+    private static final int[] MEZCLA = {40, 15, 20, 5, 5, 13, 2};
+
+    // Latencias de un cliente, por tipo de petición
+    private static class Muestras {
+        final long[][] nanos = new long[TIPOS.length][1024];
+        final int[] cantidad = new int[TIPOS.length];
+
+        void agregar(int tipo, long valor) {
+            if (cantidad[tipo] == nanos[tipo].length) {
+                nanos[tipo] = Arrays.copyOf(nanos[tipo], cantidad[tipo] * 2);
+            }
+            nanos[tipo][cantidad[tipo]++] = valor;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int clientes = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int segundos = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        long productos = args.length > 2 ? Long.parseLong(args[2]) : 100_000;
+        long usuarios = args.length > 3 ? Long.parseLong(args[3]) : 10_000;
+
+        File dir = Files.createTempDirectory("ccs-api-").toFile();
+        new GeneradorDatosSinteticos(7).generarDirectorio(dir, productos, usuarios, 0);
+        ComicCollectorSystem sistema = new ComicCollectorSystem(dir);
+        ServidorApi api = new ServidorApi(sistema);
+        api.iniciar(0);
+        String base = "http://localhost:" + api.getPuerto();
+        HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+        // Calentamiento: la misma mezcla durante un tercio del tiempo, sin medir
+        AtomicLong siguienteRut = new AtomicLong(usuarios + 1);
+        correr(http, base, clientes, Math.max(1, segundos / 3), productos, usuarios, siguienteRut, new long[3]);
+
+        long[] estados = new long[3];
+        long inicio = System.nanoTime();
+        List<Muestras> muestras = correr(http, base, clientes, segundos, productos, usuarios, siguienteRut, estados);
+        double transcurrido = (System.nanoTime() - inicio) / 1e9;
+
+        long total = 0;
+        long[] todas = new long[0];
+        System.out.println(String.format(Locale.ROOT, "%-10s %10s %10s %10s %10s %10s %10s",
+                "petición", "cantidad", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "máx ms"));
+        for (int t = 0; t < TIPOS.length; t++) {
+            long[] tipo = unir(muestras, t);
+            total += tipo.length;
+            todas = concatenar(todas, tipo);
+            imprimir(TIPOS[t], tipo, transcurrido);
+        }
+        imprimir("total", todas, transcurrido);
+        System.out.println(String.format(Locale.ROOT, "%d clientes, %.1f s, %d peticiones: %d 2xx, %d 4xx, %d 5xx",
+                clientes, transcurrido, total, estados[0], estados[1], estados[2]));
+
+        api.detener();
+        sistema.cerrar();
+        borrar(dir);
+    }
+
+    private static List<Muestras> correr(HttpClient http, String base, int clientes, int segundos, long productos,
+                                         long usuarios, AtomicLong siguienteRut, long[] estados) throws InterruptedException {
+        long fin = System.nanoTime() + segundos * 1_000_000_000L;
+        CountDownLatch listos = new CountDownLatch(clientes);
+        List<Muestras> muestras = new ArrayList<>();
+        List<Thread> hilos = new ArrayList<>();
+        AtomicLong ok = new AtomicLong();
+        AtomicLong rechazos = new AtomicLong();
+        AtomicLong fallas = new AtomicLong();
+        for (int c = 0; c < clientes; c++) {
+            Muestras propias = new Muestras();
+            muestras.add(propias);
+            final long semilla = c;
+            hilos.add(Thread.ofVirtual().start(() -> {
+                Random random = new Random(semilla);
+                try {
+                    while (System.nanoTime() < fin) {
+                        int tipo = elegirTipo(random);
+                        HttpRequest peticion = peticion(base, tipo, random, productos, usuarios, siguienteRut);
+                        long t0 = System.nanoTime();
+                        int estado = http.send(peticion, HttpResponse.BodyHandlers.ofByteArray()).statusCode();
+                        propias.agregar(tipo, System.nanoTime() - t0);
+                        if (estado < 300) {
+                            ok.incrementAndGet();
+                        } else if (estado < 500) {
+                            rechazos.incrementAndGet();
+                        } else {
+                            fallas.incrementAndGet();
+                        }
+                    }
+                } catch (Exception e) {
+                    System.out.println("ERROR. Cliente " + semilla + ": " + e);
+                } finally {
+                    listos.countDown();
+                }
+            }));
+        }
+        listos.await();
+        estados[0] = ok.get();
+        estados[1] = rechazos.get();
+        estados[2] = fallas.get();
+        return muestras;
+    }
+
+    private static int elegirTipo(Random random) {
+        int r = random.nextInt(100);
+        for (int t = 0; t < MEZCLA.length; t++) {
+            r -= MEZCLA[t];
+            if (r < 0) return t;
+        }
+        return 0;
+    }
+
+    private static HttpRequest peticion(String base, int tipo, Random random, long productos, long usuarios,
+                                        AtomicLong siguienteRut) {
+        String rut = GeneradorDatosSinteticos.rut(1 + random.nextInt((int) usuarios));
+        // Los múltiplos de 10 son preventas; el resto está en tienda
+        long enTienda = 1 + random.nextInt((int) productos);
+        if (enTienda % 10 == 0) enTienda--;
+        String codigo = GeneradorDatosSinteticos.codigo(enTienda);
+        switch (TIPOS[tipo]) {
+            case "buscar":
+                String serie = GeneradorDatosSinteticos.SERIES[random.nextInt(GeneradorDatosSinteticos.SERIES.length)];
+                // Búsqueda por prefijo, como quien va escribiendo en la caja
+                String texto = serie.substring(0, Math.min(serie.length(), 3 + random.nextInt(4)));
+                return get(base + "/comics?limite=10&q=" + URLEncoder.encode(texto, StandardCharsets.UTF_8));
+            case "producto":
+                return get(base + "/comics/" + codigo);
+            case "compra":
+                return post(base + "/compras", "{\"rut\":\"" + rut + "\",\"codigo\":\"" + codigo + "\",\"cantidad\":1}");
+            case "pedido":
+                String otro = GeneradorDatosSinteticos.codigo(Math.max(1, enTienda - 1));
+                return post(base + "/compras", "{\"rut\":\"" + rut + "\",\"lineas\":[{\"codigo\":\"" + codigo
+                        + "\",\"cantidad\":1},{\"codigo\":\"" + otro + "\",\"cantidad\":2}]}");
+            case "reserva":
+                long preventa = 10 * (1 + random.nextInt((int) Math.max(1, productos / 10)));
+                return post(base + "/reservas", "{\"rut\":\"" + rut + "\",\"codigo\":\""
+                        + GeneradorDatosSinteticos.codigo(Math.min(preventa, productos)) + "\",\"cantidad\":1}");
+            case "ranking":
+                return random.nextBoolean() ? get(base + "/ranking?top=10") : get(base + "/ranking/" + rut + "?radio=2");
+            default:
+                long n = siguienteRut.getAndIncrement();
+                return post(base + "/usuarios", "{\"rut\":\"" + GeneradorDatosSinteticos.rut(n) + "\",\"nombre\":\"usuario "
+                        + n + "\",\"email\":\"" + GeneradorDatosSinteticos.email(n) + "\",\"celular\":\""
+                        + GeneradorDatosSinteticos.celular(n) + "\"}");
+        }
+    }
+
+    private static HttpRequest get(String url) {
+        return HttpRequest.newBuilder(URI.create(url)).GET().build();
+    }
+
+    private static HttpRequest post(String url, String json) {
+        return HttpRequest.newBuilder(URI.create(url))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json)).build();
+    }
+
+    private static long[] unir(List<Muestras> muestras, int tipo) {
+        int total = 0;
+        for (Muestras m : muestras) total += m.cantidad[tipo];
+        long[] resultado = new long[total];
+        int pos = 0;
+        for (Muestras m : muestras) {
+            System.arraycopy(m.nanos[tipo], 0, resultado, pos, m.cantidad[tipo]);
+            pos += m.cantidad[tipo];
+        }
+        return resultado;
+    }
+
+    private static long[] concatenar(long[] a, long[] b) {
+        long[] resultado = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, resultado, a.length, b.length);
+        return resultado;
+    }
+
+    private static void imprimir(String nombre, long[] nanos, double segundos) {
+        if (nanos.length == 0) return;
+        Arrays.sort(nanos);
+        System.out.println(String.format(Locale.ROOT, "%-10s %10d %10.0f %10.2f %10.2f %10.2f %10.2f",
+                nombre, nanos.length, nanos.length / segundos, percentil(nanos, 0.50), percentil(nanos, 0.99),
+                percentil(nanos, 0.999), nanos[nanos.length - 1] / 1e6));
+    }
+
+    private static double percentil(long[] ordenados, double fraccion) {
+        int i = (int) Math.min(ordenados.length - 1, Math.ceil(fraccion * ordenados.length) - 1);
+        return ordenados[Math.max(0, i)] / 1e6;
+    }
+
+    private static void borrar(File dir) {
+        File[] archivos = dir.listFiles();
+        if (archivos != null) {
+            for (File f : archivos) {
+                f.delete();
+            }
+        }
+        dir.delete();
+    }
+}
@@ -0,0 +1,272 @@
+package comiccollector.servicios;
+
+import comiccollector.modelos.Comic;
+import comiccollector.modelos.Usuario;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Secuencia de operaciones (compras, pedidos, reservas y registros) con el instante en que
+ * debe empezar cada una, para reproducirla contra ComicCollectorSystem a un ritmo fijo.
+ *
+ * La demanda tiene sesgo como en una tienda real: los productos y los compradores se eligen con
+ * una distribución Zipf (pocos productos "calientes" y pocos clientes frecuentes concentran la
+ * mayoría de las operaciones), y hay peaks de lanzamiento en los que llegan varias veces más
+ * operaciones por segundo y buena parte va a los productos que se lanzan ese día.
+ *
+ * Se puede guardar en un archivo de texto y volver a leer, para repetir exactamente la misma
+ * carga en otra máquina o con otra versión.
+ */
+public class CargaTrabajo {
+
+    public static final char COMPRA = 'C';
+    public static final char PEDIDO = 'P';
+    public static final char RESERVA = 'R';
+    public static final char REGISTRO = 'U';
+
+    // Una operación programada. En un registro, usuarioNuevo es el número para armar rut, email y celular.
+    public static class Operacion {
+        public final long instanteNanos;
+        public final char tipo;
+        public final boolean enPeak;
+        public final String rut;
+        public final String[] codigos;
+        public final int[] cantidades;
+        public final long usuarioNuevo;
+
+        Operacion(long instanteNanos, char tipo, boolean enPeak, String rut, String[] codigos, int[] cantidades,
+                  long usuarioNuevo) {
+            this.instanteNanos = instanteNanos;
+            this.tipo = tipo;
+            this.enPeak = enPeak;
+            this.rut = rut;
+            this.codigos = codigos;
+            this.cantidades = cantidades;
+            this.usuarioNuevo = usuarioNuevo;
+        }
+    }
+
+    // Parámetros de la carga. Los pesos de la mezcla no necesitan sumar 100.
+    public static class Parametros {
+        public int operaciones = 200_000;
+        public double tasaPorSegundo = 2_000;
+        public double pesoCompra = 70;
+        public double pesoPedido = 10;
+        public double pesoReserva = 15;
+        public double pesoRegistro = 5;
+        // Exponente Zipf de productos y de usuarios (0 = uniforme)
+        public double sesgoProductos = 1.1;
+        public double sesgoUsuarios = 0.8;
+        public int productosPorPedido = 4;
+        // Peaks de lanzamiento repartidos en la carga: cuántos, qué fracción del tiempo dura cada
+        // uno, cuántas veces sube la tasa y qué fracción de las compras va a los lanzamientos del día
+        public int peaks = 3;
+        public double duracionPeak = 0.05;
+        public double factorPeak = 5;
+        public double concentracionPeak = 0.6;
+    }
+
+    private final List<Operacion> operaciones;
+
+    private CargaTrabajo(List<Operacion> operaciones) {
+        this.operaciones = operaciones;
+    }
+
+    public List<Operacion> getOperaciones() {
+        return Collections.unmodifiableList(operaciones);
+    }
+
+    // Duración prevista de la carga a la tasa pedida
+    public long duracionNanos() {
+        return operaciones.isEmpty() ? 0 : operaciones.get(operaciones.size() - 1).instanteNanos;
+    }
+
+    /**
+     * Arma una carga sobre el catálogo y los usuarios cargados en el sistema. Los registros usan
+     * números de usuario desde primerUsuarioNuevo, que no deben existir todavía.
+     */
+    public static CargaTrabajo generar(ComicCollectorSystem sistema, Parametros p, long primerUsuarioNuevo, long semilla) {
+        Random random = new Random(semilla);
+        LocalDate hoy = LocalDate.now();
+        List<String> enTienda = new ArrayList<>();
+        List<String> lanzamientosHoy = new ArrayList<>();
+        List<String> preventas = new ArrayList<>();
+        for (Comic c : sistema.getComics()) {
+            LocalDate fecha = c.getFechaLlegada();
+            if (fecha == null || fecha.isBefore(hoy)) {
+                enTienda.add(c.getCodigo());
+            } else if (fecha.isEqual(hoy)) {
+                lanzamientosHoy.add(c.getCodigo());
+            } else {
+                preventas.add(c.getCodigo());
+            }
+        }
+        List<String> ruts = new ArrayList<>();
+        for (Usuario u : sistema.getUsuarios()) {
+            ruts.add(u.getRut());
+        }
+        if (enTienda.isEmpty() || ruts.isEmpty()) {
+            throw new IllegalArgumentException("Se necesitan productos en tienda y usuarios para generar la carga.");
+        }
+        // El orden de popularidad no tiene que ver con el código
+        Collections.shuffle(enTienda, random);
+        Collections.shuffle(preventas, random);
+        Collections.shuffle(ruts, random);
+        if (lanzamientosHoy.isEmpty()) lanzamientosHoy = enTienda.subList(0, 1);
+        Zipf productos = new Zipf(enTienda.size(), p.sesgoProductos);
+        Zipf clientes = new Zipf(ruts.size(), p.sesgoUsuarios);
+        Zipf lanzamientos = new Zipf(lanzamientosHoy.size(), p.sesgoProductos);
+        Zipf reservables = new Zipf(Math.max(1, preventas.size()), p.sesgoProductos);
+
+        // Tiempo base sin peaks; los peaks quedan repartidos a intervalos regulares
+        double segundosBase = p.operaciones / p.tasaPorSegundo;
+        double largoPeak = segundosBase * p.duracionPeak;
+        double totalPesos = p.pesoCompra + p.pesoPedido + p.pesoReserva + p.pesoRegistro;
+
+        List<Operacion> lista = new ArrayList<>(p.operaciones);
+        double t = 0;
+        long siguienteUsuario = primerUsuarioNuevo;
+        for (int i = 0; i < p.operaciones; i++) {
+            boolean enPeak = enPeak(t, segundosBase, largoPeak, p.peaks);
+            double tasa = enPeak ? p.tasaPorSegundo * p.factorPeak : p.tasaPorSegundo;
+            // Llegadas de Poisson: intervalos exponenciales
+            t += -Math.log(1 - random.nextDouble()) / tasa;
+            long instante = (long) (t * 1e9);
+            String rut = ruts.get(clientes.muestra(random));
+            boolean aLanzamiento = enPeak && random.nextDouble() < p.concentracionPeak;
+
+            double sorteo = random.nextDouble() * totalPesos;
+            if (sorteo < p.pesoCompra) {
+                String codigo = aLanzamiento ? lanzamientosHoy.get(lanzamientos.muestra(random))
+                        : enTienda.get(productos.muestra(random));
+                lista.add(new Operacion(instante, COMPRA, enPeak, rut, new String[]{codigo},
+                        new int[]{1 + (random.nextInt(10) == 0 ? 1 : 0)}, 0));
+            } else if ((sorteo -= p.pesoCompra) < p.pesoPedido) {
+                int lineas = 2 + random.nextInt(Math.max(1, p.productosPorPedido - 1));
+                String[] codigos = new String[lineas];
+                int[] cantidades = new int[lineas];
+                for (int j = 0; j < lineas; j++) {
+                    codigos[j] = aLanzamiento && j == 0 ? lanzamientosHoy.get(lanzamientos.muestra(random))
+                            : enTienda.get(productos.muestra(random));
+                    cantidades[j] = 1;
+                }
+                lista.add(new Operacion(instante, PEDIDO, enPeak, rut, codigos, cantidades, 0));
+            } else if ((sorteo -= p.pesoPedido) < p.pesoReserva && !preventas.isEmpty()) {
+                String codigo = aLanzamiento ? lanzamientosHoy.get(lanzamientos.muestra(random))
+                        : preventas.get(reservables.muestra(random));
+                lista.add(new Operacion(instante, RESERVA, enPeak, rut, new String[]{codigo}, new int[]{1}, 0));
+            } else {
+                lista.add(new Operacion(instante, REGISTRO, enPeak, null, null, null, siguienteUsuario++));
+            }
+        }
+        return new CargaTrabajo(lista);
+    }
+
+    private static boolean enPeak(double t, double segundosBase, double largoPeak, int peaks) {
+        if (peaks <= 0) return false;
+        double periodo = segundosBase / peaks;
+        // Cada peak queda al medio de su tramo
+        double enTramo = t % periodo;
+        return Math.abs(enTramo - periodo / 2) < largoPeak / 2;
+    }
+
+    // Formato: instante|tipo|peak|rut|codigo:cantidad,codigo:cantidad (en registros, rut es el número de usuario)
+    public void guardar(File archivo) throws IOException {
+        try (BufferedWriter bw = new BufferedWriter(new FileWriter(archivo), 1 << 16)) {
+            for (Operacion op : operaciones) {
+                bw.write(Long.toString(op.instanteNanos));
+                bw.write('|');
+                bw.write(op.tipo);
+                bw.write('|');
+                bw.write(op.enPeak ? '1' : '0');
+                bw.write('|');
+                if (op.tipo == REGISTRO) {
+                    bw.write(Long.toString(op.usuarioNuevo));
+                } else {
+                    bw.write(op.rut);
+                    bw.write('|');
+                    for (int j = 0; j < op.codigos.length; j++) {
+                        if (j > 0) bw.write(',');
+                        bw.write(op.codigos[j] + ":" + op.cantidades[j]);
+                    }
+                }
+                bw.newLine();
+            }
+        }
+    }
+
+    public static CargaTrabajo leer(File archivo) throws IOException {
+        List<Operacion> lista = new ArrayList<>();
+        try (BufferedReader br = new BufferedReader(new FileReader(archivo), 1 << 16)) {
+            String linea;
+            int numero = 0;
+            while ((linea = br.readLine()) != null) {
+                numero++;
+                String[] partes = linea.split("\\|");
+                try {
+                    long instante = Long.parseLong(partes[0]);
+                    char tipo = partes[1].charAt(0);
+                    boolean enPeak = partes[2].equals("1");
+                    if (tipo == REGISTRO) {
+                        lista.add(new Operacion(instante, tipo, enPeak, null, null, null, Long.parseLong(partes[3])));
+                        continue;
+                    }
+                    String[] lineas = partes[4].split(",");
+                    String[] codigos = new String[lineas.length];
+                    int[] cantidades = new int[lineas.length];
+                    for (int j = 0; j < lineas.length; j++) {
+                        int dosPuntos = lineas[j].lastIndexOf(':');
+                        codigos[j] = lineas[j].substring(0, dosPuntos);
+                        cantidades[j] = Integer.parseInt(lineas[j].substring(dosPuntos + 1));
+                    }
+                    lista.add(new Operacion(instante, tipo, enPeak, partes[3], codigos, cantidades, 0));
+                } catch (RuntimeException e) {
+                    throw new IOException("Línea " + numero + " inválida en " + archivo + ": " + linea, e);
+                }
+            }
+        }
+        return new CargaTrabajo(lista);
+    }
+
+    // Muestreo Zipf sobre 0..n-1 por búsqueda binaria en la distribución acumulada
+    static class Zipf {
+        private final double[] acumulada;
+
+        Zipf(int n, double exponente) {
+            acumulada = new double[n];
+            double suma = 0;
+            for (int i = 0; i < n; i++) {
+                suma += 1 / Math.pow(i + 1, exponente);
+                acumulada[i] = suma;
+            }
+            for (int i = 0; i < n; i++) {
+                acumulada[i] /= suma;
+            }
+        }
+
+        int muestra(Random random) {
+            double u = random.nextDouble();
+            int lo = 0;
+            int hi = acumulada.length - 1;
+            while (lo < hi) {
+                int medio = (lo + hi) >>> 1;
+                if (acumulada[medio] < u) {
+                    lo = medio + 1;
+                } else {
+                    hi = medio;
+                }
+            }
+            return lo;
+        }
+    }
+}
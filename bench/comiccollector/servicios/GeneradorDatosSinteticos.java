@@ -0,0 +1,192 @@
+package comiccollector.servicios;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Random;
+
+/**
+ * Genera archivos de datos sintéticos (comics.csv, usuarios.txt, reservas.txt)
+ * con el mismo formato que usa ComicCollectorSystem, para cualquier tamaño de catálogo.
+ */
+public class GeneradorDatosSinteticos {
+
+    static final String[] TIPOS = {"Cómic", "Manga", "Novela gráfica", "Coleccionable"};
+    static final String[] SERIES = {"Batman", "Spider-Man", "Evangelion", "Deadpool", "X-Men",
+            "V de Vendetta", "One Piece", "Naruto", "Superman", "Watchmen", "Akira", "Hellboy"};
+    static final String[] AUTORES = {"Bob Kane", "Stan Lee", "Steve Ditko", "Alan Moore", "Rob Liefeld",
+            "Chris Claremont", "Eiichiro Oda", "Masashi Kishimoto", "Katsuhiro Otomo", "Mike Mignola"};
+
+    // Stock inicial alto para que las compras repetidas no agoten el producto
+    static final int STOCK_INICIAL = 1_000_000;
+
+    /**
+     * Forma del catálogo para generarComics(archivo, cantidad, perfil). Los valores por omisión
+     * se parecen a una tienda mediana: mitad cómics, un tercio mangas, pocos coleccionables.
+     */
+    public static class PerfilCatalogo {
+        // Peso relativo de cada tipo, en el orden de TIPOS
+        public double[] pesosTipo = {50, 30, 12, 8};
+        // Autores distintos; los primeros son los de AUTORES y el resto se numera
+        public int autores = 200;
+        // Fracción del catálogo en preventa, con fecha de llegada futura
+        public double fraccionPreventa = 0.08;
+        // Fracción que se lanza hoy: se puede comprar y también reservar
+        public double fraccionLanzamientoHoy = 0.002;
+        // Las preventas llegan en pocos días de lanzamiento (semanales) dentro de este horizonte
+        public int diasHorizonte = 180;
+        public int stockMinimo = 5;
+        public int stockMaximo = 200;
+        // Stock de los lanzamientos del día, poco para que se agoten en los peaks
+        public int stockLanzamiento = 300;
+    }
+
+    private final Random random;
+
+    public GeneradorDatosSinteticos(long semilla) {
+        this.random = new Random(semilla);
+    }
+
+    // Código de producto con el mismo formato que generarNuevoCodigo
+    static String codigo(long numero) {
+        return String.format("%03d", numero);
+    }
+
+    // RUT con formato 12.345.678-9 y dígito verificador válido (módulo 11)
+    static String rut(long numero) {
+        long cuerpo = 10_000_000L + numero;
+        String digitos = Long.toString(cuerpo);
+        int suma = 0;
+        int factor = 2;
+        for (int i = digitos.length() - 1; i >= 0; i--) {
+            suma += (digitos.charAt(i) - '0') * factor;
+            factor = factor == 7 ? 2 : factor + 1;
+        }
+        int resto = 11 - (suma % 11);
+        String dv = resto == 11 ? "0" : resto == 10 ? "K" : Integer.toString(resto);
+        String conPuntos = digitos.substring(0, digitos.length() - 6) + "." +
+                digitos.substring(digitos.length() - 6, digitos.length() - 3) + "." +
+                digitos.substring(digitos.length() - 3);
+        return conPuntos + "-" + dv;
+    }
+
+    static String email(long numero) {
+        return "usuario" + numero + "@correo.cl";
+    }
+
+    static String celular(long numero) {
+        return String.format("9%07d", numero % 10_000_000L);
+    }
+
+    // Escribe comics.csv con "cantidad" productos. Cada décimo es preventa con fecha futura.
+    public void generarComics(File archivo, long cantidad) throws IOException {
+        LocalDate hoy = LocalDate.now();
+        try (BufferedWriter bw = new BufferedWriter(new FileWriter(archivo), 1 << 16)) {
+            bw.write("tipo,codigo,nombre,autor,cantidad,fechaLlegada,precio");
+            bw.newLine();
+            for (long i = 1; i <= cantidad; i++) {
+                String fecha = (i % 10 == 0) ? hoy.plusDays(1 + random.nextInt(365)).toString() : "null";
+                bw.write(TIPOS[random.nextInt(TIPOS.length)]);
+                bw.write(',');
+                bw.write(codigo(i));
+                bw.write(',');
+                bw.write(SERIES[random.nextInt(SERIES.length)] + " " + (1 + random.nextInt(500)));
+                bw.write(',');
+                bw.write(AUTORES[random.nextInt(AUTORES.length)]);
+                bw.write(',');
+                bw.write(Integer.toString(STOCK_INICIAL));
+                bw.write(',');
+                bw.write(fecha);
+                bw.write(',');
+                bw.write(Integer.toString(1990 + random.nextInt(20) * 500));
+                bw.newLine();
+            }
+        }
+    }
+
+    /**
+     * Escribe comics.csv según el perfil: tipos con la mezcla pedida, autores repartidos con
+     * cola larga (unos pocos tienen gran parte del catálogo), preventas agrupadas en días de
+     * lanzamiento semanales y stock variable.
+     */
+    public void generarComics(File archivo, long cantidad, PerfilCatalogo perfil) throws IOException {
+        LocalDate hoy = LocalDate.now();
+        double totalPesos = 0;
+        for (double p : perfil.pesosTipo) totalPesos += p;
+        int semanas = Math.max(1, perfil.diasHorizonte / 7);
+        try (BufferedWriter bw = new BufferedWriter(new FileWriter(archivo), 1 << 16)) {
+            bw.write("tipo,codigo,nombre,autor,cantidad,fechaLlegada,precio");
+            bw.newLine();
+            for (long i = 1; i <= cantidad; i++) {
+                double sorteo = random.nextDouble();
+                String fecha;
+                int stock;
+                if (sorteo < perfil.fraccionLanzamientoHoy) {
+                    fecha = hoy.toString();
+                    stock = perfil.stockLanzamiento;
+                } else if (sorteo < perfil.fraccionLanzamientoHoy + perfil.fraccionPreventa) {
+                    fecha = hoy.plusWeeks(1 + random.nextInt(semanas)).toString();
+                    stock = perfil.stockLanzamiento;
+                } else {
+                    fecha = "null";
+                    stock = perfil.stockMinimo + random.nextInt(perfil.stockMaximo - perfil.stockMinimo + 1);
+                }
+                double t = random.nextDouble() * totalPesos;
+                int tipo = 0;
+                while (tipo < perfil.pesosTipo.length - 1 && (t -= perfil.pesosTipo[tipo]) >= 0) tipo++;
+                // Cuadrado de un uniforme: los autores de menor índice concentran más títulos
+                double u = random.nextDouble();
+                int autor = (int) (u * u * perfil.autores);
+                bw.write(TIPOS[tipo]);
+                bw.write(',');
+                bw.write(codigo(i));
+                bw.write(',');
+                bw.write(SERIES[random.nextInt(SERIES.length)] + " " + (1 + random.nextInt(500)));
+                bw.write(',');
+                bw.write(autor < AUTORES.length ? AUTORES[autor] : "Autor " + autor);
+                bw.write(',');
+                bw.write(Integer.toString(stock));
+                bw.write(',');
+                bw.write(fecha);
+                bw.write(',');
+                bw.write(Integer.toString(1990 + random.nextInt(20) * 500));
+                bw.newLine();
+            }
+        }
+    }
+
+    // Escribe usuarios.txt con formato rut|nombre|email|celular
+    public void generarUsuarios(File archivo, long cantidad) throws IOException {
+        try (BufferedWriter bw = new BufferedWriter(new FileWriter(archivo), 1 << 16)) {
+            for (long i = 1; i <= cantidad; i++) {
+                bw.write(rut(i) + "|Usuario " + i + "|" + email(i) + "|" + celular(i));
+                bw.newLine();
+            }
+        }
+    }
+
+    // Escribe reservas.txt con formato rut|codigo|cantidad sobre productos en preventa
+    public void generarReservas(File archivo, long cantidad, long usuarios, long productos) throws IOException {
+        long preventas = Math.max(1, productos / 10);
+        try (BufferedWriter bw = new BufferedWriter(new FileWriter(archivo), 1 << 16)) {
+            for (long i = 0; i < cantidad; i++) {
+                long usuario = 1 + Math.floorMod(random.nextLong(), Math.max(1, usuarios));
+                long producto = 10 * (1 + Math.floorMod(random.nextLong(), preventas));
+                bw.write(rut(usuario) + "|" + codigo(Math.min(producto, productos)) + "|" + (1 + random.nextInt(3)));
+                bw.newLine();
+            }
+        }
+    }
+
+    // Genera los tres archivos dentro de una carpeta
+    public void generarDirectorio(File directorio, long productos, long usuarios, long reservas) throws IOException {
+        if (!directorio.exists() && !directorio.mkdirs()) {
+            throw new IOException("No se pudo crear la carpeta " + directorio);
+        }
+        generarComics(new File(directorio, "comics.csv"), productos);
+        generarUsuarios(new File(directorio, "usuarios.txt"), usuarios);
+        generarReservas(new File(directorio, "reservas.txt"), reservas, usuarios, productos);
+    }
+}
@@ -0,0 +1,134 @@
+package comiccollector.servicios;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Arnés mínimo de medición al estilo JMH, solo con la JDK.
+ * Cada benchmark tiene iteraciones de calentamiento y de medición de duración fija;
+ * se reporta throughput (ops/s), latencia media y asignación de memoria por operación
+ * (equivalente al perfilador "gc" de JMH).
+ */
+public class MedidorRendimiento {
+
+    // Operación a medir. Recibe el número de invocación para variar datos.
+    public interface Operacion {
+        void ejecutar(long invocacion) throws Exception;
+    }
+
+    // Resultado de un benchmark
+    public static class Resultado {
+        final String nombre;
+        final long tamano;
+        final double opsPorSegundo;
+        final double nsPorOp;
+        final double bytesPorOp;
+        final long gcCantidad;
+        final long gcMilis;
+
+        Resultado(String nombre, long tamano, double opsPorSegundo, double nsPorOp,
+                  double bytesPorOp, long gcCantidad, long gcMilis) {
+            this.nombre = nombre;
+            this.tamano = tamano;
+            this.opsPorSegundo = opsPorSegundo;
+            this.nsPorOp = nsPorOp;
+            this.bytesPorOp = bytesPorOp;
+            this.gcCantidad = gcCantidad;
+            this.gcMilis = gcMilis;
+        }
+    }
+
+    private final int iteracionesCalentamiento;
+    private final int iteracionesMedicion;
+    private final long milisPorIteracion;
+    private final List<Resultado> resultados = new ArrayList<>();
+    // Consola original, por si un benchmark silencia System.out
+    private final PrintStream consola = System.out;
+    private final com.sun.management.ThreadMXBean hilos =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public MedidorRendimiento(int iteracionesCalentamiento, int iteracionesMedicion, long milisPorIteracion) {
+        this.iteracionesCalentamiento = iteracionesCalentamiento;
+        this.iteracionesMedicion = iteracionesMedicion;
+        this.milisPorIteracion = milisPorIteracion;
+    }
+
+    // Ejecuta calentamiento + medición y guarda el resultado
+    public Resultado medir(String nombre, long tamano, Operacion op) throws Exception {
+        long invocacion = 0;
+        for (int i = 0; i < iteracionesCalentamiento; i++) {
+            invocacion = iteracion(op, invocacion);
+        }
+
+        long idHilo = Thread.currentThread().threadId();
+        long bytesInicio = hilos.getThreadAllocatedBytes(idHilo);
+        long[] gcInicio = estadoGc();
+        long opsInicio = invocacion;
+        long inicio = System.nanoTime();
+        for (int i = 0; i < iteracionesMedicion; i++) {
+            invocacion = iteracion(op, invocacion);
+        }
+        long duracion = System.nanoTime() - inicio;
+        long[] gcFin = estadoGc();
+        long bytes = hilos.getThreadAllocatedBytes(idHilo) - bytesInicio;
+        long ops = invocacion - opsInicio;
+
+        Resultado r = new Resultado(nombre, tamano,
+                ops * 1_000_000_000.0 / duracion,
+                (double) duracion / ops,
+                (double) bytes / ops,
+                gcFin[0] - gcInicio[0],
+                gcFin[1] - gcInicio[1]);
+        resultados.add(r);
+        consola.println(formatear(r));
+        consola.flush();
+        return r;
+    }
+
+    // Una iteración: ejecuta la operación hasta cumplir el tiempo (al menos una vez)
+    private long iteracion(Operacion op, long invocacion) throws Exception {
+        long limite = System.nanoTime() + milisPorIteracion * 1_000_000L;
+        do {
+            op.ejecutar(invocacion++);
+        } while (System.nanoTime() < limite);
+        return invocacion;
+    }
+
+    private static long[] estadoGc() {
+        long cantidad = 0;
+        long milis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            cantidad += Math.max(0, gc.getCollectionCount());
+            milis += Math.max(0, gc.getCollectionTime());
+        }
+        return new long[]{cantidad, milis};
+    }
+
+    public static String cabecera() {
+        return String.format(Locale.ROOT, "%-32s %10s %14s %14s %14s %8s %8s",
+                "Benchmark", "Tamaño", "ops/s", "ns/op", "B/op", "gc.n", "gc.ms");
+    }
+
+    private static String formatear(Resultado r) {
+        return String.format(Locale.ROOT, "%-32s %10d %14.1f %14.1f %14.1f %8d %8d",
+                r.nombre, r.tamano, r.opsPorSegundo, r.nsPorOp, r.bytesPorOp, r.gcCantidad, r.gcMilis);
+    }
+
+    // Guarda los resultados en CSV para comparar contra una línea base
+    public void guardarCSV(String archivo) throws IOException {
+        try (PrintWriter pw = new PrintWriter(new FileWriter(archivo))) {
+            pw.println("benchmark,tamano,ops_s,ns_op,bytes_op,gc_cantidad,gc_ms");
+            for (Resultado r : resultados) {
+                pw.println(String.format(Locale.ROOT, "%s,%d,%.3f,%.3f,%.3f,%d,%d",
+                        r.nombre, r.tamano, r.opsPorSegundo, r.nsPorOp, r.bytesPorOp, r.gcCantidad, r.gcMilis));
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package comiccollector.servicios;
+
+import comiccollector.modelos.Comic;
+import comiccollector.modelos.LineaPedido;
+import comiccollector.modelos.Usuario;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Prueba de estrés de compras concurrentes.
+ * Muchos hilos compran a la vez sobre pocos productos "calientes" con poco stock y
+ * sobre muchos productos fríos. Al final verifica que ningún stock quedó negativo y que
+ * lo vendido + lo que queda coincide con el stock inicial (no hay sobreventa ni pérdidas).
+ * Uno de cada cuatro intentos es un pedido de dos productos, que debe venderse completo o no venderse.
+ *
+ * Uso: java -cp out comiccollector.servicios.PruebaEstresConcurrencia [hilos] [comprasPorHilo]
+ * Termina con código 1 si detecta alguna inconsistencia.
+ */
+public class PruebaEstresConcurrencia {
+
+    private static final int PRODUCTOS = 1_000;
+    private static final int CALIENTES = 5;
+    private static final int STOCK_CALIENTE = 500;
+    private static final int USUARIOS = 200;
+
+    public static void main(String[] args) throws Exception {
+        int hilos = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int comprasPorHilo = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+
+        File dir = Files.createTempDirectory("ccs-estres-").toFile();
+        new GeneradorDatosSinteticos(1).generarDirectorio(dir, PRODUCTOS, USUARIOS, 0);
+        ComicCollectorSystem sistema = new ComicCollectorSystem(dir);
+
+        // Productos calientes con poco stock para forzar la competencia por la última unidad
+        List<Comic> enTienda = new ArrayList<>();
+        for (Comic c : sistema.getComics()) {
+            if (c.getFechaLlegada() == null) enTienda.add(c);
+        }
+        long stockInicial = 0;
+        for (int i = 0; i < enTienda.size(); i++) {
+            Comic c = enTienda.get(i);
+            if (i < CALIENTES) c.setCantidadDisponible(STOCK_CALIENTE);
+            stockInicial += c.getCantidadDisponible();
+        }
+
+        AtomicLong vendidas = new AtomicLong();
+        AtomicLong rechazadas = new AtomicLong();
+        CountDownLatch largada = new CountDownLatch(1);
+        List<Thread> trabajadores = new ArrayList<>();
+        for (int h = 0; h < hilos; h++) {
+            final long semilla = h;
+            Thread t = new Thread(() -> {
+                Random random = new Random(semilla);
+                try {
+                    largada.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < comprasPorHilo; i++) {
+                    // La mitad de las compras va a los productos calientes
+                    Comic c = random.nextBoolean()
+                            ? enTienda.get(random.nextInt(CALIENTES))
+                            : enTienda.get(random.nextInt(enTienda.size()));
+                    String rut = GeneradorDatosSinteticos.rut(1 + random.nextInt(USUARIOS));
+                    int cantidad = 1 + random.nextInt(3);
+                    try {
+                        if (i % 4 == 0) {
+                            // Pedido de varios productos: se vende todo o nada
+                            List<LineaPedido> lineas = new ArrayList<>();
+                            lineas.add(new LineaPedido(c.getCodigo(), cantidad));
+                            Comic otro = enTienda.get(random.nextInt(CALIENTES));
+                            lineas.add(new LineaPedido(otro.getCodigo(), 1));
+                            sistema.realizarComprasLote(rut, lineas);
+                            vendidas.addAndGet(cantidad + 1);
+                        } else {
+                            sistema.realizarCompra(rut, c.getCodigo(), cantidad);
+                            vendidas.addAndGet(cantidad);
+                        }
+                    } catch (IllegalArgumentException e) {
+                        rechazadas.incrementAndGet();
+                    }
+                }
+            });
+            trabajadores.add(t);
+            t.start();
+        }
+
+        long inicio = System.nanoTime();
+        largada.countDown();
+        for (Thread t : trabajadores) {
+            t.join();
+        }
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+
+        boolean ok = true;
+        long stockFinal = 0;
+        for (Comic c : enTienda) {
+            if (c.getCantidadDisponible() < 0) {
+                System.out.println("ERROR. Stock negativo en " + c.getCodigo() + ": " + c.getCantidadDisponible());
+                ok = false;
+            }
+            stockFinal += c.getCantidadDisponible();
+        }
+        if (stockFinal + vendidas.get() != stockInicial) {
+            System.out.println("ERROR. Stock inicial " + stockInicial + " != final " + stockFinal + " + vendidas " + vendidas.get());
+            ok = false;
+        }
+        long totalHistoriales = 0;
+        for (Usuario u : sistema.getUsuarios()) {
+            totalHistoriales += u.totalCompras();
+        }
+        if (totalHistoriales != vendidas.get()) {
+            System.out.println("ERROR. Historiales suman " + totalHistoriales + " pero se vendieron " + vendidas.get());
+            ok = false;
+        }
+        if (sistema.getRankingUsuarios().size() != USUARIOS) {
+            System.out.println("ERROR. El ranking tiene " + sistema.getRankingUsuarios().size() + " usuarios, se esperaban " + USUARIOS);
+            ok = false;
+        }
+        for (int i = 0; i < CALIENTES; i++) {
+            if (enTienda.get(i).getCantidadDisponible() > 2) {
+                // Con tanta demanda los calientes deberían agotarse (quedan a lo más 2 por compras de 3)
+                System.out.println("AVISO. Producto caliente " + enTienda.get(i).getCodigo() + " no se agotó.");
+            }
+        }
+
+        System.out.printf("Hilos: %d, intentos: %d, unidades vendidas: %d, rechazadas: %d, %.0f ops/s%n",
+                hilos, (long) hilos * comprasPorHilo, vendidas.get(), rechazadas.get(), hilos * comprasPorHilo / segundos);
+        System.out.println(ok ? "OK. Sin sobreventa ni stock negativo." : "FALLÓ la prueba de concurrencia.");
+        for (File f : dir.listFiles()) {
+            f.delete();
+        }
+        dir.delete();
+        if (!ok) System.exit(1);
+    }
+}
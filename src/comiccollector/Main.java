@@ -2,11 +2,39 @@ package comiccollector;
 
 import comiccollector.servicios.ComicCollectorSystem;
 import comiccollector.util.MenuPrincipal;
+import comiccollector.util.ServidorApi;
+
+import java.io.IOException;
 
 public class Main {
+    private static final long MINUTOS_ENTRE_INSTANTANEAS = 15;
+    private static final long SEGUNDOS_ENTRE_GUARDADOS_INVENTARIO = 30;
+    private static final long MINUTOS_ENTRE_COMPACTACIONES = 60;
+
+    // Con un puerto como argumento, además del menú se atiende la API HTTP para otras cajas y la tienda web
     public static void main(String[] args) {
         ComicCollectorSystem sistema = new ComicCollectorSystem();
+        sistema.publicarMetricas();
+        sistema.programarInstantaneas(MINUTOS_ENTRE_INSTANTANEAS);
+        sistema.programarEntregas();
+        sistema.programarGuardadoInventario(SEGUNDOS_ENTRE_GUARDADOS_INVENTARIO);
+        sistema.programarCompactacion(MINUTOS_ENTRE_COMPACTACIONES);
+        ServidorApi api = null;
+        if (args.length > 0) {
+            api = new ServidorApi(sistema);
+            try {
+                api.iniciar(Integer.parseInt(args[0]));
+                System.out.println("API HTTP escuchando en el puerto " + api.getPuerto() + ".");
+            } catch (IOException | NumberFormatException e) {
+                System.out.println("ERROR. No se pudo iniciar la API HTTP: " + e.getMessage());
+                api = null;
+            }
+        }
         MenuPrincipal menu = new MenuPrincipal(sistema);
         menu.iniciar();
+        if (api != null) {
+            api.detener();
+        }
+        sistema.cerrar();
     }
 }
@@ -0,0 +1,9 @@
+package comiccollector.excepciones;
+
+// Excepción para que no se registre dos veces el mismo rut
+public class RutYaRegistradoException extends Exception {
+
+    public RutYaRegistradoException(String rut) {
+        super("El RUT '" + rut + "' ya está registrado en el sistema.");
+    }
+}
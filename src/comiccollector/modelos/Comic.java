@@ -1,70 +1,224 @@
 package comiccollector.modelos;
 
 import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicInteger;
 
 // Clase para representar producto en la tienda.
+// Es una vista liviana de una fila de un Almacen: los datos viven en el almacén (en el inventario,
+// en columnas de tipos primitivos) y el cómic solo guarda en qué almacén y en qué fila está.
+// Un cómic recién creado tiene su propia fila suelta hasta que se agrega al inventario.
 public class Comic {
 
-    private String codigo;
-    private String tipo;
-    private String nombre;
-    private String autorOFabricante;
-    private int cantidadDisponible;
-    // Fecha de llegada (null si ya está disponible)
-    private LocalDate fechaLlegada;
-    private double precio;
+    /**
+     * Donde viven los datos de los cómics, fila por fila. Las fechas van como día epoch
+     * (LocalDate.toEpochDay), SIN_FECHA si el producto ya está en tienda.
+     */
+    public interface Almacen {
+        int SIN_FECHA = Integer.MIN_VALUE;
 
-    // Constructor principal
+        String codigo(int fila);
+        TipoProducto tipo(int fila);
+        String nombre(int fila);
+        String autor(int fila);
+        int cantidad(int fila);
+        int diaLlegada(int fila);
+        double precio(int fila);
+        void asignarCantidad(int fila, int cantidad);
+        // Descuenta solo si alcanza, de forma atómica. Retorna false si no hay suficiente.
+        // Lanza IllegalArgumentException si la cantidad no es positiva.
+        boolean descontarStock(int fila, int cantidad);
+        void reponerStock(int fila, int cantidad);
+    }
+
+    private Almacen almacen;
+    private int fila;
+
+    // Constructor principal: cómic suelto, todavía fuera del inventario. El tipo debe ser uno de TipoProducto.
     public Comic(String codigo, String tipo, String nombre, String autorOFabricante, int cantidadDisponible, LocalDate fechaLlegada, double precio) {
-        this.codigo = codigo;
-        this.tipo = tipo;
-        this.nombre = nombre;
-        this.autorOFabricante = autorOFabricante;
-        this.cantidadDisponible = cantidadDisponible;
-        this.fechaLlegada = fechaLlegada;
-        this.precio = precio;
+        this(codigo, TipoProducto.desdeTexto(tipo), nombre, autorOFabricante, cantidadDisponible, fechaLlegada, precio);
+    }
+
+    public Comic(String codigo, TipoProducto tipo, String nombre, String autorOFabricante, int cantidadDisponible, LocalDate fechaLlegada, double precio) {
+        if (tipo == null) throw new IllegalArgumentException("El producto debe tener un tipo.");
+        this.almacen = new FilaSuelta(codigo, tipo, nombre, autorOFabricante, cantidadDisponible,
+                fechaLlegada != null ? (int) fechaLlegada.toEpochDay() : Almacen.SIN_FECHA, precio);
+        this.fila = 0;
+    }
+
+    // Vista de una fila de un almacén
+    public Comic(Almacen almacen, int fila) {
+        this.almacen = almacen;
+        this.fila = fila;
+    }
+
+    // Deja al cómic apuntando a su fila en el inventario (la fila suelta se descarta)
+    public void vincular(Almacen almacen, int fila) {
+        this.almacen = almacen;
+        this.fila = fila;
+    }
+
+    public Almacen getAlmacen() {
+        return almacen;
+    }
+
+    public int getFila() {
+        return fila;
     }
 
     public String getCodigo() {
-        return codigo;
+        return almacen.codigo(fila);
     }
     public String getTipo() {
-        return tipo;
+        return almacen.tipo(fila).getTexto();
+    }
+    public TipoProducto getTipoProducto() {
+        return almacen.tipo(fila);
     }
     public String getNombre() {
-        return nombre;
+        return almacen.nombre(fila);
     }
     public String getAutorOFabricante() {
-        return autorOFabricante;
+        return almacen.autor(fila);
     }
     public int getCantidadDisponible() {
-        return cantidadDisponible;
+        return almacen.cantidad(fila);
     }
     public LocalDate getFechaLlegada() {
-        return fechaLlegada;
+        int dia = almacen.diaLlegada(fila);
+        return dia == Almacen.SIN_FECHA ? null : LocalDate.ofEpochDay(dia);
+    }
+    // Fecha de llegada como día epoch, sin crear un LocalDate
+    public int getDiaLlegada() {
+        return almacen.diaLlegada(fila);
     }
     public double getPrecio() {
-        return precio;
+        return almacen.precio(fila);
     }
 
-    // Asigna código al producto
+    // Asigna código al producto (solo antes de agregarlo al inventario)
     public void setCodigo(String codigo) {
-        this.codigo = codigo;
+        if (!(almacen instanceof FilaSuelta)) {
+            throw new IllegalStateException("El código de un producto del inventario no se puede cambiar.");
+        }
+        ((FilaSuelta) almacen).codigo = codigo;
     }
 
     public void setCantidadDisponible(int cantidadDisponible) {
-        this.cantidadDisponible = cantidadDisponible;
+        almacen.asignarCantidad(fila, cantidadDisponible);
+    }
+
+    // Descuenta stock solo si alcanza (CAS). Retorna false si no hay suficiente.
+    public boolean descontarStock(int cantidad) {
+        return almacen.descontarStock(fila, cantidad);
+    }
+
+    // Devuelve unidades al stock (ej: operación revertida)
+    public void reponerStock(int cantidad) {
+        almacen.reponerStock(fila, cantidad);
+    }
+
+    // Dos vistas de la misma fila son el mismo producto
+    @Override
+    public boolean equals(Object otro) {
+        if (this == otro) return true;
+        if (!(otro instanceof Comic)) return false;
+        Comic c = (Comic) otro;
+        return almacen == c.almacen && fila == c.fila;
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(almacen) * 31 + fila;
     }
 
     // Detalles del producto en texto.
     @Override
     public String toString() {
+        String codigo = getCodigo();
+        LocalDate fechaLlegada = getFechaLlegada();
         return "Código: " + (codigo != null ? codigo : "(pendiente)") +
-                ", Tipo: " + tipo +
-                ", Nombre: " + nombre +
-                ", Autor/Fabricante: " + autorOFabricante +
-                ", Cantidad: " + cantidadDisponible +
+                ", Tipo: " + getTipo() +
+                ", Nombre: " + getNombre() +
+                ", Autor/Fabricante: " + getAutorOFabricante() +
+                ", Cantidad: " + getCantidadDisponible() +
                 ", Fecha llegada: " + (fechaLlegada != null ? fechaLlegada : "En Tienda") +
-                ", Precio: $" + precio;
+                ", Precio: $" + getPrecio();
+    }
+
+    // Almacén de una sola fila para un cómic que todavía no está en el inventario
+    private static final class FilaSuelta implements Almacen {
+        private String codigo;
+        private final TipoProducto tipo;
+        private final String nombre;
+        private final String autor;
+        // Stock atómico: varias cajas pueden vender el mismo producto a la vez
+        private final AtomicInteger cantidad;
+        private final int diaLlegada;
+        private final double precio;
+
+        FilaSuelta(String codigo, TipoProducto tipo, String nombre, String autor, int cantidad, int diaLlegada, double precio) {
+            this.codigo = codigo;
+            this.tipo = tipo;
+            this.nombre = nombre;
+            this.autor = autor;
+            this.cantidad = new AtomicInteger(cantidad);
+            this.diaLlegada = diaLlegada;
+            this.precio = precio;
+        }
+
+        @Override
+        public String codigo(int fila) {
+            return codigo;
+        }
+
+        @Override
+        public TipoProducto tipo(int fila) {
+            return tipo;
+        }
+
+        @Override
+        public String nombre(int fila) {
+            return nombre;
+        }
+
+        @Override
+        public String autor(int fila) {
+            return autor;
+        }
+
+        @Override
+        public int cantidad(int fila) {
+            return cantidad.get();
+        }
+
+        @Override
+        public int diaLlegada(int fila) {
+            return diaLlegada;
+        }
+
+        @Override
+        public double precio(int fila) {
+            return precio;
+        }
+
+        @Override
+        public void asignarCantidad(int fila, int valor) {
+            cantidad.set(valor);
+        }
+
+        @Override
+        public boolean descontarStock(int fila, int unidades) {
+            if (unidades <= 0) throw new IllegalArgumentException("La cantidad a descontar debe ser mayor a cero.");
+            while (true) {
+                int actual = cantidad.get();
+                if (actual < unidades) return false;
+                if (cantidad.compareAndSet(actual, actual - unidades)) return true;
+            }
+        }
+
+        @Override
+        public void reponerStock(int fila, int unidades) {
+            cantidad.addAndGet(unidades);
+        }
     }
 }
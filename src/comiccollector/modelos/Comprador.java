@@ -0,0 +1,8 @@
+package comiccollector.modelos;
+
+// Lo que el ranking necesita de quien compra: su RUT (desempate) y el total de unidades compradas.
+public interface Comprador {
+    String getRut();
+
+    int totalCompras();
+}
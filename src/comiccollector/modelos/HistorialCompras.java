@@ -0,0 +1,181 @@
+package comiccollector.modelos;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Historial de compras compacto de un usuario, sin un objeto por compra.
+ *
+ * Tiene dos partes:
+ * - Acumulado: cada producto distinto comprado recibe un id local (0, 1, 2...) y lleva el total de
+ *   unidades, en arreglos paralelos. Con pocos productos el id se busca recorriéndolos; desde
+ *   MAX_SIN_TABLA se usa una tabla de direccionamiento abierto.
+ * - Registro: la secuencia de compras en orden, como bytes de solo agregado. Cada compra es
+ *   (segundos desde la anterior, id local, cantidad) en varints, unos 4 a 6 bytes.
+ *
+ * Lo comprado de un producto cuesta O(1) (el total de unidades lo lleva Usuario). La lista de ReservaCompra para
+ * mostrar se arma solo cuando se pide. No es seguro para uso concurrente: Usuario lo protege.
+ */
+public class HistorialCompras {
+
+    // Recibe cada compra del registro, en orden (segundos = 0 si no se conoce el instante)
+    public interface Visitante {
+        void compra(Comic comic, int cantidad, long segundos);
+    }
+
+    private static final int MAX_SIN_TABLA = 8;
+
+    private Comic[] productos = new Comic[4];
+    private int[] totales = new int[4];
+    private int distintos;
+    // id local + 1 por posición (0 = libre); se llena hasta tres cuartos. null con pocos productos.
+    private int[] tabla;
+
+    private byte[] registro = new byte[16];
+    private int largo;
+    private int compras;
+    private long ultimoSegundo;
+
+    public void agregar(Comic comic, int cantidad, long segundos) {
+        int id = idLocal(comic);
+        totales[id] += cantidad;
+        // Delta con signo: el reloj puede retroceder y las compras sin instante usan 0
+        escribirVarint(zigzag(segundos - ultimoSegundo));
+        escribirVarint(id);
+        escribirVarint(cantidad);
+        ultimoSegundo = segundos;
+        compras++;
+    }
+
+    // Unidades compradas de un producto, O(1)
+    public int cantidadDe(Comic comic) {
+        int id = buscar(comic);
+        return id < 0 ? 0 : totales[id];
+    }
+
+    public int productosDistintos() {
+        return distintos;
+    }
+
+    // Compras registradas (líneas, no unidades)
+    public int cantidadCompras() {
+        return compras;
+    }
+
+    public void recorrer(Visitante visitante) {
+        int pos = 0;
+        long segundos = 0;
+        while (pos < largo) {
+            long delta = 0;
+            int desplazamiento = 0;
+            byte b;
+            do {
+                b = registro[pos++];
+                delta |= (long) (b & 0x7F) << desplazamiento;
+                desplazamiento += 7;
+            } while (b < 0);
+            segundos += (delta >>> 1) ^ -(delta & 1);
+            int id = 0;
+            desplazamiento = 0;
+            do {
+                b = registro[pos++];
+                id |= (b & 0x7F) << desplazamiento;
+                desplazamiento += 7;
+            } while (b < 0);
+            int cantidad = 0;
+            desplazamiento = 0;
+            do {
+                b = registro[pos++];
+                cantidad |= (b & 0x7F) << desplazamiento;
+                desplazamiento += 7;
+            } while (b < 0);
+            visitante.compra(productos[id], cantidad, segundos);
+        }
+    }
+
+    // Las compras como ReservaCompra, en orden. Se arma en cada llamada: es para mostrar.
+    public List<ReservaCompra> comoLista() {
+        List<ReservaCompra> lista = new ArrayList<>(compras);
+        recorrer((comic, cantidad, segundos) -> lista.add(new ReservaCompra(comic, cantidad, segundos)));
+        return lista;
+    }
+
+    // Bytes usados por los arreglos (sin encabezados), para medir
+    public long bytesAproximados() {
+        return registro.length + 4L * (productos.length + totales.length + (tabla == null ? 0 : tabla.length));
+    }
+
+    // Id local del producto, -1 si no se ha comprado
+    private int buscar(Comic comic) {
+        if (tabla == null) {
+            for (int id = 0; id < distintos; id++) {
+                if (productos[id] == comic) return id;
+            }
+            return -1;
+        }
+        int pos = posicion(comic);
+        return tabla[pos] - 1;
+    }
+
+    private int idLocal(Comic comic) {
+        int id = buscar(comic);
+        if (id >= 0) return id;
+        id = distintos;
+        if (id == productos.length) {
+            productos = Arrays.copyOf(productos, id * 2);
+            totales = Arrays.copyOf(totales, id * 2);
+        }
+        productos[id] = comic;
+        distintos = id + 1;
+        if (tabla != null) {
+            tabla[posicion(comic)] = id + 1;
+            if (distintos * 4 > tabla.length * 3) crecerTabla();
+        } else if (distintos > MAX_SIN_TABLA) {
+            crecerTabla();
+        }
+        return id;
+    }
+
+    // Posición del producto en la tabla, o la posición libre donde iría. Por identidad: el inventario
+    // entrega una sola vista por fila, y un cómic suelto que después se agrega conserva su objeto.
+    private int posicion(Comic comic) {
+        int mascara = tabla.length - 1;
+        int pos = mezclar(System.identityHashCode(comic)) & mascara;
+        while (tabla[pos] != 0 && productos[tabla[pos] - 1] != comic) {
+            pos = (pos + 1) & mascara;
+        }
+        return pos;
+    }
+
+    private void crecerTabla() {
+        int[] nueva = new int[tabla == null ? 2 * Integer.highestOneBit(distintos * 2) : tabla.length * 2];
+        int mascara = nueva.length - 1;
+        for (int id = 0; id < distintos; id++) {
+            int pos = mezclar(System.identityHashCode(productos[id])) & mascara;
+            while (nueva[pos] != 0) pos = (pos + 1) & mascara;
+            nueva[pos] = id + 1;
+        }
+        tabla = nueva;
+    }
+
+    private void escribirVarint(long valor) {
+        if (largo + 10 > registro.length) {
+            registro = Arrays.copyOf(registro, registro.length + (registro.length >> 1) + 10);
+        }
+        while ((valor & ~0x7FL) != 0) {
+            registro[largo++] = (byte) ((valor & 0x7F) | 0x80);
+            valor >>>= 7;
+        }
+        registro[largo++] = (byte) valor;
+    }
+
+    private static long zigzag(long valor) {
+        return (valor << 1) ^ (valor >> 63);
+    }
+
+    private static int mezclar(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
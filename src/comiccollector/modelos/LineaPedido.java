@@ -0,0 +1,20 @@
+package comiccollector.modelos;
+
+// Una línea de un pedido con varios productos: qué cómic y cuántas unidades.
+public class LineaPedido {
+    private final String codigoComic;
+    private final int cantidad;
+
+    public LineaPedido(String codigoComic, int cantidad) {
+        this.codigoComic = codigoComic;
+        this.cantidad = cantidad;
+    }
+
+    public String getCodigoComic() {
+        return codigoComic;
+    }
+
+    public int getCantidad() {
+        return cantidad;
+    }
+}
@@ -1,12 +1,21 @@
 package comiccollector.modelos;
 
+import java.time.Instant;
+
 public class ReservaCompra {
     private Comic comic;
     private int cantidad;
+    // Instante de la compra en segundos epoch, 0 si no se conoce (ej. reservas pendientes)
+    private long segundos;
 
     public ReservaCompra(Comic comic, int cantidad) {
+        this(comic, cantidad, 0);
+    }
+
+    public ReservaCompra(Comic comic, int cantidad, long segundos) {
         this.comic = comic;
         this.cantidad = cantidad;
+        this.segundos = segundos;
     }
 
     public Comic getComic() {
@@ -16,4 +25,17 @@ public class ReservaCompra {
     public int getCantidad() {
         return cantidad;
     }
+
+    // null si no se conoce el instante
+    public Instant getInstante() {
+        return segundos == 0 ? null : Instant.ofEpochSecond(segundos);
+    }
+
+    // Detalle para mostrar en el historial
+    @Override
+    public String toString() {
+        return "Producto: " + comic.getNombre() + " (" + comic.getCodigo() + ")" +
+                ", Cantidad: " + cantidad +
+                (segundos != 0 ? ", Fecha: " + getInstante() : "");
+    }
 }
@@ -0,0 +1,61 @@
+package comiccollector.modelos;
+
+import java.text.Normalizer;
+import java.util.Locale;
+
+// Tipos de producto que vende la tienda. Es un conjunto cerrado: en el inventario se guarda el ordinal.
+public enum TipoProducto {
+    COMIC("Cómic"),
+    NOVELA_GRAFICA("Novela gráfica"),
+    MANGA("Manga"),
+    COLECCIONABLE("Coleccionable");
+
+    private static final TipoProducto[] TODOS = values();
+
+    private final String texto;
+    private final String normalizado;
+
+    TipoProducto(String texto) {
+        this.texto = texto;
+        this.normalizado = normalizar(texto);
+    }
+
+    // Texto tal como se muestra y se guarda en comics.csv
+    public String getTexto() {
+        return texto;
+    }
+
+    public static TipoProducto desdeOrdinal(int ordinal) {
+        return TODOS[ordinal];
+    }
+
+    // Tipo escrito como texto, sin distinguir mayúsculas ni tildes ("manga", "Comic"). null si no es un tipo conocido.
+    public static TipoProducto buscar(String texto) {
+        if (texto == null) return null;
+        for (TipoProducto t : TODOS) {
+            if (t.texto.equals(texto)) return t;
+        }
+        String normalizado = normalizar(texto);
+        for (TipoProducto t : TODOS) {
+            if (t.normalizado.equals(normalizado)) return t;
+        }
+        return null;
+    }
+
+    // Igual que buscar, pero un tipo desconocido es un error
+    public static TipoProducto desdeTexto(String texto) {
+        TipoProducto tipo = buscar(texto);
+        if (tipo == null) throw new IllegalArgumentException("Tipo de producto desconocido: " + texto);
+        return tipo;
+    }
+
+    private static String normalizar(String texto) {
+        String sinMarcas = Normalizer.normalize(texto.trim(), Normalizer.Form.NFD).replaceAll("\\p{M}+", "");
+        return sinMarcas.replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    @Override
+    public String toString() {
+        return texto;
+    }
+}
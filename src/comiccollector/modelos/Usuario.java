@@ -1,18 +1,23 @@
 package comiccollector.modelos;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 
-public class Usuario implements Comparable<Usuario> {
+public class Usuario implements Comparable<Usuario>, Comprador {
     private String rut;
     private String nombre;
     private String email;
     private String celular;
 
-    // Historial de reservas/preventas
+    // Historial de reservas/preventas (pendientes, son pocas)
     private List<ReservaCompra> historialReservas;
-    // Historial de compras
-    private List<ReservaCompra> historialCompras;
+    // Historial de compras compacto; null hasta la primera compra
+    private HistorialCompras compras;
+    // Total acumulado de unidades compradas, se mantiene al agregar compras
+    private volatile int totalComprado;
 
     public Usuario(String rut, String nombre, String email, String celular) {
         this.rut = rut;
@@ -20,9 +25,9 @@ public class Usuario implements Comparable<Usuario> {
         this.email = email;
         this.celular = celular;
         this.historialReservas = new ArrayList<>();
-        this.historialCompras = new ArrayList<>();
     }
 
+    @Override
     public String getRut() {
         return rut;
     }
@@ -43,27 +48,77 @@ public class Usuario implements Comparable<Usuario> {
         return historialReservas;
     }
 
-    public List<ReservaCompra> getHistorialCompras() {
-        return historialCompras;
+    // Compras en orden, armadas a partir del historial compacto. Es una copia para mostrar:
+    // para totales usar totalCompras() o cantidadComprada(), que no recorren nada.
+    public synchronized List<ReservaCompra> getHistorialCompras() {
+        return compras == null ? new ArrayList<>() : compras.comoLista();
+    }
+
+    // Recorre las compras sin crear una ReservaCompra por cada una (ej: instantánea)
+    public synchronized void recorrerCompras(HistorialCompras.Visitante visitante) {
+        if (compras != null) compras.recorrer(visitante);
+    }
+
+    // Unidades compradas de un producto, O(1)
+    public synchronized int cantidadComprada(Comic comic) {
+        return compras == null ? 0 : compras.cantidadDe(comic);
+    }
+
+    // Compras registradas (líneas de historial, no unidades)
+    public synchronized int cantidadCompras() {
+        return compras == null ? 0 : compras.cantidadCompras();
+    }
+
+    public synchronized int productosDistintosComprados() {
+        return compras == null ? 0 : compras.productosDistintos();
+    }
+
+    // Agrega una preventa al historial y la retorna
+    public synchronized ReservaCompra agregarReserva(Comic comic, int cantidad) {
+        ReservaCompra reserva = new ReservaCompra(comic, cantidad);
+        historialReservas.add(reserva);
+        return reserva;
     }
 
-    // Agrega una preventa al historial
-    public void agregarReserva(Comic comic, int cantidad) {
-        historialReservas.add(new ReservaCompra(comic, cantidad));
+    // Pasa a compras las preventas ya entregadas (las mismas instancias del historial de reservas)
+    public synchronized void entregarReservas(List<ReservaCompra> entregadas, long segundos) {
+        Set<ReservaCompra> porQuitar = Collections.newSetFromMap(new IdentityHashMap<>());
+        porQuitar.addAll(entregadas);
+        historialReservas.removeIf(porQuitar::contains);
+        agregarCompras(entregadas, segundos);
     }
 
-    // Agrega una compra al historial
+    // Agrega una compra al historial, con el instante actual
     public void agregarCompra(Comic comic, int cantidad) {
-        historialCompras.add(new ReservaCompra(comic, cantidad));
+        agregarCompra(comic, cantidad, System.currentTimeMillis() / 1000);
     }
 
-    // Ranking por compras
-    public int totalCompras() {
+    // Agrega una compra con su instante en segundos epoch (0 si no se conoce)
+    public synchronized void agregarCompra(Comic comic, int cantidad, long segundos) {
+        historial().agregar(comic, cantidad, segundos);
+        totalComprado += cantidad;
+    }
+
+    // Agrega todas las compras de un pedido de una vez, con el mismo instante
+    public synchronized void agregarCompras(List<ReservaCompra> nuevas, long segundos) {
+        HistorialCompras historial = historial();
         int total = 0;
-        for (ReservaCompra rc : historialCompras) {
+        for (ReservaCompra rc : nuevas) {
+            historial.agregar(rc.getComic(), rc.getCantidad(), segundos);
             total += rc.getCantidad();
         }
-        return total;
+        totalComprado += total;
+    }
+
+    private HistorialCompras historial() {
+        if (compras == null) compras = new HistorialCompras();
+        return compras;
+    }
+
+    // Ranking por compras, O(1)
+    @Override
+    public int totalCompras() {
+        return totalComprado;
     }
 
     // Permite ordenar ranking por compras, en caso de empates por RUT
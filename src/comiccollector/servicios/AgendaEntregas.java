@@ -0,0 +1,113 @@
+package comiccollector.servicios;
+
+import comiccollector.modelos.ReservaCompra;
+import comiccollector.modelos.Usuario;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Agenda de entregas de preventas: cada reserva pendiente queda anotada en la fecha de llegada
+ * de su producto. Cuando llega una fecha se retiran de una vez todas las reservas de ese día
+ * (y de días anteriores que hayan quedado pendientes), sin recorrer usuarios ni historiales.
+ */
+public class AgendaEntregas {
+
+    // Reserva pendiente de un usuario, la misma instancia que está en su historial de reservas.
+    // lsn es el del registro RESERVA en la bitácora, o 0 si no se conoce (instantánea, reservas.txt antiguo).
+    public static class Entrega {
+        private final Usuario usuario;
+        private final ReservaCompra reserva;
+        private final long lsn;
+
+        Entrega(Usuario usuario, ReservaCompra reserva, long lsn) {
+            this.usuario = usuario;
+            this.reserva = reserva;
+            this.lsn = lsn;
+        }
+
+        public Usuario getUsuario() {
+            return usuario;
+        }
+
+        public ReservaCompra getReserva() {
+            return reserva;
+        }
+    }
+
+    private final TreeMap<LocalDate, List<Entrega>> porFecha = new TreeMap<>();
+    private int cantidad;
+
+    public void agregar(Usuario usuario, ReservaCompra reserva) {
+        agregar(usuario, reserva, 0);
+    }
+
+    // Un producto sin fecha ya está en tienda: su reserva se entrega en la próxima pasada
+    public synchronized void agregar(Usuario usuario, ReservaCompra reserva, long lsn) {
+        agregar(new Entrega(usuario, reserva, lsn));
+    }
+
+    private void agregar(Entrega entrega) {
+        LocalDate fecha = entrega.reserva.getComic().getFechaLlegada();
+        porFecha.computeIfAbsent(fecha == null ? LocalDate.MIN : fecha, f -> new ArrayList<>()).add(entrega);
+        cantidad++;
+    }
+
+    // Todas las reservas pendientes de un usuario (al cargar desde la instantánea)
+    public synchronized void agregarTodas(Usuario usuario) {
+        for (ReservaCompra rc : usuario.getHistorialReservas()) {
+            agregar(usuario, rc);
+        }
+    }
+
+    // Saca de la agenda las entregas con fecha hasta la dada, incluida, en orden de fecha
+    public synchronized List<Entrega> retirarHasta(LocalDate fecha) {
+        List<Entrega> resultado = new ArrayList<>();
+        NavigableMap<LocalDate, List<Entrega>> vencidas = porFecha.headMap(fecha, true);
+        for (List<Entrega> delDia : vencidas.values()) {
+            resultado.addAll(delDia);
+        }
+        vencidas.clear();
+        cantidad -= resultado.size();
+        return resultado;
+    }
+
+    /**
+     * Como retirarHasta(fecha), pero solo las reservas registradas antes del LSN dado. Al reproducir
+     * un registro de entrega la agenda ya trae todo reservas.txt, también lo reservado después de esa
+     * entrega, y eso seguía pendiente en el sistema que la hizo.
+     */
+    public synchronized List<Entrega> retirarHasta(LocalDate fecha, long lsn) {
+        List<Entrega> resultado = new ArrayList<>();
+        Iterator<List<Entrega>> dias = porFecha.headMap(fecha, true).values().iterator();
+        while (dias.hasNext()) {
+            List<Entrega> delDia = dias.next();
+            delDia.removeIf(e -> e.lsn < lsn && resultado.add(e));
+            if (delDia.isEmpty()) dias.remove();
+        }
+        cantidad -= resultado.size();
+        return resultado;
+    }
+
+    // Vuelve a anotar entregas retiradas que no se pudieron completar
+    public synchronized void devolver(List<Entrega> entregas) {
+        for (Entrega e : entregas) {
+            agregar(e);
+        }
+    }
+
+    // Fecha de la próxima entrega pendiente, o null si no hay
+    public synchronized LocalDate proximaFecha() {
+        Map.Entry<LocalDate, List<Entrega>> primera = porFecha.firstEntry();
+        return primera == null ? null : primera.getKey();
+    }
+
+    public synchronized int pendientes() {
+        return cantidad;
+    }
+}
@@ -0,0 +1,528 @@
+package comiccollector.servicios;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * Bitácora de operaciones (write-ahead log) de solo agregado.
+ * Cada línea tiene la forma lsn|TIPO|campo1|...|crc32, donde el CRC cubre todo lo anterior.
+ *
+ * Las escrituras se hacen en un hilo escritor propio con "group commit": junta todos los
+ * registros que llegan dentro de la ventana de durabilidad, los escribe de una vez y hace un
+ * solo fsync para todo el lote. Quien registra queda esperando hasta que su lote es durable.
+ *
+ * Después de guardar una instantánea se recorta (ver recortar): lo que ella incluye pasa a un tramo
+ * archivado (operaciones.log.<último LSN>) y el archivo sigue con una marca PUNTO_CONTROL y los
+ * registros posteriores. Al arrancar con la instantánea no se leen los tramos que cubre; sin ella se
+ * reproducen todos, porque las compras no están en los archivos de texto. Las posiciones en bytes
+ * que se exponen (getBytesDurables, leer) son lógicas: cuentan también lo recortado, para que no
+ * retrocedan al reescribir el archivo.
+ */
+public class BitacoraOperaciones {
+
+    // Compra: rut|codigo|cantidad|instante (segundos epoch; las bitácoras antiguas no lo traen)
+    public static final char COMPRA = 'C';
+    public static final char RESERVA = 'R';
+    public static final char REGISTRO = 'U';
+    // Pedido con varios productos: rut|codigo1|cantidad1|codigo2|cantidad2...|instante
+    public static final char COMPRA_LOTE = 'L';
+    // Entrega de preventas: fecha|instante (las reservas con llegada hasta esa fecha pasan a compras)
+    public static final char ENTREGA = 'E';
+    // Cambios al catálogo: codigo|tipo|nombre|autor|cantidad|fecha|precio, y codigo
+    public static final char ALTA_COMIC = 'A';
+    public static final char BAJA_COMIC = 'D';
+    // Primera línea tras un recorte, con el LSN de la instantánea: lo anterior ya no está en el archivo
+    public static final char PUNTO_CONTROL = 'K';
+
+    // Registro leído desde la bitácora
+    public static class Registro {
+        private final long lsn;
+        private final char tipo;
+        private final String[] campos;
+
+        Registro(long lsn, char tipo, String[] campos) {
+            this.lsn = lsn;
+            this.tipo = tipo;
+            this.campos = campos;
+        }
+
+        public long getLsn() {
+            return lsn;
+        }
+
+        public char getTipo() {
+            return tipo;
+        }
+
+        public String getCampo(int i) {
+            return campos[i];
+        }
+
+        public int cantidadCampos() {
+            return campos.length;
+        }
+    }
+
+    // Recibe cada registro válido durante la reproducción
+    public interface Reproductor {
+        void aplicar(Registro registro);
+    }
+
+    // Escritura pendiente de un llamador
+    private static class Pendiente {
+        final char tipo;
+        final String[] campos;
+        final CompletableFuture<Long> confirmacion = new CompletableFuture<>();
+
+        Pendiente(char tipo, String[] campos) {
+            this.tipo = tipo;
+            this.campos = campos;
+        }
+    }
+
+    private static final Pendiente FIN = new Pendiente(' ', new String[0]);
+    private static final int CAPACIDAD_COLA = 65_536;
+
+    private final File archivo;
+    private final long ventanaNanos;
+    private final BlockingQueue<Pendiente> cola = new ArrayBlockingQueue<>(CAPACIDAD_COLA);
+    private FileChannel canal;
+    // Los lotes y las lecturas usan el canal con el bloqueo de lectura; recortar lo reemplaza con el de escritura
+    private final ReentrantReadWriteLock bloqueoCanal = new ReentrantReadWriteLock();
+    // Bytes lógicos que quedaron antes del inicio del archivo actual
+    private volatile long bytesRecortados;
+    // Un recorte a la vez (el programado y el que sigue a una fusión pueden coincidir)
+    private final Object bloqueoRecorte = new Object();
+    private Thread escritor;
+    private volatile long ultimoLsn;
+    private volatile boolean cerrada;
+    private volatile long lotesEscritos;
+    private volatile long registrosEscritos;
+    // Largo lógico hasta el último lote durable; lo que sigue puede estar a medio escribir
+    private volatile long bytesDurables;
+    // Se avisa en él después de cada lote durable (ej: el servidor de replicación lee la cola del archivo)
+    private final Object avisoEscritura = new Object();
+
+    // ventanaMicros: cuánto espera el escritor a que lleguen más registros antes del fsync
+    public BitacoraOperaciones(File archivo, long ventanaMicros) {
+        this.archivo = archivo;
+        this.ventanaNanos = TimeUnit.MICROSECONDS.toNanos(Math.max(0, ventanaMicros));
+    }
+
+    public synchronized void abrir(Reproductor reproductor) throws IOException {
+        abrir(0, reproductor);
+    }
+
+    /**
+     * Lee los registros válidos, descarta una cola corrupta (escritura cortada por un corte
+     * de luz, por ejemplo) y deja la bitácora lista para agregar. Los tramos archivados que
+     * terminan en lsnCubierto o antes (ya incluidos en una instantánea) no se leen.
+     */
+    public synchronized void abrir(long lsnCubierto, Reproductor reproductor) throws IOException {
+        for (File tramo : tramosArchivados()) {
+            if (lsnFinalDe(tramo) > lsnCubierto) {
+                reproducir(tramo, reproductor);
+            } else {
+                // Los LSN siguen desde el tramo aunque no se lea
+                ultimoLsn = Math.max(ultimoLsn, lsnFinalDe(tramo));
+            }
+        }
+        long largoValido = archivo.exists() ? reproducir(archivo, reproductor) : 0;
+        canal = FileChannel.open(archivo.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        if (canal.size() > largoValido) {
+            System.out.println("AVISO. Bitácora con registros incompletos, se descartan desde el byte " + largoValido + ".");
+            canal.truncate(largoValido);
+        }
+        canal.position(largoValido);
+        bytesDurables = largoValido;
+
+        escritor = new Thread(this::cicloEscritor, "bitacora-escritor");
+        escritor.setDaemon(true);
+        escritor.start();
+    }
+
+    /**
+     * Reproduce los registros del archivo posteriores al último visto. Retorna el largo hasta la
+     * primera línea inválida o con LSN que no avanza.
+     */
+    private long reproducir(File origen, Reproductor reproductor) throws IOException {
+        long largoValido = 0;
+        long anterior = 0;
+        try (BufferedReader br = new BufferedReader(
+                new InputStreamReader(new FileInputStream(origen), StandardCharsets.UTF_8))) {
+            String linea;
+            while ((linea = br.readLine()) != null) {
+                Registro r = decodificar(linea);
+                if (r == null || r.lsn <= anterior) break;
+                anterior = r.lsn;
+                largoValido += linea.getBytes(StandardCharsets.UTF_8).length + 1;
+                // Un tramo archivado y el archivo pueden repetir registros si se cortó la luz al recortar
+                if (r.lsn <= ultimoLsn) continue;
+                ultimoLsn = r.lsn;
+                if (reproductor != null) reproductor.aplicar(r);
+            }
+        }
+        return largoValido;
+    }
+
+    // Tramos archivados por recortar, en orden
+    private List<File> tramosArchivados() {
+        List<File> tramos = new ArrayList<>();
+        File[] archivos = archivo.getAbsoluteFile().getParentFile().listFiles();
+        if (archivos == null) return tramos;
+        for (File f : archivos) {
+            if (lsnFinalDe(f) > 0) tramos.add(f);
+        }
+        tramos.sort((a, b) -> Long.compare(lsnFinalDe(a), lsnFinalDe(b)));
+        return tramos;
+    }
+
+    // Último LSN de un tramo archivado según su nombre, -1 si no es uno
+    private long lsnFinalDe(File f) {
+        String prefijo = archivo.getName() + ".";
+        String nombre = f.getName();
+        if (!nombre.startsWith(prefijo) || nombre.length() == prefijo.length()) return -1;
+        for (int i = prefijo.length(); i < nombre.length(); i++) {
+            if (!Character.isDigit(nombre.charAt(i))) return -1;
+        }
+        try {
+            return Long.parseLong(nombre.substring(prefijo.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Agrega un registro y espera a que sea durable. Retorna su LSN.
+     * Lanza IllegalStateException si no se pudo escribir.
+     */
+    public long registrar(char tipo, String... campos) {
+        try {
+            return registrarAsync(tipo, campos).join();
+        } catch (CompletionException e) {
+            throw causa(e);
+        }
+    }
+
+    // Igual que registrar, pero sin esperar. La confirmación se completa tras el fsync.
+    public CompletableFuture<Long> registrarAsync(char tipo, String... campos) {
+        Pendiente p = new Pendiente(tipo, campos);
+        if (cerrada || escritor == null) {
+            p.confirmacion.completeExceptionally(new IllegalStateException("La bitácora de operaciones está cerrada."));
+            return p.confirmacion;
+        }
+        try {
+            cola.put(p);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            p.confirmacion.completeExceptionally(new IllegalStateException("Escritura en bitácora interrumpida."));
+        }
+        return p.confirmacion;
+    }
+
+    private void cicloEscritor() {
+        List<Pendiente> lote = new ArrayList<>();
+        boolean fin = false;
+        while (!fin) {
+            try {
+                Pendiente primero = cola.take();
+                if (primero == FIN) break;
+                lote.add(primero);
+                // Ventana de durabilidad: espera un poco más para juntar registros en el mismo fsync
+                long limite = System.nanoTime() + ventanaNanos;
+                long restante;
+                while ((restante = limite - System.nanoTime()) > 0) {
+                    Pendiente p = cola.poll(restante, TimeUnit.NANOSECONDS);
+                    if (p == null) break;
+                    if (p == FIN) {
+                        fin = true;
+                        break;
+                    }
+                    lote.add(p);
+                }
+                if (!fin) {
+                    cola.drainTo(lote);
+                    fin = lote.remove(FIN);
+                }
+            } catch (InterruptedException e) {
+                fin = true;
+            }
+            if (!lote.isEmpty()) {
+                escribirLote(lote);
+                lote.clear();
+            }
+        }
+    }
+
+    private void escribirLote(List<Pendiente> lote) {
+        long[] lsns = new long[lote.size()];
+        StringBuilder sb = new StringBuilder(lote.size() * 64);
+        long lsn = ultimoLsn;
+        for (int i = 0; i < lote.size(); i++) {
+            Pendiente p = lote.get(i);
+            lsns[i] = ++lsn;
+            sb.append(codificar(lsn, p.tipo, p.campos)).append('\n');
+        }
+        long inicio = -1;
+        bloqueoCanal.readLock().lock();
+        try {
+            inicio = canal.position();
+            ByteBuffer buffer = ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                canal.write(buffer);
+            }
+            canal.force(false);
+            ultimoLsn = lsn;
+            lotesEscritos++;
+            registrosEscritos += lote.size();
+            synchronized (avisoEscritura) {
+                bytesDurables = bytesRecortados + canal.position();
+                avisoEscritura.notifyAll();
+            }
+            for (int i = 0; i < lote.size(); i++) {
+                lote.get(i).confirmacion.complete(lsns[i]);
+            }
+        } catch (IOException e) {
+            // Se deshace lo escrito a medias para no dejar basura antes del próximo lote
+            try {
+                if (inicio >= 0) {
+                    canal.truncate(inicio);
+                    canal.position(inicio);
+                }
+            } catch (IOException ignorada) {
+                // Si tampoco se puede truncar, la reproducción descartará la cola por CRC
+            }
+            for (Pendiente p : lote) {
+                p.confirmacion.completeExceptionally(
+                        new IllegalStateException("No se pudo guardar la operación en la bitácora.", e));
+            }
+        } finally {
+            bloqueoCanal.readLock().unlock();
+        }
+    }
+
+    /**
+     * Saca del archivo los registros hasta lsn, ya incluidos en una instantánea durable. hastaByte es
+     * getBytesDurables() tomado junto con lsn, con el estado detenido (ahí termina el registro lsn).
+     * Primero se archiva lo anterior en operaciones.log.<lsn>, mientras se sigue escribiendo; después
+     * se reemplaza el archivo por la marca PUNTO_CONTROL y la cola, con un temporal que se renombra.
+     * Las escrituras solo esperan mientras se copia la cola, que es lo escrito desde la instantánea.
+     * Si se corta la luz entre medio, el tramo y el archivo repiten registros y abrir los salta.
+     */
+    public void recortar(long lsn, long hastaByte) throws IOException {
+        synchronized (bloqueoRecorte) {
+            long desde;
+            bloqueoCanal.readLock().lock();
+            try {
+                if (canal == null || !canal.isOpen() || hastaByte <= bytesRecortados) return;
+                desde = hastaByte - bytesRecortados;
+                if (desde < bytesDurables - bytesRecortados && lsnEn(desde) != lsn + 1) {
+                    System.out.println("AVISO. La bitácora no calza con la instantánea en el byte " + hastaByte + ", no se recorta.");
+                    return;
+                }
+                File tramo = new File(archivo.getPath() + "." + lsn);
+                // Ya se recortó en este LSN (dos instantáneas sin operaciones entre medio, o tras reabrir)
+                if (tramo.exists()) return;
+                copiarDurable(0, desde, null, tramo);
+            } finally {
+                bloqueoCanal.readLock().unlock();
+            }
+            bloqueoCanal.writeLock().lock();
+            try {
+                if (!canal.isOpen()) return;
+                byte[] marca = (codificar(lsn, PUNTO_CONTROL, new String[0]) + "\n").getBytes(StandardCharsets.UTF_8);
+                copiarDurable(desde, bytesDurables - bytesRecortados, marca, archivo);
+                canal.close();
+                canal = FileChannel.open(archivo.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+                canal.position(canal.size());
+                bytesRecortados = hastaByte - marca.length;
+            } finally {
+                bloqueoCanal.writeLock().unlock();
+            }
+        }
+    }
+
+    // Copia [desde, hasta) del archivo actual, tras el encabezado si lo hay, a destino con temporal y renombre
+    private void copiarDurable(long desde, long hasta, byte[] encabezado, File destino) throws IOException {
+        File temporal = new File(destino.getPath() + ".tmp");
+        try (FileChannel nuevo = FileChannel.open(temporal.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            if (encabezado != null) {
+                ByteBuffer buffer = ByteBuffer.wrap(encabezado);
+                while (buffer.hasRemaining()) {
+                    nuevo.write(buffer);
+                }
+            }
+            long copiados = 0;
+            while (copiados < hasta - desde) {
+                copiados += canal.transferTo(desde + copiados, hasta - desde - copiados, nuevo);
+            }
+            nuevo.force(false);
+        }
+        Files.move(temporal.toPath(), destino.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        sincronizarDirectorio(destino);
+    }
+
+    // LSN de la línea que empieza en el byte (físico) dado, -1 si ahí no empieza una
+    private long lsnEn(long posicion) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(24);
+        canal.read(buffer, posicion);
+        long lsn = 0;
+        for (int i = 0; i < buffer.position(); i++) {
+            byte b = buffer.get(i);
+            if (b == '|') return i > 0 ? lsn : -1;
+            if (b < '0' || b > '9') return -1;
+            lsn = lsn * 10 + (b - '0');
+        }
+        return -1;
+    }
+
+    /**
+     * Lee lo durable desde la posición lógica dada (ej: la cola que se envía a una réplica).
+     * Retorna los bytes leídos, o -1 si esa posición ya se recortó.
+     */
+    public int leer(ByteBuffer destino, long posicion) throws IOException {
+        bloqueoCanal.readLock().lock();
+        try {
+            if (posicion < bytesRecortados) return -1;
+            long fisica = posicion - bytesRecortados;
+            int leidos = 0;
+            destino.limit((int) Math.min(destino.limit(), destino.position() + Math.max(0, bytesDurables - posicion)));
+            while (destino.hasRemaining()) {
+                int n = canal.read(destino, fisica + leidos);
+                if (n < 0) throw new IOException("La bitácora es más corta de lo esperado.");
+                leidos += n;
+            }
+            return leidos;
+        } finally {
+            bloqueoCanal.readLock().unlock();
+        }
+    }
+
+    // Deja durable un renombre dentro de la carpeta del archivo (en sistemas donde se puede abrir una carpeta)
+    static void sincronizarDirectorio(File archivo) {
+        File carpeta = archivo.getAbsoluteFile().getParentFile();
+        try (FileChannel c = FileChannel.open(carpeta.toPath(), StandardOpenOption.READ)) {
+            c.force(true);
+        } catch (IOException e) {
+            // Windows no permite abrir una carpeta; ahí el renombre ya es durable al volver
+        }
+    }
+
+    static String codificar(long lsn, char tipo, String[] campos) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(lsn).append('|').append(tipo);
+        for (String campo : campos) {
+            sb.append('|').append(campo);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(sb.toString().getBytes(StandardCharsets.UTF_8));
+        sb.append('|').append(Long.toHexString(crc.getValue()));
+        return sb.toString();
+    }
+
+    // Retorna null si la línea está incompleta o su CRC no coincide
+    static Registro decodificar(String linea) {
+        int corte = linea.lastIndexOf('|');
+        if (corte <= 0) return null;
+        String contenido = linea.substring(0, corte);
+        CRC32 crc = new CRC32();
+        crc.update(contenido.getBytes(StandardCharsets.UTF_8));
+        if (!Long.toHexString(crc.getValue()).equals(linea.substring(corte + 1))) return null;
+        String[] partes = contenido.split("\\|", -1);
+        if (partes.length < 2 || partes[1].length() != 1) return null;
+        try {
+            String[] campos = new String[partes.length - 2];
+            System.arraycopy(partes, 2, campos, 0, campos.length);
+            return new Registro(Long.parseLong(partes[0]), partes[1].charAt(0), campos);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public long getUltimoLsn() {
+        return ultimoLsn;
+    }
+
+    public long getBytesDurables() {
+        return bytesDurables;
+    }
+
+    // Espera hasta que lo durable pase de desdeByte o venza el plazo. Retorna el largo durable.
+    public long esperarEscritura(long desdeByte, long plazoMillis) throws InterruptedException {
+        long limite = System.currentTimeMillis() + plazoMillis;
+        synchronized (avisoEscritura) {
+            long restante;
+            while (bytesDurables <= desdeByte && !cerrada && (restante = limite - System.currentTimeMillis()) > 0) {
+                avisoEscritura.wait(restante);
+            }
+            return bytesDurables;
+        }
+    }
+
+    public boolean estaCerrada() {
+        return cerrada;
+    }
+
+    public long getLotesEscritos() {
+        return lotesEscritos;
+    }
+
+    public long getRegistrosEscritos() {
+        return registrosEscritos;
+    }
+
+    // Espera a que se escriba lo pendiente y cierra el archivo
+    public synchronized void cerrar() {
+        if (escritor == null) return;
+        cerrada = true;
+        synchronized (avisoEscritura) {
+            avisoEscritura.notifyAll();
+        }
+        try {
+            cola.put(FIN);
+            escritor.join();
+            bloqueoCanal.writeLock().lock();
+            try {
+                canal.close();
+            } finally {
+                bloqueoCanal.writeLock().unlock();
+            }
+            // Lo que alcanzó a entrar después del cierre no se escribirá
+            Pendiente p;
+            while ((p = cola.poll()) != null) {
+                p.confirmacion.completeExceptionally(new IllegalStateException("La bitácora de operaciones está cerrada."));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            System.out.println("ERROR. No se pudo cerrar la bitácora de operaciones.");
+        }
+        escritor = null;
+    }
+
+    // Desenvuelve la excepción de un join() para el llamador
+    private static RuntimeException causa(CompletionException e) {
+        Throwable c = e.getCause();
+        return c instanceof RuntimeException ? (RuntimeException) c : new IllegalStateException(c);
+    }
+}
@@ -0,0 +1,388 @@
+package comiccollector.servicios;
+
+import comiccollector.modelos.Comic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Buscador de texto libre sobre nombre y autor/fabricante del catálogo, para autocompletar.
+ * Cada palabra de la consulta puede calzar con una palabra del cómic de forma exacta, como
+ * prefijo ("evang" → "evangelion") o aproximada por distancia de edición ("spidr" → "spider").
+ *
+ * Las palabras normalizadas (sin tildes ni mayúsculas) viven en un diccionario ordenado que
+ * sirve como trie: los prefijos son un subMap y la búsqueda aproximada recorre el diccionario
+ * reutilizando la fila de Levenshtein del prefijo común y saltándose ramas completas que ya
+ * no pueden calzar. Los resultados se ordenan por puntaje y se cortan en el límite pedido.
+ */
+public class BuscadorCatalogo {
+
+    // Puntaje por palabra de la consulta según cómo calzó; +1 si calzó en el nombre
+    private static final int EXACTO = 6;
+    private static final int PREFIJO = 4;
+    private static final int DIFUSO_1 = 2;
+    private static final int DIFUSO_2 = 1;
+    private static final int BONO_NOMBRE = 1;
+    // Orden en que se recorren los campos: primero el nombre, que suma el bono
+    private static final boolean[] CAMPOS = {true, false};
+
+    // Cómics que contienen una palabra, separados por campo para acotar mejor el puntaje
+    private static final class Apariciones {
+        final ArrayList<Comic> enNombre = new ArrayList<>(1);
+        final ArrayList<Comic> enAutor = new ArrayList<>(1);
+
+        ArrayList<Comic> lista(boolean nombre) {
+            return nombre ? enNombre : enAutor;
+        }
+
+        boolean vacia() {
+            return enNombre.isEmpty() && enAutor.isEmpty();
+        }
+    }
+
+    // Diccionario ordenado de palabras normalizadas
+    private final TreeMap<String, Apariciones> terminos = new TreeMap<>();
+
+    // Separa un texto en palabras normalizadas, sin repetir
+    static List<String> palabras(String texto) {
+        String normalizado = IndiceTexto.normalizar(texto);
+        List<String> resultado = new ArrayList<>(4);
+        int inicio = -1;
+        for (int i = 0; i <= normalizado.length(); i++) {
+            boolean letra = i < normalizado.length() && Character.isLetterOrDigit(normalizado.charAt(i));
+            if (letra && inicio < 0) {
+                inicio = i;
+            } else if (!letra && inicio >= 0) {
+                String palabra = normalizado.substring(inicio, i);
+                if (!resultado.contains(palabra)) resultado.add(palabra);
+                inicio = -1;
+            }
+        }
+        return resultado;
+    }
+
+    public synchronized void agregar(Comic comic) {
+        for (String palabra : palabras(comic.getNombre())) {
+            terminos.computeIfAbsent(palabra, k -> new Apariciones()).enNombre.add(comic);
+        }
+        for (String palabra : palabras(comic.getAutorOFabricante())) {
+            terminos.computeIfAbsent(palabra, k -> new Apariciones()).enAutor.add(comic);
+        }
+    }
+
+    // Para la carga inicial: toma el candado una sola vez
+    public synchronized void agregarTodos(Collection<Comic> nuevos) {
+        for (Comic c : nuevos) {
+            agregar(c);
+        }
+    }
+
+    // Quitar recorre la lista de cada palabra del cómic; eliminar productos es poco frecuente
+    public synchronized void quitar(Comic comic) {
+        quitarDe(comic, palabras(comic.getNombre()), true);
+        quitarDe(comic, palabras(comic.getAutorOFabricante()), false);
+    }
+
+    private void quitarDe(Comic comic, List<String> palabras, boolean nombre) {
+        for (String palabra : palabras) {
+            Apariciones apariciones = terminos.get(palabra);
+            if (apariciones == null) continue;
+            ArrayList<Comic> lista = apariciones.lista(nombre);
+            for (int i = 0; i < lista.size(); i++) {
+                if (lista.get(i) == comic) {
+                    lista.remove(i);
+                    break;
+                }
+            }
+            if (apariciones.vacia()) terminos.remove(palabra);
+        }
+    }
+
+    /**
+     * Busca los cómics que calzan con todas las palabras de la consulta y retorna los "limite"
+     * mejores, de mayor a menor puntaje. Con empate gana el que se encontró primero.
+     */
+    public synchronized List<Comic> buscar(String consulta, int limite) {
+        List<String> tokens = palabras(consulta);
+        if (tokens.isEmpty() || limite <= 0) return new ArrayList<>();
+
+        // Guía el recorrido la palabra con menos candidatos en su primer nivel (la palabra exacta
+        // si existe, si no sus prefijos): así los mejores aparecen pronto y se corta antes
+        int guia = 0;
+        long menor = Long.MAX_VALUE;
+        int[] maximos = new int[tokens.size()];
+        for (int t = 0; t < tokens.size(); t++) {
+            Apariciones exactos = terminos.get(tokens.get(t));
+            long cantidad = 0;
+            if (exactos != null) {
+                cantidad = exactos.enNombre.size() + exactos.enAutor.size();
+            } else {
+                for (Apariciones a : conPrefijo(tokens.get(t)).values()) {
+                    cantidad += a.enNombre.size() + a.enAutor.size();
+                    if (cantidad >= menor) break;
+                }
+            }
+            if (cantidad < menor) {
+                menor = cantidad;
+                guia = t;
+            }
+            maximos[t] = puntajeMaximo(tokens.get(t));
+        }
+        String token = tokens.get(guia);
+        int maximoOtros = 0;
+        for (int t = 0; t < tokens.size(); t++) {
+            if (t != guia) maximoOtros += maximos[t];
+        }
+
+        // Niveles de la palabra guía, de mejor a peor. Un cómic que aparece recién en un nivel no
+        // puede sacar en esa palabra más que el puntaje del nivel; con eso y el máximo posible de
+        // las otras palabras se corta apenas ya no pueda entrar nadie a los mejores.
+        Busqueda busqueda = new Busqueda(tokens, limite, maximoOtros);
+        Apariciones exactos = terminos.get(token);
+        for (boolean nombre : CAMPOS) {
+            if (exactos != null && !busqueda.recorrer(exactos.lista(nombre), EXACTO + bono(nombre))) {
+                return busqueda.resultado();
+            }
+        }
+        for (boolean nombre : CAMPOS) {
+            for (Map.Entry<String, Apariciones> e : conPrefijo(token).entrySet()) {
+                if (e.getKey().equals(token)) continue;
+                if (!busqueda.recorrer(e.getValue().lista(nombre), PREFIJO + bono(nombre))) return busqueda.resultado();
+            }
+        }
+        int maximo = ediciones(token);
+        if (maximo > 0) {
+            Map<String, Integer> cercanos = cercanos(token, maximo);
+            for (int d = 1; d <= maximo; d++) {
+                for (boolean nombre : CAMPOS) {
+                    for (Map.Entry<String, Integer> e : cercanos.entrySet()) {
+                        if (e.getValue() != d || e.getKey().startsWith(token)) continue;
+                        int nivel = (d == 1 ? DIFUSO_1 : DIFUSO_2) + bono(nombre);
+                        if (!busqueda.recorrer(terminos.get(e.getKey()).lista(nombre), nivel)) return busqueda.resultado();
+                    }
+                }
+            }
+        }
+        return busqueda.resultado();
+    }
+
+    private static int bono(boolean nombre) {
+        return nombre ? BONO_NOMBRE : 0;
+    }
+
+    // Lo más que puede aportar una palabra de la consulta, según lo que hay en el diccionario
+    private int puntajeMaximo(String token) {
+        Apariciones exactos = terminos.get(token);
+        if (exactos != null) return EXACTO + (exactos.enNombre.isEmpty() ? 0 : BONO_NOMBRE);
+        int mejor = 0;
+        for (Apariciones a : conPrefijo(token).values()) {
+            if (!a.enNombre.isEmpty()) return PREFIJO + BONO_NOMBRE;
+            mejor = PREFIJO;
+        }
+        return mejor > 0 ? mejor : DIFUSO_1 + BONO_NOMBRE;
+    }
+
+    // Estado de una búsqueda: los mejores hasta ahora y los cómics ya evaluados
+    private static final class Busqueda {
+        private final List<String> tokens;
+        private final int limite;
+        private final int maximoOtros;
+        private final PriorityQueue<Resultado> mejores;
+        private final Set<Comic> vistos = new HashSet<>();
+        private int encontrados;
+
+        Busqueda(List<String> tokens, int limite, int maximoOtros) {
+            this.tokens = tokens;
+            this.limite = limite;
+            this.maximoOtros = maximoOtros;
+            this.mejores = new PriorityQueue<>(limite + 1);
+        }
+
+        // Evalúa candidatos cuyo puntaje en la palabra guía es a lo más "nivel".
+        // Retorna false si ya no puede entrar nadie a los mejores.
+        boolean recorrer(List<Comic> candidatos, int nivel) {
+            int cota = nivel + maximoOtros;
+            for (Comic c : candidatos) {
+                if (mejores.size() == limite && mejores.peek().puntaje >= cota) return false;
+                if (!vistos.add(c)) continue;
+                int puntaje = puntuar(c, tokens);
+                if (puntaje == 0) continue;
+                mejores.add(new Resultado(c, puntaje, encontrados++));
+                if (mejores.size() > limite) mejores.poll();
+            }
+            return true;
+        }
+
+        List<Comic> resultado() {
+            Resultado[] arreglo = mejores.toArray(new Resultado[0]);
+            Arrays.sort(arreglo, Collections.reverseOrder());
+            List<Comic> comics = new ArrayList<>(arreglo.length);
+            for (Resultado r : arreglo) comics.add(r.comic);
+            return comics;
+        }
+    }
+
+    // Suma el mejor calce de cada palabra de la consulta; 0 si alguna no calza
+    private static int puntuar(Comic comic, List<String> tokens) {
+        List<String> delNombre = palabras(comic.getNombre());
+        List<String> delAutor = palabras(comic.getAutorOFabricante());
+        int total = 0;
+        for (String token : tokens) {
+            int mejor = Math.max(mejorCalce(token, delNombre, BONO_NOMBRE), mejorCalce(token, delAutor, 0));
+            if (mejor == 0) return 0;
+            total += mejor;
+        }
+        return total;
+    }
+
+    private static int mejorCalce(String token, List<String> palabras, int bono) {
+        int maximo = ediciones(token);
+        int mejor = 0;
+        for (String p : palabras) {
+            int puntaje = 0;
+            if (p.equals(token)) {
+                puntaje = EXACTO;
+            } else if (p.startsWith(token)) {
+                puntaje = PREFIJO;
+            } else if (maximo > 0) {
+                int d = distanciaAcotada(token, p, maximo);
+                if (d == 1) puntaje = DIFUSO_1;
+                else if (d == 2) puntaje = DIFUSO_2;
+            }
+            if (puntaje > 0) mejor = Math.max(mejor, puntaje + bono);
+        }
+        return mejor;
+    }
+
+    // Ediciones toleradas según el largo: las palabras cortas deben venir bien escritas
+    static int ediciones(String token) {
+        if (token.length() <= 3) return 0;
+        return token.length() <= 7 ? 1 : 2;
+    }
+
+    private NavigableMap<String, Apariciones> conPrefijo(String prefijo) {
+        return terminos.subMap(prefijo, true, prefijo + Character.MAX_VALUE, false);
+    }
+
+    /**
+     * Palabras del diccionario a distancia de edición <= maximo del token, ordenadas por distancia.
+     * Recorre el diccionario en orden: dos palabras seguidas comparten prefijo, así que solo se
+     * recalculan las filas de Levenshtein desde donde difieren. Si una fila completa supera el
+     * máximo, ninguna palabra con ese prefijo puede calzar y se salta al siguiente prefijo.
+     */
+    Map<String, Integer> cercanos(String token, int maximo) {
+        int m = token.length();
+        int[][] filas = new int[m + maximo + 2][m + 1];
+        for (int j = 0; j <= m; j++) filas[0][j] = j;
+        List<List<String>> porDistancia = new ArrayList<>();
+        for (int d = 0; d <= maximo; d++) porDistancia.add(new ArrayList<>());
+
+        String anterior = "";
+        int filasValidas = 0;
+        String termino = terminos.isEmpty() ? null : terminos.firstKey();
+        while (termino != null) {
+            int comun = Math.min(prefijoComun(anterior, termino), filasValidas);
+            int largo = termino.length();
+            int podado = -1;
+            for (int i = comun + 1; i <= largo; i++) {
+                if (i >= filas.length) {
+                    // Más largo que el token + máximo: la distancia ya supera el máximo
+                    podado = i - 1;
+                    break;
+                }
+                char c = termino.charAt(i - 1);
+                int[] fila = filas[i];
+                int[] previa = filas[i - 1];
+                fila[0] = i;
+                int minimo = fila[0];
+                for (int j = 1; j <= m; j++) {
+                    int costo = token.charAt(j - 1) == c ? 0 : 1;
+                    fila[j] = Math.min(Math.min(fila[j - 1] + 1, previa[j] + 1), previa[j - 1] + costo);
+                    if (fila[j] < minimo) minimo = fila[j];
+                }
+                if (minimo > maximo) {
+                    podado = i;
+                    break;
+                }
+            }
+            anterior = termino;
+            if (podado >= 0) {
+                filasValidas = podado - 1;
+                termino = terminos.higherKey(termino.substring(0, podado) + Character.MAX_VALUE);
+                continue;
+            }
+            filasValidas = largo;
+            int distancia = filas[largo][m];
+            if (distancia <= maximo) porDistancia.get(distancia).add(termino);
+            termino = terminos.higherKey(termino);
+        }
+
+        Map<String, Integer> resultado = new LinkedHashMap<>();
+        for (int d = 0; d <= maximo; d++) {
+            for (String t : porDistancia.get(d)) resultado.put(t, d);
+        }
+        return resultado;
+    }
+
+    private static int prefijoComun(String a, String b) {
+        int n = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < n && a.charAt(i) == b.charAt(i)) i++;
+        return i;
+    }
+
+    // Levenshtein con corte: retorna maximo + 1 apenas se sabe que lo supera
+    static int distanciaAcotada(String a, String b, int maximo) {
+        if (Math.abs(a.length() - b.length()) > maximo) return maximo + 1;
+        int[] previa = new int[b.length() + 1];
+        int[] fila = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) previa[j] = j;
+        for (int i = 1; i <= a.length(); i++) {
+            fila[0] = i;
+            int minimo = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int costo = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                fila[j] = Math.min(Math.min(fila[j - 1] + 1, previa[j] + 1), previa[j - 1] + costo);
+                if (fila[j] < minimo) minimo = fila[j];
+            }
+            if (minimo > maximo) return maximo + 1;
+            int[] t = previa;
+            previa = fila;
+            fila = t;
+        }
+        return Math.min(previa[b.length()], maximo + 1);
+    }
+
+    public synchronized int cantidadTerminos() {
+        return terminos.size();
+    }
+
+    // Candidato con su puntaje. El "peor" es el de menor puntaje y, con empate, el encontrado después.
+    private static final class Resultado implements Comparable<Resultado> {
+        final Comic comic;
+        final int puntaje;
+        final int orden;
+
+        Resultado(Comic comic, int puntaje, int orden) {
+            this.comic = comic;
+            this.puntaje = puntaje;
+            this.orden = orden;
+        }
+
+        @Override
+        public int compareTo(Resultado otro) {
+            if (puntaje != otro.puntaje) return Integer.compare(puntaje, otro.puntaje);
+            return Integer.compare(otro.orden, orden);
+        }
+    }
+}
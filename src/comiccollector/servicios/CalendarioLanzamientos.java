@@ -0,0 +1,100 @@
+package comiccollector.servicios;
+
+import comiccollector.modelos.Comic;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Calendario de lanzamientos: cada fecha de llegada con los cómics que llegan ese día.
+ * Una fecha sale del calendario solo cuando ya no queda ningún cómic que llegue en ella
+ * (varios productos pueden compartir fecha, como Deadpool 009 y 010).
+ * Las consultas por rango recorren solo las fechas del rango y salen ordenadas por fecha.
+ */
+public class CalendarioLanzamientos {
+
+    private final TreeMap<LocalDate, List<Comic>> porFecha = new TreeMap<>();
+    private int cantidad;
+
+    // Los cómics sin fecha de llegada (ya en tienda) no entran al calendario.
+    // Cada día queda ordenado por código; lo normal es que el nuevo vaya al final.
+    public synchronized void agregar(Comic comic) {
+        if (comic.getFechaLlegada() == null) return;
+        List<Comic> delDia = porFecha.computeIfAbsent(comic.getFechaLlegada(), f -> new ArrayList<>(2));
+        if (delDia.isEmpty() || compararCodigo(delDia.get(delDia.size() - 1), comic) <= 0) {
+            delDia.add(comic);
+        } else {
+            int posicion = Collections.binarySearch(delDia, comic, CalendarioLanzamientos::compararCodigo);
+            delDia.add(posicion < 0 ? -posicion - 1 : posicion, comic);
+        }
+        cantidad++;
+    }
+
+    // Para la carga inicial: toma el candado una sola vez
+    public synchronized void agregarTodos(Collection<Comic> nuevos) {
+        for (Comic c : nuevos) {
+            agregar(c);
+        }
+    }
+
+    public synchronized void quitar(Comic comic) {
+        if (comic.getFechaLlegada() == null) return;
+        List<Comic> delDia = porFecha.get(comic.getFechaLlegada());
+        if (delDia == null) return;
+        for (int i = 0; i < delDia.size(); i++) {
+            if (delDia.get(i) == comic) {
+                delDia.remove(i);
+                cantidad--;
+                break;
+            }
+        }
+        if (delDia.isEmpty()) porFecha.remove(comic.getFechaLlegada());
+    }
+
+    // Cómics que llegan entre dos fechas, ambas incluidas, ordenados por fecha y luego por código
+    public synchronized List<Comic> entre(LocalDate desde, LocalDate hasta) {
+        List<Comic> resultado = new ArrayList<>();
+        if (desde.isAfter(hasta)) return resultado;
+        for (List<Comic> delDia : porFecha.subMap(desde, true, hasta, true).values()) {
+            resultado.addAll(delDia);
+        }
+        return resultado;
+    }
+
+    // Cómics que llegan después de la fecha dada (sin incluirla)
+    public synchronized List<Comic> despuesDe(LocalDate fecha) {
+        LocalDate siguiente = porFecha.higherKey(fecha);
+        return siguiente == null ? new ArrayList<>() : entre(siguiente, porFecha.lastKey());
+    }
+
+    // Lanzamientos de un día puntual
+    public synchronized List<Comic> delDia(LocalDate fecha) {
+        return entre(fecha, fecha);
+    }
+
+    // Próxima fecha con lanzamientos después de la dada, o null si no hay
+    public synchronized LocalDate proximaFecha(LocalDate fecha) {
+        return porFecha.higherKey(fecha);
+    }
+
+    // Copia ordenada de las fechas con al menos un lanzamiento
+    public synchronized NavigableSet<LocalDate> fechas() {
+        return Collections.unmodifiableNavigableSet(new TreeSet<>(porFecha.keySet()));
+    }
+
+    public synchronized int cantidadComics() {
+        return cantidad;
+    }
+
+    private static int compararCodigo(Comic a, Comic b) {
+        // Los códigos son numéricos con relleno (001, 002...); a igual largo basta compararlos como texto
+        int porLargo = Integer.compare(a.getCodigo().length(), b.getCodigo().length());
+        return porLargo != 0 ? porLargo : a.getCodigo().compareTo(b.getCodigo());
+    }
+}
@@ -0,0 +1,319 @@
+package comiccollector.servicios;
+
+import comiccollector.modelos.Comic;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Registro de cambios del inventario, para no reescribir comics.csv completo en cada guardado.
+ * Cada guardado agrega un bloque con los cómics que cambiaron (fila completa) y los eliminados.
+ * Una "base" indica a qué comics.csv (largo y fecha de modificación) se aplican los bloques
+ * que le siguen; al fusionar, se escribe un comics.csv nuevo y el registro parte de nuevo.
+ *
+ * Cada base y cada bloque llevan su corte: el LSN de la bitácora y el largo de reservas.txt que
+ * ya están incluidos en el stock guardado, para no descontar dos veces al reproducir.
+ * Registros: tipo (1 byte), contenido y CRC32 del registro. Una cola cortada se descarta.
+ */
+public class CambiosInventario {
+
+    private static final byte BASE = 'F';
+    private static final byte BLOQUE = 'C';
+    private static final long SIN_FECHA = Long.MIN_VALUE;
+
+    // Hasta dónde de la bitácora y de reservas.txt está incluido un stock guardado
+    public static class Corte {
+        private final long lsn;
+        private final long bytesReservas;
+
+        public Corte(long lsn, long bytesReservas) {
+            this.lsn = lsn;
+            this.bytesReservas = bytesReservas;
+        }
+
+        public long getLsn() {
+            return lsn;
+        }
+
+        public long getBytesReservas() {
+            return bytesReservas;
+        }
+    }
+
+    // Cambios de un guardado: cómics nuevos o modificados y códigos eliminados
+    public static class Bloque {
+        private final Corte corte;
+        private final int ultimoCodigo;
+        private final List<Comic> modificados;
+        private final List<String> eliminados;
+
+        public Bloque(Corte corte, int ultimoCodigo, List<Comic> modificados, List<String> eliminados) {
+            this.corte = corte;
+            this.ultimoCodigo = ultimoCodigo;
+            this.modificados = modificados;
+            this.eliminados = eliminados;
+        }
+
+        public Corte getCorte() {
+            return corte;
+        }
+
+        public int getUltimoCodigo() {
+            return ultimoCodigo;
+        }
+
+        public List<Comic> getModificados() {
+            return modificados;
+        }
+
+        public List<String> getEliminados() {
+            return eliminados;
+        }
+    }
+
+    // Lo que hay que aplicar sobre comics.csv al arrancar
+    public static class Contenido {
+        private final Corte base;
+        private final int ultimoCodigo;
+        private final List<Bloque> bloques;
+
+        Contenido(Corte base, int ultimoCodigo, List<Bloque> bloques) {
+            this.base = base;
+            this.ultimoCodigo = ultimoCodigo;
+            this.bloques = bloques;
+        }
+
+        public Corte getBase() {
+            return base;
+        }
+
+        public int getUltimoCodigo() {
+            return ultimoCodigo;
+        }
+
+        public List<Bloque> getBloques() {
+            return bloques;
+        }
+    }
+
+    private final File archivo;
+    private FileChannel canal;
+
+    public CambiosInventario(File archivo) {
+        this.archivo = archivo;
+    }
+
+    public boolean existe() {
+        return archivo.exists();
+    }
+
+    public long largo() {
+        return archivo.length();
+    }
+
+    /**
+     * Lee el registro y retorna la última base que corresponde al comics.csv actual con los bloques
+     * que le siguen, o null si ninguna corresponde (comics.csv se cambió a mano o no hay registro).
+     * Descarta una cola incompleta para poder seguir agregando.
+     */
+    public synchronized Contenido leer(File csv) throws IOException {
+        if (!archivo.exists()) return null;
+        ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(archivo.toPath()));
+        Contenido vigente = null;
+        long largoValido = 0;
+        byte[] auxiliar = new byte[256];
+        try {
+            while (in.hasRemaining()) {
+                int inicio = in.position();
+                byte tipo = in.get();
+                if (tipo == BASE) {
+                    long largoCsv = in.getLong();
+                    long modificacionCsv = in.getLong();
+                    Corte corte = new Corte(in.getLong(), in.getLong());
+                    int ultimoCodigo = in.getInt();
+                    if (!crcValido(in, inicio)) break;
+                    // Una base que no calza es una fusión que no alcanzó a renombrar: sigue valiendo la anterior
+                    if (largoCsv == csv.length() && modificacionCsv == csv.lastModified()) {
+                        vigente = new Contenido(corte, ultimoCodigo, new ArrayList<>());
+                    }
+                } else if (tipo == BLOQUE) {
+                    Bloque bloque = leerBloque(in, auxiliar);
+                    if (!crcValido(in, inicio)) break;
+                    if (vigente != null) vigente.bloques.add(bloque);
+                } else {
+                    break;
+                }
+                largoValido = in.position();
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            // Registro cortado a medias: se usa lo anterior
+        }
+        if (largoValido < archivo.length()) {
+            System.out.println("AVISO. Registro de inventario con cambios incompletos, se descartan desde el byte " + largoValido + ".");
+            try (FileChannel c = FileChannel.open(archivo.toPath(), StandardOpenOption.WRITE)) {
+                c.truncate(largoValido);
+            }
+        }
+        return vigente;
+    }
+
+    private static Bloque leerBloque(ByteBuffer in, byte[] auxiliar) {
+        Corte corte = new Corte(in.getLong(), in.getLong());
+        int ultimoCodigo = in.getInt();
+        int modificados = in.getInt();
+        List<Comic> comics = new ArrayList<>(modificados);
+        for (int i = 0; i < modificados; i++) {
+            String codigo = leerTexto(in, auxiliar);
+            String tipo = leerTexto(in, auxiliar);
+            String nombre = leerTexto(in, auxiliar);
+            String autor = leerTexto(in, auxiliar);
+            int cantidad = in.getInt();
+            long dia = in.getLong();
+            double precio = in.getDouble();
+            comics.add(new Comic(codigo, tipo, nombre, autor, cantidad, dia == SIN_FECHA ? null : LocalDate.ofEpochDay(dia), precio));
+        }
+        int eliminados = in.getInt();
+        List<String> codigos = new ArrayList<>(eliminados);
+        for (int i = 0; i < eliminados; i++) {
+            codigos.add(leerTexto(in, auxiliar));
+        }
+        return new Bloque(corte, ultimoCodigo, comics, codigos);
+    }
+
+    private static boolean crcValido(ByteBuffer in, int inicio) {
+        CRC32 crc = new CRC32();
+        ByteBuffer registro = in.duplicate();
+        registro.position(inicio).limit(in.position());
+        crc.update(registro);
+        return in.getLong() == crc.getValue();
+    }
+
+    // Agrega un bloque de cambios y espera a que esté en disco
+    public synchronized void agregarBloque(Bloque bloque) throws IOException {
+        escribir(codificarBloque(bloque));
+    }
+
+    // Agrega una base: lo que siga se aplica sobre el comics.csv con ese largo y fecha
+    public synchronized void agregarBase(long largoCsv, long modificacionCsv, Corte corte, int ultimoCodigo) throws IOException {
+        escribir(codificarBase(largoCsv, modificacionCsv, corte, ultimoCodigo));
+    }
+
+    // Deja el registro solo con la base dada (después de fusionar), con archivo temporal y renombre
+    public synchronized void reiniciar(long largoCsv, long modificacionCsv, Corte corte, int ultimoCodigo) throws IOException {
+        cerrar();
+        File temporal = new File(archivo.getPath() + ".tmp");
+        try (FileChannel c = FileChannel.open(temporal.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(codificarBase(largoCsv, modificacionCsv, corte, ultimoCodigo));
+            while (buffer.hasRemaining()) {
+                c.write(buffer);
+            }
+            c.force(true);
+        }
+        Files.move(temporal.toPath(), archivo.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void escribir(byte[] datos) throws IOException {
+        if (canal == null) {
+            canal = FileChannel.open(archivo.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        }
+        long inicio = canal.size();
+        try {
+            canal.position(inicio);
+            ByteBuffer buffer = ByteBuffer.wrap(datos);
+            while (buffer.hasRemaining()) {
+                canal.write(buffer);
+            }
+            canal.force(false);
+        } catch (IOException e) {
+            // No se deja un registro a medias delante del próximo
+            try {
+                canal.truncate(inicio);
+            } catch (IOException ignorada) {
+                // La lectura descartará la cola por CRC
+            }
+            throw e;
+        }
+    }
+
+    public synchronized void cerrar() throws IOException {
+        if (canal != null) {
+            canal.close();
+            canal = null;
+        }
+    }
+
+    private static byte[] codificarBase(long largoCsv, long modificacionCsv, Corte corte, int ultimoCodigo) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        CRC32 crc = new CRC32();
+        DataOutputStream out = new DataOutputStream(new CheckedOutputStream(bytes, crc));
+        out.writeByte(BASE);
+        out.writeLong(largoCsv);
+        out.writeLong(modificacionCsv);
+        out.writeLong(corte.lsn);
+        out.writeLong(corte.bytesReservas);
+        out.writeInt(ultimoCodigo);
+        out.flush();
+        new DataOutputStream(bytes).writeLong(crc.getValue());
+        return bytes.toByteArray();
+    }
+
+    private static byte[] codificarBloque(Bloque bloque) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + 64 * bloque.modificados.size());
+        CRC32 crc = new CRC32();
+        DataOutputStream out = new DataOutputStream(new CheckedOutputStream(bytes, crc));
+        out.writeByte(BLOQUE);
+        out.writeLong(bloque.corte.lsn);
+        out.writeLong(bloque.corte.bytesReservas);
+        out.writeInt(bloque.ultimoCodigo);
+        out.writeInt(bloque.modificados.size());
+        for (Comic c : bloque.modificados) {
+            escribirTexto(out, c.getCodigo());
+            escribirTexto(out, c.getTipo());
+            escribirTexto(out, c.getNombre());
+            escribirTexto(out, c.getAutorOFabricante());
+            out.writeInt(c.getCantidadDisponible());
+            out.writeLong(c.getFechaLlegada() == null ? SIN_FECHA : c.getFechaLlegada().toEpochDay());
+            out.writeDouble(c.getPrecio());
+        }
+        out.writeInt(bloque.eliminados.size());
+        for (String codigo : bloque.eliminados) {
+            escribirTexto(out, codigo);
+        }
+        out.flush();
+        new DataOutputStream(bytes).writeLong(crc.getValue());
+        return bytes.toByteArray();
+    }
+
+    private static void escribirTexto(DataOutputStream out, String texto) throws IOException {
+        if (texto == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] b = texto.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    private static String leerTexto(ByteBuffer in, byte[] auxiliar) {
+        int largo = in.getInt();
+        if (largo < 0) return null;
+        byte[] destino = largo <= auxiliar.length ? auxiliar : new byte[largo];
+        in.get(destino, 0, largo);
+        return new String(destino, 0, largo, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,446 @@
+package comiccollector.servicios;
+
+import comiccollector.modelos.Comic;
+import comiccollector.modelos.TipoProducto;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Cargador paralelo de comics.csv.
+ * Mapea el archivo en memoria, lo divide en trozos que terminan en fin de línea y
+ * los procesa en paralelo leyendo directo desde los bytes: números, fechas y precios se
+ * interpretan sin crear Strings intermedios. El tipo se traduce a TipoProducto sin crear texto, y
+ * los nombres y autores repetidos se reutilizan con una caché por trozo, así un catálogo grande
+ * crea un String por texto distinto y no uno por fila.
+ * Soporta campos entre comillas ("Batman, el regreso") con comillas dobles escapadas ("").
+ * Las filas mal formadas se informan con su número de línea y se omiten.
+ */
+public class CargadorCatalogoCSV {
+
+    private static final int CAMPOS = 7;
+    // Tope por trozo para que quepa en un MappedByteBuffer
+    private static final long MAX_TROZO = 256L * 1024 * 1024;
+    // Bajo este tamaño no conviene paralelizar
+    private static final long MIN_PARALELO = 1024 * 1024;
+    // Posiciones de la caché de textos repetidos de cada trozo (potencia de dos)
+    private static final int CACHE_TEXTOS = 4096;
+    // Textos más largos que esto no se guardan en la caché
+    private static final int MAX_TEXTO_CACHE = 64;
+
+    // Resultado de la carga, en el orden del archivo
+    public static class Resultado {
+        private final List<Comic> comics;
+        private final List<String> errores;
+        private final int mayorCodigo;
+
+        Resultado(List<Comic> comics, List<String> errores, int mayorCodigo) {
+            this.comics = comics;
+            this.errores = errores;
+            this.mayorCodigo = mayorCodigo;
+        }
+
+        public List<Comic> getComics() {
+            return comics;
+        }
+
+        // Mensajes del tipo "Línea 12: ..." para cada fila descartada
+        public List<String> getErrores() {
+            return errores;
+        }
+
+        // Mayor código numérico encontrado, para el contador de códigos
+        public int getMayorCodigo() {
+            return mayorCodigo;
+        }
+    }
+
+    // Resultado parcial de un trozo. Las líneas se numeran dentro del trozo.
+    private static class ResultadoTrozo {
+        final List<Comic> comics = new ArrayList<>();
+        final List<Integer> lineasConError = new ArrayList<>();
+        final List<String> motivos = new ArrayList<>();
+        int lineas;
+        int mayorCodigo;
+    }
+
+    private final int paralelismo;
+
+    public CargadorCatalogoCSV() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public CargadorCatalogoCSV(int paralelismo) {
+        this.paralelismo = Math.max(1, paralelismo);
+    }
+
+    public Resultado cargar(File archivo) throws IOException {
+        try (FileChannel canal = FileChannel.open(archivo.toPath(), StandardOpenOption.READ)) {
+            long tamano = canal.size();
+            long[] limites = calcularLimites(canal, tamano);
+            int trozos = limites.length - 1;
+
+            IntStream indices = IntStream.range(0, trozos);
+            if (trozos > 1) indices = indices.parallel();
+            List<ResultadoTrozo> parciales;
+            try {
+                parciales = indices.mapToObj(i -> {
+                    try {
+                        MappedByteBuffer mapa = canal.map(FileChannel.MapMode.READ_ONLY, limites[i], limites[i + 1] - limites[i]);
+                        return new ParserTrozo(mapa).procesar(i == 0);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }).collect(Collectors.toList());
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            return unir(parciales);
+        }
+    }
+
+    // Junta los trozos en orden y convierte los números de línea a absolutos
+    private static Resultado unir(List<ResultadoTrozo> parciales) {
+        int total = 0;
+        for (ResultadoTrozo r : parciales) total += r.comics.size();
+        List<Comic> comics = new ArrayList<>(total);
+        List<String> errores = new ArrayList<>();
+        int mayorCodigo = 0;
+        int lineaBase = 0;
+        for (ResultadoTrozo r : parciales) {
+            comics.addAll(r.comics);
+            for (int i = 0; i < r.lineasConError.size(); i++) {
+                errores.add("Línea " + (lineaBase + r.lineasConError.get(i)) + ": " + r.motivos.get(i));
+            }
+            mayorCodigo = Math.max(mayorCodigo, r.mayorCodigo);
+            lineaBase += r.lineas;
+        }
+        return new Resultado(comics, errores, mayorCodigo);
+    }
+
+    // Divide el archivo en trozos que comienzan justo después de un salto de línea
+    private long[] calcularLimites(FileChannel canal, long tamano) throws IOException {
+        int trozos = 1;
+        if (tamano >= MIN_PARALELO) {
+            trozos = (int) Math.max(paralelismo * 4L, (tamano + MAX_TROZO - 1) / MAX_TROZO);
+        }
+        long[] limites = new long[trozos + 1];
+        int cantidad = 1;
+        ByteBuffer lectura = ByteBuffer.allocate(8192);
+        for (int k = 1; k < trozos; k++) {
+            long pos = Math.max(limites[cantidad - 1], tamano * k / trozos);
+            long corte = siguienteLinea(canal, pos, tamano, lectura);
+            if (corte > limites[cantidad - 1] && corte < tamano) {
+                limites[cantidad++] = corte;
+            }
+        }
+        limites[cantidad++] = tamano;
+        long[] resultado = new long[cantidad];
+        System.arraycopy(limites, 0, resultado, 0, cantidad);
+        return resultado;
+    }
+
+    // Posición del primer byte después del próximo '\n' desde pos
+    private static long siguienteLinea(FileChannel canal, long pos, long tamano, ByteBuffer lectura) throws IOException {
+        while (pos < tamano) {
+            lectura.clear();
+            int leidos = canal.read(lectura, pos);
+            if (leidos <= 0) break;
+            for (int i = 0; i < leidos; i++) {
+                if (lectura.get(i) == '\n') return pos + i + 1;
+            }
+            pos += leidos;
+        }
+        return tamano;
+    }
+
+    // Interpreta las líneas de un trozo mapeado
+    private static class ParserTrozo {
+        private final ByteBuffer datos;
+        private final int[] inicio = new int[CAMPOS];
+        private final int[] fin = new int[CAMPOS];
+        private final boolean[] escapado = new boolean[CAMPOS];
+        private byte[] auxiliar = new byte[256];
+        // Tipos ya vistos en este trozo, por sus bytes
+        private final List<TipoProducto> tipos = new ArrayList<>();
+        private final List<byte[]> tiposBytes = new ArrayList<>();
+        // Caché de acceso directo (por hash de los bytes) de nombres y autores ya creados
+        private final byte[][] cacheBytes = new byte[CACHE_TEXTOS][];
+        private final String[] cacheTextos = new String[CACHE_TEXTOS];
+
+        ParserTrozo(ByteBuffer datos) {
+            this.datos = datos;
+        }
+
+        ResultadoTrozo procesar(boolean saltarCabecera) {
+            ResultadoTrozo r = new ResultadoTrozo();
+            int limite = datos.limit();
+            int pos = 0;
+            while (pos < limite) {
+                int finLinea = pos;
+                while (finLinea < limite && datos.get(finLinea) != '\n') finLinea++;
+                int siguiente = finLinea + 1;
+                if (finLinea > pos && datos.get(finLinea - 1) == '\r') finLinea--;
+                r.lineas++;
+                if (!(saltarCabecera && r.lineas == 1) && finLinea > pos) {
+                    String error = procesarLinea(pos, finLinea, r);
+                    if (error != null) {
+                        r.lineasConError.add(r.lineas);
+                        r.motivos.add(error);
+                    }
+                }
+                pos = siguiente;
+            }
+            return r;
+        }
+
+        // Retorna null si la línea es válida, o el motivo del rechazo
+        private String procesarLinea(int desde, int hasta, ResultadoTrozo r) {
+            String error = separarCampos(desde, hasta);
+            if (error != null) return error;
+            try {
+                TipoProducto tipo = tipo(0);
+                String codigo = texto(1);
+                String nombre = textoRepetido(2);
+                String autor = textoRepetido(3);
+                int cantidad = entero(4, "cantidad");
+                LocalDate fecha = fecha(5);
+                double precio = decimal(6);
+                if (codigo.isEmpty()) return "código vacío";
+                r.comics.add(new Comic(codigo, tipo, nombre, autor, cantidad, fecha, precio));
+                int numero = codigoNumerico(1);
+                if (numero > r.mayorCodigo) r.mayorCodigo = numero;
+                return null;
+            } catch (IllegalArgumentException | DateTimeException e) {
+                return e.getMessage();
+            }
+        }
+
+        // Ubica los 7 campos respetando comillas
+        private String separarCampos(int desde, int hasta) {
+            int campo = 0;
+            int pos = desde;
+            while (true) {
+                if (campo == CAMPOS) return "se esperaban " + CAMPOS + " campos y hay más";
+                if (pos < hasta && datos.get(pos) == '"') {
+                    int i = pos + 1;
+                    boolean dobles = false;
+                    while (true) {
+                        if (i >= hasta) return "comillas sin cerrar en el campo " + (campo + 1);
+                        if (datos.get(i) == '"') {
+                            if (i + 1 < hasta && datos.get(i + 1) == '"') {
+                                dobles = true;
+                                i += 2;
+                                continue;
+                            }
+                            break;
+                        }
+                        i++;
+                    }
+                    inicio[campo] = pos + 1;
+                    fin[campo] = i;
+                    escapado[campo] = dobles;
+                    pos = i + 1;
+                    if (pos < hasta && datos.get(pos) != ',') return "texto después de comillas en el campo " + (campo + 1);
+                } else {
+                    int i = pos;
+                    while (i < hasta && datos.get(i) != ',') i++;
+                    inicio[campo] = pos;
+                    fin[campo] = i;
+                    escapado[campo] = false;
+                    pos = i;
+                }
+                campo++;
+                if (pos >= hasta) break;
+                pos++; // salta la coma
+                if (pos == hasta) {
+                    // Coma final: el último campo está vacío
+                    if (campo == CAMPOS) return "se esperaban " + CAMPOS + " campos y hay más";
+                    inicio[campo] = pos;
+                    fin[campo] = pos;
+                    escapado[campo] = false;
+                    campo++;
+                    break;
+                }
+            }
+            if (campo != CAMPOS) return "se esperaban " + CAMPOS + " campos y hay " + campo;
+            return null;
+        }
+
+        private String texto(int campo) {
+            int largo = fin[campo] - inicio[campo];
+            if (largo > auxiliar.length) auxiliar = new byte[Math.max(largo, auxiliar.length * 2)];
+            int n;
+            if (escapado[campo]) {
+                n = 0;
+                for (int i = inicio[campo]; i < fin[campo]; i++) {
+                    byte b = datos.get(i);
+                    auxiliar[n++] = b;
+                    if (b == '"') i++; // "" -> "
+                }
+            } else {
+                datos.get(inicio[campo], auxiliar, 0, largo);
+                n = largo;
+            }
+            return new String(auxiliar, 0, n, StandardCharsets.UTF_8);
+        }
+
+        private TipoProducto tipo(int campo) {
+            int largo = fin[campo] - inicio[campo];
+            for (int t = 0; t < tiposBytes.size(); t++) {
+                byte[] conocido = tiposBytes.get(t);
+                if (conocido.length == largo && iguales(campo, conocido)) return tipos.get(t);
+            }
+            String texto = texto(campo);
+            TipoProducto tipo = TipoProducto.buscar(texto);
+            if (tipo == null) throw new IllegalArgumentException("tipo desconocido: " + texto);
+            // Variantes de escritura ("manga", "Comic") también quedan guardadas, hasta un tope
+            if (tipos.size() < 32) {
+                tipos.add(tipo);
+                byte[] copia = new byte[largo];
+                datos.get(inicio[campo], copia, 0, largo);
+                tiposBytes.add(copia);
+            }
+            return tipo;
+        }
+
+        // Como texto(), pero si los mismos bytes ya aparecieron hace poco retorna el mismo String
+        private String textoRepetido(int campo) {
+            int largo = fin[campo] - inicio[campo];
+            if (escapado[campo] || largo > MAX_TEXTO_CACHE) return texto(campo);
+            int h = largo;
+            for (int i = inicio[campo]; i < fin[campo]; i++) {
+                h = 31 * h + datos.get(i);
+            }
+            int pos = (h ^ (h >>> 12)) & (CACHE_TEXTOS - 1);
+            byte[] conocido = cacheBytes[pos];
+            if (conocido != null && conocido.length == largo && iguales(campo, conocido)) return cacheTextos[pos];
+            String nuevo = texto(campo);
+            byte[] copia = new byte[largo];
+            datos.get(inicio[campo], copia, 0, largo);
+            cacheBytes[pos] = copia;
+            cacheTextos[pos] = nuevo;
+            return nuevo;
+        }
+
+        private boolean iguales(int campo, byte[] conocido) {
+            for (int i = 0; i < conocido.length; i++) {
+                if (datos.get(inicio[campo] + i) != conocido[i]) return false;
+            }
+            return true;
+        }
+
+        private int entero(int campo, String nombre) {
+            int i = inicio[campo];
+            int hasta = fin[campo];
+            boolean negativo = false;
+            if (i < hasta && (datos.get(i) == '-' || datos.get(i) == '+')) {
+                negativo = datos.get(i) == '-';
+                i++;
+            }
+            if (i >= hasta) throw new IllegalArgumentException(nombre + " vacía");
+            long valor = 0;
+            for (; i < hasta; i++) {
+                int d = datos.get(i) - '0';
+                if (d < 0 || d > 9) throw new IllegalArgumentException(nombre + " no es un número entero");
+                valor = valor * 10 + d;
+                if (valor > Integer.MAX_VALUE) throw new IllegalArgumentException(nombre + " fuera de rango");
+            }
+            return (int) (negativo ? -valor : valor);
+        }
+
+        // -1 si el código no es numérico (se ignora para el contador, igual que antes)
+        private int codigoNumerico(int campo) {
+            long valor = 0;
+            if (fin[campo] == inicio[campo] || escapado[campo]) return -1;
+            for (int i = inicio[campo]; i < fin[campo]; i++) {
+                int d = datos.get(i) - '0';
+                if (d < 0 || d > 9) return -1;
+                valor = valor * 10 + d;
+                if (valor > Integer.MAX_VALUE) return -1;
+            }
+            return (int) valor;
+        }
+
+        // Formato AAAA-MM-DD o "null"
+        private LocalDate fecha(int campo) {
+            int i = inicio[campo];
+            int largo = fin[campo] - i;
+            if (largo == 4 && datos.get(i) == 'n' && datos.get(i + 1) == 'u'
+                    && datos.get(i + 2) == 'l' && datos.get(i + 3) == 'l') {
+                return null;
+            }
+            if (largo != 10 || datos.get(i + 4) != '-' || datos.get(i + 7) != '-') {
+                throw new IllegalArgumentException("fecha de llegada inválida (se espera AAAA-MM-DD o null)");
+            }
+            int anio = digitos(i, 4);
+            int mes = digitos(i + 5, 2);
+            int dia = digitos(i + 8, 2);
+            return LocalDate.of(anio, mes, dia);
+        }
+
+        private int digitos(int desde, int cantidad) {
+            int valor = 0;
+            for (int i = desde; i < desde + cantidad; i++) {
+                int d = datos.get(i) - '0';
+                if (d < 0 || d > 9) throw new IllegalArgumentException("fecha de llegada inválida (se espera AAAA-MM-DD o null)");
+                valor = valor * 10 + d;
+            }
+            return valor;
+        }
+
+        private static final double[] POTENCIAS = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8,
+                1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15};
+
+        // Precio como 3990 o 3990.50. Casos raros (exponentes, muchos dígitos) usan Double.parseDouble
+        private double decimal(int campo) {
+            int i = inicio[campo];
+            int hasta = fin[campo];
+            boolean negativo = false;
+            if (i < hasta && datos.get(i) == '-') {
+                negativo = true;
+                i++;
+            }
+            long mantisa = 0;
+            int digitosTotales = 0;
+            int decimales = -1;
+            for (; i < hasta; i++) {
+                byte b = datos.get(i);
+                if (b == '.' && decimales < 0) {
+                    decimales = 0;
+                    continue;
+                }
+                int d = b - '0';
+                if (d < 0 || d > 9 || digitosTotales >= 15) {
+                    return decimalLento(campo);
+                }
+                mantisa = mantisa * 10 + d;
+                digitosTotales++;
+                if (decimales >= 0) decimales++;
+            }
+            if (digitosTotales == 0) throw new IllegalArgumentException("precio vacío o inválido");
+            double valor = decimales > 0 ? mantisa / POTENCIAS[decimales] : mantisa;
+            return negativo ? -valor : valor;
+        }
+
+        private double decimalLento(int campo) {
+            try {
+                return Double.parseDouble(texto(campo));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("precio no es un número");
+            }
+        }
+    }
+}
@@ -1,169 +1,1174 @@
 package comiccollector.servicios;
 
 import comiccollector.modelos.Comic;
+import comiccollector.modelos.LineaPedido;
+import comiccollector.modelos.ReservaCompra;
+import comiccollector.modelos.TipoProducto;
 import comiccollector.modelos.Usuario;
 import comiccollector.excepciones.EmailYaRegistradoException;
 import comiccollector.excepciones.ProductoYaReservadoException;
 import comiccollector.excepciones.RutInvalidoException;
+import comiccollector.excepciones.RutYaRegistradoException;
+import comiccollector.servicios.MetricasSistema.Operacion;
 
-import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
-import java.io.PrintWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.TreeSet;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
-// Clase para administrar la logica, datos y operaciones
-public class ComicCollectorSystem {
+// Clase para administrar la logica, datos y operaciones.
+// Es segura para uso concurrente: compras y reservas descuentan stock con CAS por producto,
+// así que operaciones sobre productos distintos no se bloquean entre sí.
+// Es final porque el constructor carga los datos llamando a sus propios métodos.
+public final class ComicCollectorSystem {
 
-    private ArrayList<Comic> comics;
-    private HashMap<String, Usuario> usuarios;
-    private HashSet<String> emailsRegistrados;
-    private HashSet<String> productosReservados;
-    private TreeSet<LocalDate> fechasLanzamiento;
-    private TreeSet<Usuario> rankingUsuarios;
+    private ConcurrentHashMap<String, Usuario> usuarios;
+    // Los mismos usuarios en orden de registro, para entregar fotos sin copiar el mapa
+    private final ListaCreciente<Usuario> padronUsuarios = new ListaCreciente<>();
+    // RUTs con un registro en curso, para que dos cajas no registren el mismo RUT a la vez
+    private final Set<String> rutsEnRegistro = ConcurrentHashMap.newKeySet();
+    // Persistentes: getEmailsRegistrados y getProductosReservados entregan una foto en O(1)
+    private final ConjuntoPersistente.Compartido<String> emailsRegistrados = new ConjuntoPersistente.Compartido<>();
+    private final ConjuntoPersistente.Compartido<String> productosReservados = new ConjuntoPersistente.Compartido<>();
+    // Fecha de llegada → cómics que llegan ese día
+    private final CalendarioLanzamientos calendario = new CalendarioLanzamientos();
+    // Reservas pendientes por fecha de llegada, para entregarlas el día que corresponde
+    private final AgendaEntregas agendaEntregas = new AgendaEntregas();
+    private RankingUsuarios<Usuario> rankingUsuarios;
     private ValidadorDatos validador;
-    private HashMap<String, Comic> inventario;
+    // Catálogo en columnas, con el código traducido a una fila densa
+    private final InventarioColumnar inventario = new InventarioColumnar();
+    // Índices secundarios normalizados (sin tildes ni mayúsculas) para buscar sin recorrer el catálogo.
+    // El tipo no necesita índice: es un byte por fila en el inventario.
+    private final IndiceTexto indiceNombre = new IndiceTexto(Comic::getNombre);
+    private final IndiceTexto indiceAutor = new IndiceTexto(Comic::getAutorOFabricante);
+    // Inventario ordenado por nombre, para listar por páginas
+    private final ListadoInventario listado = new ListadoInventario(inventario);
+    // Búsqueda por prefijo y aproximada (autocompletar) sobre nombre y autor
+    private final BuscadorCatalogo buscador = new BuscadorCatalogo();
     private int ultimoCodigoProducto = 0;
+    // Protege los cambios al catálogo (lista, fechas y contador de códigos)
+    private final Object bloqueoCatalogo = new Object();
+    // Carpeta donde viven los archivos de datos
+    private final File directorioDatos;
+    // Único que escribe usuarios.txt y reservas.txt, en un hilo propio
+    private final EscritorArchivos escritorArchivos;
+    // Cambios del inventario desde el último comics.csv; se guardan solo los cómics modificados
+    private final CambiosInventario cambiosInventario;
+    private final Set<String> codigosModificados = ConcurrentHashMap.newKeySet();
+    // Falso si el registro de cambios no corresponde al comics.csv actual: el próximo guardado lo reinicia
+    private boolean baseInventarioVigente;
+    // Último comics.csv revisado (largo y fecha) y cuántas filas suyas no se pueden cargar
+    private String firmaCsvRevisado;
+    private int filasRechazadasCsv;
+    // usuarios.txt y reservas.txt partidos en segmentos; las posiciones guardadas son lógicas
+    private final RegistroSegmentado registroUsuarios;
+    private final RegistroSegmentado registroReservas;
+    // Contadores y latencias de las operaciones, publicables por JMX
+    private final MetricasSistema metricas = new MetricasSistema(
+            () -> inventario.tamano(), () -> usuarios.size(), () -> productosReservados.tamano(),
+            () -> agendaEntregas.pendientes());
+    // Serializa guardados y fusiones del inventario
+    private final Object bloqueoGuardadoInventario = new Object();
 
     private static final String COMICS_CSV = "comics.csv";
     private static final String USUARIOS_TXT = "usuarios.txt";
     private static final String RESERVAS_TXT = "reservas.txt";
+    private static final String BITACORA_LOG = "operaciones.log";
+    private static final String INSTANTANEA_BIN = "estado.snapshot";
+    private static final String CAMBIOS_INVENTARIO = "inventario.cambios";
+    // usuarios.txt y reservas.txt se sellan al pasar este tamaño; los segmentos compactados van con gzip
+    private static final long TAMANO_SEGMENTO = 16L << 20;
+    private static final boolean COMPRIMIR_SEGMENTOS = true;
+    // Se fusiona en comics.csv cuando el registro de cambios pasa de esta fracción del csv
+    private static final int FRACCION_FUSION = 4;
+    private static final long MIN_BYTES_FUSION = 1L << 20;
+    // Ventana extra de group commit, en microsegundos. Con 0 igual se agrupa lo que llega durante cada fsync
+    private static final long VENTANA_DURABILIDAD_MICROS =
+            Long.getLong("comiccollector.ventanaDurabilidadMicros", 0);
+
+    // Bitácora durable de compras, reservas y registros (null si el sistema se creó sin cargar datos)
+    private BitacoraOperaciones bitacora;
+    // Reservas leídas de reservas.txt, solo durante el arranque para conciliar con la bitácora
+    private HashMap<String, Integer> reservasCargadas;
+    // LSN hasta el que la instantánea cargada ya incluye la bitácora
+    private long lsnInstantanea;
+    // Solo durante el arranque: hasta dónde el stock cargado ya incluye la bitácora y reservas.txt,
+    // en general y para los cómics que vienen de un bloque del registro de cambios
+    private CambiosInventario.Corte corteCarga;
+    private HashMap<String, CambiosInventario.Corte> cortesPorCodigo;
+    private static final CambiosInventario.Corte SIN_CORTE = new CambiosInventario.Corte(0, 0);
+    // Las operaciones toman la lectura (son concurrentes entre sí); la instantánea toma la escritura
+    private final ReentrantReadWriteLock bloqueoEstado = new ReentrantReadWriteLock();
+    private ScheduledExecutorService programadorInstantaneas;
+    private ScheduledExecutorService programadorEntregas;
+    private ScheduledExecutorService programadorInventario;
+    private ScheduledExecutorService programadorCompactacion;
+    // Recibe los usuarios cuyo total de compras cambió (ej: el ranking de RedSucursales)
+    private volatile Consumer<Usuario> observadorCompras;
+    // Réplica armada por ReplicaLectura: solo cambia con lo que llega del primario
+    private volatile boolean soloLectura;
+    // Cambios que no pasan por la bitácora (importaciones); las réplicas vuelven a pedir el estado completo
+    private final AtomicLong cambiosSinBitacora = new AtomicLong();
 
     // Constructor. Inicializa colecciones y carga los datos desde archivos.
     public ComicCollectorSystem() {
-        this.comics = new ArrayList<>();
-        this.usuarios = new HashMap<>();
-        this.emailsRegistrados = new HashSet<>();
-        this.productosReservados = new HashSet<>();
-        this.fechasLanzamiento = new TreeSet<>();
-        this.rankingUsuarios = new TreeSet<>();
+        this(new File("."), true);
+    }
+
+    // Constructor con carpeta de datos propia (ej: otra sucursal o pruebas de rendimiento)
+    public ComicCollectorSystem(File directorioDatos) {
+        this(directorioDatos, true);
+    }
+
+    // Permite crear el sistema vacío, sin leer archivos (usado por los benchmarks)
+    ComicCollectorSystem(File directorioDatos, boolean cargarDatos) {
+        this.directorioDatos = directorioDatos;
+        this.escritorArchivos = new EscritorArchivos(directorioDatos);
+        this.cambiosInventario = new CambiosInventario(new File(directorioDatos, CAMBIOS_INVENTARIO));
+        this.registroUsuarios = new RegistroSegmentado(directorioDatos, USUARIOS_TXT, COMPRIMIR_SEGMENTOS);
+        this.registroReservas = new RegistroSegmentado(directorioDatos, RESERVAS_TXT, COMPRIMIR_SEGMENTOS);
+        this.usuarios = new ConcurrentHashMap<>();
+        this.rankingUsuarios = new RankingUsuarios<>();
         this.validador = new ValidadorDatos();
-        this.inventario = new HashMap<>();
-        cargarDatosDesdeArchivos();
+        if (cargarDatos) {
+            cargarDatosDesdeArchivos();
+        }
     }
 
     private void cargarDatosDesdeArchivos() {
-        cargarComicsDesdeCSV(COMICS_CSV);
-        cargarUsuariosDesdeTxt(USUARIOS_TXT);
-        cargarReservasDesdeTxt(RESERVAS_TXT);
-        actualizarInventarioEnMemoria();
-    }
-
-    // Lectura de .csv no incluye header
-
-    private void cargarComicsDesdeCSV(String archivo) {
-        try (BufferedReader br = new BufferedReader(new FileReader(archivo))) {
-            String linea;
-            br.readLine(); // Salta la cabecera
-
-            while ((linea = br.readLine()) != null) {
-                // Formato: tipo,codigo,nombre,autor,cantidad,fechaLlegada,precio
-                String[] partes = linea.split(",");
-                if (partes.length >= 7) {
-                    String tipo = partes[0];
-                    String codigo = partes[1];
-                    String nombre = partes[2];
-                    String autor = partes[3];
-                    int cantidad = Integer.parseInt(partes[4]);
-                    LocalDate fecha = partes[5].equals("null") ? null : LocalDate.parse(partes[5]);
-                    double precio = Double.parseDouble(partes[6]);
-                    Comic c = new Comic(codigo, tipo, nombre, autor, cantidad, fecha, precio);
-                    comics.add(c);
-                    inventario.put(codigo, c);
-                    if (fecha != null) fechasLanzamiento.add(fecha);
-
-                    // Actualiza el contador de códigos
-                    try {
-                        int num = Integer.parseInt(codigo);
-                        if (num > ultimoCodigoProducto) ultimoCodigoProducto = num;
-                    } catch (NumberFormatException e) {
-                        // Si algún código no es numérico lo ignora
+        reservasCargadas = new HashMap<>();
+        cortesPorCodigo = new HashMap<>();
+        long inicio = System.nanoTime();
+        InstantaneaSistema instantanea = leerInstantaneaValida();
+        // Siempre se lee, aunque sea para descartar una cola cortada antes de volver a agregar
+        CambiosInventario.Contenido cambios = leerCambiosInventario();
+        if (instantanea != null) {
+            // Solo se lee lo que se agregó a los archivos de texto después de la instantánea.
+            // La instantánea ya incluye el catálogo completo, así que el registro de cambios no se aplica.
+            aplicarInstantanea(instantanea);
+            metricas.registrar(Operacion.CARGAR_INSTANTANEA, inicio, false);
+            corteCarga = new CambiosInventario.Corte(instantanea.getLsn(), instantanea.getBytesReservas());
+            cargarUsuariosDesdeTxt(instantanea.getBytesUsuarios());
+            cargarReservasDesdeTxt(instantanea.getBytesReservas());
+        } else {
+            cargarComicsDesdeCSV(rutaDatos(COMICS_CSV));
+            aplicarCambiosInventario(cambios);
+            cargarUsuariosDesdeTxt();
+            cargarReservasDesdeTxt();
+        }
+        abrirBitacora();
+        reservasCargadas = null;
+        cortesPorCodigo = null;
+        corteCarga = null;
+    }
+
+    // Registro de cambios del inventario
+
+    // Retorna null si no hay registro o no corresponde al comics.csv actual
+    private CambiosInventario.Contenido leerCambiosInventario() {
+        try {
+            CambiosInventario.Contenido contenido = cambiosInventario.leer(new File(directorioDatos, COMICS_CSV));
+            if (contenido == null && cambiosInventario.existe()) {
+                System.out.println("AVISO. comics.csv no corresponde al registro de cambios del inventario, se usará tal cual.");
+            }
+            baseInventarioVigente = contenido != null;
+            return contenido;
+        } catch (IOException e) {
+            informarError("No se pudo leer el registro de cambios del inventario: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Aplica sobre lo cargado de comics.csv los bloques guardados después de él, en orden
+    private void aplicarCambiosInventario(CambiosInventario.Contenido contenido) {
+        if (contenido == null) {
+            // comics.csv original: su stock no incluye nada de la bitácora ni de reservas.txt
+            corteCarga = SIN_CORTE;
+            return;
+        }
+        corteCarga = contenido.getBase();
+        ultimoCodigoProducto = Math.max(ultimoCodigoProducto, contenido.getUltimoCodigo());
+        for (CambiosInventario.Bloque bloque : contenido.getBloques()) {
+            for (Comic guardado : bloque.getModificados()) {
+                int fila = inventario.fila(guardado.getCodigo());
+                if (fila >= 0) {
+                    // Solo el stock cambia después de creado el producto
+                    inventario.asignarCantidad(fila, guardado.getCantidadDisponible());
+                } else {
+                    inventario.agregar(guardado);
+                    indexarComic(guardado);
+                }
+                cortesPorCodigo.put(guardado.getCodigo(), bloque.getCorte());
+            }
+            for (String codigo : bloque.getEliminados()) {
+                Comic eliminado = inventario.quitar(codigo);
+                if (eliminado != null) {
+                    desindexarComic(eliminado);
+                }
+                cortesPorCodigo.put(codigo, bloque.getCorte());
+            }
+            ultimoCodigoProducto = Math.max(ultimoCodigoProducto, bloque.getUltimoCodigo());
+        }
+    }
+
+    // Corte del stock cargado de un cómic: las operaciones hasta ahí ya están incluidas
+    private CambiosInventario.Corte corteDe(String codigo) {
+        CambiosInventario.Corte corte = cortesPorCodigo != null ? cortesPorCodigo.get(codigo) : null;
+        if (corte != null) return corte;
+        return corteCarga != null ? corteCarga : SIN_CORTE;
+    }
+
+    // Hasta dónde llegan ahora la bitácora y reservas.txt. Debe llamarse con el estado detenido.
+    private CambiosInventario.Corte corteActual() {
+        escritorArchivos.vaciar();
+        return new CambiosInventario.Corte(bitacora != null ? bitacora.getUltimoLsn() : 0,
+                registroReservas.largo());
+    }
+
+    /**
+     * Guarda en el registro de cambios solo los cómics que cambiaron (stock, nuevos o eliminados)
+     * desde el guardado anterior: cuesta O(cambios), no O(catálogo). Las filas se copian con el
+     * estado detenido, como en la instantánea, y se escriben a disco después. Retorna cuántos guardó.
+     */
+    public int guardarCambiosInventario() throws IOException {
+        return medir(Operacion.GUARDAR_CAMBIOS_INVENTARIO, this::escribirCambiosInventario);
+    }
+
+    private int escribirCambiosInventario() throws IOException {
+        synchronized (bloqueoGuardadoInventario) {
+            List<String> codigos;
+            CambiosInventario.Bloque bloque;
+            bloqueoEstado.writeLock().lock();
+            try {
+                if (codigosModificados.isEmpty()) return 0;
+                codigos = new ArrayList<>(codigosModificados);
+                codigosModificados.clear();
+                List<Comic> modificados = new ArrayList<>();
+                List<String> eliminados = new ArrayList<>();
+                for (String codigo : codigos) {
+                    Comic c = inventario.get(codigo);
+                    if (c == null) {
+                        eliminados.add(codigo);
+                    } else {
+                        // Copia suelta: la fila puede seguir cambiando mientras se escribe
+                        modificados.add(new Comic(c.getCodigo(), c.getTipoProducto(), c.getNombre(), c.getAutorOFabricante(),
+                                c.getCantidadDisponible(), c.getFechaLlegada(), c.getPrecio()));
+                    }
+                }
+                bloque = new CambiosInventario.Bloque(corteActual(), ultimoCodigoProducto, modificados, eliminados);
+            } finally {
+                bloqueoEstado.writeLock().unlock();
+            }
+            try {
+                if (!baseInventarioVigente) {
+                    // El comics.csv actual se cargó tal cual: su stock no incluye nada de la bitácora
+                    File csv = new File(directorioDatos, COMICS_CSV);
+                    cambiosInventario.reiniciar(csv.length(), csv.lastModified(), SIN_CORTE, 0);
+                    baseInventarioVigente = true;
+                }
+                cambiosInventario.agregarBloque(bloque);
+            } catch (IOException e) {
+                codigosModificados.addAll(codigos);
+                throw e;
+            }
+            return codigos.size();
+        }
+    }
+
+    /**
+     * Reescribe comics.csv con el inventario completo y deja el registro de cambios vacío.
+     * Se escribe en un temporal que luego se renombra, así comics.csv nunca queda a medias.
+     * Antes del renombre se anota en el registro la base nueva: si se corta la luz entre medio,
+     * al arrancar se reconoce cuál de los dos comics.csv quedó y se aplica lo que corresponde.
+     * Es O(catálogo), por eso se hace de vez en cuando y no en cada guardado.
+     * Si comics.csv tiene filas que la carga descarta (tipo desconocido, código repetido...) no se
+     * fusiona y se lanza IllegalStateException: el archivo reescrito las perdería. Mientras tanto
+     * los cambios siguen quedando en el registro de cambios.
+     */
+    public void fusionarInventario() throws IOException {
+        medir(Operacion.FUSIONAR_INVENTARIO, () -> {
+            reescribirInventario();
+            return null;
+        });
+    }
+
+    private void reescribirInventario() throws IOException {
+        synchronized (bloqueoGuardadoInventario) {
+            int rechazadas = filasRechazadas(new File(directorioDatos, COMICS_CSV));
+            if (rechazadas > 0) {
+                throw new IllegalStateException(COMICS_CSV + " tiene " + rechazadas
+                        + " filas que no se cargaron; corríjalas antes de fusionar para no perderlas.");
+            }
+            int[] filas;
+            int[] stock;
+            CambiosInventario.Corte corte;
+            int ultimoCodigo;
+            List<String> codigos;
+            bloqueoEstado.writeLock().lock();
+            try {
+                // Solo se copian las filas y el stock; los demás datos de una fila no cambian
+                filas = new int[inventario.tamano()];
+                stock = new int[filas.length];
+                int n = 0;
+                for (int f = 0, total = inventario.filas(); f < total; f++) {
+                    if (!inventario.activa(f)) continue;
+                    filas[n] = f;
+                    stock[n++] = inventario.cantidad(f);
+                }
+                corte = corteActual();
+                ultimoCodigo = ultimoCodigoProducto;
+                codigos = new ArrayList<>(codigosModificados);
+                codigosModificados.clear();
+            } finally {
+                bloqueoEstado.writeLock().unlock();
+            }
+            File csv = new File(directorioDatos, COMICS_CSV);
+            File temporal = new File(directorioDatos, COMICS_CSV + ".tmp");
+            try {
+                escribirCSV(temporal, inventario, filas, stock);
+                cambiosInventario.agregarBase(temporal.length(), temporal.lastModified(), corte, ultimoCodigo);
+                Files.move(temporal.toPath(), csv.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                cambiosInventario.reiniciar(csv.length(), csv.lastModified(), corte, ultimoCodigo);
+                baseInventarioVigente = true;
+                revisado(csv, 0);
+            } catch (IOException e) {
+                codigosModificados.addAll(codigos);
+                throw e;
+            }
+        }
+        // La instantánea guarda la firma de comics.csv: se renueva para que siga sirviendo al arrancar
+        if (new File(directorioDatos, INSTANTANEA_BIN).exists()) {
+            guardarInstantanea();
+        }
+    }
+
+    /**
+     * Filas de comics.csv que una carga descartaría, contando los códigos repetidos (se queda el
+     * primero). Se lee el archivo solo si cambió desde la última revisión: al arrancar desde la
+     * instantánea no se cargó, y después de una fusión es el que se escribió.
+     */
+    private int filasRechazadas(File csv) throws IOException {
+        if (!csv.exists()) return 0;
+        if (!firmaCsv(csv).equals(firmaCsvRevisado)) {
+            CargadorCatalogoCSV.Resultado resultado = new CargadorCatalogoCSV().cargar(csv);
+            Set<String> codigos = new HashSet<>();
+            int repetidos = 0;
+            for (Comic c : resultado.getComics()) {
+                if (!codigos.add(c.getCodigo())) repetidos++;
+            }
+            revisado(csv, resultado.getErrores().size() + repetidos);
+        }
+        return filasRechazadasCsv;
+    }
+
+    private void revisado(File csv, int rechazadas) {
+        firmaCsvRevisado = firmaCsv(csv);
+        filasRechazadasCsv = rechazadas;
+    }
+
+    private static String firmaCsv(File csv) {
+        return csv.length() + "/" + csv.lastModified();
+    }
+
+    private static void escribirCSV(File archivo, InventarioColumnar inventario, int[] filas, int[] stock) throws IOException {
+        try (FileOutputStream salida = new FileOutputStream(archivo);
+             BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8), 1 << 16)) {
+            bw.write("tipo,codigo,nombre,autor,cantidad,fechaLlegada,precio");
+            bw.newLine();
+            for (int i = 0; i < filas.length; i++) {
+                int f = filas[i];
+                int dia = inventario.diaLlegada(f);
+                bw.write(campoCSV(inventario.tipo(f).getTexto()) + "," + campoCSV(inventario.codigo(f)) + ","
+                        + campoCSV(inventario.nombre(f)) + "," + campoCSV(inventario.autor(f)) + "," + stock[i] + ","
+                        + (dia != Comic.Almacen.SIN_FECHA ? LocalDate.ofEpochDay(dia) : "null") + "," + inventario.precio(f));
+                bw.newLine();
+            }
+            bw.flush();
+            salida.getFD().sync();
+        }
+    }
+
+    // Guarda los cambios cada cierto intervalo y fusiona cuando el registro crece demasiado
+    public synchronized void programarGuardadoInventario(long intervaloSegundos) {
+        if (programadorInventario != null) {
+            programadorInventario.shutdownNow();
+        }
+        programadorInventario = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "guardado-inventario");
+            t.setDaemon(true);
+            return t;
+        });
+        programadorInventario.scheduleWithFixedDelay(this::autoguardarInventario,
+                intervaloSegundos, intervaloSegundos, TimeUnit.SECONDS);
+    }
+
+    private void autoguardarInventario() {
+        try {
+            guardarCambiosInventario();
+            long limite = Math.max(MIN_BYTES_FUSION, new File(directorioDatos, COMICS_CSV).length() / FRACCION_FUSION);
+            if (cambiosInventario.largo() > limite) {
+                fusionarInventario();
+            }
+        } catch (Exception e) {
+            informarError("No se pudo guardar el inventario: " + e.getMessage());
+        }
+    }
+
+    // Instantánea binaria
+
+    // Retorna null si no hay instantánea o no sirve (corrupta, otra versión o archivos cambiados)
+    private InstantaneaSistema leerInstantaneaValida() {
+        File archivo = new File(directorioDatos, INSTANTANEA_BIN);
+        if (!archivo.exists()) return null;
+        try {
+            InstantaneaSistema instantanea = InstantaneaSistema.leer(archivo);
+            if (!instantanea.coincideCsv(new File(directorioDatos, COMICS_CSV))) {
+                System.out.println("AVISO. comics.csv cambió desde la última instantánea, se hará la carga completa.");
+                return null;
+            }
+            if (registroUsuarios.largo() < instantanea.getBytesUsuarios()
+                    || registroReservas.largo() < instantanea.getBytesReservas()) {
+                System.out.println("AVISO. Los archivos de texto no calzan con la instantánea, se hará la carga completa.");
+                return null;
+            }
+            return instantanea;
+        } catch (Exception e) {
+            System.out.println("AVISO. Instantánea inválida (" + e.getMessage() + "), se hará la carga completa.");
+            return null;
+        }
+    }
+
+    private void aplicarInstantanea(InstantaneaSistema instantanea) {
+        inventario.agregarTodos(instantanea.getCatalogo());
+        indexarComics(instantanea.getCatalogo());
+        List<String> emails = new ArrayList<>(instantanea.getUsuarios().size());
+        for (Usuario u : instantanea.getUsuarios()) {
+            incorporarUsuario(u);
+            emails.add(u.getEmail());
+            rankingUsuarios.actualizar(u);
+            agendaEntregas.agregarTodas(u);
+        }
+        emailsRegistrados.agregarTodos(emails);
+        productosReservados.agregarTodos(instantanea.getProductosReservados());
+        ultimoCodigoProducto = instantanea.getUltimoCodigo();
+        lsnInstantanea = instantanea.getLsn();
+    }
+
+    /**
+     * Guarda una instantánea binaria de todo el estado. Pausa las operaciones solo mientras
+     * se codifica en memoria; la escritura a disco ocurre después, sin bloquear las ventas.
+     */
+    public void guardarInstantanea() {
+        long inicio = System.nanoTime();
+        byte[] datos;
+        long lsn;
+        long byteBitacora;
+        bloqueoEstado.writeLock().lock();
+        try {
+            datos = instantaneaActual().codificar();
+            // Con el estado detenido no hay lotes a medio escribir: ahí termina el último registro incluido
+            lsn = bitacora != null ? bitacora.getUltimoLsn() : 0;
+            byteBitacora = bitacora != null ? bitacora.getBytesDurables() : 0;
+        } catch (Exception e) {
+            informarError("No se pudo generar la instantánea: " + e.getMessage());
+            metricas.registrar(Operacion.GUARDAR_INSTANTANEA, inicio, true);
+            return;
+        } finally {
+            bloqueoEstado.writeLock().unlock();
+        }
+        boolean fallo = false;
+        try {
+            InstantaneaSistema.escribir(datos, new File(directorioDatos, INSTANTANEA_BIN));
+        } catch (Exception e) {
+            informarError("No se pudo guardar la instantánea: " + e.getMessage());
+            fallo = true;
+        }
+        metricas.registrar(Operacion.GUARDAR_INSTANTANEA, inicio, fallo);
+        // Lo que la instantánea ya incluye no hace falta reproducirlo al arrancar
+        if (!fallo && bitacora != null) {
+            try {
+                bitacora.recortar(lsn, byteBitacora);
+            } catch (IOException e) {
+                informarError("No se pudo recortar la bitácora de operaciones: " + e.getMessage());
+            }
+        }
+    }
+
+    // El estado completo tal como está. Debe llamarse con el estado detenido.
+    private InstantaneaSistema instantaneaActual() {
+        // Los largos de los archivos de texto deben incluir todo lo que ya está en memoria
+        escritorArchivos.vaciar();
+        File csv = new File(directorioDatos, COMICS_CSV);
+        return new InstantaneaSistema(
+                bitacora != null ? bitacora.getUltimoLsn() : 0,
+                ultimoCodigoProducto,
+                csv.length(),
+                csv.lastModified(),
+                registroUsuarios.largo(),
+                registroReservas.largo(),
+                inventario.comics(),
+                padronUsuarios.foto(),
+                new ArrayList<>(productosReservados.foto()));
+    }
+
+    // Guarda instantáneas cada cierto intervalo en un hilo de fondo
+    public synchronized void programarInstantaneas(long intervaloMinutos) {
+        if (programadorInstantaneas != null) {
+            programadorInstantaneas.shutdownNow();
+        }
+        programadorInstantaneas = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "instantaneas");
+            t.setDaemon(true);
+            return t;
+        });
+        programadorInstantaneas.scheduleWithFixedDelay(this::guardarInstantanea,
+                intervaloMinutos, intervaloMinutos, TimeUnit.MINUTES);
+    }
+
+    // Reproduce la bitácora sobre lo cargado desde texto y la deja lista para escribir
+    private void abrirBitacora() {
+        long inicio = System.nanoTime();
+        boolean fallo = false;
+        bitacora = new BitacoraOperaciones(new File(directorioDatos, BITACORA_LOG), VENTANA_DURABILIDAD_MICROS);
+        try {
+            bitacora.abrir(lsnInstantanea, this::reproducirRegistro);
+        } catch (Exception e) {
+            informarError("No se pudo abrir la bitácora de operaciones: " + e.getMessage());
+            bitacora = null;
+            fallo = true;
+        }
+        metricas.registrar(Operacion.REPRODUCIR_BITACORA, inicio, fallo);
+    }
+
+    // Aplica un registro de la bitácora. El stock cargado incluye las operaciones hasta el corte de cada cómic.
+    private void reproducirRegistro(BitacoraOperaciones.Registro r) {
+        // Lo anterior a la instantánea ya está incluido en ella
+        if (r.getLsn() <= lsnInstantanea) return;
+        switch (r.getTipo()) {
+            case BitacoraOperaciones.REGISTRO: {
+                // Formato: rut|nombre|email|celular. Puede faltar en usuarios.txt si se cortó la luz
+                if (r.cantidadCampos() < 4 || usuarios.containsKey(r.getCampo(0))) return;
+                Usuario u = new Usuario(r.getCampo(0), r.getCampo(1), r.getCampo(2), r.getCampo(3));
+                incorporarUsuario(u);
+                emailsRegistrados.agregar(u.getEmail());
+                rankingUsuarios.actualizar(u);
+                break;
+            }
+            case BitacoraOperaciones.COMPRA:
+            case BitacoraOperaciones.RESERVA: {
+                // Formato: rut|codigo|cantidad, y en compras el instante en segundos (no está en bitácoras antiguas)
+                if (r.cantidadCampos() < 3) return;
+                Usuario u = usuarios.get(r.getCampo(0));
+                Comic c = inventario.get(r.getCampo(1));
+                int cantidad = Integer.parseInt(r.getCampo(2));
+                if (u == null || c == null) return;
+                if (r.getTipo() == BitacoraOperaciones.COMPRA) {
+                    descontarAlReproducir(c, cantidad, r.getLsn());
+                    u.agregarCompra(c, cantidad, r.cantidadCampos() > 3 ? Long.parseLong(r.getCampo(3)) : 0);
+                    rankingUsuarios.actualizar(u);
+                } else {
+                    productosReservados.agregar(c.getCodigo());
+                    // Si la reserva ya venía en reservas.txt, ya está en el historial y en el stock
+                    String clave = r.getCampo(0) + "|" + r.getCampo(1) + "|" + cantidad;
+                    Integer pendientes = reservasCargadas != null ? reservasCargadas.get(clave) : null;
+                    if (pendientes != null && pendientes > 0) {
+                        reservasCargadas.put(clave, pendientes - 1);
+                    } else {
+                        descontarAlReproducir(c, cantidad, r.getLsn());
+                        agendaEntregas.agregar(u, u.agregarReserva(c, cantidad), r.getLsn());
                     }
                 }
+                break;
             }
+            case BitacoraOperaciones.COMPRA_LOTE: {
+                // Formato: rut|codigo1|cantidad1|codigo2|cantidad2...|instante. El instante puede faltar.
+                Usuario u = usuarios.get(r.getCampo(0));
+                if (u == null) return;
+                long segundos = r.cantidadCampos() % 2 == 0 ? Long.parseLong(r.getCampo(r.cantidadCampos() - 1)) : 0;
+                List<ReservaCompra> compras = new ArrayList<>();
+                for (int i = 1; i + 1 < r.cantidadCampos(); i += 2) {
+                    Comic c = inventario.get(r.getCampo(i));
+                    if (c == null) continue;
+                    int cantidad = Integer.parseInt(r.getCampo(i + 1));
+                    descontarAlReproducir(c, cantidad, r.getLsn());
+                    compras.add(new ReservaCompra(c, cantidad));
+                }
+                u.agregarCompras(compras, segundos);
+                rankingUsuarios.actualizar(u);
+                break;
+            }
+            case BitacoraOperaciones.ENTREGA:
+                // Formato: fecha|instante. Entrega lo que estaba pendiente hasta ese día en ese momento del log:
+                // las reservas de reservas.txt con un LSN posterior todavía no se habían hecho
+                entregar(agendaEntregas.retirarHasta(LocalDate.parse(r.getCampo(0)), r.getLsn()),
+                        r.cantidadCampos() > 1 ? Long.parseLong(r.getCampo(1)) : 0);
+                break;
+            case BitacoraOperaciones.ALTA_COMIC: {
+                // Formato: codigo|tipo|nombre|autor|cantidad|fecha|precio
+                String codigo = r.getCampo(0);
+                if (r.cantidadCampos() < 7 || r.getLsn() <= corteDe(codigo).getLsn() || inventario.contiene(codigo)) return;
+                Comic c = new Comic(codigo, r.getCampo(1), r.getCampo(2), r.getCampo(3), Integer.parseInt(r.getCampo(4)),
+                        "null".equals(r.getCampo(5)) ? null : LocalDate.parse(r.getCampo(5)), Double.parseDouble(r.getCampo(6)));
+                inventario.agregar(c);
+                indexarComic(c);
+                codigosModificados.add(codigo);
+                try {
+                    ultimoCodigoProducto = Math.max(ultimoCodigoProducto, Integer.parseInt(codigo));
+                } catch (NumberFormatException e) {
+                    // Los códigos no numéricos no cuentan
+                }
+                break;
+            }
+            case BitacoraOperaciones.BAJA_COMIC: {
+                // Formato: codigo
+                String codigo = r.getCampo(0);
+                if (r.getLsn() <= corteDe(codigo).getLsn()) return;
+                quitarDelCatalogo(codigo);
+                codigosModificados.add(codigo);
+                break;
+            }
+            case BitacoraOperaciones.PUNTO_CONTROL:
+                // Marca de recorte: si llega acá, falta el tramo archivado que termina en ella
+                System.out.println("AVISO. Falta la bitácora archivada hasta el registro " + r.getLsn()
+                        + " y no hay instantánea que la cubra: las operaciones anteriores no se reproducen.");
+                break;
+            default:
+                System.out.println("AVISO. Registro desconocido en la bitácora: " + r.getTipo());
+        }
+    }
+
+    // Descuenta una operación reproducida si no está incluida ya en el stock cargado del cómic
+    private void descontarAlReproducir(Comic c, int cantidad, long lsn) {
+        if (lsn <= corteDe(c.getCodigo()).getLsn()) return;
+        c.setCantidadDisponible(c.getCantidadDisponible() - cantidad);
+        codigosModificados.add(c.getCodigo());
+    }
+
+    // Tarea de guardado medida, que puede fallar con IOException
+    private interface TareaMedida<T> {
+        T ejecutar() throws IOException;
+    }
+
+    // Ejecuta la tarea anotando en las métricas cuánto tardó y si falló
+    private <T> T medir(Operacion operacion, TareaMedida<T> tarea) throws IOException {
+        long inicio = System.nanoTime();
+        boolean fallo = false;
+        try {
+            return tarea.ejecutar();
+        } catch (Throwable e) {
+            fallo = true;
+            throw e;
+        } finally {
+            metricas.registrar(operacion, inicio, fallo);
+        }
+    }
+
+    // Los errores que no llegan a quien llamó quedan en consola y en las métricas
+    private void informarError(String mensaje) {
+        System.out.println("ERROR. " + mensaje);
+        metricas.registrarError(mensaje);
+    }
+
+    // Escribe en la bitácora, espera a que sea durable y retorna el LSN. Sin bitácora no hace nada y retorna 0.
+    // Toda operación que escribe pasa por acá antes de cambiar la memoria, así una réplica las rechaza sin dejar rastro.
+    private long registrarEnBitacora(char tipo, String... campos) {
+        verificarEscritura();
+        return bitacora != null ? bitacora.registrar(tipo, campos) : 0;
+    }
+
+    private void verificarEscritura() {
+        if (soloLectura) {
+            throw new IllegalStateException("Esta instancia es una réplica de solo lectura; las operaciones van al primario.");
+        }
+    }
+
+    // Replicación (ver ServidorReplicacion y ReplicaLectura)
+
+    public boolean esSoloLectura() {
+        return soloLectura;
+    }
+
+    /**
+     * Estado completo para una réplica que se conecta, con el byte de la bitácora hasta donde llega:
+     * lo que siga se le envía como registros. Pausa las operaciones mientras se codifica, igual que
+     * guardarInstantanea(); con el estado detenido no hay lotes a medio escribir en la bitácora.
+     */
+    ServidorReplicacion.Inicio inicioReplica() throws IOException {
+        bloqueoEstado.writeLock().lock();
+        try {
+            if (bitacora == null) {
+                throw new IllegalStateException("Sin bitácora de operaciones no hay qué replicar.");
+            }
+            return new ServidorReplicacion.Inicio(instantaneaActual().codificar(), bitacora.getBytesDurables(),
+                    cambiosSinBitacora.get());
+        } finally {
+            bloqueoEstado.writeLock().unlock();
+        }
+    }
+
+    BitacoraOperaciones getBitacora() {
+        return bitacora;
+    }
+
+    long getCambiosSinBitacora() {
+        return cambiosSinBitacora.get();
+    }
+
+    // Deja este sistema (creado vacío) como réplica con el estado recibido del primario
+    void iniciarReplica(InstantaneaSistema instantanea) {
+        soloLectura = true;
+        aplicarInstantanea(instantanea);
+    }
+
+    // Aplica un registro recibido del primario, por la misma vía que la reproducción al arrancar
+    void aplicarReplicado(BitacoraOperaciones.Registro r) {
+        bloqueoEstado.readLock().lock();
+        try {
+            reproducirRegistro(r);
+        } finally {
+            bloqueoEstado.readLock().unlock();
+        }
+    }
+
+    // Cierra la bitácora esperando que se escriba lo pendiente
+    public void cerrar() {
+        synchronized (this) {
+            if (programadorInstantaneas != null) {
+                programadorInstantaneas.shutdownNow();
+                programadorInstantaneas = null;
+            }
+            if (programadorEntregas != null) {
+                programadorEntregas.shutdownNow();
+                programadorEntregas = null;
+            }
+            if (programadorInventario != null) {
+                programadorInventario.shutdownNow();
+                programadorInventario = null;
+            }
+            if (programadorCompactacion != null) {
+                programadorCompactacion.shutdownNow();
+                programadorCompactacion = null;
+            }
+        }
+        // Lo pendiente se guarda para que el próximo arranque reproduzca menos bitácora.
+        // Un sistema que no cargó los archivos no tiene nada que guardar sobre ellos.
+        if (bitacora != null) {
+            try {
+                guardarCambiosInventario();
+            } catch (IOException e) {
+                informarError("No se pudieron guardar los cambios del inventario: " + e.getMessage());
+            }
+        }
+        try {
+            cambiosInventario.cerrar();
+        } catch (IOException e) {
+            // Lo escrito ya está en disco
+        }
+        escritorArchivos.cerrar();
+        if (bitacora != null) {
+            bitacora.cerrar();
+        }
+        metricas.retirar();
+    }
+
+    // Publica las métricas por JMX (se retiran al cerrar)
+    public void publicarMetricas() {
+        try {
+            metricas.publicar(directorioDatos.getAbsolutePath());
         } catch (Exception e) {
+            informarError("No se pudieron publicar las métricas por JMX: " + e.getMessage());
+        }
+    }
+
+    public MetricasSistema getMetricas() {
+        return metricas;
+    }
+
+    // Ruta de un archivo dentro de la carpeta de datos
+    String rutaDatos(String nombreArchivo) {
+        return new File(directorioDatos, nombreArchivo).getPath();
+    }
+
+    // Lectura de .csv no incluye header. Carga paralela desde el archivo mapeado en memoria.
+
+    void cargarComicsDesdeCSV(String archivo) {
+        File f = new File(archivo);
+        if (!f.exists()) {
             System.out.println("No se encontró archivo de cómics, se comenzará de cero.");
+            return;
+        }
+        long inicio = System.nanoTime();
+        CargadorCatalogoCSV.Resultado resultado;
+        try {
+            resultado = new CargadorCatalogoCSV().cargar(f);
+        } catch (Exception e) {
+            informarError("No se pudo leer el archivo de cómics: " + e.getMessage());
+            metricas.registrar(Operacion.CARGAR_COMICS, inicio, true);
+            return;
+        }
+        List<String> errores = new ArrayList<>(resultado.getErrores());
+        synchronized (bloqueoCatalogo) {
+            List<Comic> nuevos = new ArrayList<>(resultado.getComics().size());
+            for (Comic c : resultado.getComics()) {
+                if (inventario.contiene(c.getCodigo())) {
+                    errores.add("Código repetido " + c.getCodigo() + ", se mantiene el primero.");
+                    continue;
+                }
+                inventario.agregar(c);
+                nuevos.add(c);
+            }
+            indexarComics(nuevos);
+            // Actualiza el contador de códigos (los códigos no numéricos se ignoran)
+            if (resultado.getMayorCodigo() > ultimoCodigoProducto) {
+                ultimoCodigoProducto = resultado.getMayorCodigo();
+            }
         }
+        metricas.registrar(Operacion.CARGAR_COMICS, inicio, false);
+        revisado(f, errores.size());
+        informarFilasInvalidas(archivo, errores);
     }
 
-    private void cargarUsuariosDesdeTxt(String archivo) {
-        try (BufferedReader br = new BufferedReader(new FileReader(archivo))) {
-            String linea;
-            while ((linea = br.readLine()) != null) {
+    private static final int MAX_ERRORES_MOSTRADOS = 20;
+    private static final int MIN_INDEXADO_PARALELO = 100_000;
+
+    private void informarFilasInvalidas(String archivo, List<String> errores) {
+        if (errores.isEmpty()) return;
+        System.out.println("AVISO. Se omitieron " + errores.size() + " filas inválidas en " + archivo + ":");
+        for (int i = 0; i < Math.min(errores.size(), MAX_ERRORES_MOSTRADOS); i++) {
+            System.out.println("  " + errores.get(i));
+        }
+        if (errores.size() > MAX_ERRORES_MOSTRADOS) {
+            System.out.println("  ... y " + (errores.size() - MAX_ERRORES_MOSTRADOS) + " más.");
+        }
+    }
+
+    void cargarUsuariosDesdeTxt() {
+        cargarUsuariosDesdeTxt(0);
+    }
+
+    // Lee desde una posición lógica en adelante (0 = todo el registro)
+    void cargarUsuariosDesdeTxt(long desde) {
+        if (!existeRegistro(registroUsuarios)) {
+            System.out.println("No se encontró archivo de usuarios, se comenzará de cero.");
+            return;
+        }
+        long inicio = System.nanoTime();
+        boolean fallo = false;
+        try {
+            registroUsuarios.recorrer(desde, (linea, posicion) -> {
                 // Formato: rut|nombre|email|celular
                 String[] partes = linea.split("\\|");
                 if (partes.length >= 4) {
                     Usuario u = new Usuario(partes[0], partes[1], partes[2], partes[3]);
-                    usuarios.put(u.getRut(), u);
-                    emailsRegistrados.add(u.getEmail());
+                    incorporarUsuario(u);
+                    emailsRegistrados.agregar(u.getEmail());
+                    rankingUsuarios.actualizar(u);
                 }
-            }
+            });
         } catch (Exception e) {
-            System.out.println("No se encontró archivo de usuarios, se comenzará de cero.");
+            informarError("No se pudo leer el archivo de usuarios: " + e.getMessage());
+            fallo = true;
         }
+        metricas.registrar(Operacion.CARGAR_USUARIOS, inicio, fallo);
+    }
+
+    void cargarReservasDesdeTxt() {
+        cargarReservasDesdeTxt(0);
     }
 
-    private void cargarReservasDesdeTxt(String archivo) {
-        try (BufferedReader br = new BufferedReader(new FileReader(archivo))) {
-            String linea;
-            while ((linea = br.readLine()) != null) {
+    void cargarReservasDesdeTxt(long desde) {
+        if (!existeRegistro(registroReservas)) {
+            System.out.println("No se encontró archivo de reservas, se comenzará de cero.");
+            return;
+        }
+        long inicio = System.nanoTime();
+        boolean fallo = false;
+        try {
+            registroReservas.recorrer(desde, (linea, posicion) -> {
                 String[] partes = linea.split("\\|");
                 if (partes.length >= 3) {
                     String rut = partes[0];
                     String codigoComic = partes[1];
                     int cantidad = Integer.parseInt(partes[2]);
-                    productosReservados.add(codigoComic);
+                    // El LSN de la reserva falta en las líneas escritas antes de guardarlo
+                    long lsn = partes.length > 3 ? Long.parseLong(partes[3]) : 0;
+                    productosReservados.agregar(codigoComic);
+                    if (reservasCargadas != null) {
+                        reservasCargadas.merge(rut + "|" + codigoComic + "|" + cantidad, 1, Integer::sum);
+                    }
                     Usuario u = usuarios.get(rut);
                     Comic c = inventario.get(codigoComic);
                     if (u != null && c != null) {
-                        u.agregarReserva(c, cantidad);
+                        // El stock guardado solo descuenta las reservas anteriores a su corte
+                        if (posicion >= corteDe(codigoComic).getBytesReservas()) {
+                            c.setCantidadDisponible(c.getCantidadDisponible() - cantidad);
+                            codigosModificados.add(codigoComic);
+                        }
+                        agendaEntregas.agregar(u, u.agregarReserva(c, cantidad), lsn);
                     }
                 }
-            }
+            });
         } catch (Exception e) {
-            System.out.println("No se encontró archivo de reservas, se comenzará de cero.");
+            informarError("No se pudo leer el archivo de reservas: " + e.getMessage());
+            fallo = true;
         }
+        metricas.registrar(Operacion.CARGAR_RESERVAS, inicio, fallo);
+    }
+
+    private static boolean existeRegistro(RegistroSegmentado registro) {
+        return registro.getActivo().exists() || registro.cantidadSegmentos() > 0;
     }
 
-    private void actualizarInventarioEnMemoria() {
-        for (Comic c : comics) {
-            inventario.put(c.getCodigo(), c);
+    // Compactación de usuarios.txt y reservas.txt
+
+    /**
+     * Sella los segmentos activos de usuarios.txt y reservas.txt que pasaron el tamaño de segmento y
+     * reescribe los sellados solo con lo vivo: se descartan reservas de productos eliminados o de
+     * usuarios que no existen, líneas mal formadas y registros de usuario reemplazados por uno posterior.
+     * Las reservas ya entregadas se conservan: son el historial de compras de la carga completa.
+     * Retorna cuántas líneas se descartaron.
+     */
+    public int compactarRegistros() throws IOException {
+        return compactarRegistros(TAMANO_SEGMENTO);
+    }
+
+    // Con tamanoMinimo 0 se sella todo lo que haya en los activos (usado por los benchmarks)
+    int compactarRegistros(long tamanoMinimo) throws IOException {
+        return medir(Operacion.COMPACTAR_REGISTROS, () -> compactarSegmentos(tamanoMinimo));
+    }
+
+    private int compactarSegmentos(long tamanoMinimo) throws IOException {
+        sellarSiCorresponde(USUARIOS_TXT, registroUsuarios, tamanoMinimo);
+        sellarSiCorresponde(RESERVAS_TXT, registroReservas, tamanoMinimo);
+        int descartadas = registroReservas.compactar(this::reservaViva, null);
+        descartadas += registroUsuarios.compactar(this::usuarioVivo, linea -> linea.substring(0, linea.indexOf('|')));
+        return descartadas;
+    }
+
+    private void sellarSiCorresponde(String nombre, RegistroSegmentado registro, long tamanoMinimo) throws IOException {
+        if (registro.getActivo().length() < Math.max(1, tamanoMinimo)) return;
+        // El escritor cierra el archivo antes de renombrarlo; lo que llegue después va a un activo nuevo
+        escritorArchivos.conArchivoCerrado(nombre, registro::sellar);
+    }
+
+    // Un producto eliminado no vuelve (los códigos no se reutilizan), así que su reserva ya no sirve
+    private boolean reservaViva(String linea) {
+        String[] partes = linea.split("\\|");
+        if (partes.length < 3) return false;
+        try {
+            Integer.parseInt(partes[2]);
+        } catch (NumberFormatException e) {
+            return false;
         }
+        return usuarios.containsKey(partes[0]) && inventario.contiene(partes[1]);
+    }
+
+    // Sigue vigente si es la versión del usuario que quedó en memoria
+    private boolean usuarioVivo(String linea) {
+        String[] partes = linea.split("\\|");
+        if (partes.length < 4) return false;
+        Usuario u = usuarios.get(partes[0]);
+        return u != null && u.getEmail().equals(partes[2]);
+    }
+
+    // Compacta cada cierto intervalo en un hilo de fondo
+    public synchronized void programarCompactacion(long intervaloMinutos) {
+        if (programadorCompactacion != null) {
+            programadorCompactacion.shutdownNow();
+        }
+        programadorCompactacion = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "compactacion-registros");
+            t.setDaemon(true);
+            return t;
+        });
+        programadorCompactacion.scheduleWithFixedDelay(() -> {
+            try {
+                compactarRegistros();
+            } catch (Exception e) {
+                informarError("No se pudieron compactar los registros: " + e.getMessage());
+            }
+        }, intervaloMinutos, intervaloMinutos, TimeUnit.MINUTES);
     }
 
     // Gestión de Usuarios
 
-    public void registrarUsuario(String rut, String nombre, String email, String celular)
-            throws EmailYaRegistradoException, RutInvalidoException, IllegalArgumentException {
-        validador.validarRut(rut);
-        validador.validarNoVacio(nombre, "nombre");
-        validador.validarNoVacio(email, "email");
-        validador.validarNoVacio(celular, "celular");
-        validador.validarCelular(celular);
-        validador.validarEmailUnico(email, emailsRegistrados);
+    // Retorna cuando el registro ya es durable en la bitácora; el futuro avisa cuando quedó en usuarios.txt
+    public CompletableFuture<Void> registrarUsuario(String rut, String nombre, String email, String celular)
+            throws EmailYaRegistradoException, RutInvalidoException, RutYaRegistradoException, IllegalArgumentException {
+        long inicio = System.nanoTime();
+        boolean fallo = false;
+        boolean rutTomado = false;
+        bloqueoEstado.readLock().lock();
+        try {
+            validador.validarRut(rut);
+            validador.validarNoVacio(nombre, "nombre");
+            validador.validarNoVacio(email, "email");
+            validador.validarNoVacio(celular, "celular");
+            validador.validarSinSeparadores(rut, "rut");
+            validador.validarSinSeparadores(nombre, "nombre");
+            validador.validarSinSeparadores(email, "email");
+            validador.validarSinSeparadores(celular, "celular");
+            validador.validarCelular(celular);
+            validador.validarEmailUnico(email, emailsRegistrados.foto());
+
+            nombre = validador.formatearNombre(nombre);
 
-        nombre = validador.formatearNombre(nombre);
+            // Primero se toma el RUT y después se mira si existe: un registro que terminó entre medio ya está en el mapa
+            if (!rutsEnRegistro.add(rut)) throw new RutYaRegistradoException(rut);
+            rutTomado = true;
+            if (usuarios.containsKey(rut)) throw new RutYaRegistradoException(rut);
 
-        Usuario usuario = new Usuario(rut, nombre, email, celular);
-        usuarios.put(rut, usuario);
-        emailsRegistrados.add(email);
+            // agregar() es atómico: si otra caja registró el mismo email entre medio, se rechaza
+            if (!emailsRegistrados.agregar(email)) {
+                throw new EmailYaRegistradoException("El email '" + email + "' ya está registrado.");
+            }
+            try {
+                registrarEnBitacora(BitacoraOperaciones.REGISTRO, rut, nombre, email, celular);
+            } catch (IllegalStateException e) {
+                emailsRegistrados.quitar(email);
+                throw e;
+            }
+            Usuario usuario = new Usuario(rut, nombre, email, celular);
+            incorporarUsuario(usuario);
+            rankingUsuarios.actualizar(usuario);
 
-        guardarUsuarioEnArchivo(usuario);
+            return guardarUsuarioEnArchivo(usuario);
+        } catch (Throwable e) {
+            fallo = true;
+            throw e;
+        } finally {
+            if (rutTomado) rutsEnRegistro.remove(rut);
+            bloqueoEstado.readLock().unlock();
+            metricas.registrar(Operacion.REGISTRAR_USUARIO, inicio, fallo);
+        }
     }
 
-    private void guardarUsuarioEnArchivo(Usuario usuario) {
-        try (PrintWriter pw = new PrintWriter(new FileWriter(USUARIOS_TXT, true))) {
-            pw.println(usuario.getRut() + "|" + usuario.getNombre() + "|" + usuario.getEmail() + "|" + usuario.getCelular());
-        } catch (Exception e) {
-            System.out.println("ERROR. No se pudo guardar el usuario en archivo.");
+    private CompletableFuture<Void> guardarUsuarioEnArchivo(Usuario usuario) {
+        return contarFallo(escritorArchivos.agregarLinea(USUARIOS_TXT,
+                usuario.getRut() + "|" + usuario.getNombre() + "|" + usuario.getEmail() + "|" + usuario.getCelular()));
+    }
+
+    // Una línea que no llegó al archivo de texto cuenta como error de fondo (quien llamó igual recibe el fallo)
+    private CompletableFuture<Void> contarFallo(CompletableFuture<Void> escritura) {
+        return escritura.whenComplete((r, e) -> {
+            if (e != null) metricas.registrarError(e.getMessage());
+        });
+    }
+
+    /**
+     * Importa usuarios en masa desde un archivo rut|nombre|email|celular. La validación corre en
+     * paralelo; acá se descartan RUT y emails repetidos (contra los ya registrados y dentro del
+     * mismo archivo), se agregan todos los aceptados a usuarios.txt en una sola escritura con un
+     * fsync, y recién entonces se registran en memoria. Si la escritura falla no se importa nada.
+     * Corre como tarea exclusiva del escritor de archivos, después de los registros ya encolados.
+     */
+    public ImportadorUsuarios.Resultado importarUsuarios(File archivo) throws IOException {
+        long inicio = System.nanoTime();
+        boolean fallo = false;
+        bloqueoEstado.readLock().lock();
+        try {
+            verificarEscritura();
+            List<Usuario> aceptados = new ArrayList<>();
+            ImportadorUsuarios.Resultado resultado = escritorArchivos.ejecutarExclusivo(USUARIOS_TXT,
+                    canal -> importarUsuariosEn(canal, archivo, aceptados));
+            for (Usuario u : aceptados) {
+                incorporarUsuario(u);
+                rankingUsuarios.actualizar(u);
+            }
+            if (!aceptados.isEmpty()) cambiosSinBitacora.incrementAndGet();
+            return resultado;
+        } catch (Throwable e) {
+            fallo = true;
+            throw e;
+        } finally {
+            bloqueoEstado.readLock().unlock();
+            metricas.registrar(Operacion.IMPORTAR_USUARIOS, inicio, fallo);
+        }
+    }
+
+    private ImportadorUsuarios.Resultado importarUsuariosEn(FileChannel canal, File archivo, List<Usuario> aceptados)
+            throws IOException {
+        Set<String> rutsDelArchivo = new HashSet<>();
+        long largoOriginal = canal.size();
+        BufferedWriter salida = new BufferedWriter(
+                new OutputStreamWriter(Channels.newOutputStream(canal), StandardCharsets.UTF_8), 1 << 16);
+        ImportadorUsuarios.Resultado resultado;
+        try {
+            resultado = new ImportadorUsuarios(validador).importar(archivo, u -> {
+                if (usuarios.containsKey(u.getRut()) || !rutsDelArchivo.add(u.getRut())) {
+                    return "RUT ya registrado.";
+                }
+                // agregar() es atómico también frente a registros hechos desde otra caja
+                if (!emailsRegistrados.agregar(u.getEmail())) {
+                    return "El email '" + u.getEmail() + "' ya está registrado.";
+                }
+                aceptados.add(u);
+                try {
+                    salida.write(u.getRut() + "|" + u.getNombre() + "|" + u.getEmail() + "|" + u.getCelular());
+                    salida.newLine();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return null;
+            });
+            salida.flush();
+            canal.force(false);
+        } catch (UncheckedIOException e) {
+            deshacerImportacion(canal, largoOriginal, aceptados);
+            throw e.getCause();
+        } catch (IOException | RuntimeException e) {
+            deshacerImportacion(canal, largoOriginal, aceptados);
+            throw e;
+        }
+        return resultado;
+    }
+
+    // Nada queda a medias: se corta usuarios.txt al largo original y se liberan los emails tomados
+    private void deshacerImportacion(FileChannel canal, long largoOriginal, List<Usuario> aceptados) throws IOException {
+        canal.truncate(largoOriginal);
+        for (Usuario u : aceptados) {
+            emailsRegistrados.quitar(u.getEmail());
+        }
+        aceptados.clear();
+    }
+
+    // Deja al usuario en el mapa por RUT y en el padrón. Un RUT repetido reemplaza al anterior en ambos.
+    private void incorporarUsuario(Usuario u) {
+        synchronized (padronUsuarios) {
+            Usuario anterior = usuarios.put(u.getRut(), u);
+            if (anterior == null || !padronUsuarios.reemplazar(anterior, u)) {
+                padronUsuarios.agregar(u);
+            }
         }
     }
 
@@ -175,147 +1180,489 @@ public class ComicCollectorSystem {
     }
 
     public void agregarComic(Comic nuevoComic) throws IllegalArgumentException {
-        validador.validarNoVacio(nuevoComic.getNombre(), "nombre");
-        validador.validarNoVacio(nuevoComic.getAutorOFabricante(), "autor/fabricante");
-        validador.validarNoNegativo(nuevoComic.getCantidadDisponible(), "cantidad disponible");
-        validador.validarNoNegativo(nuevoComic.getPrecio(), "precio");
-
-        String nuevoCodigo = generarNuevoCodigo();
-        nuevoComic.setCodigo(nuevoCodigo);
+        long inicio = System.nanoTime();
+        boolean fallo = false;
+        bloqueoEstado.readLock().lock();
+        try {
+            validador.validarNoVacio(nuevoComic.getNombre(), "nombre");
+            validador.validarNoVacio(nuevoComic.getAutorOFabricante(), "autor/fabricante");
+            validador.validarNoNegativo(nuevoComic.getCantidadDisponible(), "cantidad disponible");
+            validador.validarNoNegativo(nuevoComic.getPrecio(), "precio");
+            validador.validarSinSeparadores(nuevoComic.getNombre(), "nombre");
+            validador.validarSinSeparadores(nuevoComic.getAutorOFabricante(), "autor/fabricante");
 
-        comics.add(nuevoComic);
-        inventario.put(nuevoCodigo, nuevoComic);
+            synchronized (bloqueoCatalogo) {
+                String nuevoCodigo = generarNuevoCodigo();
+                nuevoComic.setCodigo(nuevoCodigo);
+                try {
+                    registrarEnBitacora(BitacoraOperaciones.ALTA_COMIC, nuevoCodigo, nuevoComic.getTipo(),
+                            nuevoComic.getNombre(), nuevoComic.getAutorOFabricante(),
+                            Integer.toString(nuevoComic.getCantidadDisponible()),
+                            nuevoComic.getFechaLlegada() != null ? nuevoComic.getFechaLlegada().toString() : "null",
+                            Double.toString(nuevoComic.getPrecio()));
+                } catch (IllegalStateException e) {
+                    ultimoCodigoProducto--;
+                    nuevoComic.setCodigo(null);
+                    throw e;
+                }
 
-        if (nuevoComic.getFechaLlegada() != null) {
-            fechasLanzamiento.add(nuevoComic.getFechaLlegada());
+                inventario.agregar(nuevoComic);
+                indexarComic(nuevoComic);
+                codigosModificados.add(nuevoCodigo);
+            }
+        } catch (Throwable e) {
+            fallo = true;
+            throw e;
+        } finally {
+            bloqueoEstado.readLock().unlock();
+            metricas.registrar(Operacion.AGREGAR_COMIC, inicio, fallo);
         }
     }
 
     public boolean eliminarComic(String codigo) {
-        Comic comic = inventario.get(codigo);
-        if (comic != null) {
-            comics.remove(comic);
-            inventario.remove(codigo);
-            productosReservados.remove(codigo);
-            if (comic.getFechaLlegada() != null) {
-                fechasLanzamiento.remove(comic.getFechaLlegada());
+        long inicio = System.nanoTime();
+        boolean fallo = false;
+        bloqueoEstado.readLock().lock();
+        try {
+            synchronized (bloqueoCatalogo) {
+                if (!inventario.contiene(codigo)) return false;
+                registrarEnBitacora(BitacoraOperaciones.BAJA_COMIC, codigo);
+                quitarDelCatalogo(codigo);
+                codigosModificados.add(codigo);
+                return true;
             }
-            return true;
+        } catch (Throwable e) {
+            fallo = true;
+            throw e;
+        } finally {
+            bloqueoEstado.readLock().unlock();
+            metricas.registrar(Operacion.ELIMINAR_COMIC, inicio, fallo);
         }
-        return false;
+    }
+
+    private void quitarDelCatalogo(String codigo) {
+        Comic comic = inventario.quitar(codigo);
+        if (comic != null) {
+            desindexarComic(comic);
+            productosReservados.quitar(codigo);
+        }
+    }
+
+    private void indexarComic(Comic comic) {
+        indiceNombre.agregar(comic);
+        indiceAutor.agregar(comic);
+        buscador.agregar(comic);
+        calendario.agregar(comic);
+        listado.agregar(comic);
+    }
+
+    // Carga masiva: con catálogos grandes los índices se arman en paralelo
+    private void indexarComics(Collection<Comic> nuevos) {
+        Stream<Runnable> tareas = Stream.of(
+                () -> indiceNombre.agregarTodos(nuevos),
+                () -> indiceAutor.agregarTodos(nuevos),
+                () -> buscador.agregarTodos(nuevos),
+                () -> calendario.agregarTodos(nuevos),
+                () -> listado.agregarTodos(nuevos));
+        if (nuevos.size() >= MIN_INDEXADO_PARALELO) tareas = tareas.parallel();
+        tareas.forEach(Runnable::run);
+    }
+
+    private void desindexarComic(Comic comic) {
+        indiceNombre.quitar(comic);
+        indiceAutor.quitar(comic);
+        buscador.quitar(comic);
+        calendario.quitar(comic);
+        listado.quitar(comic);
+    }
+
+    // Búsquedas por texto exacto, sin distinguir mayúsculas ni tildes. Cuestan O(coincidencias).
+
+    public List<Comic> buscarPorNombre(String nombre) {
+        return indiceNombre.buscar(nombre);
+    }
+
+    public List<Comic> buscarPorAutor(String autorOFabricante) {
+        return indiceAutor.buscar(autorOFabricante);
+    }
+
+    // El texto se interpreta como TipoProducto ("manga", "Comic"); uno desconocido no tiene productos
+    public List<Comic> buscarPorTipo(String tipo) {
+        return inventario.deTipo(TipoProducto.buscar(tipo));
+    }
+
+    // Recorre la columna de tipos del inventario comparando bytes. En orden de ingreso.
+    public List<Comic> buscarPorTipo(TipoProducto tipo) {
+        return inventario.deTipo(tipo);
+    }
+
+    /**
+     * Página del inventario ordenado por nombre, después del cursor de la página anterior (-1 para
+     * la primera). Filtra por tipo (null = todos) y disponibilidad. Cuesta O(tamaño de página), no
+     * O(catálogo), salvo que el filtro descarte la mayoría de los productos.
+     */
+    public ListadoInventario.Pagina listarInventario(int cursor, int tamano, TipoProducto tipo,
+                                                     ListadoInventario.Disponibilidad disponibilidad) {
+        return listado.pagina(cursor, tamano, tipo, disponibilidad);
+    }
+
+    // Texto parcial o con errores de tipeo ("spider", "evang", "spidr"). Los mejores primero.
+    public List<Comic> buscarComics(String texto, int limite) {
+        return buscador.buscar(texto, limite);
     }
 
     // Compras y Reservas
 
-    public void realizarCompra(String rutUsuario, String codigoComic, int cantidad)
+    // Retorna el total cobrado, con el precio del producto al momento de la compra
+    public double realizarCompra(String rutUsuario, String codigoComic, int cantidad)
             throws IllegalArgumentException {
-        Usuario usuario = usuarios.get(rutUsuario);
-        Comic comic = inventario.get(codigoComic);
-        validador.validarNoNegativo(cantidad, "cantidad a comprar");
-        if (usuario == null) throw new IllegalArgumentException("Usuario no encontrado.");
-        if (comic == null) throw new IllegalArgumentException("Producto no encontrado.");
-        if (comic.getFechaLlegada() != null && comic.getFechaLlegada().isAfter(LocalDate.now())) {
-            throw new IllegalArgumentException("El producto aún no está disponible para la venta.");
+        long inicio = System.nanoTime();
+        boolean fallo = false;
+        bloqueoEstado.readLock().lock();
+        try {
+            Usuario usuario = usuarios.get(rutUsuario);
+            Comic comic = inventario.get(codigoComic);
+            validador.validarPositivo(cantidad, "cantidad a comprar");
+            if (usuario == null) throw new IllegalArgumentException("Usuario no encontrado.");
+            if (comic == null) throw new IllegalArgumentException("Producto no encontrado.");
+            if (enPreventa(comic, LocalDate.now().toEpochDay())) {
+                throw new IllegalArgumentException("El producto aún no está disponible para la venta.");
+            }
+            long segundos = ahoraEnSegundos();
+            // Verifica y descuenta en un solo paso atómico para no sobrevender
+            if (!comic.descontarStock(cantidad)) {
+                throw new IllegalArgumentException("No hay suficiente stock disponible.");
+            }
+            try {
+                registrarEnBitacora(BitacoraOperaciones.COMPRA, rutUsuario, codigoComic, Integer.toString(cantidad),
+                        Long.toString(segundos));
+            } catch (IllegalStateException e) {
+                comic.reponerStock(cantidad);
+                throw e;
+            }
+            codigosModificados.add(codigoComic);
+            usuario.agregarCompra(comic, cantidad, segundos);
+            actualizarRankingUsuarios(usuario);
+            return comic.getPrecio() * cantidad;
+        } catch (Throwable e) {
+            fallo = true;
+            throw e;
+        } finally {
+            bloqueoEstado.readLock().unlock();
+            metricas.registrar(Operacion.REALIZAR_COMPRA, inicio, fallo);
         }
-        if (comic.getCantidadDisponible() < cantidad) {
-            throw new IllegalArgumentException("No hay suficiente stock disponible.");
+    }
+
+    /**
+     * Compra varios productos en un solo pedido, todo o nada: si una línea falla (no existe, está en
+     * preventa o no alcanza el stock) no se descuenta nada. Retorna el total a pagar.
+     * Las líneas con el mismo código se suman. El stock se toma en orden de código, así dos pedidos
+     * que se cruzan compiten por los productos siempre en el mismo orden, y si falta stock en una
+     * línea se devuelve lo ya tomado. Deja un solo registro en la bitácora y actualiza el ranking una vez.
+     */
+    public double realizarComprasLote(String rutUsuario, List<LineaPedido> lineas)
+            throws IllegalArgumentException {
+        long inicio = System.nanoTime();
+        boolean fallo = false;
+        bloqueoEstado.readLock().lock();
+        try {
+            Usuario usuario = usuarios.get(rutUsuario);
+            if (usuario == null) throw new IllegalArgumentException("Usuario no encontrado.");
+            if (lineas == null || lineas.isEmpty()) throw new IllegalArgumentException("El pedido no tiene productos.");
+
+            // Valida todo antes de tocar el stock
+            TreeMap<String, Integer> porCodigo = new TreeMap<>();
+            for (LineaPedido linea : lineas) {
+                if (linea.getCantidad() <= 0) {
+                    throw new IllegalArgumentException("La cantidad de " + linea.getCodigoComic() + " debe ser mayor a cero.");
+                }
+                porCodigo.merge(linea.getCodigoComic(), linea.getCantidad(), Integer::sum);
+            }
+            List<Comic> productos = new ArrayList<>(porCodigo.size());
+            long hoy = LocalDate.now().toEpochDay();
+            for (String codigo : porCodigo.keySet()) {
+                Comic comic = inventario.get(codigo);
+                if (comic == null) throw new IllegalArgumentException("Producto no encontrado: " + codigo + ".");
+                if (enPreventa(comic, hoy)) {
+                    throw new IllegalArgumentException("El producto " + codigo + " aún no está disponible para la venta.");
+                }
+                productos.add(comic);
+            }
+
+            List<ReservaCompra> compras = new ArrayList<>(productos.size());
+            String[] campos = new String[2 + 2 * productos.size()];
+            campos[0] = rutUsuario;
+            double total = 0;
+            for (Comic comic : productos) {
+                int cantidad = porCodigo.get(comic.getCodigo());
+                if (!comic.descontarStock(cantidad)) {
+                    reponer(compras);
+                    throw new IllegalArgumentException("No hay suficiente stock disponible de " + comic.getNombre()
+                            + " (" + comic.getCodigo() + ").");
+                }
+                campos[1 + 2 * compras.size()] = comic.getCodigo();
+                campos[2 + 2 * compras.size()] = Integer.toString(cantidad);
+                compras.add(new ReservaCompra(comic, cantidad));
+                total += comic.getPrecio() * cantidad;
+            }
+            long segundos = ahoraEnSegundos();
+            campos[campos.length - 1] = Long.toString(segundos);
+            try {
+                registrarEnBitacora(BitacoraOperaciones.COMPRA_LOTE, campos);
+            } catch (IllegalStateException e) {
+                reponer(compras);
+                throw e;
+            }
+            codigosModificados.addAll(porCodigo.keySet());
+            usuario.agregarCompras(compras, segundos);
+            actualizarRankingUsuarios(usuario);
+            return total;
+        } catch (Throwable e) {
+            fallo = true;
+            throw e;
+        } finally {
+            bloqueoEstado.readLock().unlock();
+            metricas.registrar(Operacion.REALIZAR_COMPRAS_LOTE, inicio, fallo);
         }
-        comic.setCantidadDisponible(comic.getCantidadDisponible() - cantidad);
-        usuario.agregarCompra(comic, cantidad);
-        actualizarRankingUsuarios(usuario);
     }
 
-    public void hacerReserva(String rutUsuario, String codigoComic, int cantidad)
+    // Llega después de hoy (día epoch): todavía no se puede vender
+    private static boolean enPreventa(Comic comic, long hoy) {
+        int llegada = comic.getDiaLlegada();
+        return llegada != Comic.Almacen.SIN_FECHA && llegada > hoy;
+    }
+
+    // Instante que se guarda con cada compra en la bitácora y en el historial
+    private static long ahoraEnSegundos() {
+        return System.currentTimeMillis() / 1000;
+    }
+
+    // Devuelve al stock lo descontado por un pedido que no se completó
+    private static void reponer(List<ReservaCompra> tomadas) {
+        for (ReservaCompra rc : tomadas) {
+            rc.getComic().reponerStock(rc.getCantidad());
+        }
+    }
+
+    // Retorna cuando la reserva ya es durable en la bitácora; el futuro avisa cuando quedó en reservas.txt
+    public CompletableFuture<Void> hacerReserva(String rutUsuario, String codigoComic, int cantidad)
             throws ProductoYaReservadoException, IllegalArgumentException {
-        Usuario usuario = usuarios.get(rutUsuario);
-        Comic comic = inventario.get(codigoComic);
-        if (usuario == null) throw new IllegalArgumentException("Usuario no encontrado.");
-        if (comic == null) throw new IllegalArgumentException("Producto no encontrado.");
-        if (comic.getFechaLlegada() == null || comic.getFechaLlegada().isBefore(LocalDate.now())) {
-            throw new IllegalArgumentException("Este producto no está en preventa.");
+        long inicio = System.nanoTime();
+        boolean fallo = false;
+        bloqueoEstado.readLock().lock();
+        try {
+            Usuario usuario = usuarios.get(rutUsuario);
+            Comic comic = inventario.get(codigoComic);
+            validador.validarPositivo(cantidad, "cantidad a reservar");
+            if (usuario == null) throw new IllegalArgumentException("Usuario no encontrado.");
+            if (comic == null) throw new IllegalArgumentException("Producto no encontrado.");
+            int llegada = comic.getDiaLlegada();
+            if (llegada == Comic.Almacen.SIN_FECHA || llegada < LocalDate.now().toEpochDay()) {
+                throw new IllegalArgumentException("Este producto no está en preventa.");
+            }
+            if (!comic.descontarStock(cantidad)) {
+                throw new IllegalArgumentException("No hay suficiente stock disponible para reservar.");
+            }
+            long lsn;
+            try {
+                lsn = registrarEnBitacora(BitacoraOperaciones.RESERVA, rutUsuario, codigoComic, Integer.toString(cantidad));
+            } catch (IllegalStateException e) {
+                comic.reponerStock(cantidad);
+                throw e;
+            }
+            productosReservados.agregar(codigoComic);
+            codigosModificados.add(codigoComic);
+            agendaEntregas.agregar(usuario, usuario.agregarReserva(comic, cantidad), lsn);
+            return guardarReservaEnArchivo(usuario.getRut(), codigoComic, cantidad, lsn);
+        } catch (Throwable e) {
+            fallo = true;
+            throw e;
+        } finally {
+            bloqueoEstado.readLock().unlock();
+            metricas.registrar(Operacion.HACER_RESERVA, inicio, fallo);
         }
-        if (comic.getCantidadDisponible() < cantidad) {
-            throw new IllegalArgumentException("No hay suficiente stock disponible para reservar.");
+    }
+
+    /**
+     * Entrega las preventas cuyos productos llegan hasta la fecha dada: pasan del historial de
+     * reservas al de compras (el stock ya se descontó al reservar). Se sacan de la agenda todas de
+     * una vez, se deja un solo registro en la bitácora y el ranking se actualiza una vez por usuario.
+     * Retorna cuántas reservas se entregaron.
+     */
+    public int procesarEntregas(LocalDate hasta) {
+        long inicio = System.nanoTime();
+        boolean fallo = false;
+        bloqueoEstado.readLock().lock();
+        try {
+            List<AgendaEntregas.Entrega> entregas = agendaEntregas.retirarHasta(hasta);
+            if (entregas.isEmpty()) return 0;
+            long segundos = ahoraEnSegundos();
+            try {
+                registrarEnBitacora(BitacoraOperaciones.ENTREGA, hasta.toString(), Long.toString(segundos));
+            } catch (IllegalStateException e) {
+                agendaEntregas.devolver(entregas);
+                throw e;
+            }
+            entregar(entregas, segundos);
+            return entregas.size();
+        } catch (Throwable e) {
+            fallo = true;
+            throw e;
+        } finally {
+            bloqueoEstado.readLock().unlock();
+            metricas.registrar(Operacion.PROCESAR_ENTREGAS, inicio, fallo);
         }
-        comic.setCantidadDisponible(comic.getCantidadDisponible() - cantidad);
-        productosReservados.add(codigoComic);
-        usuario.agregarReserva(comic, cantidad);
-        guardarReservaEnArchivo(usuario.getRut(), codigoComic, cantidad);
     }
 
-    private void guardarReservaEnArchivo(String rut, String codigoComic, int cantidad) {
-        try (PrintWriter pw = new PrintWriter(new FileWriter(RESERVAS_TXT, true))) {
-            pw.println(rut + "|" + codigoComic + "|" + cantidad);
+    private void entregar(List<AgendaEntregas.Entrega> entregas, long segundos) {
+        Map<Usuario, List<ReservaCompra>> porUsuario = new LinkedHashMap<>();
+        for (AgendaEntregas.Entrega e : entregas) {
+            porUsuario.computeIfAbsent(e.getUsuario(), u -> new ArrayList<>()).add(e.getReserva());
+        }
+        for (Map.Entry<Usuario, List<ReservaCompra>> e : porUsuario.entrySet()) {
+            e.getKey().entregarReservas(e.getValue(), segundos);
+            actualizarRankingUsuarios(e.getKey());
+        }
+    }
+
+    // Entrega las preventas vencidas ahora y luego cada día a medianoche, en un hilo de fondo
+    public synchronized void programarEntregas() {
+        if (programadorEntregas != null) {
+            programadorEntregas.shutdownNow();
+        }
+        programadorEntregas = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "entregas-preventas");
+            t.setDaemon(true);
+            return t;
+        });
+        programadorEntregas.execute(() -> entregasDelDia(programadorEntregas));
+    }
+
+    private void entregasDelDia(ScheduledExecutorService programador) {
+        try {
+            int entregadas = procesarEntregas(LocalDate.now());
+            if (entregadas > 0) {
+                System.out.println("AVISO. Se entregaron " + entregadas + " preventas que ya llegaron a tienda.");
+            }
         } catch (Exception e) {
-            System.out.println("ERROR. No se pudo guardar la reserva en archivo.");
+            informarError("No se pudieron entregar las preventas: " + e.getMessage());
         }
+        // Se reprograma cada vez para caer justo a medianoche aunque el día no dure 24 horas
+        LocalDateTime ahora = LocalDateTime.now();
+        long espera = Duration.between(ahora, ahora.toLocalDate().plusDays(1).atStartOfDay()).toMillis();
+        try {
+            programador.schedule(() -> entregasDelDia(programador), espera + 1, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // El sistema se cerró
+        }
+    }
+
+    // Cantidad de reservas que esperan la llegada de su producto
+    public int getEntregasPendientes() {
+        return agendaEntregas.pendientes();
+    }
+
+    // Formato: rut|codigo|cantidad|lsn. El LSN ubica la reserva respecto de las entregas al reproducir la bitácora.
+    private CompletableFuture<Void> guardarReservaEnArchivo(String rut, String codigoComic, int cantidad, long lsn) {
+        return contarFallo(escritorArchivos.agregarLinea(RESERVAS_TXT, rut + "|" + codigoComic + "|" + cantidad + "|" + lsn));
     }
 
     //  Gestión de Fechas y Ranking
 
+    // Reubica al usuario en O(log n) usando su total acumulado
     private void actualizarRankingUsuarios(Usuario usuario) {
-        rankingUsuarios.remove(usuario);
-        rankingUsuarios.add(usuario);
+        rankingUsuarios.actualizar(usuario);
+        Consumer<Usuario> observador = observadorCompras;
+        if (observador != null) observador.accept(usuario);
+    }
+
+    // Avisa cada vez que cambia el total comprado de un usuario (compra o entrega de preventas)
+    void observarCompras(Consumer<Usuario> observador) {
+        observadorCompras = observador;
     }
 
     //  Guardar Inventario Actualizado
 
+    // Deja comics.csv al día con el inventario completo (el autoguardado solo guarda los cambios)
     public void guardarInventarioActualizado() {
-        int sufijo = 2;
-        File nuevoArchivo;
-        do {
-            nuevoArchivo = new File("comics_" + sufijo + ".csv");
-            sufijo++;
-        } while (nuevoArchivo.exists());
-
-        try (PrintWriter pw = new PrintWriter(new FileWriter(nuevoArchivo))) {
-            // Escribe cabecera
-            pw.println("tipo,codigo,nombre,autor,cantidad,fechaLlegada,precio");
-            for (Comic c : inventario.values()) {
-                pw.println(
-                        c.getTipo() + "," +
-                                c.getCodigo() + "," +
-                                c.getNombre() + "," +
-                                c.getAutorOFabricante() + "," +
-                                c.getCantidadDisponible() + "," +
-                                (c.getFechaLlegada() != null ? c.getFechaLlegada() : "null") + "," +
-                                c.getPrecio()
-                );
-            }
-            System.out.println("Inventario actualizado guardado en: " + nuevoArchivo.getName());
+        try {
+            fusionarInventario();
+            System.out.println("Inventario guardado en " + COMICS_CSV + ".");
         } catch (Exception e) {
-            System.out.println("ERROR. No se pudo guardar el archivo de inventario actualizado.");
+            informarError("No se pudo guardar el archivo de inventario: " + e.getMessage());
         }
     }
 
+    // Pone comillas al texto si tiene comas o comillas, para que el cargador lo lea bien
+    static String campoCSV(String texto) {
+        if (texto.indexOf(',') < 0 && texto.indexOf('"') < 0) return texto;
+        return "\"" + texto.replace("\"", "\"\"") + "\"";
+    }
+
     // GETTERS PÚBLICOS PARA EL MENÚ Y OTRAS CLASES
 
-    public ArrayList<Comic> getComics() {
-        return comics;
+    // Fotos inmutables: se toman en O(1), se recorren sin candados y no cambian aunque sigan
+    // las compras y los registros. Para listados, reportes y rankings.
+
+    // Productos vigentes, en orden de ingreso. El stock de cada uno se lee al recorrer.
+    public InventarioColumnar.Foto getComics() {
+        return inventario.foto();
     }
 
-    public Collection<Usuario> getUsuarios() {
-        return usuarios.values();
+    // Usuarios en orden de registro
+    public List<Usuario> getUsuarios() {
+        return padronUsuarios.foto();
     }
 
-    public HashSet<String> getProductosReservados() {
-        return productosReservados;
+    public Set<String> getProductosReservados() {
+        return productosReservados.foto();
     }
 
-    public HashSet<String> getEmailsRegistrados() {
-        return emailsRegistrados;
+    public Set<String> getEmailsRegistrados() {
+        return emailsRegistrados.foto();
     }
 
     public ValidadorDatos getValidador() {
         return this.validador;
     }
 
+    // Fechas con al menos un lanzamiento, en orden
     public Set<LocalDate> getFechasLanzamiento() {
-        return Collections.unmodifiableSet(fechasLanzamiento);
+        return calendario.fechas();
+    }
+
+    // Lanzamientos entre dos fechas (ambas incluidas), ordenados por fecha y código
+    public List<Comic> lanzamientosEntre(LocalDate desde, LocalDate hasta) {
+        return calendario.entre(desde, hasta);
+    }
+
+    // Lanzamientos de los próximos "dias" días, sin contar hoy
+    public List<Comic> lanzamientosProximos(int dias) {
+        LocalDate hoy = LocalDate.now();
+        return calendario.entre(hoy.plusDays(1), hoy.plusDays(dias));
+    }
+
+    // Todos los lanzamientos posteriores a hoy
+    public List<Comic> lanzamientosFuturos() {
+        return calendario.despuesDe(LocalDate.now());
+    }
+
+    // Ranking completo, de mayor a menor comprador
+    public List<Usuario> getRankingUsuarios() {
+        return rankingUsuarios.tramo(1, rankingUsuarios.tamano());
+    }
+
+    public List<Usuario> topUsuarios(int cantidad) {
+        return rankingUsuarios.top(cantidad);
+    }
+
+    // Posición del usuario en el ranking (1 = mayor comprador), -1 si no existe
+    public int posicionEnRanking(String rut) {
+        return rankingUsuarios.posicion(rut);
     }
 
-    public Set<Usuario> getRankingUsuarios() {
-        return Collections.unmodifiableSet(rankingUsuarios);
+    public List<Usuario> usuariosAlrededorDe(int posicion, int radio) {
+        return rankingUsuarios.alrededorDe(posicion, radio);
     }
 
     public Comic buscarComicPorCodigo(String codigo) {
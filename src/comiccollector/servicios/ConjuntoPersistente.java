@@ -0,0 +1,281 @@
+package comiccollector.servicios;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Conjunto inmutable y persistente: agregar o quitar entrega un conjunto nuevo que comparte casi
+ * todo con el anterior, y el anterior no cambia. Sirve como foto: quien la tiene la recorre sin
+ * candados mientras otros siguen agregando.
+ *
+ * Es un árbol de hash (HAMT): cada nivel usa 5 bits del hash y cada nodo guarda solo las posiciones
+ * ocupadas, marcadas en un int. Buscar recorre a lo más 7 niveles; agregar copia solo los nodos del
+ * camino. Elementos con el hash completo igual van juntos en un nodo de colisión.
+ *
+ * Compartido guarda el conjunto vigente y lo cambia con CAS, así agregar es atómico igual que en
+ * un ConcurrentHashMap.newKeySet().
+ */
+public final class ConjuntoPersistente<T> extends AbstractSet<T> {
+
+    private static final ConjuntoPersistente<Object> VACIO = new ConjuntoPersistente<>(null, 0);
+    // Desde este nivel ya no quedan bits del hash: el nodo es de colisión
+    private static final int NIVEL_COLISION = 32;
+
+    // mapa: bit i marca la posición i ocupada; hijos tiene un elemento o un Nodo por posición ocupada.
+    // En un nodo de colisión mapa es 0 e hijos son solo elementos.
+    private static final class Nodo {
+        final int mapa;
+        final Object[] hijos;
+
+        Nodo(int mapa, Object[] hijos) {
+            this.mapa = mapa;
+            this.hijos = hijos;
+        }
+    }
+
+    private final Nodo raiz;
+    private final int tamano;
+
+    private ConjuntoPersistente(Nodo raiz, int tamano) {
+        this.raiz = raiz;
+        this.tamano = tamano;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> ConjuntoPersistente<T> vacio() {
+        return (ConjuntoPersistente<T>) VACIO;
+    }
+
+    // Conjunto con el elemento agregado; este mismo si ya estaba
+    public ConjuntoPersistente<T> con(T elemento) {
+        if (elemento == null) throw new IllegalArgumentException("El conjunto no admite null.");
+        int h = hash(elemento);
+        if (raiz == null) {
+            return new ConjuntoPersistente<>(new Nodo(1 << (h & 31), new Object[]{elemento}), 1);
+        }
+        Nodo nueva = con(raiz, elemento, h, 0);
+        return nueva == raiz ? this : new ConjuntoPersistente<>(nueva, tamano + 1);
+    }
+
+    // Conjunto sin el elemento; este mismo si no estaba
+    public ConjuntoPersistente<T> sin(Object elemento) {
+        if (elemento == null || raiz == null) return this;
+        Nodo nueva = sin(raiz, elemento, hash(elemento), 0);
+        if (nueva == raiz) return this;
+        return nueva == null ? vacio() : new ConjuntoPersistente<>(nueva, tamano - 1);
+    }
+
+    @Override
+    public boolean contains(Object elemento) {
+        if (elemento == null || raiz == null) return false;
+        int h = hash(elemento);
+        Nodo nodo = raiz;
+        for (int nivel = 0; ; nivel += 5) {
+            if (nivel >= NIVEL_COLISION) {
+                for (Object o : nodo.hijos) {
+                    if (o.equals(elemento)) return true;
+                }
+                return false;
+            }
+            int bit = 1 << ((h >>> nivel) & 31);
+            if ((nodo.mapa & bit) == 0) return false;
+            Object hijo = nodo.hijos[Integer.bitCount(nodo.mapa & (bit - 1))];
+            if (!(hijo instanceof Nodo)) return hijo.equals(elemento);
+            nodo = (Nodo) hijo;
+        }
+    }
+
+    @Override
+    public int size() {
+        return tamano;
+    }
+
+    // Recorre en profundidad con una pila de a lo más 8 niveles
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private final Nodo[] nodos = new Nodo[NIVEL_COLISION / 5 + 2];
+            private final int[] posiciones = new int[nodos.length];
+            private int profundidad = raiz == null ? -1 : 0;
+            private Object siguiente;
+
+            {
+                if (raiz != null) nodos[0] = raiz;
+                avanzar();
+            }
+
+            @Override
+            public boolean hasNext() {
+                return siguiente != null;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public T next() {
+                if (siguiente == null) throw new NoSuchElementException();
+                Object actual = siguiente;
+                avanzar();
+                return (T) actual;
+            }
+
+            private void avanzar() {
+                siguiente = null;
+                while (profundidad >= 0) {
+                    Nodo nodo = nodos[profundidad];
+                    if (posiciones[profundidad] == nodo.hijos.length) {
+                        profundidad--;
+                        continue;
+                    }
+                    Object hijo = nodo.hijos[posiciones[profundidad]++];
+                    if (hijo instanceof Nodo) {
+                        profundidad++;
+                        nodos[profundidad] = (Nodo) hijo;
+                        posiciones[profundidad] = 0;
+                    } else {
+                        siguiente = hijo;
+                        return;
+                    }
+                }
+            }
+        };
+    }
+
+    private static Nodo con(Nodo nodo, Object elemento, int h, int nivel) {
+        if (nivel >= NIVEL_COLISION) {
+            for (Object o : nodo.hijos) {
+                if (o.equals(elemento)) return nodo;
+            }
+            Object[] hijos = Arrays.copyOf(nodo.hijos, nodo.hijos.length + 1);
+            hijos[nodo.hijos.length] = elemento;
+            return new Nodo(0, hijos);
+        }
+        int bit = 1 << ((h >>> nivel) & 31);
+        int i = Integer.bitCount(nodo.mapa & (bit - 1));
+        if ((nodo.mapa & bit) == 0) {
+            Object[] hijos = new Object[nodo.hijos.length + 1];
+            System.arraycopy(nodo.hijos, 0, hijos, 0, i);
+            hijos[i] = elemento;
+            System.arraycopy(nodo.hijos, i, hijos, i + 1, nodo.hijos.length - i);
+            return new Nodo(nodo.mapa | bit, hijos);
+        }
+        Object actual = nodo.hijos[i];
+        Object reemplazo;
+        if (actual instanceof Nodo) {
+            Nodo hijo = con((Nodo) actual, elemento, h, nivel + 5);
+            if (hijo == actual) return nodo;
+            reemplazo = hijo;
+        } else {
+            if (actual.equals(elemento)) return nodo;
+            reemplazo = par(actual, hash(actual), elemento, h, nivel + 5);
+        }
+        Object[] hijos = nodo.hijos.clone();
+        hijos[i] = reemplazo;
+        return new Nodo(nodo.mapa, hijos);
+    }
+
+    // Nodo con dos elementos que chocaron en el nivel anterior
+    private static Nodo par(Object a, int ha, Object b, int hb, int nivel) {
+        if (nivel >= NIVEL_COLISION) return new Nodo(0, new Object[]{a, b});
+        int ia = (ha >>> nivel) & 31;
+        int ib = (hb >>> nivel) & 31;
+        if (ia == ib) return new Nodo(1 << ia, new Object[]{par(a, ha, b, hb, nivel + 5)});
+        return new Nodo((1 << ia) | (1 << ib), ia < ib ? new Object[]{a, b} : new Object[]{b, a});
+    }
+
+    // null si el nodo queda vacío
+    private static Nodo sin(Nodo nodo, Object elemento, int h, int nivel) {
+        if (nivel >= NIVEL_COLISION) {
+            for (int i = 0; i < nodo.hijos.length; i++) {
+                if (nodo.hijos[i].equals(elemento)) return nodo.hijos.length == 1 ? null : new Nodo(0, quitarPosicion(nodo.hijos, i));
+            }
+            return nodo;
+        }
+        int bit = 1 << ((h >>> nivel) & 31);
+        if ((nodo.mapa & bit) == 0) return nodo;
+        int i = Integer.bitCount(nodo.mapa & (bit - 1));
+        Object actual = nodo.hijos[i];
+        if (actual instanceof Nodo) {
+            Nodo hijo = sin((Nodo) actual, elemento, h, nivel + 5);
+            if (hijo == actual) return nodo;
+            if (hijo != null) {
+                Object[] hijos = nodo.hijos.clone();
+                // Un hijo con un solo elemento se sube: ese elemento cae en esta misma posición
+                hijos[i] = hijo.hijos.length == 1 && !(hijo.hijos[0] instanceof Nodo) ? hijo.hijos[0] : hijo;
+                return new Nodo(nodo.mapa, hijos);
+            }
+        } else if (!actual.equals(elemento)) {
+            return nodo;
+        }
+        if (nodo.mapa == bit) return null;
+        return new Nodo(nodo.mapa & ~bit, quitarPosicion(nodo.hijos, i));
+    }
+
+    private static Object[] quitarPosicion(Object[] hijos, int i) {
+        Object[] nuevos = new Object[hijos.length - 1];
+        System.arraycopy(hijos, 0, nuevos, 0, i);
+        System.arraycopy(hijos, i + 1, nuevos, i, hijos.length - i - 1);
+        return nuevos;
+    }
+
+    // Reparte mejor los hash de textos parecidos ("001", "002") entre las posiciones
+    private static int hash(Object elemento) {
+        int h = elemento.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Conjunto compartido entre hilos. Los cambios reemplazan el conjunto vigente con CAS (se
+     * reintenta si otro hilo cambió entre medio); foto() es O(1) y nunca bloquea a quien escribe.
+     */
+    public static final class Compartido<T> {
+
+        private final AtomicReference<ConjuntoPersistente<T>> vigente = new AtomicReference<>(vacio());
+
+        // Falso si ya estaba. Atómico: de dos hilos que agregan lo mismo, solo uno recibe true.
+        public boolean agregar(T elemento) {
+            while (true) {
+                ConjuntoPersistente<T> actual = vigente.get();
+                ConjuntoPersistente<T> nuevo = actual.con(elemento);
+                if (nuevo == actual) return false;
+                if (vigente.compareAndSet(actual, nuevo)) return true;
+            }
+        }
+
+        public boolean quitar(Object elemento) {
+            while (true) {
+                ConjuntoPersistente<T> actual = vigente.get();
+                ConjuntoPersistente<T> nuevo = actual.sin(elemento);
+                if (nuevo == actual) return false;
+                if (vigente.compareAndSet(actual, nuevo)) return true;
+            }
+        }
+
+        // Carga masiva: arma el conjunto aparte y lo publica con un solo CAS
+        public void agregarTodos(Iterable<? extends T> elementos) {
+            while (true) {
+                ConjuntoPersistente<T> actual = vigente.get();
+                ConjuntoPersistente<T> nuevo = actual;
+                for (T e : elementos) {
+                    nuevo = nuevo.con(e);
+                }
+                if (nuevo == actual || vigente.compareAndSet(actual, nuevo)) return;
+            }
+        }
+
+        public boolean contiene(Object elemento) {
+            return vigente.get().contains(elemento);
+        }
+
+        public int tamano() {
+            return vigente.get().size();
+        }
+
+        // El conjunto tal como está ahora; no cambia aunque después se agregue o quite
+        public ConjuntoPersistente<T> foto() {
+            return vigente.get();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package comiccollector.servicios;
+
+import java.util.Arrays;
+
+/**
+ * Diccionario de textos repetidos del catálogo (nombres de series, autores): cada texto distinto
+ * se guarda una sola vez y recibe un id entero denso, así una columna de un millón de filas guarda
+ * ints y todas las filas con el mismo autor apuntan al mismo String.
+ *
+ * Los ids nunca cambian ni se reutilizan (las filas quitadas del inventario siguen usándolos).
+ * La tabla de búsqueda es de direccionamiento abierto sobre un int[] con los ids, sin nodos por
+ * entrada: cada texto distinto cuesta su String más unos 12 bytes.
+ *
+ * Agregar se serializa; texto(id) no toma candados. Los textos van en bloques que nunca se mueven,
+ * igual que las columnas de InventarioColumnar.
+ */
+public class DiccionarioTextos {
+
+    private static final int BITS_BLOQUE = 12;
+    private static final int TAMANO_BLOQUE = 1 << BITS_BLOQUE;
+    private static final int MASCARA = TAMANO_BLOQUE - 1;
+
+    private volatile String[][] textos = new String[0][];
+    private volatile int cantidad;
+    // id + 1 por posición (0 = libre); el largo es potencia de dos y se llena hasta la mitad
+    private int[] tabla = new int[64];
+
+    // Id del texto, agregándolo si es nuevo. null no se guarda: su id es -1.
+    public synchronized int id(String texto) {
+        if (texto == null) return -1;
+        int[] t = tabla;
+        int mascara = t.length - 1;
+        int pos = mezclar(texto.hashCode()) & mascara;
+        while (t[pos] != 0) {
+            int id = t[pos] - 1;
+            if (texto.equals(texto(id))) return id;
+            pos = (pos + 1) & mascara;
+        }
+        int id = cantidad;
+        int b = id >>> BITS_BLOQUE;
+        String[][] bloques = textos;
+        if (b >= bloques.length) {
+            bloques = Arrays.copyOf(bloques, Math.max(4, bloques.length * 2));
+        }
+        if (bloques[b] == null) bloques[b] = new String[TAMANO_BLOQUE];
+        bloques[b][id & MASCARA] = texto;
+        textos = bloques;
+        t[pos] = id + 1;
+        cantidad = id + 1;
+        if (cantidad * 2 > t.length) crecer();
+        return id;
+    }
+
+    // Id del texto sin agregarlo, -1 si no está
+    public synchronized int buscar(String texto) {
+        if (texto == null) return -1;
+        int[] t = tabla;
+        int mascara = t.length - 1;
+        int pos = mezclar(texto.hashCode()) & mascara;
+        while (t[pos] != 0) {
+            int id = t[pos] - 1;
+            if (texto.equals(texto(id))) return id;
+            pos = (pos + 1) & mascara;
+        }
+        return -1;
+    }
+
+    // El texto guardado para un id (el mismo objeto para todas las filas que lo usan). -1 es null.
+    public String texto(int id) {
+        if (id < 0) return null;
+        return textos[id >>> BITS_BLOQUE][id & MASCARA];
+    }
+
+    // Textos distintos guardados
+    public int tamano() {
+        return cantidad;
+    }
+
+    private void crecer() {
+        int[] nueva = new int[tabla.length * 2];
+        int mascara = nueva.length - 1;
+        for (int id = 0; id < cantidad; id++) {
+            int pos = mezclar(texto(id).hashCode()) & mascara;
+            while (nueva[pos] != 0) pos = (pos + 1) & mascara;
+            nueva[pos] = id + 1;
+        }
+        tabla = nueva;
+    }
+
+    // Reparte mejor los hash de textos parecidos ("Batman 1", "Batman 2") entre las posiciones
+    private static int mezclar(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,272 @@
+package comiccollector.servicios;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Escritor único de los archivos de texto (usuarios.txt, reservas.txt).
+ * Quien guarda una línea solo la pone en una cola acotada y recibe un futuro; un hilo escritor
+ * mantiene los archivos abiertos, junta todo lo que encuentra en la cola en una escritura grande
+ * por archivo y recién ahí completa los futuros (o los falla con la causa).
+ * Si el disco se atrasa y la cola se llena, quien guarda espera: así la memoria no crece sin límite.
+ *
+ * La durabilidad la da la bitácora, que se escribe antes; por eso aquí no se hace fsync por línea.
+ */
+public class EscritorArchivos {
+
+    private static final int CAPACIDAD_COLA = 16_384;
+
+    // Trabajo con acceso exclusivo a un archivo, ejecutado en el hilo escritor
+    public interface TareaArchivo<T> {
+        T ejecutar(FileChannel canal) throws IOException;
+    }
+
+    // Trabajo sobre un archivo cerrado (ej: renombrarlo), ejecutado en el hilo escritor
+    public interface AccionArchivo {
+        void ejecutar() throws IOException;
+    }
+
+    // Línea por escribir, tarea exclusiva o marca para vaciar la cola
+    private static class Pendiente {
+        final String archivo;
+        final String linea;
+        final TareaArchivo<?> tarea;
+        // La tarea corre con el archivo cerrado (recibe canal null)
+        final boolean cerrarAntes;
+        final CompletableFuture<Object> hecho = new CompletableFuture<>();
+
+        Pendiente(String archivo, String linea, TareaArchivo<?> tarea) {
+            this(archivo, linea, tarea, false);
+        }
+
+        Pendiente(String archivo, String linea, TareaArchivo<?> tarea, boolean cerrarAntes) {
+            this.archivo = archivo;
+            this.linea = linea;
+            this.tarea = tarea;
+            this.cerrarAntes = cerrarAntes;
+        }
+    }
+
+    private static final Pendiente FIN = new Pendiente(null, null, null);
+
+    private final File directorio;
+    private final BlockingQueue<Pendiente> cola = new ArrayBlockingQueue<>(CAPACIDAD_COLA);
+    // Solo los usa el hilo escritor
+    private final Map<String, FileChannel> abiertos = new HashMap<>();
+    private volatile Thread escritor;
+    private volatile boolean cerrado;
+    private volatile long lotesEscritos;
+    private volatile long lineasEscritas;
+
+    public EscritorArchivos(File directorio) {
+        this.directorio = directorio;
+    }
+
+    // Agrega una línea al final del archivo. El futuro se completa cuando quedó escrita.
+    public CompletableFuture<Void> agregarLinea(String archivo, String linea) {
+        return encolar(new Pendiente(archivo, linea, null)).thenApply(r -> null);
+    }
+
+    /**
+     * Ejecuta la tarea en el hilo escritor, después de todo lo encolado antes, con el canal del
+     * archivo abierto para agregar. Mientras corre no se escribe nada más. Retorna su resultado.
+     */
+    public <T> T ejecutarExclusivo(String archivo, TareaArchivo<T> tarea) throws IOException {
+        return esperar(new Pendiente(archivo, null, tarea));
+    }
+
+    /**
+     * Cierra el archivo y ejecuta la acción en el hilo escritor, después de todo lo encolado antes
+     * (ej: sellar un segmento renombrándolo). La próxima línea vuelve a abrir el archivo por su nombre.
+     */
+    public void conArchivoCerrado(String archivo, AccionArchivo accion) throws IOException {
+        esperar(new Pendiente(archivo, null, canal -> {
+            accion.ejecutar();
+            return null;
+        }, true));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T esperar(Pendiente p) throws IOException {
+        try {
+            return (T) encolar(p).join();
+        } catch (CompletionException e) {
+            Throwable c = e.getCause();
+            if (c instanceof IOException) throw (IOException) c;
+            if (c instanceof RuntimeException) throw (RuntimeException) c;
+            throw new IllegalStateException(c);
+        }
+    }
+
+    // Espera a que todo lo encolado hasta ahora esté escrito
+    public void vaciar() {
+        if (escritor == null) return;
+        encolar(new Pendiente(null, null, null)).exceptionally(e -> null).join();
+    }
+
+    private CompletableFuture<Object> encolar(Pendiente p) {
+        if (!iniciar()) {
+            p.hecho.completeExceptionally(new IllegalStateException("El escritor de archivos está cerrado."));
+            return p.hecho;
+        }
+        try {
+            // Bloquea si la cola está llena: el disco marca el ritmo
+            cola.put(p);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            p.hecho.completeExceptionally(new IllegalStateException("Escritura de archivo interrumpida."));
+        }
+        return p.hecho;
+    }
+
+    // El hilo se crea con la primera escritura; un sistema que no escribe no lo necesita
+    private synchronized boolean iniciar() {
+        if (cerrado) return false;
+        if (escritor == null) {
+            escritor = new Thread(this::cicloEscritor, "archivos-escritor");
+            escritor.setDaemon(true);
+            escritor.start();
+        }
+        return true;
+    }
+
+    private void cicloEscritor() {
+        List<Pendiente> lote = new ArrayList<>();
+        boolean fin = false;
+        while (!fin) {
+            try {
+                Pendiente primero = cola.take();
+                if (primero == FIN) break;
+                lote.add(primero);
+                cola.drainTo(lote);
+                fin = lote.remove(FIN);
+            } catch (InterruptedException e) {
+                fin = true;
+            }
+            procesarLote(lote);
+            lote.clear();
+        }
+        cerrarArchivos();
+    }
+
+    // Junta las líneas por archivo; una tarea exclusiva o una marca obliga a escribir lo acumulado antes
+    private void procesarLote(List<Pendiente> lote) {
+        Map<String, List<Pendiente>> porArchivo = new LinkedHashMap<>();
+        for (Pendiente p : lote) {
+            if (p.linea != null) {
+                porArchivo.computeIfAbsent(p.archivo, a -> new ArrayList<>()).add(p);
+                continue;
+            }
+            escribirAcumulado(porArchivo);
+            if (p.tarea == null) {
+                p.hecho.complete(null);
+                continue;
+            }
+            try {
+                if (p.cerrarAntes) {
+                    cerrar(p.archivo);
+                    p.hecho.complete(p.tarea.ejecutar(null));
+                } else {
+                    p.hecho.complete(p.tarea.ejecutar(canal(p.archivo)));
+                }
+            } catch (Exception e) {
+                p.hecho.completeExceptionally(e);
+            }
+        }
+        escribirAcumulado(porArchivo);
+    }
+
+    private void escribirAcumulado(Map<String, List<Pendiente>> porArchivo) {
+        for (Map.Entry<String, List<Pendiente>> e : porArchivo.entrySet()) {
+            List<Pendiente> lineas = e.getValue();
+            StringBuilder sb = new StringBuilder(lineas.size() * 48);
+            for (Pendiente p : lineas) {
+                sb.append(p.linea).append(System.lineSeparator());
+            }
+            try {
+                FileChannel canal = canal(e.getKey());
+                ByteBuffer buffer = ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8));
+                while (buffer.hasRemaining()) {
+                    canal.write(buffer);
+                }
+                lotesEscritos++;
+                lineasEscritas += lineas.size();
+                for (Pendiente p : lineas) {
+                    p.hecho.complete(null);
+                }
+            } catch (IOException ex) {
+                // Se cierra para reabrirlo en el próximo intento (ej: el archivo se movió)
+                cerrar(e.getKey());
+                for (Pendiente p : lineas) {
+                    p.hecho.completeExceptionally(new IllegalStateException("No se pudo escribir en " + e.getKey() + ".", ex));
+                }
+            }
+        }
+        porArchivo.clear();
+    }
+
+    private FileChannel canal(String archivo) throws IOException {
+        FileChannel canal = abiertos.get(archivo);
+        if (canal == null) {
+            canal = FileChannel.open(new File(directorio, archivo).toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            abiertos.put(archivo, canal);
+        }
+        return canal;
+    }
+
+    private void cerrar(String archivo) {
+        FileChannel canal = abiertos.remove(archivo);
+        if (canal == null) return;
+        try {
+            canal.close();
+        } catch (IOException ignorada) {
+            // Ya estaba inutilizable
+        }
+    }
+
+    private void cerrarArchivos() {
+        for (String archivo : new ArrayList<>(abiertos.keySet())) {
+            cerrar(archivo);
+        }
+    }
+
+    public long getLotesEscritos() {
+        return lotesEscritos;
+    }
+
+    public long getLineasEscritas() {
+        return lineasEscritas;
+    }
+
+    // Escribe lo pendiente, detiene el hilo y cierra los archivos
+    public synchronized void cerrar() {
+        cerrado = true;
+        if (escritor == null) return;
+        try {
+            cola.put(FIN);
+            escritor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        escritor = null;
+        // Lo que alcanzó a entrar después del cierre no se escribirá
+        Pendiente p;
+        while ((p = cola.poll()) != null) {
+            p.hecho.completeExceptionally(new IllegalStateException("El escritor de archivos está cerrado."));
+        }
+    }
+}
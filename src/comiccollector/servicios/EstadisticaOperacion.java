@@ -0,0 +1,60 @@
+package comiccollector.servicios;
+
+import javax.management.ConstructorParameters;
+
+// Resumen de una operación en un momento dado. Los tiempos van en microsegundos.
+public class EstadisticaOperacion {
+    private final String operacion;
+    private final long cantidad;
+    private final long errores;
+    private final double promedioMicros;
+    private final double p50Micros;
+    private final double p99Micros;
+    private final double maximoMicros;
+
+    @ConstructorParameters({"operacion", "cantidad", "errores", "promedioMicros", "p50Micros", "p99Micros", "maximoMicros"})
+    public EstadisticaOperacion(String operacion, long cantidad, long errores, double promedioMicros,
+                                double p50Micros, double p99Micros, double maximoMicros) {
+        this.operacion = operacion;
+        this.cantidad = cantidad;
+        this.errores = errores;
+        this.promedioMicros = promedioMicros;
+        this.p50Micros = p50Micros;
+        this.p99Micros = p99Micros;
+        this.maximoMicros = maximoMicros;
+    }
+
+    public String getOperacion() {
+        return operacion;
+    }
+
+    public long getCantidad() {
+        return cantidad;
+    }
+
+    public long getErrores() {
+        return errores;
+    }
+
+    public double getPromedioMicros() {
+        return promedioMicros;
+    }
+
+    public double getP50Micros() {
+        return p50Micros;
+    }
+
+    public double getP99Micros() {
+        return p99Micros;
+    }
+
+    public double getMaximoMicros() {
+        return maximoMicros;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%-28s %10d ops %6d errores  prom %9.1f  p50 %9.1f  p99 %9.1f  máx %10.1f µs",
+                operacion, cantidad, errores, promedioMicros, p50Micros, p99Micros, maximoMicros);
+    }
+}
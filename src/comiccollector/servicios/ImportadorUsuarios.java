@@ -0,0 +1,209 @@
+package comiccollector.servicios;
+
+import comiccollector.excepciones.RutInvalidoException;
+import comiccollector.modelos.Usuario;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Importación masiva de usuarios desde un archivo con el formato de usuarios.txt
+ * (rut|nombre|email|celular), por ejemplo la lista de clientes de otra tienda.
+ *
+ * Funciona como una tubería: el hilo que llama lee el archivo por bloques de líneas, cada bloque
+ * se valida en paralelo (RUT, nombre, celular, formato del email y formato del nombre) y los bloques
+ * validados se entregan al destino en el mismo orden del archivo, donde se revisan duplicados.
+ * La lectura del bloque siguiente se solapa con la validación de los anteriores.
+ */
+public class ImportadorUsuarios {
+
+    private static final int LINEAS_POR_BLOQUE = 4_096;
+
+    // Recibe cada usuario ya validado, en el orden del archivo
+    public interface Destino {
+        // Retorna null si lo acepta, o el motivo si lo rechaza (ej: email repetido)
+        String agregar(Usuario usuario);
+    }
+
+    // Fila rechazada, con su número de línea en el archivo
+    public static class Rechazo {
+        private final long linea;
+        private final String motivo;
+        private final String contenido;
+
+        Rechazo(long linea, String motivo, String contenido) {
+            this.linea = linea;
+            this.motivo = motivo;
+            this.contenido = contenido;
+        }
+
+        public long getLinea() {
+            return linea;
+        }
+
+        public String getMotivo() {
+            return motivo;
+        }
+
+        public String getContenido() {
+            return contenido;
+        }
+
+        @Override
+        public String toString() {
+            return "Línea " + linea + ": " + motivo + " -> " + contenido;
+        }
+    }
+
+    public static class Resultado {
+        private long leidas;
+        private long aceptados;
+        private final List<Rechazo> rechazos = new ArrayList<>();
+
+        public long getLeidas() {
+            return leidas;
+        }
+
+        public long getAceptados() {
+            return aceptados;
+        }
+
+        public List<Rechazo> getRechazos() {
+            return rechazos;
+        }
+
+        // Escribe el reporte de filas rechazadas, una por línea
+        public void guardarReporte(File archivo) throws IOException {
+            try (PrintWriter pw = new PrintWriter(archivo, StandardCharsets.UTF_8)) {
+                pw.println("linea|motivo|contenido");
+                for (Rechazo r : rechazos) {
+                    pw.println(r.linea + "|" + r.motivo + "|" + r.contenido);
+                }
+            }
+        }
+    }
+
+    private final ValidadorDatos validador;
+    private final int hilos;
+
+    public ImportadorUsuarios(ValidadorDatos validador) {
+        this(validador, Runtime.getRuntime().availableProcessors());
+    }
+
+    public ImportadorUsuarios(ValidadorDatos validador, int hilos) {
+        this.validador = validador;
+        this.hilos = Math.max(1, hilos);
+    }
+
+    public Resultado importar(File archivo, Destino destino) throws IOException {
+        Resultado resultado = new Resultado();
+        ExecutorService validadores = Executors.newFixedThreadPool(hilos, r -> {
+            Thread t = new Thread(r, "importacion-usuarios");
+            t.setDaemon(true);
+            return t;
+        });
+        // Bloques en vuelo, en orden de archivo; se limita para no cargar el archivo entero en memoria
+        ArrayDeque<CompletableFuture<List<Fila>>> enVuelo = new ArrayDeque<>();
+        int maximoEnVuelo = 2 * hilos + 1;
+        try (BufferedReader br = new BufferedReader(
+                new InputStreamReader(new FileInputStream(archivo), StandardCharsets.UTF_8), 1 << 16)) {
+            long numeroLinea = 0;
+            while (true) {
+                List<String> lineas = new ArrayList<>(LINEAS_POR_BLOQUE);
+                String linea;
+                while (lineas.size() < LINEAS_POR_BLOQUE && (linea = br.readLine()) != null) {
+                    lineas.add(linea);
+                }
+                if (lineas.isEmpty()) break;
+                final long primera = numeroLinea + 1;
+                numeroLinea += lineas.size();
+                enVuelo.add(CompletableFuture.supplyAsync(() -> validarBloque(lineas, primera), validadores));
+                while (enVuelo.size() >= maximoEnVuelo) {
+                    entregar(enVuelo.poll(), destino, resultado);
+                }
+            }
+            while (!enVuelo.isEmpty()) {
+                entregar(enVuelo.poll(), destino, resultado);
+            }
+        } finally {
+            validadores.shutdownNow();
+        }
+        return resultado;
+    }
+
+    // Pasa al destino un bloque validado. Los rechazos de validación ya vienen resueltos.
+    private static void entregar(CompletableFuture<List<Fila>> bloque, Destino destino, Resultado resultado) {
+        List<Fila> filas;
+        try {
+            filas = bloque.join();
+        } catch (CompletionException e) {
+            throw new IllegalStateException("Falló la validación de un bloque de usuarios.", e.getCause());
+        }
+        for (Fila fila : filas) {
+            resultado.leidas++;
+            String motivo = fila.usuario != null ? destino.agregar(fila.usuario) : fila.motivo;
+            if (motivo == null) {
+                resultado.aceptados++;
+            } else {
+                resultado.rechazos.add(new Rechazo(fila.linea, motivo, fila.contenido));
+            }
+        }
+    }
+
+    // Línea validada: trae el usuario listo para registrar o el motivo del rechazo
+    private static final class Fila {
+        final long linea;
+        final String contenido;
+        final Usuario usuario;
+        final String motivo;
+
+        Fila(long linea, String contenido, Usuario usuario, String motivo) {
+            this.linea = linea;
+            this.contenido = contenido;
+            this.usuario = usuario;
+            this.motivo = motivo;
+        }
+    }
+
+    // Valida un bloque; las líneas en blanco se saltan
+    private List<Fila> validarBloque(List<String> lineas, long primera) {
+        List<Fila> filas = new ArrayList<>(lineas.size());
+        for (int i = 0; i < lineas.size(); i++) {
+            String linea = lineas.get(i);
+            if (!linea.trim().isEmpty()) filas.add(validarLinea(linea, primera + i));
+        }
+        return filas;
+    }
+
+    private Fila validarLinea(String linea, long numero) {
+        String[] partes = linea.split("\\|", -1);
+        if (partes.length != 4) return new Fila(numero, linea, null, "Se esperaban 4 campos (rut|nombre|email|celular).");
+        String rut = partes[0].trim();
+        String nombre = partes[1].trim();
+        String email = partes[2].trim();
+        String celular = partes[3].trim();
+        try {
+            validador.validarRut(rut);
+            validador.validarNoVacio(nombre, "nombre");
+            validador.validarFormatoEmail(email);
+            validador.validarCelular(celular);
+        } catch (RutInvalidoException e) {
+            return new Fila(numero, linea, null, "RUT inválido.");
+        } catch (IllegalArgumentException e) {
+            return new Fila(numero, linea, null, e.getMessage());
+        }
+        return new Fila(numero, linea, new Usuario(rut, validador.formatearNombre(nombre), email, celular), null);
+    }
+}
@@ -0,0 +1,174 @@
+package comiccollector.servicios;
+
+import comiccollector.modelos.Comic;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Índice secundario del catálogo sobre un campo de texto del cómic (nombre o autor; el tipo es
+ * un TipoProducto y se filtra en el inventario, sin índice).
+ * La clave se normaliza sin tildes, en minúsculas y con espacios simples, así "Pokémon",
+ * "POKEMON" y " pokemon " caen en el mismo grupo. Las búsquedas cuestan O(coincidencias).
+ */
+public class IndiceTexto {
+
+    private static final Pattern MARCAS = Pattern.compile("\\p{M}+");
+    private static final Pattern ESPACIOS = Pattern.compile("\\s+");
+
+    // Textos con tildes ya normalizados (se repiten mucho, sobre todo los autores), para no repetir Normalizer
+    private static final int MAX_CACHE = 8_192;
+    private static final Map<String, String> cacheNormalizados = new ConcurrentHashMap<>();
+
+    private final Function<Comic, String> campo;
+    // Listas y no conjuntos: con millones de cómics cada nodo de un LinkedHashSet pesa demasiado.
+    // Quitar recorre solo el grupo del cómic, y eliminar productos es poco frecuente.
+    private final Map<Clave, ArrayList<Comic>> grupos = new HashMap<>();
+
+    public IndiceTexto(Function<Comic, String> campo) {
+        this.campo = campo;
+    }
+
+    /**
+     * Clave que compara dos textos como si ya estuvieran normalizados, sin construir el texto
+     * normalizado: así indexar un millón de nombres no crea un String nuevo por cada uno.
+     * Los textos con tildes u otros caracteres no ASCII pasan antes por normalizar().
+     */
+    private static final class Clave {
+        final String texto;
+        final int hash;
+
+        Clave(String original) {
+            this.texto = esAscii(original) ? original : normalizar(original);
+            // Mismo hash que tendría el texto normalizado, en una sola pasada
+            int h = 0;
+            boolean espacio = false;
+            boolean inicio = true;
+            for (int i = 0; i < texto.length(); i++) {
+                char c = texto.charAt(i);
+                if (c <= ' ') {
+                    espacio = !inicio;
+                    continue;
+                }
+                if (espacio) {
+                    h = 31 * h + ' ';
+                    espacio = false;
+                }
+                if (c >= 'A' && c <= 'Z') c = (char) (c + ('a' - 'A'));
+                h = 31 * h + c;
+                inicio = false;
+            }
+            this.hash = h;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Clave)) return false;
+            Clave otra = (Clave) o;
+            if (hash != otra.hash) return false;
+            // Lo común es que el texto venga escrito igual que el que creó el grupo
+            if (texto.equals(otra.texto)) return true;
+            int i = 0;
+            int j = 0;
+            while (true) {
+                long p = siguiente(texto, i);
+                long q = siguiente(otra.texto, j);
+                if (p < 0 || q < 0) return p < 0 && q < 0;
+                if ((char) p != (char) q) return false;
+                i = (int) (p >>> 16);
+                j = (int) (q >>> 16);
+            }
+        }
+    }
+
+    // Próximo carácter normalizado desde i, como (índiceSiguiente << 16) | carácter, o -1 al final.
+    // Se saltan los espacios del inicio y del final, y cada tramo de espacios cuenta como uno.
+    private static long siguiente(String s, int i) {
+        int n = s.length();
+        if (i == 0) {
+            while (i < n && s.charAt(i) <= ' ') i++;
+        }
+        if (i >= n) return -1;
+        char c = s.charAt(i);
+        if (c <= ' ') {
+            int j = i;
+            while (j < n && s.charAt(j) <= ' ') j++;
+            return j == n ? -1 : ((long) j << 16) | ' ';
+        }
+        if (c >= 'A' && c <= 'Z') c = (char) (c + ('a' - 'A'));
+        return ((long) (i + 1) << 16) | c;
+    }
+
+    private static boolean esAscii(String texto) {
+        for (int i = 0; i < texto.length(); i++) {
+            if (texto.charAt(i) >= 0x80) return false;
+        }
+        return true;
+    }
+
+    // Quita tildes, pasa a minúsculas y colapsa los espacios
+    public static String normalizar(String texto) {
+        if (texto == null) return "";
+        if (esAscii(texto)) {
+            StringBuilder sb = new StringBuilder(texto.length());
+            int i = 0;
+            long p;
+            while ((p = siguiente(texto, i)) >= 0) {
+                sb.append((char) p);
+                i = (int) (p >>> 16);
+            }
+            return sb.toString();
+        }
+        String guardado = cacheNormalizados.get(texto);
+        if (guardado != null) return guardado;
+        String sinMarcas = MARCAS.matcher(Normalizer.normalize(texto, Normalizer.Form.NFD)).replaceAll("");
+        String normalizado = ESPACIOS.matcher(sinMarcas.trim()).replaceAll(" ").toLowerCase(Locale.ROOT);
+        if (cacheNormalizados.size() >= MAX_CACHE) cacheNormalizados.clear();
+        cacheNormalizados.put(texto, normalizado);
+        return normalizado;
+    }
+
+    public synchronized void agregar(Comic comic) {
+        grupos.computeIfAbsent(new Clave(campo.apply(comic)), k -> new ArrayList<>(2)).add(comic);
+    }
+
+    // Para la carga inicial: toma el candado una sola vez
+    public synchronized void agregarTodos(Collection<Comic> nuevos) {
+        for (Comic c : nuevos) {
+            agregar(c);
+        }
+    }
+
+    public synchronized void quitar(Comic comic) {
+        Clave clave = new Clave(campo.apply(comic));
+        ArrayList<Comic> grupo = grupos.get(clave);
+        if (grupo == null) return;
+        for (int i = 0; i < grupo.size(); i++) {
+            // Por identidad: dos cómics con los mismos datos son productos distintos
+            if (grupo.get(i) == comic) {
+                grupo.remove(i);
+                break;
+            }
+        }
+        if (grupo.isEmpty()) grupos.remove(clave);
+    }
+
+    // Cómics cuyo campo coincide con el texto, ignorando mayúsculas y tildes. En orden de ingreso.
+    public synchronized List<Comic> buscar(String texto) {
+        ArrayList<Comic> grupo = grupos.get(new Clave(texto == null ? "" : texto));
+        return grupo == null ? new ArrayList<>() : new ArrayList<>(grupo);
+    }
+}
@@ -0,0 +1,333 @@
+package comiccollector.servicios;
+
+import comiccollector.modelos.Comic;
+import comiccollector.modelos.ReservaCompra;
+import comiccollector.modelos.TipoProducto;
+import comiccollector.modelos.Usuario;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Instantánea binaria del estado completo del sistema: catálogo, usuarios con sus historiales,
+ * productos reservados y contador de códigos. Guarda además hasta qué punto cubre los archivos
+ * de texto (bytes de usuarios.txt y reservas.txt) y la bitácora (LSN), para que al arrancar solo
+ * se lea lo posterior.
+ *
+ * Formato: número mágico, versión, contenido y al final un CRC32 de todo lo anterior.
+ * Los nombres y autores van una sola vez en una tabla de textos y cada cómic guarda sus índices;
+ * el tipo va como ordinal de TipoProducto. Las compras de cada usuario llevan su instante.
+ * Si la versión no coincide o el CRC falla, leer() lanza IOException y se hace la carga completa.
+ */
+public class InstantaneaSistema {
+
+    private static final int MAGIA = 0x43435331; // "CCS1"
+    private static final int VERSION = 3;
+    private static final long SIN_FECHA = Long.MIN_VALUE;
+
+    private final long lsn;
+    private final int ultimoCodigo;
+    private final long tamanoCsv;
+    private final long modificacionCsv;
+    private final long bytesUsuarios;
+    private final long bytesReservas;
+    private final List<Comic> catalogo;
+    private final List<Usuario> usuarios;
+    private final List<String> productosReservados;
+
+    public InstantaneaSistema(long lsn, int ultimoCodigo, long tamanoCsv, long modificacionCsv,
+                              long bytesUsuarios, long bytesReservas, List<Comic> catalogo,
+                              List<Usuario> usuarios, List<String> productosReservados) {
+        this.lsn = lsn;
+        this.ultimoCodigo = ultimoCodigo;
+        this.tamanoCsv = tamanoCsv;
+        this.modificacionCsv = modificacionCsv;
+        this.bytesUsuarios = bytesUsuarios;
+        this.bytesReservas = bytesReservas;
+        this.catalogo = catalogo;
+        this.usuarios = usuarios;
+        this.productosReservados = productosReservados;
+    }
+
+    // Codifica en memoria. Debe llamarse con el estado detenido para que sea consistente.
+    public byte[] codificar() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 16);
+        CRC32 crc = new CRC32();
+        DataOutputStream out = new DataOutputStream(new CheckedOutputStream(bytes, crc));
+        out.writeInt(MAGIA);
+        out.writeInt(VERSION);
+        out.writeLong(lsn);
+        out.writeInt(ultimoCodigo);
+        out.writeLong(tamanoCsv);
+        out.writeLong(modificacionCsv);
+        out.writeLong(bytesUsuarios);
+        out.writeLong(bytesReservas);
+
+        // Tabla de cómics: los del catálogo y los que solo siguen en algún historial
+        Map<Comic, Integer> indices = new IdentityHashMap<>();
+        List<Comic> tabla = new ArrayList<>(catalogo);
+        for (Comic c : catalogo) indices.put(c, indices.size());
+        for (Usuario u : usuarios) {
+            u.recorrerCompras((comic, cantidad, segundos) -> agregarHistorico(comic, indices, tabla));
+            for (ReservaCompra rc : u.getHistorialReservas()) {
+                agregarHistorico(rc.getComic(), indices, tabla);
+            }
+        }
+        // Tabla de textos: cada nombre o autor distinto una vez
+        Map<String, Integer> idsTextos = new HashMap<>();
+        List<String> textos = new ArrayList<>();
+        for (Comic c : tabla) {
+            for (String texto : new String[]{c.getNombre(), c.getAutorOFabricante()}) {
+                if (texto != null && idsTextos.putIfAbsent(texto, textos.size()) == null) textos.add(texto);
+            }
+        }
+        out.writeInt(textos.size());
+        for (String texto : textos) {
+            escribirTexto(out, texto);
+        }
+
+        out.writeInt(tabla.size());
+        for (int i = 0; i < tabla.size(); i++) {
+            Comic c = tabla.get(i);
+            out.writeBoolean(i < catalogo.size());
+            escribirTexto(out, c.getCodigo());
+            out.writeByte(c.getTipoProducto().ordinal());
+            out.writeInt(c.getNombre() == null ? -1 : idsTextos.get(c.getNombre()));
+            out.writeInt(c.getAutorOFabricante() == null ? -1 : idsTextos.get(c.getAutorOFabricante()));
+            out.writeInt(c.getCantidadDisponible());
+            out.writeLong(c.getFechaLlegada() == null ? SIN_FECHA : c.getFechaLlegada().toEpochDay());
+            out.writeDouble(c.getPrecio());
+        }
+
+        out.writeInt(usuarios.size());
+        for (Usuario u : usuarios) {
+            escribirTexto(out, u.getRut());
+            escribirTexto(out, u.getNombre());
+            escribirTexto(out, u.getEmail());
+            escribirTexto(out, u.getCelular());
+            escribirCompras(out, u, indices);
+            escribirHistorial(out, u.getHistorialReservas(), indices);
+        }
+
+        out.writeInt(productosReservados.size());
+        for (String codigo : productosReservados) {
+            escribirTexto(out, codigo);
+        }
+        out.flush();
+
+        // El CRC va fuera del flujo con checksum
+        new DataOutputStream(bytes).writeLong(crc.getValue());
+        return bytes.toByteArray();
+    }
+
+    private static void agregarHistorico(Comic comic, Map<Comic, Integer> indices, List<Comic> tabla) {
+        if (!indices.containsKey(comic)) {
+            indices.put(comic, indices.size());
+            tabla.add(comic);
+        }
+    }
+
+    // Compras desde el historial compacto: cómic, cantidad e instante
+    private static void escribirCompras(DataOutputStream out, Usuario u, Map<Comic, Integer> indices) throws IOException {
+        out.writeInt(u.cantidadCompras());
+        try {
+            u.recorrerCompras((comic, cantidad, segundos) -> {
+                try {
+                    out.writeInt(indices.get(comic));
+                    out.writeInt(cantidad);
+                    out.writeLong(segundos);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void escribirHistorial(DataOutputStream out, List<ReservaCompra> historial, Map<Comic, Integer> indices) throws IOException {
+        out.writeInt(historial.size());
+        for (ReservaCompra rc : historial) {
+            out.writeInt(indices.get(rc.getComic()));
+            out.writeInt(rc.getCantidad());
+        }
+    }
+
+    private static void escribirTexto(DataOutputStream out, String texto) throws IOException {
+        if (texto == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] b = texto.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    // Escribe en un archivo temporal y lo renombra, así nunca queda una instantánea a medias
+    public static void escribir(byte[] datos, File archivo) throws IOException {
+        File temporal = new File(archivo.getPath() + ".tmp");
+        try (FileChannel canal = FileChannel.open(temporal.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(datos);
+            while (buffer.hasRemaining()) {
+                canal.write(buffer);
+            }
+            canal.force(true);
+        }
+        Files.move(temporal.toPath(), archivo.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        // La bitácora se recorta después de esto, así que el renombre debe sobrevivir a un corte de luz
+        BitacoraOperaciones.sincronizarDirectorio(archivo);
+    }
+
+    // Lee la instantánea mapeando el archivo. Lanza IOException si está corrupta o es de otra versión.
+    public static InstantaneaSistema leer(File archivo) throws IOException {
+        try (FileChannel canal = FileChannel.open(archivo.toPath(), StandardOpenOption.READ)) {
+            long tamano = canal.size();
+            if (tamano < 16 || tamano > Integer.MAX_VALUE) throw new IOException("tamaño inválido");
+            return leer(canal.map(FileChannel.MapMode.READ_ONLY, 0, tamano));
+        }
+    }
+
+    // Lee una instantánea recibida en memoria (ej: la que el primario manda a una réplica)
+    public static InstantaneaSistema leer(byte[] datos) throws IOException {
+        if (datos.length < 16) throw new IOException("tamaño inválido");
+        return leer(ByteBuffer.wrap(datos));
+    }
+
+    private static InstantaneaSistema leer(ByteBuffer datos) throws IOException {
+        try {
+            int tamano = datos.limit();
+            ByteBuffer contenido = datos.duplicate();
+            contenido.limit(tamano - 8);
+            CRC32 crc = new CRC32();
+            crc.update(contenido);
+            if (crc.getValue() != datos.getLong(tamano - 8)) throw new IOException("checksum no coincide");
+
+            datos.limit(tamano - 8);
+            if (datos.getInt() != MAGIA) throw new IOException("no es una instantánea");
+            int version = datos.getInt();
+            if (version != VERSION) throw new IOException("versión " + version + " no soportada");
+            return decodificar(datos);
+        } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new IOException("instantánea mal formada", e);
+        }
+    }
+
+    private static InstantaneaSistema decodificar(ByteBuffer in) {
+        long lsn = in.getLong();
+        int ultimoCodigo = in.getInt();
+        long tamanoCsv = in.getLong();
+        long modificacionCsv = in.getLong();
+        long bytesUsuarios = in.getLong();
+        long bytesReservas = in.getLong();
+
+        byte[] auxiliar = new byte[256];
+        String[] textos = new String[in.getInt()];
+        for (int i = 0; i < textos.length; i++) {
+            textos[i] = leerTexto(in, auxiliar);
+        }
+
+        int cantidadComics = in.getInt();
+        Comic[] tabla = new Comic[cantidadComics];
+        List<Comic> catalogo = new ArrayList<>(cantidadComics);
+        for (int i = 0; i < cantidadComics; i++) {
+            boolean enCatalogo = in.get() != 0;
+            String codigo = leerTexto(in, auxiliar);
+            TipoProducto tipo = TipoProducto.desdeOrdinal(in.get());
+            int nombre = in.getInt();
+            int autor = in.getInt();
+            int cantidad = in.getInt();
+            long dia = in.getLong();
+            double precio = in.getDouble();
+            tabla[i] = new Comic(codigo, tipo, nombre < 0 ? null : textos[nombre], autor < 0 ? null : textos[autor], cantidad, dia == SIN_FECHA ? null : LocalDate.ofEpochDay(dia), precio);
+            if (enCatalogo) catalogo.add(tabla[i]);
+        }
+
+        int cantidadUsuarios = in.getInt();
+        List<Usuario> usuarios = new ArrayList<>(cantidadUsuarios);
+        for (int i = 0; i < cantidadUsuarios; i++) {
+            Usuario u = new Usuario(leerTexto(in, auxiliar), leerTexto(in, auxiliar),
+                    leerTexto(in, auxiliar), leerTexto(in, auxiliar));
+            int compras = in.getInt();
+            for (int k = 0; k < compras; k++) {
+                Comic c = tabla[in.getInt()];
+                int cantidad = in.getInt();
+                u.agregarCompra(c, cantidad, in.getLong());
+            }
+            int reservas = in.getInt();
+            for (int k = 0; k < reservas; k++) {
+                Comic c = tabla[in.getInt()];
+                u.agregarReserva(c, in.getInt());
+            }
+            usuarios.add(u);
+        }
+
+        int cantidadReservados = in.getInt();
+        List<String> reservados = new ArrayList<>(cantidadReservados);
+        for (int i = 0; i < cantidadReservados; i++) {
+            reservados.add(leerTexto(in, auxiliar));
+        }
+        return new InstantaneaSistema(lsn, ultimoCodigo, tamanoCsv, modificacionCsv, bytesUsuarios,
+                bytesReservas, catalogo, usuarios, reservados);
+    }
+
+    private static String leerTexto(ByteBuffer in, byte[] auxiliar) {
+        int largo = in.getInt();
+        if (largo < 0) return null;
+        byte[] destino = largo <= auxiliar.length ? auxiliar : new byte[largo];
+        in.get(destino, 0, largo);
+        return new String(destino, 0, largo, StandardCharsets.UTF_8);
+    }
+
+    public long getLsn() {
+        return lsn;
+    }
+
+    public int getUltimoCodigo() {
+        return ultimoCodigo;
+    }
+
+    // true si comics.csv no cambió desde que se tomó la instantánea
+    public boolean coincideCsv(File csv) {
+        return csv.length() == tamanoCsv && csv.lastModified() == modificacionCsv;
+    }
+
+    public long getBytesUsuarios() {
+        return bytesUsuarios;
+    }
+
+    public long getBytesReservas() {
+        return bytesReservas;
+    }
+
+    public List<Comic> getCatalogo() {
+        return catalogo;
+    }
+
+    public List<Usuario> getUsuarios() {
+        return usuarios;
+    }
+
+    public Collection<String> getProductosReservados() {
+        return productosReservados;
+    }
+}
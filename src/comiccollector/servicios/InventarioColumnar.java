@@ -0,0 +1,427 @@
+package comiccollector.servicios;
+
+import comiccollector.modelos.Comic;
+import comiccollector.modelos.TipoProducto;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Inventario en columnas: cada producto es una fila (un int denso, en orden de ingreso) y sus datos
+ * van en arreglos de tipos primitivos (stock, precio, día de llegada, número de código). El tipo
+ * se guarda como ordinal de TipoProducto y el nombre y el autor como ids de un DiccionarioTextos,
+ * así los textos repetidos (series, autores) existen una sola vez. Cada fila tiene una sola vista
+ * Comic de 24 bytes, la que se entrega en cada búsqueda, así los índices y los historiales
+ * comparten el mismo objeto.
+ *
+ * Los códigos que genera el sistema ("%03d") se traducen a fila con un arreglo indexado por el
+ * número, sin hashear ni crear objetos; los códigos con otro formato (ej. cargados de un csv
+ * editado a mano) van a un mapa aparte. Buscar una fila, leer o descontar stock y recorrer el
+ * inventario por fila no crean objetos.
+ *
+ * Las columnas van en bloques de 4096 filas que nunca se mueven: al crecer solo se copia el
+ * arreglo de bloques, así un descuento de stock concurrente no se pierde en la copia. Agregar y
+ * quitar se serializan; leer y descontar stock no toman candados (el stock usa CAS).
+ * Las filas quitadas no se reutilizan: los historiales de compra siguen apuntando a ellas.
+ */
+public class InventarioColumnar implements Comic.Almacen {
+
+    private static final int BITS_BLOQUE = 12;
+    private static final int TAMANO_BLOQUE = 1 << BITS_BLOQUE;
+    private static final int MASCARA = TAMANO_BLOQUE - 1;
+    // Número máximo de código que se guarda en el arreglo directo (9 dígitos)
+    private static final int MAX_NUMERO = 999_999_999;
+    private static final VarHandle ENTERO = MethodHandles.arrayElementVarHandle(int[].class);
+
+    // Bloques de cada columna. Se reemplaza entero al crecer; los bloques se comparten.
+    private static final class Columnas {
+        final int[][] stock;
+        final int[][] diaLlegada;
+        final double[][] precio;
+        // Número del código, o -1 si el código no tiene el formato del sistema (ver codigoTexto)
+        final int[][] numeroCodigo;
+        final String[][] codigoTexto;
+        // Ordinal de TipoProducto
+        final byte[][] tipo;
+        // Ids en el diccionario de textos
+        final int[][] nombre;
+        final int[][] autor;
+        // Número de la quita que sacó la fila (1, 2, 3...), 0 si sigue vigente
+        final int[][] quitadaEn;
+        final Comic[][] vista;
+
+        Columnas(int bloques) {
+            stock = new int[bloques][];
+            diaLlegada = new int[bloques][];
+            precio = new double[bloques][];
+            numeroCodigo = new int[bloques][];
+            codigoTexto = new String[bloques][];
+            tipo = new byte[bloques][];
+            nombre = new int[bloques][];
+            autor = new int[bloques][];
+            quitadaEn = new int[bloques][];
+            vista = new Comic[bloques][];
+        }
+
+        Columnas(Columnas antes, int bloques) {
+            stock = Arrays.copyOf(antes.stock, bloques);
+            diaLlegada = Arrays.copyOf(antes.diaLlegada, bloques);
+            precio = Arrays.copyOf(antes.precio, bloques);
+            numeroCodigo = Arrays.copyOf(antes.numeroCodigo, bloques);
+            codigoTexto = Arrays.copyOf(antes.codigoTexto, bloques);
+            tipo = Arrays.copyOf(antes.tipo, bloques);
+            nombre = Arrays.copyOf(antes.nombre, bloques);
+            autor = Arrays.copyOf(antes.autor, bloques);
+            quitadaEn = Arrays.copyOf(antes.quitadaEn, bloques);
+            vista = Arrays.copyOf(antes.vista, bloques);
+        }
+
+        void crearBloque(int b) {
+            stock[b] = new int[TAMANO_BLOQUE];
+            diaLlegada[b] = new int[TAMANO_BLOQUE];
+            precio[b] = new double[TAMANO_BLOQUE];
+            numeroCodigo[b] = new int[TAMANO_BLOQUE];
+            codigoTexto[b] = new String[TAMANO_BLOQUE];
+            tipo[b] = new byte[TAMANO_BLOQUE];
+            nombre[b] = new int[TAMANO_BLOQUE];
+            autor[b] = new int[TAMANO_BLOQUE];
+            quitadaEn[b] = new int[TAMANO_BLOQUE];
+            vista[b] = new Comic[TAMANO_BLOQUE];
+        }
+    }
+
+    /**
+     * El inventario tal como estaba después de un cambio: una foto inmutable que se toma en O(1) y
+     * se recorre sin candados mientras el inventario sigue cambiando.
+     *
+     * Las filas no se reutilizan y una fila quitada guarda el número de su quita, así que la foto
+     * es solo el arreglo de bloques, la cantidad de filas y cuántas quitas había: una fila está en
+     * la foto si es anterior a su tamaño y no se quitó o se quitó después. El stock y lo demás se
+     * leen al recorrer (valores actuales de cada producto); lo que fija la foto es qué productos hay.
+     */
+    public static final class Foto extends AbstractCollection<Comic> {
+        private final InventarioColumnar inventario;
+        private final Columnas columnas;
+        // Filas usadas, incluidas las quitadas
+        private final int filas;
+        private final int quitadas;
+        private final int activas;
+
+        private Foto(InventarioColumnar inventario, Columnas columnas, int filas, int quitadas, int activas) {
+            this.inventario = inventario;
+            this.columnas = columnas;
+            this.filas = filas;
+            this.quitadas = quitadas;
+            this.activas = activas;
+        }
+
+        // Crece con cada cambio: dos fotos con la misma versión tienen los mismos productos
+        public long getVersion() {
+            return (long) filas + quitadas;
+        }
+
+        public boolean contieneFila(int fila) {
+            if (fila < 0 || fila >= filas) return false;
+            int quitadaEn = columnas.quitadaEn[fila >>> BITS_BLOQUE][fila & MASCARA];
+            return quitadaEn == 0 || quitadaEn > quitadas;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof Comic && ((Comic) o).getAlmacen() == inventario && contieneFila(((Comic) o).getFila());
+        }
+
+        @Override
+        public int size() {
+            return activas;
+        }
+
+        // En orden de ingreso
+        @Override
+        public Iterator<Comic> iterator() {
+            return new Iterator<Comic>() {
+                private int siguiente = buscarDesde(0);
+
+                @Override
+                public boolean hasNext() {
+                    return siguiente < filas;
+                }
+
+                @Override
+                public Comic next() {
+                    if (siguiente >= filas) throw new NoSuchElementException();
+                    Comic comic = columnas.vista[siguiente >>> BITS_BLOQUE][siguiente & MASCARA];
+                    siguiente = buscarDesde(siguiente + 1);
+                    return comic;
+                }
+
+                private int buscarDesde(int fila) {
+                    while (fila < filas && !contieneFila(fila)) fila++;
+                    return fila;
+                }
+            };
+        }
+    }
+
+    private volatile Columnas columnas = new Columnas(0);
+    // Se reemplaza después de cada cambio, con la fila ya llenada o marcada
+    private volatile Foto foto = new Foto(this, columnas, 0, 0, 0);
+    // Número de código → fila + 1 (0 = no existe), también en bloques
+    private volatile int[][] filaPorNumero = new int[0][];
+    private final ConcurrentHashMap<String, Integer> filaPorOtroCodigo = new ConcurrentHashMap<>();
+    // Nombres y autores, compartidos por todas las filas
+    private final DiccionarioTextos textos = new DiccionarioTextos();
+
+    // Búsqueda
+
+    // Fila del producto con ese código, -1 si no existe. No crea objetos.
+    public int fila(String codigo) {
+        int numero = numeroDe(codigo);
+        if (numero < 0) {
+            if (codigo == null) return -1;
+            Integer fila = filaPorOtroCodigo.get(codigo);
+            return fila == null ? -1 : fila;
+        }
+        int[][] mapa = filaPorNumero;
+        int b = numero >>> BITS_BLOQUE;
+        if (b >= mapa.length || mapa[b] == null) return -1;
+        return (int) ENTERO.getAcquire(mapa[b], numero & MASCARA) - 1;
+    }
+
+    public boolean contiene(String codigo) {
+        return fila(codigo) >= 0;
+    }
+
+    // Vista del producto, null si no existe
+    public Comic get(String codigo) {
+        int fila = fila(codigo);
+        return fila < 0 ? null : vista(fila);
+    }
+
+    public Comic vista(int fila) {
+        return columnas.vista[fila >>> BITS_BLOQUE][fila & MASCARA];
+    }
+
+    // Productos vigentes
+    public int tamano() {
+        return foto.activas;
+    }
+
+    // Filas usadas, incluidas las de productos quitados; las filas válidas van de 0 a filas() - 1
+    public int filas() {
+        return foto.filas;
+    }
+
+    public boolean activa(int fila) {
+        return columnas.quitadaEn[fila >>> BITS_BLOQUE][fila & MASCARA] == 0;
+    }
+
+    // Los productos vigentes ahora, como foto inmutable. O(1), sin candados ni copias.
+    public Foto foto() {
+        return foto;
+    }
+
+    // Copia de los productos vigentes, en orden de ingreso
+    public ArrayList<Comic> comics() {
+        return new ArrayList<>(foto);
+    }
+
+    // Vistas de los productos vigentes de un tipo, en orden de ingreso. Compara bytes, sin leer textos.
+    public ArrayList<Comic> deTipo(TipoProducto tipo) {
+        ArrayList<Comic> resultado = new ArrayList<>();
+        if (tipo == null) return resultado;
+        byte ordinal = (byte) tipo.ordinal();
+        Foto actual = foto;
+        int total = actual.filas;
+        Columnas c = actual.columnas;
+        for (int f = 0; f < total; f++) {
+            int b = f >>> BITS_BLOQUE;
+            int i = f & MASCARA;
+            if (c.tipo[b][i] == ordinal && c.quitadaEn[b][i] == 0) resultado.add(c.vista[b][i]);
+        }
+        return resultado;
+    }
+
+    // Nombres y autores distintos guardados en el diccionario; sus ids van de 0 a textosDistintos() - 1
+    public int textosDistintos() {
+        return textos.tamano();
+    }
+
+    // Id del nombre de la fila en el diccionario (-1 si no tiene)
+    public int idNombre(int fila) {
+        return columnas.nombre[fila >>> BITS_BLOQUE][fila & MASCARA];
+    }
+
+    public String texto(int id) {
+        return textos.texto(id);
+    }
+
+    // Cambios (serializados entre sí)
+
+    /**
+     * Agrega el producto en una fila nueva y deja al cómic como vista de esa fila.
+     * Si el cómic ya es de este inventario no hace nada. Retorna la fila.
+     */
+    public synchronized int agregar(Comic comic) {
+        if (comic.getAlmacen() == this) return comic.getFila();
+        String codigo = comic.getCodigo();
+        if (codigo == null) throw new IllegalArgumentException("El producto no tiene código.");
+        if (contiene(codigo)) throw new IllegalArgumentException("Ya existe un producto con código " + codigo + ".");
+        Foto actual = foto;
+        int fila = actual.filas;
+        int b = fila >>> BITS_BLOQUE;
+        int i = fila & MASCARA;
+        Columnas c = columnas;
+        if (b >= c.stock.length) {
+            c = new Columnas(c, Math.max(4, c.stock.length * 2));
+            columnas = c;
+        }
+        if (c.stock[b] == null) c.crearBloque(b);
+        int numero = numeroDe(codigo);
+        c.stock[b][i] = comic.getCantidadDisponible();
+        c.diaLlegada[b][i] = comic.getDiaLlegada();
+        c.precio[b][i] = comic.getPrecio();
+        c.numeroCodigo[b][i] = numero;
+        c.codigoTexto[b][i] = numero < 0 ? codigo : null;
+        c.tipo[b][i] = (byte) comic.getTipoProducto().ordinal();
+        c.nombre[b][i] = textos.id(comic.getNombre());
+        c.autor[b][i] = textos.id(comic.getAutorOFabricante());
+        comic.vincular(this, fila);
+        c.vista[b][i] = comic;
+        if (numero < 0) {
+            filaPorOtroCodigo.put(codigo, fila);
+        } else {
+            ENTERO.setRelease(bloqueNumeros(numero), numero & MASCARA, fila + 1);
+        }
+        foto = new Foto(this, c, fila + 1, actual.quitadas, actual.activas + 1);
+        return fila;
+    }
+
+    public synchronized void agregarTodos(Collection<Comic> nuevos) {
+        for (Comic c : nuevos) {
+            agregar(c);
+        }
+    }
+
+    // Quita el producto. La fila queda con sus datos para los historiales. Retorna su vista o null.
+    public synchronized Comic quitar(String codigo) {
+        int fila = fila(codigo);
+        if (fila < 0) return null;
+        int numero = numeroDe(codigo);
+        if (numero < 0) {
+            filaPorOtroCodigo.remove(codigo);
+        } else {
+            ENTERO.setRelease(filaPorNumero[numero >>> BITS_BLOQUE], numero & MASCARA, 0);
+        }
+        // Se marca antes de publicar la foto nueva: una foto anterior que ya vea la marca igual
+        // incluye la fila, porque su número de quitas es menor
+        Foto actual = foto;
+        int quita = actual.quitadas + 1;
+        columnas.quitadaEn[fila >>> BITS_BLOQUE][fila & MASCARA] = quita;
+        foto = new Foto(this, actual.columnas, actual.filas, quita, actual.activas - 1);
+        return vista(fila);
+    }
+
+    private int[] bloqueNumeros(int numero) {
+        int b = numero >>> BITS_BLOQUE;
+        int[][] mapa = filaPorNumero;
+        if (b >= mapa.length) {
+            mapa = Arrays.copyOf(mapa, Math.max(b + 1, mapa.length * 2));
+        }
+        if (mapa[b] == null) {
+            mapa[b] = new int[TAMANO_BLOQUE];
+        }
+        filaPorNumero = mapa;
+        return mapa[b];
+    }
+
+    // Número de un código con el formato del sistema ("%03d"), -1 si tiene otro formato
+    static int numeroDe(String codigo) {
+        if (codigo == null) return -1;
+        int largo = codigo.length();
+        if (largo < 3 || largo > 9 || (largo > 3 && codigo.charAt(0) == '0')) return -1;
+        int numero = 0;
+        for (int i = 0; i < largo; i++) {
+            char c = codigo.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            numero = numero * 10 + (c - '0');
+        }
+        return numero <= MAX_NUMERO ? numero : -1;
+    }
+
+    // Inverso de numeroDe
+    static String codigoDe(int numero) {
+        if (numero >= 100) return Integer.toString(numero);
+        char[] digitos = {'0', (char) ('0' + numero / 10), (char) ('0' + numero % 10)};
+        return new String(digitos);
+    }
+
+    // Comic.Almacen: lectura y stock por fila, sin crear objetos (salvo el texto de un código)
+
+    @Override
+    public String codigo(int fila) {
+        Columnas c = columnas;
+        int numero = c.numeroCodigo[fila >>> BITS_BLOQUE][fila & MASCARA];
+        return numero < 0 ? c.codigoTexto[fila >>> BITS_BLOQUE][fila & MASCARA] : codigoDe(numero);
+    }
+
+    @Override
+    public TipoProducto tipo(int fila) {
+        return TipoProducto.desdeOrdinal(columnas.tipo[fila >>> BITS_BLOQUE][fila & MASCARA]);
+    }
+
+    @Override
+    public String nombre(int fila) {
+        return textos.texto(columnas.nombre[fila >>> BITS_BLOQUE][fila & MASCARA]);
+    }
+
+    @Override
+    public String autor(int fila) {
+        return textos.texto(columnas.autor[fila >>> BITS_BLOQUE][fila & MASCARA]);
+    }
+
+    @Override
+    public int cantidad(int fila) {
+        return (int) ENTERO.getVolatile(columnas.stock[fila >>> BITS_BLOQUE], fila & MASCARA);
+    }
+
+    @Override
+    public int diaLlegada(int fila) {
+        return columnas.diaLlegada[fila >>> BITS_BLOQUE][fila & MASCARA];
+    }
+
+    @Override
+    public double precio(int fila) {
+        return columnas.precio[fila >>> BITS_BLOQUE][fila & MASCARA];
+    }
+
+    @Override
+    public void asignarCantidad(int fila, int cantidad) {
+        ENTERO.setVolatile(columnas.stock[fila >>> BITS_BLOQUE], fila & MASCARA, cantidad);
+    }
+
+    @Override
+    public boolean descontarStock(int fila, int cantidad) {
+        // Con una cantidad negativa el CAS sumaría stock
+        if (cantidad <= 0) throw new IllegalArgumentException("La cantidad a descontar debe ser mayor a cero.");
+        int[] bloque = columnas.stock[fila >>> BITS_BLOQUE];
+        int i = fila & MASCARA;
+        while (true) {
+            int actual = (int) ENTERO.getVolatile(bloque, i);
+            if (actual < cantidad) return false;
+            if (ENTERO.compareAndSet(bloque, i, actual, actual - cantidad)) return true;
+        }
+    }
+
+    @Override
+    public void reponerStock(int fila, int cantidad) {
+        ENTERO.getAndAdd(columnas.stock[fila >>> BITS_BLOQUE], fila & MASCARA, cantidad);
+    }
+}
@@ -0,0 +1,83 @@
+package comiccollector.servicios;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * Lista a la que solo se agrega al final, con fotos inmutables en O(1).
+ *
+ * Los elementos van en bloques de 4096. Una foto es el arreglo de bloques y el tamaño al momento
+ * de tomarla: lo que se agrega después cae más allá de su tamaño y no lo ve. Reemplazar un elemento
+ * (caso raro) copia solo su bloque y el arreglo de bloques, así las fotos anteriores no cambian.
+ *
+ * Agregar y reemplazar se serializan; foto() y la lectura de una foto no toman candados.
+ */
+public class ListaCreciente<T> {
+
+    private static final int BITS_BLOQUE = 12;
+    private static final int TAMANO_BLOQUE = 1 << BITS_BLOQUE;
+    private static final int MASCARA = TAMANO_BLOQUE - 1;
+
+    // La lista tal como estaba en un momento. Inmutable.
+    public static final class Foto<T> extends AbstractList<T> implements RandomAccess {
+        private final Object[][] bloques;
+        private final int tamano;
+
+        private Foto(Object[][] bloques, int tamano) {
+            this.bloques = bloques;
+            this.tamano = tamano;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T get(int i) {
+            if (i < 0 || i >= tamano) throw new IndexOutOfBoundsException("Posición " + i + " de " + tamano + ".");
+            return (T) bloques[i >>> BITS_BLOQUE][i & MASCARA];
+        }
+
+        @Override
+        public int size() {
+            return tamano;
+        }
+    }
+
+    private volatile Foto<T> vigente = new Foto<>(new Object[0][], 0);
+
+    public synchronized void agregar(T elemento) {
+        Foto<T> actual = vigente;
+        Object[][] bloques = actual.bloques;
+        int i = actual.tamano;
+        int b = i >>> BITS_BLOQUE;
+        if (b >= bloques.length) {
+            bloques = Arrays.copyOf(bloques, Math.max(4, bloques.length * 2));
+        }
+        if (bloques[b] == null) bloques[b] = new Object[TAMANO_BLOQUE];
+        bloques[b][i & MASCARA] = elemento;
+        vigente = new Foto<>(bloques, i + 1);
+    }
+
+    // Reemplaza (por identidad) un elemento ya agregado. Recorre la lista: es para casos raros.
+    public synchronized boolean reemplazar(T anterior, T nuevo) {
+        Foto<T> actual = vigente;
+        for (int i = actual.tamano - 1; i >= 0; i--) {
+            if (actual.get(i) != anterior) continue;
+            Object[][] bloques = actual.bloques.clone();
+            int b = i >>> BITS_BLOQUE;
+            bloques[b] = bloques[b].clone();
+            bloques[b][i & MASCARA] = nuevo;
+            vigente = new Foto<>(bloques, actual.tamano);
+            return true;
+        }
+        return false;
+    }
+
+    public int tamano() {
+        return vigente.tamano;
+    }
+
+    // La lista tal como está ahora; no cambia aunque después se agregue o reemplace
+    public Foto<T> foto() {
+        return vigente;
+    }
+}
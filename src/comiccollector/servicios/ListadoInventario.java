@@ -0,0 +1,224 @@
+package comiccollector.servicios;
+
+import comiccollector.modelos.Comic;
+import comiccollector.modelos.TipoProducto;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Inventario ordenado por nombre (sin distinguir mayúsculas; a igual nombre, en orden de ingreso),
+ * mantenido al agregar productos, para listar por páginas sin copiar ni ordenar el catálogo.
+ *
+ * Guarda las filas del inventario en un int[] ordenado más un arreglo chico, también ordenado, con
+ * las agregadas desde el último reordenamiento; una página recorre ambos a la vez. El orden completo
+ * se arma contando por nombre: los nombres distintos (ids del diccionario del inventario) son pocos,
+ * así que se ordenan ellos y las filas se reparten en O(n).
+ *
+ * La paginación es por cursor: cada página entrega la fila del último producto mostrado y la
+ * siguiente parte justo después de él en el orden, aunque entremedio se agreguen o quiten productos.
+ * Una página cuesta O(log n + filas recorridas); con filtros que descartan mucho se recorren más
+ * filas que las mostradas. Las filas quitadas se saltan y se descartan en el próximo reordenamiento.
+ */
+public class ListadoInventario {
+
+    // Agregadas que se acumulan antes de rehacer el orden completo
+    private static final int MAX_PENDIENTES = 4_096;
+
+    // Qué productos mostrar según su disponibilidad
+    public enum Disponibilidad {
+        TODOS,
+        // Con stock y ya en tienda
+        EN_STOCK,
+        // Con fecha de llegada futura
+        PROXIMOS
+    }
+
+    // Una página del listado. cursor es el que se pasa para pedir la siguiente; -1 si no hay más.
+    public static class Pagina {
+        private final List<Comic> comics;
+        private final int cursor;
+
+        Pagina(List<Comic> comics, int cursor) {
+            this.comics = comics;
+            this.cursor = cursor;
+        }
+
+        public List<Comic> getComics() {
+            return comics;
+        }
+
+        public int getCursor() {
+            return cursor;
+        }
+
+        public boolean hayMas() {
+            return cursor >= 0;
+        }
+    }
+
+    private final InventarioColumnar inventario;
+
+    private int[] ordenadas = new int[0];
+    private int cantidadOrdenadas;
+    private int[] pendientes = new int[16];
+    private int cantidadPendientes;
+    // Las filas menores a esta ya se consideraron en el último reordenamiento
+    private int limite;
+    private int quitadas;
+
+    public ListadoInventario(InventarioColumnar inventario) {
+        this.inventario = inventario;
+    }
+
+    public synchronized void agregar(Comic comic) {
+        int fila = comic.getFila();
+        if (fila < limite) return;
+        if (cantidadPendientes == pendientes.length) {
+            pendientes = Arrays.copyOf(pendientes, pendientes.length * 2);
+        }
+        int pos = posicionDespues(pendientes, cantidadPendientes, fila);
+        System.arraycopy(pendientes, pos, pendientes, pos + 1, cantidadPendientes - pos);
+        pendientes[pos] = fila;
+        cantidadPendientes++;
+        if (cantidadPendientes > MAX_PENDIENTES) reordenar();
+    }
+
+    // Carga masiva: con muchos productos conviene rehacer el orden de una vez
+    public synchronized void agregarTodos(Collection<Comic> nuevos) {
+        if (nuevos.size() > MAX_PENDIENTES) {
+            reordenar();
+            return;
+        }
+        for (Comic c : nuevos) {
+            agregar(c);
+        }
+    }
+
+    // El producto ya no está en el inventario; se salta hasta el próximo reordenamiento
+    public synchronized void quitar(Comic comic) {
+        quitadas++;
+        if (quitadas * 4L > cantidadOrdenadas + cantidadPendientes) reordenar();
+    }
+
+    /**
+     * Página de hasta tamano productos después del cursor (-1 = desde el principio).
+     * tipo null no filtra por tipo.
+     */
+    public synchronized Pagina pagina(int cursor, int tamano, TipoProducto tipo, Disponibilidad disponibilidad) {
+        if (tamano <= 0) throw new IllegalArgumentException("El tamaño de página debe ser mayor a cero.");
+        int i = cursor < 0 ? 0 : posicionDespues(ordenadas, cantidadOrdenadas, cursor);
+        int j = cursor < 0 ? 0 : posicionDespues(pendientes, cantidadPendientes, cursor);
+        long hoy = LocalDate.now().toEpochDay();
+        List<Comic> comics = new ArrayList<>(tamano);
+        int ultima = -1;
+        while (i < cantidadOrdenadas || j < cantidadPendientes) {
+            int fila;
+            if (j >= cantidadPendientes || (i < cantidadOrdenadas && comparar(ordenadas[i], pendientes[j]) < 0)) {
+                fila = ordenadas[i++];
+            } else {
+                fila = pendientes[j++];
+            }
+            if (!inventario.activa(fila) || !cumple(fila, tipo, disponibilidad, hoy)) continue;
+            if (comics.size() == tamano) {
+                // Hay al menos uno más: la página queda completa y con cursor
+                return new Pagina(comics, ultima);
+            }
+            comics.add(inventario.vista(fila));
+            ultima = fila;
+        }
+        return new Pagina(comics, -1);
+    }
+
+    private boolean cumple(int fila, TipoProducto tipo, Disponibilidad disponibilidad, long hoy) {
+        if (tipo != null && inventario.tipo(fila) != tipo) return false;
+        if (disponibilidad == null || disponibilidad == Disponibilidad.TODOS) return true;
+        int llegada = inventario.diaLlegada(fila);
+        boolean proximo = llegada != Comic.Almacen.SIN_FECHA && llegada > hoy;
+        if (disponibilidad == Disponibilidad.PROXIMOS) return proximo;
+        return !proximo && inventario.cantidad(fila) > 0;
+    }
+
+    // Rehace el orden completo con las filas vigentes: ordena los nombres distintos y reparte las filas
+    private void reordenar() {
+        int total = inventario.filas();
+        int distintos = inventario.textosDistintos();
+        Integer[] ids = new Integer[distintos];
+        for (int k = 0; k < distintos; k++) ids[k] = k;
+        Arrays.sort(ids, (a, b) -> String.CASE_INSENSITIVE_ORDER.compare(inventario.texto(a), inventario.texto(b)));
+        // Rango 0 para filas sin nombre; nombres iguales sin mayúsculas comparten rango
+        int[] rango = new int[distintos];
+        int actual = 0;
+        for (int k = 0; k < distintos; k++) {
+            if (k == 0 || String.CASE_INSENSITIVE_ORDER.compare(inventario.texto(ids[k - 1]), inventario.texto(ids[k])) != 0) {
+                actual++;
+            }
+            rango[ids[k]] = actual;
+        }
+        // Una sola pasada por el inventario: una fila quitada entremedio no descuadra la cuenta
+        int[] vigentes = new int[inventario.tamano() + 16];
+        int[] rangos = new int[vigentes.length];
+        int cantidad = 0;
+        int[] inicio = new int[actual + 2];
+        for (int f = 0; f < total; f++) {
+            if (!inventario.activa(f)) continue;
+            if (cantidad == vigentes.length) {
+                vigentes = Arrays.copyOf(vigentes, cantidad * 2);
+                rangos = Arrays.copyOf(rangos, cantidad * 2);
+            }
+            vigentes[cantidad] = f;
+            rangos[cantidad] = rangoDe(f, rango, actual);
+            inicio[rangos[cantidad] + 1]++;
+            cantidad++;
+        }
+        for (int r = 1; r < inicio.length; r++) inicio[r] += inicio[r - 1];
+        int[] nuevas = new int[cantidad];
+        // En orden de fila, así a igual nombre queda el orden de ingreso
+        for (int k = 0; k < cantidad; k++) {
+            nuevas[inicio[rangos[k]]++] = vigentes[k];
+        }
+        ordenadas = nuevas;
+        cantidadOrdenadas = cantidad;
+        cantidadPendientes = 0;
+        limite = total;
+        quitadas = 0;
+    }
+
+    private int rangoDe(int fila, int[] rango, int mayor) {
+        int id = inventario.idNombre(fila);
+        // Las filas consideradas tienen su nombre en el diccionario desde antes de leer su tamaño;
+        // por si acaso, un id nuevo va al final
+        return id < 0 ? 0 : id < rango.length ? rango[id] : mayor;
+    }
+
+    // Primera posición del arreglo ordenado cuyo elemento va después de la fila dada
+    private int posicionDespues(int[] arreglo, int cantidad, int fila) {
+        int lo = 0;
+        int hi = cantidad;
+        while (lo < hi) {
+            int medio = (lo + hi) >>> 1;
+            if (comparar(arreglo[medio], fila) <= 0) {
+                lo = medio + 1;
+            } else {
+                hi = medio;
+            }
+        }
+        return lo;
+    }
+
+    private int comparar(int a, int b) {
+        if (a == b) return 0;
+        int idA = inventario.idNombre(a);
+        int idB = inventario.idNombre(b);
+        if (idA != idB) {
+            String na = idA < 0 ? "" : inventario.texto(idA);
+            String nb = idB < 0 ? "" : inventario.texto(idB);
+            int cmp = String.CASE_INSENSITIVE_ORDER.compare(na, nb);
+            if (cmp != 0) return cmp;
+        }
+        return Integer.compare(a, b);
+    }
+}
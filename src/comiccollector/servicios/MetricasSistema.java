@@ -0,0 +1,256 @@
+package comiccollector.servicios;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Contadores, errores e histogramas de latencia de las operaciones del sistema, más algunos
+ * indicadores del estado (catálogo, usuarios, reservas). Se publica como MXBean.
+ *
+ * Registrar una medición no toma bloqueos: todo son LongAdder (contadores repartidos entre
+ * celdas, para que varias cajas a la vez no compitan por la misma línea de caché). El histograma
+ * es logarítmico con 8 subdivisiones por potencia de 2, así cada percentil tiene un error
+ * de a lo más 12,5%.
+ */
+public class MetricasSistema implements MetricasSistemaMXBean {
+
+    // Operaciones medidas, con el nombre con que aparecen en JMX
+    public enum Operacion {
+        REALIZAR_COMPRA("realizarCompra"),
+        REALIZAR_COMPRAS_LOTE("realizarComprasLote"),
+        HACER_RESERVA("hacerReserva"),
+        REGISTRAR_USUARIO("registrarUsuario"),
+        IMPORTAR_USUARIOS("importarUsuarios"),
+        AGREGAR_COMIC("agregarComic"),
+        ELIMINAR_COMIC("eliminarComic"),
+        PROCESAR_ENTREGAS("procesarEntregas"),
+        CARGAR_COMICS("cargarComicsDesdeCSV"),
+        CARGAR_USUARIOS("cargarUsuariosDesdeTxt"),
+        CARGAR_RESERVAS("cargarReservasDesdeTxt"),
+        CARGAR_INSTANTANEA("cargarInstantanea"),
+        REPRODUCIR_BITACORA("reproducirBitacora"),
+        GUARDAR_INSTANTANEA("guardarInstantanea"),
+        GUARDAR_CAMBIOS_INVENTARIO("guardarCambiosInventario"),
+        FUSIONAR_INVENTARIO("fusionarInventario"),
+        COMPACTAR_REGISTROS("compactarRegistros");
+
+        private final String nombre;
+
+        Operacion(String nombre) {
+            this.nombre = nombre;
+        }
+
+        public String getNombre() {
+            return nombre;
+        }
+    }
+
+    private static final int SUBDIVISIONES = 8;
+    private static final int BITS_SUBDIVISION = 3;
+    // Hasta 2^36 ns (~69 s); lo que pase de ahí cae en la última cubeta
+    private static final int MAX_POTENCIA = 36;
+    // 8 cubetas exactas para 0..7 ns y 8 por cada potencia desde 2^3 hasta 2^MAX_POTENCIA
+    private static final int CUBETAS = (MAX_POTENCIA - BITS_SUBDIVISION + 2) * SUBDIVISIONES;
+
+    private static class Medidor {
+        final LongAdder cantidad = new LongAdder();
+        final LongAdder errores = new LongAdder();
+        final LongAdder nanosTotales = new LongAdder();
+        final LongAccumulator maximo = new LongAccumulator(Math::max, 0);
+        final LongAdder[] cubetas = new LongAdder[CUBETAS];
+
+        Medidor() {
+            for (int i = 0; i < CUBETAS; i++) {
+                cubetas[i] = new LongAdder();
+            }
+        }
+    }
+
+    private final Medidor[] medidores = new Medidor[Operacion.values().length];
+    private final LongAdder erroresEnFondo = new LongAdder();
+    private volatile String ultimoError = "";
+    private final LongSupplier tamanoCatalogo;
+    private final LongSupplier cantidadUsuarios;
+    private final LongSupplier productosReservados;
+    private final LongSupplier entregasPendientes;
+    // Solo en réplicas (ver ReplicaLectura); -1 en el primario
+    private volatile LongSupplier retrasoReplicaRegistros = () -> -1;
+    private volatile LongSupplier retrasoReplicaMillis = () -> -1;
+    private ObjectName nombreJmx;
+
+    public MetricasSistema(LongSupplier tamanoCatalogo, LongSupplier cantidadUsuarios,
+                           LongSupplier productosReservados, LongSupplier entregasPendientes) {
+        this.tamanoCatalogo = tamanoCatalogo;
+        this.cantidadUsuarios = cantidadUsuarios;
+        this.productosReservados = productosReservados;
+        this.entregasPendientes = entregasPendientes;
+        for (int i = 0; i < medidores.length; i++) {
+            medidores[i] = new Medidor();
+        }
+    }
+
+    // Anota una operación que empezó en inicioNanos (System.nanoTime) y terminó ahora
+    public void registrar(Operacion operacion, long inicioNanos, boolean fallo) {
+        long nanos = Math.max(0, System.nanoTime() - inicioNanos);
+        Medidor m = medidores[operacion.ordinal()];
+        m.cantidad.increment();
+        if (fallo) m.errores.increment();
+        m.nanosTotales.add(nanos);
+        m.maximo.accumulate(nanos);
+        m.cubetas[cubeta(nanos)].increment();
+    }
+
+    // Una réplica informa acá cuántos registros del primario le faltan y hace cuánto está atrasada
+    public void medirReplicacion(LongSupplier registros, LongSupplier millis) {
+        retrasoReplicaRegistros = registros;
+        retrasoReplicaMillis = millis;
+    }
+
+    // Error de una tarea de fondo que hasta ahora solo quedaba en consola
+    public void registrarError(String mensaje) {
+        erroresEnFondo.increment();
+        ultimoError = LocalDateTime.now().withNano(0) + " " + mensaje;
+    }
+
+    // Menores a 8 ns van uno por cubeta; desde ahí, 8 cubetas por cada potencia de 2
+    static int cubeta(long nanos) {
+        if (nanos < SUBDIVISIONES) return (int) nanos;
+        int potencia = Math.min(63 - Long.numberOfLeadingZeros(nanos), MAX_POTENCIA);
+        if (potencia == MAX_POTENCIA && nanos >= (1L << (MAX_POTENCIA + 1))) return CUBETAS - 1;
+        int sub = (int) (nanos >>> (potencia - BITS_SUBDIVISION)) & (SUBDIVISIONES - 1);
+        return (potencia - BITS_SUBDIVISION + 1) * SUBDIVISIONES + sub;
+    }
+
+    // Mayor valor que cae en la cubeta
+    static long limiteSuperior(int cubeta) {
+        if (cubeta < SUBDIVISIONES) return cubeta;
+        int potencia = cubeta / SUBDIVISIONES + BITS_SUBDIVISION - 1;
+        int sub = cubeta % SUBDIVISIONES;
+        long ancho = 1L << (potencia - BITS_SUBDIVISION);
+        return ((long) (SUBDIVISIONES + sub) << (potencia - BITS_SUBDIVISION)) + ancho - 1;
+    }
+
+    public EstadisticaOperacion estadistica(Operacion operacion) {
+        Medidor m = medidores[operacion.ordinal()];
+        long[] conteos = new long[CUBETAS];
+        long total = 0;
+        for (int i = 0; i < CUBETAS; i++) {
+            conteos[i] = m.cubetas[i].sum();
+            total += conteos[i];
+        }
+        long maximo = m.maximo.get();
+        long cantidad = m.cantidad.sum();
+        return new EstadisticaOperacion(operacion.getNombre(), cantidad, m.errores.sum(),
+                cantidad == 0 ? 0 : m.nanosTotales.sum() / 1e3 / cantidad,
+                Math.min(percentil(conteos, total, 0.50), maximo) / 1e3,
+                Math.min(percentil(conteos, total, 0.99), maximo) / 1e3,
+                maximo / 1e3);
+    }
+
+    private static long percentil(long[] conteos, long total, double fraccion) {
+        if (total == 0) return 0;
+        long rango = Math.max(1, (long) Math.ceil(fraccion * total));
+        long acumulado = 0;
+        for (int i = 0; i < conteos.length; i++) {
+            acumulado += conteos[i];
+            if (acumulado >= rango) return limiteSuperior(i);
+        }
+        return limiteSuperior(conteos.length - 1);
+    }
+
+    @Override
+    public List<EstadisticaOperacion> getOperaciones() {
+        List<EstadisticaOperacion> resultado = new ArrayList<>(medidores.length);
+        for (Operacion o : Operacion.values()) {
+            resultado.add(estadistica(o));
+        }
+        return resultado;
+    }
+
+    @Override
+    public long getTamanoCatalogo() {
+        return tamanoCatalogo.getAsLong();
+    }
+
+    @Override
+    public long getCantidadUsuarios() {
+        return cantidadUsuarios.getAsLong();
+    }
+
+    @Override
+    public long getProductosReservados() {
+        return productosReservados.getAsLong();
+    }
+
+    @Override
+    public long getEntregasPendientes() {
+        return entregasPendientes.getAsLong();
+    }
+
+    @Override
+    public long getRetrasoReplicaRegistros() {
+        return retrasoReplicaRegistros.getAsLong();
+    }
+
+    @Override
+    public long getRetrasoReplicaMillis() {
+        return retrasoReplicaMillis.getAsLong();
+    }
+
+    @Override
+    public long getErroresEnFondo() {
+        return erroresEnFondo.sum();
+    }
+
+    @Override
+    public String getUltimoError() {
+        return ultimoError;
+    }
+
+    @Override
+    public void reiniciar() {
+        for (Medidor m : medidores) {
+            m.cantidad.reset();
+            m.errores.reset();
+            m.nanosTotales.reset();
+            m.maximo.reset();
+            for (LongAdder c : m.cubetas) {
+                c.reset();
+            }
+        }
+        erroresEnFondo.reset();
+        ultimoError = "";
+    }
+
+    /**
+     * Publica las métricas en el servidor JMX de la plataforma con el nombre
+     * comiccollector:type=Sistema,datos=&lt;carpeta de datos&gt;. Si ya había uno con ese nombre lo reemplaza.
+     */
+    public synchronized void publicar(String carpetaDatos) throws JMException {
+        MBeanServer servidor = ManagementFactory.getPlatformMBeanServer();
+        ObjectName nombre = new ObjectName("comiccollector:type=Sistema,datos=" + ObjectName.quote(carpetaDatos));
+        if (servidor.isRegistered(nombre)) {
+            servidor.unregisterMBean(nombre);
+        }
+        servidor.registerMBean(this, nombre);
+        nombreJmx = nombre;
+    }
+
+    public synchronized void retirar() {
+        if (nombreJmx == null) return;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(nombreJmx);
+        } catch (JMException e) {
+            // Ya no estaba registrado
+        }
+        nombreJmx = null;
+    }
+}
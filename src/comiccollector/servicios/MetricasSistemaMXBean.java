@@ -0,0 +1,36 @@
+package comiccollector.servicios;
+
+import java.util.List;
+
+/**
+ * Vista JMX de las métricas de un ComicCollectorSystem (jconsole, VisualVM o cualquier cliente JMX).
+ * Los tiempos van en microsegundos.
+ */
+public interface MetricasSistemaMXBean {
+
+    // Cantidad, errores y latencias de cada operación medida
+    List<EstadisticaOperacion> getOperaciones();
+
+    long getTamanoCatalogo();
+
+    long getCantidadUsuarios();
+
+    long getProductosReservados();
+
+    long getEntregasPendientes();
+
+    // En una réplica: registros de la bitácora del primario que aún no aplica, y hace cuántos
+    // milisegundos dejó de estar al día (0 si está al día). -1 si no es réplica.
+    long getRetrasoReplicaRegistros();
+
+    long getRetrasoReplicaMillis();
+
+    // Errores de tareas de fondo (instantáneas, guardado de inventario, compactación, archivos de texto)
+    long getErroresEnFondo();
+
+    // Último error registrado, con su hora, o vacío si no hubo
+    String getUltimoError();
+
+    // Deja en cero contadores e histogramas
+    void reiniciar();
+}
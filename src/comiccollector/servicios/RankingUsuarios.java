@@ -0,0 +1,211 @@
+package comiccollector.servicios;
+
+import comiccollector.modelos.Comprador;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Ranking de usuarios por total comprado (mayor a menor, empates por RUT).
+ * Usa un treap con tamaño de subárbol (árbol de estadísticas de orden), así que
+ * actualizar, consultar la posición de un usuario o pedir un tramo del ranking
+ * cuesta O(log n), sin importar el largo del historial de cada usuario.
+ * Los métodos públicos están sincronizados; cada sección crítica es O(log n).
+ * Sirve para cualquier Comprador: los usuarios de un sistema o los de una red de sucursales.
+ */
+public class RankingUsuarios<U extends Comprador> {
+
+    private static class Nodo<U extends Comprador> {
+        final U usuario;
+        // Total con el que quedó ordenado; puede diferir del total actual del usuario
+        final int total;
+        final int prioridad;
+        int tamano = 1;
+        Nodo<U> izq;
+        Nodo<U> der;
+
+        Nodo(U usuario, int total, int prioridad) {
+            this.usuario = usuario;
+            this.total = total;
+            this.prioridad = prioridad;
+        }
+    }
+
+    private Nodo<U> raiz;
+    // Nodo vigente de cada usuario, por RUT
+    private final HashMap<String, Nodo<U>> nodos = new HashMap<>();
+    private final Random random = new Random();
+
+    // Agrega al usuario o lo reubica según su total actual de compras
+    public synchronized void actualizar(U usuario) {
+        int total = usuario.totalCompras();
+        Nodo<U> actual = nodos.get(usuario.getRut());
+        if (actual != null) {
+            if (actual.total == total) return;
+            raiz = eliminar(raiz, actual.total, usuario.getRut());
+        }
+        Nodo<U> nuevo = new Nodo<>(usuario, total, random.nextInt());
+        nodos.put(usuario.getRut(), nuevo);
+        raiz = insertar(raiz, nuevo);
+    }
+
+    public synchronized void quitar(String rut) {
+        Nodo<U> actual = nodos.remove(rut);
+        if (actual != null) {
+            raiz = eliminar(raiz, actual.total, rut);
+        }
+    }
+
+    public synchronized int tamano() {
+        return tamano(raiz);
+    }
+
+    // Posición en el ranking (1 = mayor comprador), -1 si no está
+    public synchronized int posicion(String rut) {
+        Nodo<U> objetivo = nodos.get(rut);
+        if (objetivo == null) return -1;
+        int menores = 0;
+        Nodo<U> n = raiz;
+        while (n != null) {
+            int cmp = comparar(objetivo.total, rut, n);
+            if (cmp < 0) {
+                n = n.izq;
+            } else if (cmp > 0) {
+                menores += tamano(n.izq) + 1;
+                n = n.der;
+            } else {
+                return menores + tamano(n.izq) + 1;
+            }
+        }
+        return -1;
+    }
+
+    // Usuario en la posición indicada (1 = primero), null si está fuera de rango
+    public synchronized U enPosicion(int posicion) {
+        int k = posicion - 1;
+        Nodo<U> n = raiz;
+        while (n != null) {
+            int izq = tamano(n.izq);
+            if (k < izq) {
+                n = n.izq;
+            } else if (k == izq) {
+                return n.usuario;
+            } else {
+                k -= izq + 1;
+                n = n.der;
+            }
+        }
+        return null;
+    }
+
+    // Los "cantidad" primeros del ranking
+    public List<U> top(int cantidad) {
+        return tramo(1, cantidad);
+    }
+
+    // Usuarios entre las posiciones (posicion - radio) y (posicion + radio)
+    public List<U> alrededorDe(int posicion, int radio) {
+        int desde = Math.max(1, posicion - radio);
+        return tramo(desde, posicion + radio - desde + 1);
+    }
+
+    // Tramo del ranking desde una posición (1 = primero). O(log n + cantidad)
+    public synchronized List<U> tramo(int desde, int cantidad) {
+        List<U> resultado = new ArrayList<>(Math.max(0, Math.min(cantidad, tamano())));
+        if (cantidad > 0 && desde >= 1) {
+            recolectar(raiz, desde - 1, desde - 1 + cantidad, 0, resultado);
+        }
+        return resultado;
+    }
+
+    // Recorre en orden solo los subárboles que tocan el intervalo [desde, hasta)
+    private void recolectar(Nodo<U> n, int desde, int hasta, int base, List<U> salida) {
+        if (n == null || base >= hasta || base + n.tamano <= desde) return;
+        int izq = tamano(n.izq);
+        recolectar(n.izq, desde, hasta, base, salida);
+        int indice = base + izq;
+        if (indice >= desde && indice < hasta) salida.add(n.usuario);
+        recolectar(n.der, desde, hasta, indice + 1, salida);
+    }
+
+    // Orden: mayor total primero, luego RUT ascendente
+    private static int comparar(int total, String rut, Nodo<?> n) {
+        int cmp = Integer.compare(n.total, total);
+        if (cmp != 0) return cmp;
+        return rut.compareTo(n.usuario.getRut());
+    }
+
+    private static int tamano(Nodo<?> n) {
+        return n == null ? 0 : n.tamano;
+    }
+
+    private static void recalcular(Nodo<?> n) {
+        n.tamano = 1 + tamano(n.izq) + tamano(n.der);
+    }
+
+    private Nodo<U> insertar(Nodo<U> n, Nodo<U> nuevo) {
+        if (n == null) return nuevo;
+        if (nuevo.prioridad > n.prioridad) {
+            Nodo<U>[] partes = dividir(n, nuevo.total, nuevo.usuario.getRut());
+            nuevo.izq = partes[0];
+            nuevo.der = partes[1];
+            recalcular(nuevo);
+            return nuevo;
+        }
+        if (comparar(nuevo.total, nuevo.usuario.getRut(), n) < 0) {
+            n.izq = insertar(n.izq, nuevo);
+        } else {
+            n.der = insertar(n.der, nuevo);
+        }
+        recalcular(n);
+        return n;
+    }
+
+    // Separa en nodos menores que la clave y nodos mayores que la clave
+    private Nodo<U>[] dividir(Nodo<U> n, int total, String rut) {
+        if (n == null) return par(null, null);
+        if (comparar(total, rut, n) < 0) {
+            Nodo<U>[] partes = dividir(n.izq, total, rut);
+            n.izq = partes[1];
+            recalcular(n);
+            return par(partes[0], n);
+        }
+        Nodo<U>[] partes = dividir(n.der, total, rut);
+        n.der = partes[0];
+        recalcular(n);
+        return par(n, partes[1]);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Nodo<U>[] par(Nodo<U> menores, Nodo<U> mayores) {
+        return new Nodo[]{menores, mayores};
+    }
+
+    private Nodo<U> unir(Nodo<U> a, Nodo<U> b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        if (a.prioridad > b.prioridad) {
+            a.der = unir(a.der, b);
+            recalcular(a);
+            return a;
+        }
+        b.izq = unir(a, b.izq);
+        recalcular(b);
+        return b;
+    }
+
+    private Nodo<U> eliminar(Nodo<U> n, int total, String rut) {
+        if (n == null) return null;
+        int cmp = comparar(total, rut, n);
+        if (cmp == 0) return unir(n.izq, n.der);
+        if (cmp < 0) {
+            n.izq = eliminar(n.izq, total, rut);
+        } else {
+            n.der = eliminar(n.der, total, rut);
+        }
+        recalcular(n);
+        return n;
+    }
+}
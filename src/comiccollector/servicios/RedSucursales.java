@@ -0,0 +1,386 @@
+package comiccollector.servicios;
+
+import comiccollector.excepciones.EmailYaRegistradoException;
+import comiccollector.excepciones.ProductoYaReservadoException;
+import comiccollector.excepciones.RutInvalidoException;
+import comiccollector.excepciones.RutYaRegistradoException;
+import comiccollector.modelos.Comic;
+import comiccollector.modelos.Comprador;
+import comiccollector.modelos.HistorialCompras;
+import comiccollector.modelos.LineaPedido;
+import comiccollector.modelos.ReservaCompra;
+import comiccollector.modelos.Usuario;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Varias sucursales, cada una con su propio inventario y sus propios archivos (un
+ * ComicCollectorSystem por carpeta: comics.csv, usuarios.txt, reservas.txt, bitácora e
+ * instantánea), detrás de un solo punto de entrada que envía cada operación a su sucursal.
+ *
+ * Los usuarios y el ranking son de toda la red. Un usuario se registra en una sucursal y se copia
+ * a otra la primera vez que compra o reserva ahí; cada sucursal guarda solo sus copias y sus
+ * compras. Al arrancar, los usuarios de la red son la unión de los de todas las sucursales. El
+ * RUT y el email son únicos en toda la red.
+ *
+ * El ranking ordena por la suma de lo comprado en todas las sucursales: cada sucursal avisa
+ * cuando cambia el total de una de sus copias. Las búsquedas entre sucursales ("dónde hay stock de
+ * Evangelion") se hacen en paralelo en todas.
+ */
+public class RedSucursales {
+
+    /**
+     * Un usuario de la red, de solo lectura: sus datos y su copia en cada sucursal donde ha operado
+     * (null donde no). Lo comprado y reservado se suma desde las copias; las compras y reservas se
+     * hacen siempre en una sucursal, sobre su copia.
+     */
+    public static final class UsuarioRed implements Comprador {
+        private final String rut;
+        private final String nombre;
+        private final String email;
+        private final String celular;
+        private volatile Usuario[] copias;
+
+        private UsuarioRed(Usuario datos, int sucursales) {
+            this.rut = datos.getRut();
+            this.nombre = datos.getNombre();
+            this.email = datos.getEmail();
+            this.celular = datos.getCelular();
+            this.copias = new Usuario[sucursales];
+        }
+
+        @Override
+        public String getRut() {
+            return rut;
+        }
+
+        public String getNombre() {
+            return nombre;
+        }
+
+        public String getEmail() {
+            return email;
+        }
+
+        public String getCelular() {
+            return celular;
+        }
+
+        // Copia en la sucursal (en el orden de la red), null si no ha operado ahí
+        public Usuario copiaEn(int sucursal) {
+            return copias[sucursal];
+        }
+
+        private synchronized void ponerCopia(int sucursal, Usuario copia) {
+            Usuario[] nuevas = copias.clone();
+            nuevas[sucursal] = copia;
+            copias = nuevas;
+        }
+
+        @Override
+        public int totalCompras() {
+            int total = 0;
+            for (Usuario u : copias) {
+                if (u != null) total += u.totalCompras();
+            }
+            return total;
+        }
+
+        // Compras de todas las sucursales, agrupadas por sucursal
+        public List<ReservaCompra> getHistorialCompras() {
+            List<ReservaCompra> todas = new ArrayList<>();
+            for (Usuario u : copias) {
+                if (u != null) todas.addAll(u.getHistorialCompras());
+            }
+            return todas;
+        }
+
+        public void recorrerCompras(HistorialCompras.Visitante visitante) {
+            for (Usuario u : copias) {
+                if (u != null) u.recorrerCompras(visitante);
+            }
+        }
+
+        public List<ReservaCompra> getHistorialReservas() {
+            List<ReservaCompra> todas = new ArrayList<>();
+            for (Usuario u : copias) {
+                if (u == null) continue;
+                synchronized (u) {
+                    todas.addAll(u.getHistorialReservas());
+                }
+            }
+            return todas;
+        }
+
+        public int cantidadComprada(Comic comic) {
+            int total = 0;
+            for (Usuario u : copias) {
+                if (u != null) total += u.cantidadComprada(comic);
+            }
+            return total;
+        }
+
+        public int cantidadCompras() {
+            int total = 0;
+            for (Usuario u : copias) {
+                if (u != null) total += u.cantidadCompras();
+            }
+            return total;
+        }
+
+        public int productosDistintosComprados() {
+            int total = 0;
+            for (Usuario u : copias) {
+                if (u != null) total += u.productosDistintosComprados();
+            }
+            return total;
+        }
+
+        @Override
+        public String toString() {
+            return "Nombre: " + nombre +
+                    ", RUT: " + rut +
+                    ", Email: " + email +
+                    ", Celular: " + celular;
+        }
+    }
+
+    // Un producto con stock en una sucursal, resultado de una búsqueda en toda la red
+    public static class Existencia {
+        private final String sucursal;
+        private final Comic comic;
+
+        Existencia(String sucursal, Comic comic) {
+            this.sucursal = sucursal;
+            this.comic = comic;
+        }
+
+        public String getSucursal() {
+            return sucursal;
+        }
+
+        public Comic getComic() {
+            return comic;
+        }
+
+        @Override
+        public String toString() {
+            return sucursal + ": " + comic;
+        }
+    }
+
+    private final String[] nombres;
+    private final ComicCollectorSystem[] sistemas;
+    private final Map<String, Integer> indicePorNombre = new HashMap<>();
+    private final ConcurrentHashMap<String, UsuarioRed> usuarios = new ConcurrentHashMap<>();
+    private final ConjuntoPersistente.Compartido<String> emails = new ConjuntoPersistente.Compartido<>();
+    // RUT en medio de un registro, para que dos sucursales no registren el mismo a la vez
+    private final Set<String> rutsEnRegistro = ConcurrentHashMap.newKeySet();
+    private final RankingUsuarios<UsuarioRed> ranking = new RankingUsuarios<>();
+
+    /**
+     * Abre cada sucursal en base/nombre (la carpeta se crea si no existe), en paralelo, y arma los
+     * usuarios y el ranking de la red con los de todas. El orden de los nombres es el de la red.
+     */
+    public RedSucursales(File base, List<String> nombresSucursales) {
+        if (nombresSucursales.isEmpty()) throw new IllegalArgumentException("La red necesita al menos una sucursal.");
+        nombres = nombresSucursales.toArray(new String[0]);
+        for (int i = 0; i < nombres.length; i++) {
+            if (nombres[i].isBlank() || nombres[i].contains(File.separator) || nombres[i].startsWith(".")) {
+                throw new IllegalArgumentException("Nombre de sucursal inválido: " + nombres[i]);
+            }
+            if (indicePorNombre.put(nombres[i], i) != null) {
+                throw new IllegalArgumentException("Sucursal repetida: " + nombres[i]);
+            }
+        }
+        sistemas = IntStream.range(0, nombres.length).parallel()
+                .mapToObj(i -> abrir(new File(base, nombres[i])))
+                .toArray(ComicCollectorSystem[]::new);
+        for (int i = 0; i < sistemas.length; i++) {
+            for (Usuario u : sistemas[i].getUsuarios()) {
+                UsuarioRed red = usuarios.computeIfAbsent(u.getRut(), rut -> new UsuarioRed(u, sistemas.length));
+                red.ponerCopia(i, u);
+                emails.agregar(red.getEmail());
+            }
+        }
+        for (int i = 0; i < sistemas.length; i++) {
+            sistemas[i].observarCompras(this::alCambiarCompras);
+        }
+        for (UsuarioRed u : usuarios.values()) {
+            ranking.actualizar(u);
+        }
+    }
+
+    private static ComicCollectorSystem abrir(File directorio) {
+        if (!directorio.isDirectory() && !directorio.mkdirs()) {
+            throw new IllegalStateException("No se pudo crear la carpeta de la sucursal " + directorio + ".");
+        }
+        return new ComicCollectorSystem(directorio);
+    }
+
+    // Sucursales
+
+    public List<String> getNombresSucursales() {
+        return Collections.unmodifiableList(Arrays.asList(nombres));
+    }
+
+    // El sistema de una sucursal, para sus tareas de fondo, su menú o su API
+    public ComicCollectorSystem getSucursal(String nombre) {
+        return sistemas[indice(nombre)];
+    }
+
+    public void cerrar() {
+        for (ComicCollectorSystem s : sistemas) {
+            s.cerrar();
+        }
+    }
+
+    // Usuarios (de toda la red)
+
+    /**
+     * Registra al usuario en la sucursal donde se inscribe. El RUT y el email deben ser nuevos en
+     * toda la red. Retorna como ComicCollectorSystem.registrarUsuario: durable en la bitácora de la
+     * sucursal, y el futuro avisa cuando quedó en su usuarios.txt.
+     */
+    public CompletableFuture<Void> registrarUsuario(String sucursal, String rut, String nombre, String email, String celular)
+            throws EmailYaRegistradoException, RutInvalidoException, RutYaRegistradoException, IllegalArgumentException {
+        int i = indice(sucursal);
+        // Primero se toma el RUT y después se mira si existe: un registro que terminó entre medio ya está en el mapa
+        if (rut == null || !rutsEnRegistro.add(rut)) {
+            throw new IllegalArgumentException("El RUT ya se está registrando en otra sucursal.");
+        }
+        try {
+            if (usuarios.containsKey(rut)) throw new RutYaRegistradoException(rut);
+            if (email == null || !emails.agregar(email)) {
+                throw new EmailYaRegistradoException(email);
+            }
+            CompletableFuture<Void> escritura;
+            try {
+                escritura = sistemas[i].registrarUsuario(rut, nombre, email, celular);
+            } catch (Exception e) {
+                emails.quitar(email);
+                throw e;
+            }
+            Usuario copia = sistemas[i].buscarUsuarioPorRut(rut);
+            UsuarioRed red = new UsuarioRed(copia, sistemas.length);
+            red.ponerCopia(i, copia);
+            usuarios.put(rut, red);
+            ranking.actualizar(red);
+            return escritura;
+        } finally {
+            rutsEnRegistro.remove(rut);
+        }
+    }
+
+    public UsuarioRed buscarUsuarioPorRut(String rut) {
+        return usuarios.get(rut);
+    }
+
+    public int cantidadUsuarios() {
+        return usuarios.size();
+    }
+
+    public List<UsuarioRed> topUsuarios(int cantidad) {
+        return ranking.top(cantidad);
+    }
+
+    // Ranking completo de la red, de mayor a menor comprador
+    public List<UsuarioRed> getRankingUsuarios() {
+        return ranking.tramo(1, ranking.tamano());
+    }
+
+    // Posición en el ranking de la red (1 = mayor comprador), -1 si no existe
+    public int posicionEnRanking(String rut) {
+        return ranking.posicion(rut);
+    }
+
+    // Compras y reservas (en la sucursal indicada)
+
+    public double realizarCompra(String sucursal, String rut, String codigoComic, int cantidad) {
+        int i = indice(sucursal);
+        copiaEn(i, rut);
+        return sistemas[i].realizarCompra(rut, codigoComic, cantidad);
+    }
+
+    public double realizarComprasLote(String sucursal, String rut, List<LineaPedido> lineas) {
+        int i = indice(sucursal);
+        copiaEn(i, rut);
+        return sistemas[i].realizarComprasLote(rut, lineas);
+    }
+
+    public CompletableFuture<Void> hacerReserva(String sucursal, String rut, String codigoComic, int cantidad)
+            throws ProductoYaReservadoException, IllegalArgumentException {
+        int i = indice(sucursal);
+        copiaEn(i, rut);
+        return sistemas[i].hacerReserva(rut, codigoComic, cantidad);
+    }
+
+    // Búsquedas en todas las sucursales
+
+    /**
+     * Productos con stock que calzan con el texto (parcial o con errores de tipeo, como
+     * buscarComics), buscando en todas las sucursales en paralelo. Hasta limite por sucursal,
+     * en el orden de la red y los mejores primero dentro de cada una.
+     */
+    public List<Existencia> buscarConStock(String texto, int limite) {
+        return IntStream.range(0, sistemas.length).parallel()
+                .mapToObj(i -> conStock(i, sistemas[i].buscarComics(texto, limite)))
+                .flatMap(List::stream)
+                .collect(Collectors.toList());
+    }
+
+    private List<Existencia> conStock(int sucursal, List<Comic> comics) {
+        List<Existencia> resultado = new ArrayList<>();
+        for (Comic c : comics) {
+            if (c != null && c.getCantidadDisponible() > 0) resultado.add(new Existencia(nombres[sucursal], c));
+        }
+        return resultado;
+    }
+
+    private int indice(String sucursal) {
+        Integer i = sucursal == null ? null : indicePorNombre.get(sucursal);
+        if (i == null) throw new IllegalArgumentException("Sucursal desconocida: " + sucursal);
+        return i;
+    }
+
+    // La copia del usuario en la sucursal; si nunca operó ahí se registra con sus datos de la red
+    private Usuario copiaEn(int sucursal, String rut) {
+        UsuarioRed red = usuarios.get(rut);
+        if (red == null) throw new IllegalArgumentException("Usuario no encontrado.");
+        Usuario copia = red.copiaEn(sucursal);
+        if (copia != null) return copia;
+        synchronized (red) {
+            copia = red.copiaEn(sucursal);
+            if (copia != null) return copia;
+            copia = sistemas[sucursal].buscarUsuarioPorRut(rut);
+            if (copia == null) {
+                try {
+                    sistemas[sucursal].registrarUsuario(rut, red.getNombre(), red.getEmail(), red.getCelular());
+                } catch (EmailYaRegistradoException | RutInvalidoException | RutYaRegistradoException e) {
+                    throw new IllegalStateException("No se pudo copiar al usuario a la sucursal "
+                            + nombres[sucursal] + ": " + e.getMessage());
+                }
+                copia = sistemas[sucursal].buscarUsuarioPorRut(rut);
+            }
+            red.ponerCopia(sucursal, copia);
+            return copia;
+        }
+    }
+
+    // Una sucursal avisa que cambió el total de una copia: se reubica al usuario de la red
+    private void alCambiarCompras(Usuario copia) {
+        UsuarioRed red = usuarios.get(copia.getRut());
+        if (red != null) ranking.actualizar(red);
+    }
+}
@@ -0,0 +1,344 @@
+package comiccollector.servicios;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Archivo de texto de solo agregar (usuarios.txt, reservas.txt) partido en segmentos.
+ * Se sigue escribiendo en el archivo de siempre (el segmento activo); cuando crece se sella
+ * renombrándolo a "reservas.&lt;inicio&gt;-&lt;fin&gt;.txt". Un compactador reescribe los segmentos
+ * sellados solo con las líneas vivas, en "reservas.&lt;inicio&gt;-&lt;fin&gt;.seg" (o ".seg.gz" comprimido),
+ * y de vez en cuando junta los compactados en uno.
+ *
+ * Las posiciones son lógicas: el byte donde empezó cada línea contando todo lo escrito desde
+ * el principio. Una línea compactada guarda su posición original, así los cortes guardados en la
+ * instantánea y en el registro de cambios del inventario siguen valiendo. Sin segmentos sellados
+ * la posición lógica es el byte del archivo, como antes.
+ *
+ * El índice son los nombres de los segmentos: al leer desde una posición se saltan sin abrirlos
+ * los que terminan antes.
+ */
+public class RegistroSegmentado {
+
+    // Recibe cada línea con su posición lógica
+    public interface LectorLinea {
+        void leer(String linea, long posicion);
+    }
+
+    private static final String SELLADO = "txt";
+    private static final String COMPACTADO = "seg";
+    private static final String COMPRIMIDO = "seg.gz";
+    private static final int BUFFER = 1 << 16;
+    // Con más compactados que esto se juntan en uno, volviendo a filtrar lo que murió desde entonces
+    private static final int MAX_COMPACTADOS = 8;
+
+    private static class Segmento {
+        final File archivo;
+        final long inicio;
+        final long fin;
+        final String formato;
+
+        Segmento(File archivo, long inicio, long fin, String formato) {
+            this.archivo = archivo;
+            this.inicio = inicio;
+            this.fin = fin;
+            this.formato = formato;
+        }
+
+        boolean compactado() {
+            return !formato.equals(SELLADO);
+        }
+    }
+
+    private final File directorio;
+    private final File activo;
+    private final String prefijo;
+    private final boolean comprimir;
+    private final Pattern nombreSegmento;
+    // Ordenados por inicio, sin solaparse
+    private final List<Segmento> segmentos = new ArrayList<>();
+    // Posición lógica donde empieza el segmento activo
+    private long inicioActivo;
+
+    // nombre: el archivo activo, ej. "reservas.txt"
+    public RegistroSegmentado(File directorio, String nombre, boolean comprimir) {
+        this.directorio = directorio;
+        this.activo = new File(directorio, nombre);
+        int punto = nombre.lastIndexOf('.');
+        this.prefijo = punto > 0 ? nombre.substring(0, punto) : nombre;
+        this.comprimir = comprimir;
+        this.nombreSegmento = Pattern.compile(Pattern.quote(prefijo) + "\\.(\\d{20})-(\\d{20})\\.(txt|seg|seg\\.gz)");
+        cargarSegmentos();
+    }
+
+    // Lee los segmentos del directorio y limpia lo que haya dejado a medias una compactación cortada
+    private void cargarSegmentos() {
+        File[] archivos = directorio.listFiles();
+        if (archivos == null) return;
+        List<Segmento> encontrados = new ArrayList<>();
+        for (File f : archivos) {
+            if (f.getName().startsWith(prefijo + ".") && f.getName().endsWith(".tmp")) {
+                f.delete();
+                continue;
+            }
+            Matcher m = nombreSegmento.matcher(f.getName());
+            if (m.matches()) {
+                encontrados.add(new Segmento(f, Long.parseLong(m.group(1)), Long.parseLong(m.group(2)), m.group(3)));
+            }
+        }
+        // Primero los más amplios y, a igual rango, los compactados: lo que quede contenido en otro sobra
+        encontrados.sort((a, b) -> a.inicio != b.inicio ? Long.compare(a.inicio, b.inicio)
+                : a.fin != b.fin ? Long.compare(b.fin, a.fin)
+                : Boolean.compare(b.compactado(), a.compactado()));
+        for (Segmento s : encontrados) {
+            Segmento ultimo = segmentos.isEmpty() ? null : segmentos.get(segmentos.size() - 1);
+            if (ultimo != null && s.fin <= ultimo.fin) {
+                s.archivo.delete();
+            } else {
+                segmentos.add(s);
+            }
+        }
+        inicioActivo = segmentos.isEmpty() ? 0 : segmentos.get(segmentos.size() - 1).fin;
+    }
+
+    public File getActivo() {
+        return activo;
+    }
+
+    // Largo lógico: todo lo escrito desde el principio, incluido lo que la compactación ya borró
+    public synchronized long largo() {
+        return inicioActivo + activo.length();
+    }
+
+    public synchronized int cantidadSegmentos() {
+        return segmentos.size();
+    }
+
+    // Bytes que ocupan en disco los segmentos y el activo
+    public synchronized long bytesEnDisco() {
+        long total = activo.length();
+        for (Segmento s : segmentos) {
+            total += s.archivo.length();
+        }
+        return total;
+    }
+
+    /**
+     * Recorre en orden las líneas vivas desde una posición lógica (0 = todas).
+     * No debe llamarse mientras se compacta (se usa al arrancar).
+     */
+    public void recorrer(long desde, LectorLinea lector) throws IOException {
+        List<Segmento> copia;
+        long inicio;
+        synchronized (this) {
+            copia = new ArrayList<>(segmentos);
+            inicio = inicioActivo;
+        }
+        for (Segmento s : copia) {
+            if (s.fin <= desde) continue;
+            if (s.compactado()) {
+                leerCompactado(s, desde, lector);
+            } else {
+                try (FileInputStream in = new FileInputStream(s.archivo)) {
+                    leerTexto(in, s.inicio, desde, lector);
+                }
+            }
+        }
+        if (!activo.exists()) return;
+        try (FileInputStream in = new FileInputStream(activo)) {
+            leerTexto(in, inicio, desde, lector);
+        }
+    }
+
+    // Líneas UTF-8 separadas por '\n' (se quita un '\r' final), con la posición donde empieza cada una
+    private static void leerTexto(FileInputStream entrada, long inicioArchivo, long desde, LectorLinea lector) throws IOException {
+        long posicion = Math.max(inicioArchivo, desde);
+        if (posicion > inicioArchivo) entrada.getChannel().position(posicion - inicioArchivo);
+        byte[] buffer = new byte[BUFFER];
+        ByteArrayOutputStream partida = new ByteArrayOutputStream(128);
+        long inicioLinea = posicion;
+        int leidos;
+        while ((leidos = entrada.read(buffer)) > 0) {
+            int desdeIndice = 0;
+            for (int i = 0; i < leidos; i++) {
+                if (buffer[i] != '\n') continue;
+                String linea;
+                if (partida.size() > 0) {
+                    partida.write(buffer, desdeIndice, i - desdeIndice);
+                    linea = texto(partida.toByteArray(), 0, partida.size());
+                    partida.reset();
+                } else {
+                    linea = texto(buffer, desdeIndice, i - desdeIndice);
+                }
+                lector.leer(linea, inicioLinea);
+                inicioLinea = posicion + i + 1;
+                desdeIndice = i + 1;
+            }
+            partida.write(buffer, desdeIndice, leidos - desdeIndice);
+            posicion += leidos;
+        }
+        if (partida.size() > 0) lector.leer(texto(partida.toByteArray(), 0, partida.size()), inicioLinea);
+    }
+
+    private static String texto(byte[] b, int desde, int largo) {
+        if (largo > 0 && b[desde + largo - 1] == '\r') largo--;
+        return new String(b, desde, largo, StandardCharsets.UTF_8);
+    }
+
+    // Registros: posición (long) y línea (writeUTF), hasta el fin del archivo
+    private static void leerCompactado(Segmento s, long desde, LectorLinea lector) throws IOException {
+        try (DataInputStream in = new DataInputStream(abrirCompactado(s))) {
+            while (true) {
+                long posicion;
+                try {
+                    posicion = in.readLong();
+                } catch (EOFException e) {
+                    return;
+                }
+                String linea = in.readUTF();
+                if (posicion >= desde) lector.leer(linea, posicion);
+            }
+        }
+    }
+
+    private static InputStream abrirCompactado(Segmento s) throws IOException {
+        InputStream in = new FileInputStream(s.archivo);
+        return s.formato.equals(COMPRIMIDO) ? new GZIPInputStream(in, BUFFER) : new BufferedInputStream(in, BUFFER);
+    }
+
+    /**
+     * Sella el segmento activo si tiene algo: lo renombra con su rango y el próximo agregado crea
+     * uno vacío. Quien escribe en el activo debe tenerlo cerrado mientras tanto.
+     */
+    public synchronized boolean sellar() throws IOException {
+        long largo = activo.length();
+        if (largo == 0) return false;
+        long fin = inicioActivo + largo;
+        File sellado = archivoSegmento(inicioActivo, fin, SELLADO);
+        Files.move(activo.toPath(), sellado.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        segmentos.add(new Segmento(sellado, inicioActivo, fin, SELLADO));
+        inicioActivo = fin;
+        return true;
+    }
+
+    /**
+     * Reescribe los segmentos sellados solo con las líneas para las que viva es verdadero. Si clave
+     * no es null, de las líneas con la misma clave queda solo la última (registros reemplazados).
+     * Cuando hay demasiados compactados los junta en uno, con el mismo filtro.
+     * Se escribe a un temporal que luego se renombra: una caída deja el segmento anterior intacto.
+     * Retorna cuántas líneas se descartaron.
+     */
+    public int compactar(Predicate<String> viva, Function<String, String> clave) throws IOException {
+        int descartadas = 0;
+        for (Segmento s : pendientesDeCompactar()) {
+            descartadas += reescribir(List.of(s), viva, clave);
+        }
+        List<Segmento> compactados = compactadosParaJuntar();
+        if (compactados.size() > MAX_COMPACTADOS) {
+            descartadas += reescribir(compactados, viva, clave);
+        }
+        return descartadas;
+    }
+
+    private synchronized List<Segmento> pendientesDeCompactar() {
+        List<Segmento> resultado = new ArrayList<>();
+        for (Segmento s : segmentos) {
+            if (!s.compactado()) resultado.add(s);
+        }
+        return resultado;
+    }
+
+    // El tramo inicial de compactados seguidos (los sellados sin compactar cortan el tramo)
+    private synchronized List<Segmento> compactadosParaJuntar() {
+        List<Segmento> resultado = new ArrayList<>();
+        for (Segmento s : segmentos) {
+            if (!s.compactado()) break;
+            resultado.add(s);
+        }
+        return resultado;
+    }
+
+    // Reescribe segmentos seguidos en uno solo con su rango completo
+    private int reescribir(List<Segmento> origen, Predicate<String> viva, Function<String, String> clave) throws IOException {
+        List<Long> posiciones = new ArrayList<>();
+        List<String> lineas = new ArrayList<>();
+        Map<String, Integer> ultimaPorClave = clave != null ? new HashMap<>() : null;
+        int[] leidas = {0};
+        for (Segmento s : origen) {
+            LectorLinea lector = (linea, posicion) -> {
+                leidas[0]++;
+                if (!viva.test(linea)) return;
+                if (ultimaPorClave != null) {
+                    Integer anterior = ultimaPorClave.put(clave.apply(linea), lineas.size());
+                    if (anterior != null) lineas.set(anterior, null);
+                }
+                posiciones.add(posicion);
+                lineas.add(linea);
+            };
+            if (s.compactado()) {
+                leerCompactado(s, 0, lector);
+            } else {
+                try (FileInputStream in = new FileInputStream(s.archivo)) {
+                    leerTexto(in, s.inicio, 0, lector);
+                }
+            }
+        }
+        long inicio = origen.get(0).inicio;
+        long fin = origen.get(origen.size() - 1).fin;
+        String formato = comprimir ? COMPRIMIDO : COMPACTADO;
+        File destino = archivoSegmento(inicio, fin, formato);
+        File temporal = new File(destino.getPath() + ".tmp");
+        int escritas = 0;
+        try (FileOutputStream salida = new FileOutputStream(temporal)) {
+            OutputStream flujo = comprimir ? new GZIPOutputStream(salida, BUFFER) : new BufferedOutputStream(salida, BUFFER);
+            DataOutputStream out = new DataOutputStream(flujo);
+            for (int i = 0; i < lineas.size(); i++) {
+                if (lineas.get(i) == null) continue;
+                out.writeLong(posiciones.get(i));
+                out.writeUTF(lineas.get(i));
+                escritas++;
+            }
+            out.flush();
+            if (flujo instanceof GZIPOutputStream) ((GZIPOutputStream) flujo).finish();
+            salida.getFD().sync();
+        }
+        synchronized (this) {
+            Files.move(temporal.toPath(), destino.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            int indice = segmentos.indexOf(origen.get(0));
+            segmentos.removeAll(origen);
+            segmentos.add(indice, new Segmento(destino, inicio, fin, formato));
+        }
+        // Si se cae aquí, al abrir se borran los que quedaron contenidos en el nuevo
+        for (Segmento s : origen) {
+            if (!s.archivo.equals(destino)) s.archivo.delete();
+        }
+        return leidas[0] - escritas;
+    }
+
+    private File archivoSegmento(long inicio, long fin, String formato) {
+        return new File(directorio, String.format("%s.%020d-%020d.%s", prefijo, inicio, fin, formato));
+    }
+}
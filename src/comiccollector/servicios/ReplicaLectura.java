@@ -0,0 +1,239 @@
+package comiccollector.servicios;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Réplica de solo lectura de un sistema primario que publica su bitácora con ServidorReplicacion.
+ * Búsquedas, listados y ranking se atienden acá sin competir con las ventas del primario; las
+ * operaciones que escriben se rechazan con IllegalStateException.
+ *
+ * Al conectarse arma un ComicCollectorSystem con el estado completo que recibe y después aplica
+ * cada línea de la bitácora del primario por la misma vía que la reproducción al arrancar. Si la
+ * conexión se corta reintenta cada segundo y al volver recibe el estado completo otra vez (lo mismo
+ * tras una importación en el primario): getSistema() pasa a ser otro sistema y quien tenía el
+ * anterior sigue leyendo lo que había.
+ *
+ * El retraso queda en las métricas del sistema réplica (getRetrasoReplicaRegistros y
+ * getRetrasoReplicaMillis): cuántos registros del primario faltan por aplicar y hace cuánto dejó
+ * de estar al día. Sin conexión no se sabe si está al día, así que cuenta como atrasada.
+ */
+public class ReplicaLectura {
+
+    private static final int PLAZO_CONEXION_MILLIS = 2_000;
+    // Sin ningún mensaje en este plazo (muchos latidos perdidos) la conexión se da por caída
+    private static final int PLAZO_LECTURA_MILLIS = 5_000;
+    private static final long REINTENTO_MILLIS = 1_000;
+
+    private final File directorio;
+    private final String host;
+    private final int puerto;
+
+    private volatile ComicCollectorSystem sistema;
+    private volatile long lsnAplicado;
+    private volatile long lsnPrimario;
+    // Desde cuándo (epoch ms) hay registros del primario sin aplicar; 0 si está al día
+    private volatile long atrasadaDesde = System.currentTimeMillis();
+    private volatile boolean conectada;
+    private volatile boolean cerrada;
+    private volatile Socket conexion;
+    private volatile boolean metricasPublicadas;
+    private Thread receptor;
+    // Se avisa en él cada vez que avanza lo aplicado
+    private final Object avisoAplicado = new Object();
+
+    // directorio solo da nombre a las métricas JMX: la réplica no escribe archivos
+    public ReplicaLectura(File directorio, String host, int puerto) {
+        this.directorio = directorio;
+        this.host = host;
+        this.puerto = puerto;
+    }
+
+    public synchronized void iniciar() {
+        if (receptor != null) throw new IllegalStateException("La réplica ya está iniciada.");
+        receptor = new Thread(this::recibir, "replica-receptor");
+        receptor.setDaemon(true);
+        receptor.start();
+    }
+
+    // El sistema réplica vigente, para consultas. Lanza IllegalStateException si aún no llega el estado.
+    public ComicCollectorSystem getSistema() {
+        ComicCollectorSystem actual = sistema;
+        if (actual == null) throw new IllegalStateException("La réplica aún no recibe el estado del primario.");
+        return actual;
+    }
+
+    public long getLsnAplicado() {
+        return lsnAplicado;
+    }
+
+    public long getLsnPrimario() {
+        return lsnPrimario;
+    }
+
+    public boolean estaConectada() {
+        return conectada;
+    }
+
+    public long getRetrasoRegistros() {
+        return Math.max(0, lsnPrimario - lsnAplicado);
+    }
+
+    public long getRetrasoMillis() {
+        long desde = atrasadaDesde;
+        return desde == 0 ? 0 : Math.max(0, System.currentTimeMillis() - desde);
+    }
+
+    // Espera a que se aplique hasta el LSN dado (ej: leer en la réplica lo recién escrito en el primario)
+    public boolean esperarLsn(long lsn, long plazoMillis) throws InterruptedException {
+        long limite = System.currentTimeMillis() + plazoMillis;
+        synchronized (avisoAplicado) {
+            long restante;
+            while ((sistema == null || lsnAplicado < lsn) && (restante = limite - System.currentTimeMillis()) > 0) {
+                avisoAplicado.wait(restante);
+            }
+            return sistema != null && lsnAplicado >= lsn;
+        }
+    }
+
+    // Publica por JMX las métricas del sistema réplica, también de los que lleguen después
+    public void publicarMetricas() {
+        metricasPublicadas = true;
+        ComicCollectorSystem actual = sistema;
+        if (actual != null) actual.publicarMetricas();
+    }
+
+    public void cerrar() {
+        cerrada = true;
+        Socket s = conexion;
+        if (s != null) {
+            try {
+                s.close();
+            } catch (IOException e) {
+                // Ya estaba cerrada
+            }
+        }
+        Thread t;
+        synchronized (this) {
+            t = receptor;
+        }
+        if (t != null) {
+            t.interrupt();
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        ComicCollectorSystem actual = sistema;
+        if (actual != null) actual.cerrar();
+    }
+
+    private void recibir() {
+        boolean avisado = false;
+        while (!cerrada) {
+            try (Socket s = new Socket()) {
+                s.connect(new InetSocketAddress(host, puerto), PLAZO_CONEXION_MILLIS);
+                s.setSoTimeout(PLAZO_LECTURA_MILLIS);
+                s.setTcpNoDelay(true);
+                conexion = s;
+                if (cerrada) return;
+                DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream(), 1 << 16));
+                if (in.readInt() != ServidorReplicacion.MAGIA) {
+                    throw new IOException("el servidor no es de replicación");
+                }
+                conectada = true;
+                avisado = false;
+                while (!cerrada) {
+                    byte tipo = in.readByte();
+                    if (tipo == ServidorReplicacion.ESTADO) {
+                        byte[] datos = new byte[in.readInt()];
+                        in.readFully(datos);
+                        cambiarEstado(InstantaneaSistema.leer(datos));
+                    } else if (tipo == ServidorReplicacion.LOTE) {
+                        long primario = in.readLong();
+                        int lineas = in.readInt();
+                        for (int i = 0; i < lineas; i++) {
+                            byte[] linea = new byte[in.readInt()];
+                            in.readFully(linea);
+                            aplicar(new String(linea, StandardCharsets.UTF_8));
+                        }
+                        avanzar(primario);
+                    } else if (tipo == ServidorReplicacion.LATIDO) {
+                        avanzar(in.readLong());
+                    } else {
+                        throw new IOException("mensaje desconocido: " + tipo);
+                    }
+                }
+            } catch (IOException e) {
+                if (!cerrada && !avisado) {
+                    String motivo = e.getMessage() != null ? e.getMessage() : "el primario cerró la conexión";
+                    System.out.println("AVISO. Réplica sin conexión con " + host + ":" + puerto + " (" + motivo
+                            + "), se reintentará.");
+                    avisado = true;
+                }
+            } finally {
+                conexion = null;
+                conectada = false;
+                if (atrasadaDesde == 0) atrasadaDesde = System.currentTimeMillis();
+            }
+            try {
+                Thread.sleep(REINTENTO_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    // Reemplaza el sistema réplica por uno nuevo con el estado completo recibido
+    private void cambiarEstado(InstantaneaSistema instantanea) {
+        ComicCollectorSystem nuevo = new ComicCollectorSystem(directorio, false);
+        nuevo.iniciarReplica(instantanea);
+        nuevo.getMetricas().medirReplicacion(this::getRetrasoRegistros, this::getRetrasoMillis);
+        ComicCollectorSystem anterior = sistema;
+        synchronized (avisoAplicado) {
+            sistema = nuevo;
+            lsnAplicado = instantanea.getLsn();
+            avisoAplicado.notifyAll();
+        }
+        // Se cierra antes de publicar el nuevo: las métricas de ambos usan el mismo nombre JMX
+        if (anterior != null) anterior.cerrar();
+        if (metricasPublicadas) nuevo.publicarMetricas();
+        avanzar(Math.max(lsnPrimario, instantanea.getLsn()));
+    }
+
+    private void aplicar(String linea) {
+        BitacoraOperaciones.Registro r = BitacoraOperaciones.decodificar(linea);
+        if (r == null) {
+            // El primario solo manda lotes durables, así que no debería pasar
+            System.out.println("AVISO. Registro con CRC inválido recibido del primario, se descarta.");
+            return;
+        }
+        if (r.getLsn() <= lsnAplicado) return;
+        try {
+            sistema.aplicarReplicado(r);
+        } catch (RuntimeException e) {
+            // Un registro que no se puede aplicar no debe detener la réplica
+            System.out.println("AVISO. No se pudo aplicar el registro " + r.getLsn() + " del primario: " + e.getMessage());
+        }
+        lsnAplicado = r.getLsn();
+    }
+
+    // Anota hasta dónde llega el primario y avisa a quienes esperan lo aplicado
+    private void avanzar(long primario) {
+        lsnPrimario = primario;
+        if (lsnAplicado >= primario) {
+            atrasadaDesde = 0;
+        } else if (atrasadaDesde == 0) {
+            atrasadaDesde = System.currentTimeMillis();
+        }
+        synchronized (avisoAplicado) {
+            avisoAplicado.notifyAll();
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package comiccollector.servicios;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Envía la bitácora del sistema a réplicas de solo lectura (ver ReplicaLectura) por TCP.
+ *
+ * Al conectarse, cada réplica recibe el estado completo (una instantánea codificada con el estado
+ * detenido) y desde ahí las líneas de operaciones.log tal como quedan en disco: un hilo por réplica
+ * lee la cola de la bitácora desde el byte donde termina la instantánea y la manda apenas la bitácora
+ * avisa que hay un lote durable. Así la réplica nunca ve una operación que el primario podría
+ * perder, y las ventas no esperan a las réplicas. Si la bitácora se recortó más allá de lo enviado
+ * (una réplica muy atrasada), se manda otra vez el estado completo.
+ *
+ * Las importaciones de usuarios no pasan por la bitácora: después de una, se manda otra vez el
+ * estado completo. Sin actividad se manda un latido con el último LSN para que la réplica sepa
+ * si está al día.
+ *
+ * Mensajes, con DataOutputStream, después de MAGIA:
+ *   'S' largo bytes                            estado completo (InstantaneaSistema)
+ *   'B' lsnPrimario cantidad (largo bytes)...  líneas de la bitácora, cada una con su CRC
+ *   'P' lsnPrimario                            latido
+ * No hay autenticación ni cifrado: por omisión escucha solo en loopback.
+ */
+public class ServidorReplicacion {
+
+    static final int MAGIA = 0x43435231; // "CCR1"
+    static final byte ESTADO = 'S';
+    static final byte LOTE = 'B';
+    static final byte LATIDO = 'P';
+    static final long LATIDO_MILLIS = 200;
+    private static final int COLA_CONEXIONES = 16;
+    // Lo que se lee de la bitácora por vuelta; crece si una línea no cabe
+    private static final int TAMANO_LECTURA = 1 << 20;
+
+    // Estado para una réplica nueva: la instantánea, hasta qué byte de la bitácora llega y
+    // cuántos cambios sin bitácora llevaba el sistema al tomarla
+    static final class Inicio {
+        final byte[] instantanea;
+        final long byteBitacora;
+        final long cambiosSinBitacora;
+
+        Inicio(byte[] instantanea, long byteBitacora, long cambiosSinBitacora) {
+            this.instantanea = instantanea;
+            this.byteBitacora = byteBitacora;
+            this.cambiosSinBitacora = cambiosSinBitacora;
+        }
+    }
+
+    private final ComicCollectorSystem sistema;
+    private final Set<Socket> conexiones = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger atendidas = new AtomicInteger();
+    private ServerSocket servidor;
+
+    public ServidorReplicacion(ComicCollectorSystem sistema) {
+        this.sistema = sistema;
+    }
+
+    // Escucha en loopback. Con puerto 0 se elige uno libre; ver getPuerto()
+    public void iniciar(int puerto) throws IOException {
+        iniciar(InetAddress.getLoopbackAddress(), puerto);
+    }
+
+    public synchronized void iniciar(InetAddress direccion, int puerto) throws IOException {
+        if (servidor != null) throw new IllegalStateException("El servidor de replicación ya está iniciado.");
+        if (sistema.getBitacora() == null) {
+            throw new IllegalStateException("Sin bitácora de operaciones no hay qué replicar.");
+        }
+        ServerSocket nuevo = new ServerSocket(puerto, COLA_CONEXIONES, direccion);
+        Thread aceptador = new Thread(() -> aceptar(nuevo), "replicacion-servidor");
+        aceptador.setDaemon(true);
+        aceptador.start();
+        servidor = nuevo;
+    }
+
+    public synchronized int getPuerto() {
+        return servidor == null ? -1 : servidor.getLocalPort();
+    }
+
+    public int getReplicasConectadas() {
+        return conexiones.size();
+    }
+
+    // Deja de aceptar réplicas y corta las conectadas; al volver a conectarse reciben el estado completo
+    public synchronized void detener() {
+        if (servidor == null) return;
+        cerrarSinError(servidor);
+        for (Socket s : conexiones) {
+            cerrarSinError(s);
+        }
+        servidor = null;
+    }
+
+    private void aceptar(ServerSocket servidor) {
+        while (!servidor.isClosed()) {
+            try {
+                Socket conexion = servidor.accept();
+                conexion.setTcpNoDelay(true);
+                conexiones.add(conexion);
+                Thread envio = new Thread(() -> atender(conexion), "replicacion-envio-" + atendidas.incrementAndGet());
+                envio.setDaemon(true);
+                envio.start();
+            } catch (IOException e) {
+                // Servidor detenido
+            }
+        }
+    }
+
+    // Manda el estado y después la cola de la bitácora, hasta que la réplica se desconecte
+    private void atender(Socket conexion) {
+        BitacoraOperaciones bitacora = sistema.getBitacora();
+        try (Socket s = conexion) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream(), 1 << 16));
+            out.writeInt(MAGIA);
+            ByteBuffer buffer = ByteBuffer.allocate(TAMANO_LECTURA);
+            long posicion = -1;
+            long cambios = 0;
+            while (!bitacora.estaCerrada()) {
+                if (posicion < 0 || sistema.getCambiosSinBitacora() != cambios) {
+                    Inicio inicio = sistema.inicioReplica();
+                    out.writeByte(ESTADO);
+                    out.writeInt(inicio.instantanea.length);
+                    out.write(inicio.instantanea);
+                    posicion = inicio.byteBitacora;
+                    cambios = inicio.cambiosSinBitacora;
+                }
+                long durable = bitacora.esperarEscritura(posicion, LATIDO_MILLIS);
+                if (durable > posicion) {
+                    ByteBuffer usado = enviarLineas(bitacora, buffer, posicion, durable, out);
+                    if (usado == null) {
+                        posicion = -1;
+                        continue;
+                    }
+                    buffer = usado;
+                    posicion += buffer.position();
+                } else {
+                    out.writeByte(LATIDO);
+                    out.writeLong(bitacora.getUltimoLsn());
+                }
+                out.flush();
+            }
+        } catch (IOException e) {
+            // La réplica se desconectó o se detuvo el servidor
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            System.out.println("ERROR. Se cortó la replicación hacia " + conexion.getRemoteSocketAddress() + ": " + e.getMessage());
+        } finally {
+            conexiones.remove(conexion);
+        }
+    }
+
+    /**
+     * Lee de la bitácora desde posicion (hasta durable, a lo más lo que cabe en el buffer) y manda
+     * las líneas completas en un lote. Retorna el buffer usado, con position() = bytes enviados, o
+     * null sin enviar nada si esa parte de la bitácora ya se recortó.
+     */
+    private static ByteBuffer enviarLineas(BitacoraOperaciones bitacora, ByteBuffer buffer, long posicion, long durable,
+                                           DataOutputStream out) throws IOException {
+        long lsnPrimario = bitacora.getUltimoLsn();
+        while (true) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), durable - posicion));
+            if (bitacora.leer(buffer, posicion) < 0) return null;
+            byte[] datos = buffer.array();
+            int fin = buffer.limit();
+            while (fin > 0 && datos[fin - 1] != '\n') fin--;
+            if (fin == 0) {
+                // Una línea más larga que el buffer
+                buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+                continue;
+            }
+            int lineas = 0;
+            for (int i = 0; i < fin; i++) {
+                if (datos[i] == '\n') lineas++;
+            }
+            out.writeByte(LOTE);
+            out.writeLong(lsnPrimario);
+            out.writeInt(lineas);
+            int inicio = 0;
+            for (int i = 0; i < fin; i++) {
+                if (datos[i] != '\n') continue;
+                out.writeInt(i - inicio);
+                out.write(datos, inicio, i - inicio);
+                inicio = i + 1;
+            }
+            buffer.position(fin);
+            return buffer;
+        }
+    }
+
+    private static void cerrarSinError(AutoCloseable recurso) {
+        try {
+            recurso.close();
+        } catch (Exception e) {
+            // Ya estaba cerrado
+        }
+    }
+}
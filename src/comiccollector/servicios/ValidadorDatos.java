@@ -3,7 +3,7 @@ package comiccollector.servicios;
 import comiccollector.excepciones.EmailYaRegistradoException;
 import comiccollector.excepciones.RutInvalidoException;
 
-import java.util.HashSet;
+import java.util.Set;
 import java.util.regex.Pattern;
 
 // Clase para validar datos de entrada
@@ -30,6 +30,13 @@ public class ValidadorDatos {
         }
     }
 
+    // Textos que van a la bitácora y a los archivos de texto: '|' separa campos y un salto de línea parte el registro
+    public void validarSinSeparadores(String dato, String campo) {
+        if (dato != null && (dato.indexOf('|') >= 0 || dato.indexOf('\n') >= 0 || dato.indexOf('\r') >= 0)) {
+            throw new IllegalArgumentException("El campo '" + campo + "' no puede contener '|' ni saltos de línea.");
+        }
+    }
+
     // Valida que valores no sean negativos
     public void validarNoNegativo(int valor, String campo) {
         if (valor < 0) {
@@ -43,6 +50,13 @@ public class ValidadorDatos {
         }
     }
 
+    // Cantidades de compra y reserva: cero o negativo no tiene sentido (y negativo sumaría stock)
+    public void validarPositivo(int valor, String campo) {
+        if (valor <= 0) {
+            throw new IllegalArgumentException("El campo '" + campo + "' debe ser mayor a cero.");
+        }
+    }
+
     // Validación de 8 dígitos
     public void validarCelular(String celular) {
         if (celular == null || !CELULAR_PATTERN.matcher(celular).matches()) {
@@ -50,11 +64,16 @@ public class ValidadorDatos {
         }
     }
 
-    // HashSet para que valide que correo no esté repetido
-    public void validarEmailUnico(String email, HashSet<String> emailsRegistrados) throws EmailYaRegistradoException {
+    // Set para que valide que correo no esté repetido
+    public void validarEmailUnico(String email, Set<String> emailsRegistrados) throws EmailYaRegistradoException {
         if (emailsRegistrados.contains(email)) {
             throw new EmailYaRegistradoException("El email '" + email + "' ya está registrado.");
         }
+        validarFormatoEmail(email);
+    }
+
+    // Solo el formato, sin revisar si ya existe (la importación masiva revisa duplicados aparte)
+    public void validarFormatoEmail(String email) {
         if (email == null || !EMAIL_PATTERN.matcher(email).matches()) {
             throw new IllegalArgumentException("El email ingresado no tiene un formato válido.");
         }
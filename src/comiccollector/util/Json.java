@@ -0,0 +1,184 @@
+package comiccollector.util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lector y escritor JSON mínimo para la API HTTP, sin dependencias.
+ * Lee objetos, arreglos, textos, números (como Double), true/false y null.
+ */
+public final class Json {
+
+    private final String texto;
+    private int pos;
+
+    private Json(String texto) {
+        this.texto = texto;
+    }
+
+    // Convierte el texto en Map, List, String, Double, Boolean o null
+    public static Object leer(String texto) {
+        Json lector = new Json(texto);
+        lector.saltarEspacios();
+        Object valor = lector.leerValor();
+        lector.saltarEspacios();
+        if (lector.pos != texto.length()) throw lector.error("Contenido sobrante");
+        return valor;
+    }
+
+    // Lee un objeto JSON; cualquier otra cosa es un error
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> leerObjeto(String texto) {
+        Object valor = leer(texto);
+        if (!(valor instanceof Map)) throw new IllegalArgumentException("Se esperaba un objeto JSON.");
+        return (Map<String, Object>) valor;
+    }
+
+    private Object leerValor() {
+        if (pos >= texto.length()) throw error("Fin inesperado");
+        char c = texto.charAt(pos);
+        switch (c) {
+            case '{':
+                return leerObjetoInterno();
+            case '[':
+                return leerArreglo();
+            case '"':
+                return leerTexto();
+            case 't':
+                return leerLiteral("true", Boolean.TRUE);
+            case 'f':
+                return leerLiteral("false", Boolean.FALSE);
+            case 'n':
+                return leerLiteral("null", null);
+            default:
+                return leerNumero();
+        }
+    }
+
+    private Map<String, Object> leerObjetoInterno() {
+        Map<String, Object> objeto = new LinkedHashMap<>();
+        pos++;
+        saltarEspacios();
+        if (consumir('}')) return objeto;
+        do {
+            saltarEspacios();
+            if (pos >= texto.length() || texto.charAt(pos) != '"') throw error("Se esperaba un nombre de campo");
+            String clave = leerTexto();
+            saltarEspacios();
+            if (!consumir(':')) throw error("Se esperaba ':'");
+            saltarEspacios();
+            objeto.put(clave, leerValor());
+            saltarEspacios();
+        } while (consumir(','));
+        if (!consumir('}')) throw error("Se esperaba '}'");
+        return objeto;
+    }
+
+    private List<Object> leerArreglo() {
+        List<Object> arreglo = new ArrayList<>();
+        pos++;
+        saltarEspacios();
+        if (consumir(']')) return arreglo;
+        do {
+            saltarEspacios();
+            arreglo.add(leerValor());
+            saltarEspacios();
+        } while (consumir(','));
+        if (!consumir(']')) throw error("Se esperaba ']'");
+        return arreglo;
+    }
+
+    private String leerTexto() {
+        pos++;
+        StringBuilder sb = new StringBuilder();
+        while (pos < texto.length()) {
+            char c = texto.charAt(pos++);
+            if (c == '"') return sb.toString();
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            if (pos >= texto.length()) break;
+            char e = texto.charAt(pos++);
+            switch (e) {
+                case 'n': sb.append('\n'); break;
+                case 't': sb.append('\t'); break;
+                case 'r': sb.append('\r'); break;
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'u':
+                    if (pos + 4 > texto.length()) throw error("Escape \\u incompleto");
+                    try {
+                        sb.append((char) Integer.parseInt(texto.substring(pos, pos + 4), 16));
+                    } catch (NumberFormatException ex) {
+                        throw error("Escape \\u inválido");
+                    }
+                    pos += 4;
+                    break;
+                default: sb.append(e);
+            }
+        }
+        throw error("Texto sin cerrar");
+    }
+
+    private Object leerLiteral(String literal, Object valor) {
+        if (!texto.startsWith(literal, pos)) throw error("Valor inválido");
+        pos += literal.length();
+        return valor;
+    }
+
+    private Double leerNumero() {
+        int inicio = pos;
+        while (pos < texto.length() && "+-0123456789.eE".indexOf(texto.charAt(pos)) >= 0) {
+            pos++;
+        }
+        try {
+            return Double.valueOf(texto.substring(inicio, pos));
+        } catch (NumberFormatException e) {
+            throw error("Número inválido");
+        }
+    }
+
+    private boolean consumir(char c) {
+        if (pos < texto.length() && texto.charAt(pos) == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private void saltarEspacios() {
+        while (pos < texto.length() && Character.isWhitespace(texto.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private IllegalArgumentException error(String motivo) {
+        return new IllegalArgumentException("JSON inválido: " + motivo + " (posición " + pos + ").");
+    }
+
+    // Agrega el texto entre comillas y con los caracteres especiales escapados
+    public static StringBuilder texto(StringBuilder sb, String valor) {
+        if (valor == null) return sb.append("null");
+        sb.append('"');
+        for (int i = 0; i < valor.length(); i++) {
+            char c = valor.charAt(i);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append('"');
+    }
+}
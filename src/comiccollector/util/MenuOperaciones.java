@@ -2,6 +2,7 @@ package comiccollector.util;
 
 import comiccollector.servicios.ComicCollectorSystem;
 import comiccollector.modelos.Comic;
+import comiccollector.modelos.LineaPedido;
 import comiccollector.modelos.Usuario;
 import comiccollector.excepciones.ProductoYaReservadoException;
 
@@ -18,6 +19,9 @@ import java.util.Scanner;
 public class MenuOperaciones {
     private final ComicCollectorSystem sistema;
     private final Scanner scanner;
+    private static final int TOP_RANKING = 10;
+    private static final int RADIO_RANKING = 2;
+    private static final int LIMITE_BUSQUEDA = 10;
 
     public MenuOperaciones(ComicCollectorSystem sistema, Scanner scanner) {
         this.sistema = sistema;
@@ -32,6 +36,7 @@ public class MenuOperaciones {
             System.out.println("2. Hacer una reserva/preventa");
             System.out.println("3. Ver fechas de lanzamiento futuras");
             System.out.println("4. Ver ranking de usuarios por compras");
+            System.out.println("5. Realizar un pedido con varios productos");
             System.out.println("0. Volver al menú principal");
             System.out.print("Seleccione una opción: ");
             String opcion = scanner.nextLine().trim();
@@ -48,6 +53,9 @@ public class MenuOperaciones {
                 case "4":
                     mostrarRankingUsuarios();
                     break;
+                case "5":
+                    realizarPedido();
+                    break;
                 case "0":
                     volver = true;
                     break;
@@ -96,6 +104,62 @@ public class MenuOperaciones {
         pausar();
     }
 
+    // Pedido con varios productos: se arma la lista, se confirma una vez y se compra todo o nada.
+    private void realizarPedido() {
+        String rut;
+        while (true) {
+            rut = pedirDato("Ingrese RUT del usuario: ", false);
+            if (sistema.buscarUsuarioPorRut(rut) == null) {
+                System.out.println("ERROR. Usuario no encontrado. Intente nuevamente.");
+            } else {
+                break;
+            }
+        }
+        List<LineaPedido> lineas = new ArrayList<>();
+        List<Comic> productos = new ArrayList<>();
+        do {
+            Comic comic = buscarComicInteractivo();
+            if (comic.getCantidadDisponible() == 0) {
+                System.out.println("No hay stock disponible de este producto.");
+            } else {
+                int cantidad = pedirDatoEntero("Ingrese cantidad a comprar: ", 1, comic.getCantidadDisponible());
+                lineas.add(new LineaPedido(comic.getCodigo(), cantidad));
+                productos.add(comic);
+            }
+        } while (pedirDato("¿Agregar otro producto? (s/n): ", false).toLowerCase().equals("s"));
+        if (lineas.isEmpty()) {
+            System.out.println("El pedido no tiene productos.");
+            pausar();
+            return;
+        }
+
+        Usuario usuario = sistema.buscarUsuarioPorRut(rut);
+        System.out.println("\nResumen del pedido:");
+        System.out.println("Usuario: " + usuario.getNombre() + " (" + usuario.getRut() + ")");
+        double total = 0;
+        for (int i = 0; i < lineas.size(); i++) {
+            Comic c = productos.get(i);
+            int cantidad = lineas.get(i).getCantidad();
+            System.out.printf("  %s (%s) x %d = $%.0f%n", c.getNombre(), c.getCodigo(), cantidad, c.getPrecio() * cantidad);
+            total += c.getPrecio() * cantidad;
+        }
+        System.out.println("Total: $" + total);
+        System.out.print("¿Confirma el pedido? (s/n): ");
+        String confirmacion = scanner.nextLine().trim().toLowerCase();
+        if (!confirmacion.equals("s")) {
+            System.out.println("Operación cancelada por el usuario.");
+            pausar();
+            return;
+        }
+        try {
+            sistema.realizarComprasLote(rut, lineas);
+            System.out.println("Pedido realizado correctamente.");
+        } catch (Exception e) {
+            System.out.println("ERROR. " + e.getMessage() + " No se compró ningún producto del pedido.");
+        }
+        pausar();
+    }
+
     // Reserva de producto en preventa. Validaciones y confirmación.
     private void hacerReserva() {
         String rut;
@@ -137,7 +201,11 @@ public class MenuOperaciones {
             return;
         }
         try {
-            sistema.hacerReserva(rut, comic.getCodigo(), cantidadReservar);
+            sistema.hacerReserva(rut, comic.getCodigo(), cantidadReservar).exceptionally(e -> {
+                // La reserva ya está en la bitácora, así que se recupera al reiniciar
+                System.out.println("AVISO. No se pudo guardar la reserva en reservas.txt: " + e.getMessage());
+                return null;
+            });
             System.out.println("Reserva/preventa realizada correctamente.");
         } catch (ProductoYaReservadoException | IllegalArgumentException e) {
             System.out.println("ERROR. " + e.getMessage());
@@ -147,20 +215,25 @@ public class MenuOperaciones {
         pausar();
     }
 
-    // Lista de preventa
+    // Lista de preventa desde el calendario de lanzamientos, ya ordenada por fecha
     private void mostrarFechasLanzamiento() {
-        List<Comic> lanzamientos = new ArrayList<>();
-        LocalDate hoy = LocalDate.now();
-        for (Comic c : sistema.getComics()) {
-            if (c.getFechaLlegada() != null && c.getFechaLlegada().isAfter(hoy)) {
-                lanzamientos.add(c);
+        String dias = pedirDato("Ver lanzamientos de los próximos N días (Enter para todos): ", true);
+        List<Comic> lanzamientos;
+        if (dias.isEmpty()) {
+            lanzamientos = sistema.lanzamientosFuturos();
+        } else {
+            try {
+                lanzamientos = sistema.lanzamientosProximos(Math.max(0, Integer.parseInt(dias)));
+            } catch (NumberFormatException e) {
+                System.out.println("Ingrese un número válido.");
+                pausar();
+                return;
             }
         }
         if (lanzamientos.isEmpty()) {
             System.out.println("No hay lanzamientos futuros registrados.");
         } else {
             System.out.println("Próximos lanzamientos:");
-            lanzamientos.sort((a, b) -> a.getFechaLlegada().compareTo(b.getFechaLlegada()));
             for (Comic c : lanzamientos) {
                 System.out.println("Fecha: " + formatearFecha(c.getFechaLlegada())
                         + " | Código: " + c.getCodigo()
@@ -173,16 +246,36 @@ public class MenuOperaciones {
         pausar();
     }
 
-    // Ranking según compras realizadas.
+    // Ranking según compras realizadas. Muestra el top y, opcionalmente, la posición de un usuario.
     private void mostrarRankingUsuarios() {
-        List<Usuario> usuarios = new ArrayList<>(sistema.getUsuarios());
-        usuarios.sort((a, b) -> Integer.compare(b.totalCompras(), a.totalCompras()));
-        System.out.println("Ranking de usuarios por compras:");
+        List<Usuario> top = sistema.topUsuarios(TOP_RANKING);
+        if (top.isEmpty()) {
+            System.out.println("No hay usuarios registrados.");
+            pausar();
+            return;
+        }
+        System.out.println("Ranking de usuarios por compras (top " + TOP_RANKING + "):");
+        imprimirTramoRanking(top, 1);
+
+        String rut = pedirDato("Ingrese RUT para ver su posición (Enter para omitir): ", true);
+        if (!rut.isEmpty()) {
+            int posicion = sistema.posicionEnRanking(rut);
+            if (posicion < 0) {
+                System.out.println("Usuario no encontrado.");
+            } else {
+                System.out.println("Posición de " + rut + ": " + posicion);
+                int desde = Math.max(1, posicion - RADIO_RANKING);
+                imprimirTramoRanking(sistema.usuariosAlrededorDe(posicion, RADIO_RANKING), desde);
+            }
+        }
+        pausar();
+    }
+
+    private void imprimirTramoRanking(List<Usuario> usuarios, int posicionInicial) {
         for (int i = 0; i < usuarios.size(); i++) {
             Usuario u = usuarios.get(i);
-            System.out.printf("[%d] %s (RUT: %s) - Total comprados: %d%n", i+1, u.getNombre(), u.getRut(), u.totalCompras());
+            System.out.printf("[%d] %s (RUT: %s) - Total comprados: %d%n", posicionInicial + i, u.getNombre(), u.getRut(), u.totalCompras());
         }
-        pausar();
     }
 
     // Métodos auxiliares
@@ -218,7 +311,7 @@ public class MenuOperaciones {
 
     private Comic buscarComicInteractivo() {
         while (true) {
-            String criterio = pedirDato("Buscar por [1] Código, [2] Nombre, [3] Autor/Fabricante: ", false);
+            String criterio = pedirDato("Buscar por [1] Código, [2] Nombre, [3] Autor/Fabricante, [4] Texto parcial: ", false);
             List<Comic> coincidencias = new ArrayList<>();
             if (criterio.equals("1")) {
                 String codigo = pedirDato("Ingrese código: ", false);
@@ -226,14 +319,13 @@ public class MenuOperaciones {
                 if (c != null) coincidencias.add(c);
             } else if (criterio.equals("2")) {
                 String nombre = pedirDato("Ingrese nombre: ", false);
-                for (Comic c : sistema.getComics()) {
-                    if (c.getNombre().equalsIgnoreCase(nombre)) coincidencias.add(c);
-                }
+                coincidencias = sistema.buscarPorNombre(nombre);
             } else if (criterio.equals("3")) {
                 String autor = pedirDato("Ingrese autor o fabricante: ", false);
-                for (Comic c : sistema.getComics()) {
-                    if (c.getAutorOFabricante().equalsIgnoreCase(autor)) coincidencias.add(c);
-                }
+                coincidencias = sistema.buscarPorAutor(autor);
+            } else if (criterio.equals("4")) {
+                String texto = pedirDato("Ingrese parte del nombre o autor: ", false);
+                coincidencias = sistema.buscarComics(texto, LIMITE_BUSQUEDA);
             }
             if (coincidencias.isEmpty()) {
                 System.out.println("No se encontró producto. Intente nuevamente.");
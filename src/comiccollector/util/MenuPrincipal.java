@@ -47,6 +47,8 @@ public class MenuPrincipal {
                 case "0":
                     System.out.println("Guardando inventario actualizado...");
                     sistema.guardarInventarioActualizado();
+                    // Instantánea para que el próximo arranque no tenga que releer todo el historial
+                    sistema.guardarInstantanea();
                     System.out.println("¡Gracias por usar ComicCollectorSystem!");
                     salir = true;
                     break;
@@ -1,11 +1,15 @@
 package comiccollector.util;
 
 import comiccollector.servicios.ComicCollectorSystem;
+import comiccollector.servicios.ListadoInventario;
 import comiccollector.modelos.Comic;
+import comiccollector.modelos.TipoProducto;
 
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Scanner;
 
@@ -14,6 +18,8 @@ import java.util.Scanner;
  * Permite agregar, eliminar y listar productos del inventario.
  */
 public class MenuProductos {
+    private static final int TAMANO_PAGINA = 20;
+
     private final ComicCollectorSystem sistema;
     private final Scanner scanner;
 
@@ -53,7 +59,7 @@ public class MenuProductos {
 
     // Agrega un nuevo producto con validaciones y confirmación.
     private void agregarComic() {
-        String tipo = seleccionarTipoProducto();
+        TipoProducto tipo = seleccionarTipoProducto();
         String nombre = pedirDato("Ingrese nombre: ", false);
         String autor = pedirDato("Ingrese autor o fabricante: ", false);
         int cantidad = pedirDatoEntero("Ingrese cantidad disponible: ", 0, Integer.MAX_VALUE);
@@ -97,7 +103,7 @@ public class MenuProductos {
 
     // Eliminar un producto tras confirmación.
     private void eliminarComic() {
-        String tipo = seleccionarTipoProducto();
+        TipoProducto tipo = seleccionarTipoProducto();
         Comic comic = buscarComicInteractivoPorTipo(tipo);
         if (comic == null) {
             System.out.println("No se encontró producto de tipo seleccionado.");
@@ -123,33 +129,70 @@ public class MenuProductos {
         pausar();
     }
 
-    // Lista de productos en inventario
+    // Lista de productos en inventario, por nombre y de a una página: cada página cuesta lo mismo
+    // sin importar el tamaño del catálogo, y se escribe de una vez con un solo flush.
     private void listarProductosInventario() {
-        List<Comic> lista = new ArrayList<>(sistema.getComics());
-        if (lista.isEmpty()) {
-            System.out.println("No hay productos en inventario.");
-        } else {
-            lista.sort((a, b) -> a.getNombre().compareToIgnoreCase(b.getNombre()));
-            System.out.println("Inventario actual:");
-            System.out.printf("%-5s\t%-14s\t%-20s\t%-22s\t%-8s\t%-13s\t%-8s%n",
+        TipoProducto tipo = seleccionarFiltroTipo();
+        ListadoInventario.Disponibilidad disponibilidad = seleccionarFiltroDisponibilidad();
+        PrintWriter salida = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out, System.out.charset()), 1 << 14));
+        long hoy = LocalDate.now().toEpochDay();
+        int cursor = -1;
+        int numeroPagina = 1;
+        while (true) {
+            ListadoInventario.Pagina pagina = sistema.listarInventario(cursor, TAMANO_PAGINA, tipo, disponibilidad);
+            if (pagina.getComics().isEmpty()) {
+                System.out.println(numeroPagina == 1 ? "No hay productos en inventario." : "No hay más productos.");
+                break;
+            }
+            salida.println("Inventario actual (página " + numeroPagina + "):");
+            salida.printf("%-5s\t%-14s\t%-20s\t%-22s\t%-8s\t%-13s\t%-8s%n",
                     "Cod", "Tipo", "Nombre", "Autor/Fab.", "Cantidad", "Fecha llegada", "Precio");
-            for (Comic c : lista) {
+            for (Comic c : pagina.getComics()) {
+                int cantidad = c.getCantidadDisponible();
+                int llegada = c.getDiaLlegada();
                 String fechaStr;
-                if (c.getCantidadDisponible() == 0) {
+                if (cantidad == 0) {
                     fechaStr = "Agotado";
-                } else if (c.getFechaLlegada() == null || !c.getFechaLlegada().isAfter(LocalDate.now())) {
+                } else if (llegada == Comic.Almacen.SIN_FECHA || llegada <= hoy) {
                     fechaStr = "En Tienda";
                 } else {
                     fechaStr = formatearFecha(c.getFechaLlegada());
                 }
-                System.out.printf("%-5s\t%-14s\t%-20s\t%-22s\t%-8d\t%-13s\t%-8.2f%n",
+                salida.printf("%-5s\t%-14s\t%-20s\t%-22s\t%-8d\t%-13s\t%-8.2f%n",
                         c.getCodigo(), c.getTipo(), c.getNombre(), c.getAutorOFabricante(),
-                        c.getCantidadDisponible(), fechaStr, c.getPrecio());
+                        cantidad, fechaStr, c.getPrecio());
             }
+            salida.flush();
+            if (!pagina.hayMas()) break;
+            String opcion = pedirDato("[Enter] Siguiente página, [0] Volver: ", true);
+            if (opcion.equals("0")) return;
+            cursor = pagina.getCursor();
+            numeroPagina++;
         }
         pausar();
     }
 
+    private TipoProducto seleccionarFiltroTipo() {
+        TipoProducto[] tipos = TipoProducto.values();
+        System.out.println("Filtrar por tipo:");
+        System.out.println("0. Todos");
+        for (int i = 0; i < tipos.length; i++) {
+            System.out.println((i + 1) + ". " + tipos[i]);
+        }
+        int opcion = pedirDatoEntero("Opción: ", 0, tipos.length);
+        return opcion == 0 ? null : tipos[opcion - 1];
+    }
+
+    private ListadoInventario.Disponibilidad seleccionarFiltroDisponibilidad() {
+        System.out.println("Mostrar:");
+        System.out.println("0. Todos");
+        System.out.println("1. Solo con stock en tienda");
+        System.out.println("2. Solo próximos lanzamientos");
+        int opcion = pedirDatoEntero("Opción: ", 0, 2);
+        return opcion == 1 ? ListadoInventario.Disponibilidad.EN_STOCK
+                : opcion == 2 ? ListadoInventario.Disponibilidad.PROXIMOS
+                : ListadoInventario.Disponibilidad.TODOS;
+    }
 
     private String pedirDato(String mensaje, boolean permiteVacio) {
         String dato;
@@ -215,8 +258,8 @@ public class MenuProductos {
         scanner.nextLine();
     }
 
-    private String seleccionarTipoProducto() {
-        String[] tipos = {"Cómic", "Novela gráfica", "Manga", "Coleccionable"};
+    private TipoProducto seleccionarTipoProducto() {
+        TipoProducto[] tipos = TipoProducto.values();
         System.out.println("Seleccione tipo de producto:");
         for (int i = 0; i < tipos.length; i++) {
             System.out.println((i + 1) + ". " + tipos[i]);
@@ -225,13 +268,8 @@ public class MenuProductos {
         return tipos[opcion - 1];
     }
 
-    private Comic buscarComicInteractivoPorTipo(String tipo) {
-        List<Comic> coincidencias = new ArrayList<>();
-        for (Comic c : sistema.getComics()) {
-            if (c.getTipo().equalsIgnoreCase(tipo)) {
-                coincidencias.add(c);
-            }
-        }
+    private Comic buscarComicInteractivoPorTipo(TipoProducto tipo) {
+        List<Comic> coincidencias = sistema.buscarPorTipo(tipo);
         if (coincidencias.isEmpty()) {
             return null;
         }
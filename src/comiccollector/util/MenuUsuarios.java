@@ -1,10 +1,13 @@
 package comiccollector.util;
 
 import comiccollector.servicios.ComicCollectorSystem;
+import comiccollector.servicios.ImportadorUsuarios;
 import comiccollector.modelos.Usuario;
 import comiccollector.excepciones.EmailYaRegistradoException;
 import comiccollector.excepciones.RutInvalidoException;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.Collection;
 import java.util.List;
 import java.util.Scanner;
@@ -16,6 +19,7 @@ import java.util.Scanner;
 public class MenuUsuarios {
     private final ComicCollectorSystem sistema;
     private final Scanner scanner;
+    private static final int MAX_RECHAZOS_EN_PANTALLA = 20;
 
     public MenuUsuarios(ComicCollectorSystem sistema, Scanner scanner) {
         this.sistema = sistema;
@@ -29,6 +33,7 @@ public class MenuUsuarios {
             System.out.println("1. Registrar usuario");
             System.out.println("2. Listar usuarios registrados");
             System.out.println("3. Ver historial de un usuario");
+            System.out.println("4. Importar usuarios desde archivo");
             System.out.println("0. Volver al menú principal");
             System.out.print("Seleccione una opción: ");
             String opcion = scanner.nextLine().trim();
@@ -42,6 +47,9 @@ public class MenuUsuarios {
                 case "3":
                     verHistorialUnificado();
                     break;
+                case "4":
+                    importarUsuarios();
+                    break;
                 case "0":
                     volver = true;
                     break;
@@ -99,7 +107,11 @@ public class MenuUsuarios {
         }
 
         try {
-            sistema.registrarUsuario(rut, nombre, email, celular);
+            sistema.registrarUsuario(rut, nombre, email, celular).exceptionally(e -> {
+                // El registro ya está en la bitácora, así que se recupera al reiniciar
+                System.out.println("AVISO. No se pudo guardar el usuario en usuarios.txt: " + e.getMessage());
+                return null;
+            });
             System.out.println("Usuario registrado correctamente.");
         } catch (Exception e) {
             System.out.println("ERROR " + e.getMessage());
@@ -107,6 +119,34 @@ public class MenuUsuarios {
         pausar();
     }
 
+    // Importa usuarios desde un archivo rut|nombre|email|celular y deja un reporte de los rechazados
+    private void importarUsuarios() {
+        File archivo = new File(pedirDato("Ingrese ruta del archivo: ", false));
+        if (!archivo.isFile()) {
+            System.out.println("ERROR. No se encontró el archivo " + archivo.getPath());
+            pausar();
+            return;
+        }
+        try {
+            ImportadorUsuarios.Resultado resultado = sistema.importarUsuarios(archivo);
+            System.out.println("Líneas leídas : " + resultado.getLeidas());
+            System.out.println("Importados    : " + resultado.getAceptados());
+            System.out.println("Rechazados    : " + resultado.getRechazos().size());
+            List<ImportadorUsuarios.Rechazo> rechazos = resultado.getRechazos();
+            for (int i = 0; i < Math.min(MAX_RECHAZOS_EN_PANTALLA, rechazos.size()); i++) {
+                System.out.println("  " + rechazos.get(i));
+            }
+            if (!rechazos.isEmpty()) {
+                File reporte = new File(archivo.getPath() + ".rechazos.txt");
+                resultado.guardarReporte(reporte);
+                System.out.println("Detalle de rechazos en " + reporte.getPath());
+            }
+        } catch (IOException | IllegalStateException e) {
+            System.out.println("ERROR. No se importó ningún usuario: " + e.getMessage());
+        }
+        pausar();
+    }
+
     // Lista de usuarios con detalle
     private void listarUsuariosRegistrados() {
         Collection<Usuario> usuarios = sistema.getUsuarios();
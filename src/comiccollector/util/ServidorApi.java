@@ -0,0 +1,329 @@
+package comiccollector.util;
+
+import comiccollector.excepciones.EmailYaRegistradoException;
+import comiccollector.excepciones.ProductoYaReservadoException;
+import comiccollector.excepciones.RutInvalidoException;
+import comiccollector.excepciones.RutYaRegistradoException;
+import comiccollector.modelos.Comic;
+import comiccollector.modelos.LineaPedido;
+import comiccollector.modelos.Usuario;
+import comiccollector.servicios.ComicCollectorSystem;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * API HTTP/JSON sobre el mismo ComicCollectorSystem que usa el menú, para que varias cajas y la
+ * tienda web operen a la vez. Cada petición corre en su propio hilo virtual: mientras espera el
+ * fsync de la bitácora no ocupa un hilo del sistema operativo.
+ *
+ *   GET  /comics?q=texto&limite=20         búsqueda por texto parcial
+ *   GET  /comics/{codigo}                  un producto
+ *   POST /usuarios                         {"rut","nombre","email","celular"}
+ *   POST /compras                          {"rut","codigo","cantidad"} o {"rut","lineas":[{"codigo","cantidad"}]}
+ *   POST /reservas                         {"rut","codigo","cantidad"}
+ *   GET  /ranking?top=10                   mayores compradores
+ *   GET  /ranking/{rut}?radio=2            posición del usuario y sus vecinos
+ *
+ * Los errores de validación responden 400, los duplicados 409, lo que no existe 404 y una
+ * bitácora que no pudo escribir 503. El cuerpo de error es {"error": "mensaje"}.
+ */
+public class ServidorApi {
+    private static final int MAX_CUERPO = 64 * 1024;
+    private static final int LIMITE_BUSQUEDA = 20;
+    private static final int MAX_LIMITE = 100;
+    private static final int TOP_RANKING = 10;
+    private static final int RADIO_RANKING = 2;
+    private static final int COLA_CONEXIONES = 1024;
+
+    static {
+        // El servidor de la JDK escribe encabezados y cuerpo por separado; con Nagle activo cada
+        // respuesta chica espera el ACK retrasado del cliente (~40 ms)
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final ComicCollectorSystem sistema;
+    private HttpServer servidor;
+    private ExecutorService hilos;
+
+    // Error con el código HTTP con que se responde
+    private static class ErrorHttp extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final int estado;
+
+        ErrorHttp(int estado, String mensaje) {
+            super(mensaje);
+            this.estado = estado;
+        }
+    }
+
+    // Atiende una petición y retorna el cuerpo JSON de la respuesta
+    private interface Manejador {
+        String atender(HttpExchange intercambio, String resto) throws Exception;
+    }
+
+    public ServidorApi(ComicCollectorSystem sistema) {
+        this.sistema = sistema;
+    }
+
+    // Con puerto 0 se elige uno libre; ver getPuerto()
+    public synchronized void iniciar(int puerto) throws IOException {
+        if (servidor != null) throw new IllegalStateException("El servidor ya está iniciado.");
+        servidor = HttpServer.create(new InetSocketAddress(puerto), COLA_CONEXIONES);
+        hilos = Executors.newVirtualThreadPerTaskExecutor();
+        servidor.setExecutor(hilos);
+        registrar("/comics", "GET", this::comics);
+        registrar("/usuarios", "POST", this::registrarUsuario);
+        registrar("/compras", "POST", this::comprar);
+        registrar("/reservas", "POST", this::reservar);
+        registrar("/ranking", "GET", this::ranking);
+        servidor.start();
+    }
+
+    public synchronized int getPuerto() {
+        return servidor == null ? -1 : servidor.getAddress().getPort();
+    }
+
+    // Deja de aceptar conexiones y espera hasta un segundo a que terminen las peticiones en curso
+    public synchronized void detener() {
+        if (servidor == null) return;
+        servidor.stop(1);
+        hilos.shutdown();
+        servidor = null;
+        hilos = null;
+    }
+
+    private void registrar(String ruta, String metodo, Manejador manejador) {
+        servidor.createContext(ruta, intercambio -> {
+            int estado = 200;
+            String respuesta;
+            try {
+                String camino = intercambio.getRequestURI().getPath();
+                String resto = camino.length() > ruta.length() ? camino.substring(ruta.length() + 1) : "";
+                if (!camino.equals(ruta) && !camino.startsWith(ruta + "/")) {
+                    throw new ErrorHttp(404, "Ruta no encontrada.");
+                }
+                if (!intercambio.getRequestMethod().equals(metodo)) {
+                    intercambio.getResponseHeaders().set("Allow", metodo);
+                    throw new ErrorHttp(405, "Método no permitido.");
+                }
+                respuesta = manejador.atender(intercambio, resto);
+                if (metodo.equals("POST")) estado = 201;
+            } catch (ErrorHttp e) {
+                estado = e.estado;
+                respuesta = error(e.getMessage());
+            } catch (IllegalArgumentException | RutInvalidoException e) {
+                estado = 400;
+                respuesta = error(e.getMessage());
+            } catch (EmailYaRegistradoException | RutYaRegistradoException | ProductoYaReservadoException e) {
+                estado = 409;
+                respuesta = error(e.getMessage());
+            } catch (IllegalStateException e) {
+                estado = 503;
+                respuesta = error(e.getMessage());
+            } catch (Exception e) {
+                estado = 500;
+                respuesta = error("Error interno.");
+                System.out.println("ERROR. API " + ruta + ": " + e);
+                sistema.getMetricas().registrarError("API " + ruta + ": " + e);
+            }
+            responder(intercambio, estado, respuesta);
+        });
+    }
+
+    private static void responder(HttpExchange intercambio, int estado, String json) throws IOException {
+        byte[] cuerpo = json.getBytes(StandardCharsets.UTF_8);
+        intercambio.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        intercambio.sendResponseHeaders(estado, cuerpo.length);
+        try (OutputStream salida = intercambio.getResponseBody()) {
+            salida.write(cuerpo);
+        }
+    }
+
+    // Endpoints
+
+    private String comics(HttpExchange intercambio, String codigo) {
+        if (!codigo.isEmpty()) {
+            Comic comic = sistema.buscarComicPorCodigo(codigo);
+            if (comic == null) throw new ErrorHttp(404, "Producto no encontrado.");
+            return comic(new StringBuilder(), comic).toString();
+        }
+        Map<String, String> parametros = parametros(intercambio);
+        String texto = parametros.get("q");
+        if (texto == null || texto.isBlank()) throw new IllegalArgumentException("Falta el parámetro q.");
+        int limite = entero(parametros, "limite", LIMITE_BUSQUEDA, 1, MAX_LIMITE);
+        StringBuilder sb = new StringBuilder("[");
+        for (Comic c : sistema.buscarComics(texto, limite)) {
+            if (sb.length() > 1) sb.append(',');
+            comic(sb, c);
+        }
+        return sb.append(']').toString();
+    }
+
+    private String registrarUsuario(HttpExchange intercambio, String resto) throws Exception {
+        sinResto(resto);
+        Map<String, Object> cuerpo = cuerpo(intercambio);
+        String rut = texto(cuerpo, "rut");
+        sistema.registrarUsuario(rut, texto(cuerpo, "nombre"), texto(cuerpo, "email"), texto(cuerpo, "celular"));
+        return usuario(new StringBuilder(), sistema.buscarUsuarioPorRut(rut), -1).toString();
+    }
+
+    private String comprar(HttpExchange intercambio, String resto) throws Exception {
+        sinResto(resto);
+        Map<String, Object> cuerpo = cuerpo(intercambio);
+        String rut = texto(cuerpo, "rut");
+        Object lineas = cuerpo.get("lineas");
+        if (lineas == null) {
+            String codigo = texto(cuerpo, "codigo");
+            double total = sistema.realizarCompra(rut, codigo, entero(cuerpo, "cantidad"));
+            return "{\"total\":" + String.format(Locale.ROOT, "%.2f", total) + "}";
+        }
+        if (!(lineas instanceof List)) throw new IllegalArgumentException("El campo lineas debe ser un arreglo.");
+        List<LineaPedido> pedido = new ArrayList<>();
+        for (Object o : (List<?>) lineas) {
+            if (!(o instanceof Map)) throw new IllegalArgumentException("Cada línea debe ser un objeto.");
+            @SuppressWarnings("unchecked")
+            Map<String, Object> linea = (Map<String, Object>) o;
+            pedido.add(new LineaPedido(texto(linea, "codigo"), entero(linea, "cantidad")));
+        }
+        double total = sistema.realizarComprasLote(rut, pedido);
+        return "{\"total\":" + String.format(Locale.ROOT, "%.2f", total) + "}";
+    }
+
+    private String reservar(HttpExchange intercambio, String resto) throws Exception {
+        sinResto(resto);
+        Map<String, Object> cuerpo = cuerpo(intercambio);
+        String codigo = texto(cuerpo, "codigo");
+        int cantidad = entero(cuerpo, "cantidad");
+        if (cantidad < 1) throw new IllegalArgumentException("La cantidad a reservar debe ser mayor a cero.");
+        sistema.hacerReserva(texto(cuerpo, "rut"), codigo, cantidad);
+        Comic comic = sistema.buscarComicPorCodigo(codigo);
+        StringBuilder sb = new StringBuilder("{\"codigo\":");
+        Json.texto(sb, codigo).append(",\"cantidad\":").append(cantidad).append(",\"fechaEntrega\":");
+        return Json.texto(sb, comic == null ? null : String.valueOf(comic.getFechaLlegada())).append('}').toString();
+    }
+
+    private String ranking(HttpExchange intercambio, String rut) {
+        Map<String, String> parametros = parametros(intercambio);
+        List<Usuario> tramo;
+        int desde;
+        if (rut.isEmpty()) {
+            tramo = sistema.topUsuarios(entero(parametros, "top", TOP_RANKING, 1, MAX_LIMITE));
+            desde = 1;
+        } else {
+            int posicion = sistema.posicionEnRanking(rut);
+            if (posicion < 0) throw new ErrorHttp(404, "Usuario no encontrado.");
+            int radio = entero(parametros, "radio", RADIO_RANKING, 0, MAX_LIMITE / 2);
+            tramo = sistema.usuariosAlrededorDe(posicion, radio);
+            desde = Math.max(1, posicion - radio);
+        }
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < tramo.size(); i++) {
+            if (i > 0) sb.append(',');
+            usuario(sb, tramo.get(i), desde + i);
+        }
+        return sb.append(']').toString();
+    }
+
+    // Lectura de la petición
+
+    private static Map<String, Object> cuerpo(HttpExchange intercambio) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (InputStream entrada = intercambio.getRequestBody()) {
+            byte[] buffer = new byte[8192];
+            int leidos;
+            while ((leidos = entrada.read(buffer)) != -1) {
+                if (bytes.size() + leidos > MAX_CUERPO) throw new ErrorHttp(413, "El cuerpo es demasiado grande.");
+                bytes.write(buffer, 0, leidos);
+            }
+        }
+        return Json.leerObjeto(bytes.toString(StandardCharsets.UTF_8));
+    }
+
+    private static Map<String, String> parametros(HttpExchange intercambio) {
+        Map<String, String> parametros = new HashMap<>();
+        String consulta = intercambio.getRequestURI().getRawQuery();
+        if (consulta == null) return parametros;
+        for (String par : consulta.split("&")) {
+            int igual = par.indexOf('=');
+            if (igual <= 0) continue;
+            parametros.put(URLDecoder.decode(par.substring(0, igual), StandardCharsets.UTF_8),
+                    URLDecoder.decode(par.substring(igual + 1), StandardCharsets.UTF_8));
+        }
+        return parametros;
+    }
+
+    private static void sinResto(String resto) {
+        if (!resto.isEmpty()) throw new ErrorHttp(404, "Ruta no encontrada.");
+    }
+
+    private static String texto(Map<String, Object> objeto, String campo) {
+        Object valor = objeto.get(campo);
+        if (!(valor instanceof String)) throw new IllegalArgumentException("Falta el campo " + campo + ".");
+        return (String) valor;
+    }
+
+    private static int entero(Map<String, Object> objeto, String campo) {
+        Object valor = objeto.get(campo);
+        if (!(valor instanceof Double)) throw new IllegalArgumentException("Falta el campo numérico " + campo + ".");
+        double d = (Double) valor;
+        if (d != Math.rint(d) || d < Integer.MIN_VALUE || d > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("El campo " + campo + " debe ser un número entero.");
+        }
+        return (int) d;
+    }
+
+    private static int entero(Map<String, String> parametros, String nombre, int omision, int minimo, int maximo) {
+        String valor = parametros.get(nombre);
+        if (valor == null) return omision;
+        try {
+            return Math.max(minimo, Math.min(maximo, Integer.parseInt(valor)));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("El parámetro " + nombre + " debe ser un número entero.");
+        }
+    }
+
+    // Escritura de la respuesta
+
+    private static String error(String mensaje) {
+        return Json.texto(new StringBuilder("{\"error\":"), mensaje).append('}').toString();
+    }
+
+    private static StringBuilder comic(StringBuilder sb, Comic c) {
+        sb.append("{\"codigo\":");
+        Json.texto(sb, c.getCodigo()).append(",\"tipo\":");
+        Json.texto(sb, c.getTipo()).append(",\"nombre\":");
+        Json.texto(sb, c.getNombre()).append(",\"autor\":");
+        Json.texto(sb, c.getAutorOFabricante()).append(",\"disponible\":").append(c.getCantidadDisponible());
+        sb.append(",\"fechaLlegada\":");
+        Json.texto(sb, c.getFechaLlegada() == null ? null : c.getFechaLlegada().toString());
+        return sb.append(",\"precio\":").append(String.format(Locale.ROOT, "%.2f", c.getPrecio())).append('}');
+    }
+
+    // Con posicion < 1 no se incluye la posición en el ranking
+    private static StringBuilder usuario(StringBuilder sb, Usuario u, int posicion) {
+        sb.append('{');
+        if (posicion >= 1) sb.append("\"posicion\":").append(posicion).append(',');
+        sb.append("\"rut\":");
+        Json.texto(sb, u.getRut()).append(",\"nombre\":");
+        Json.texto(sb, u.getNombre()).append(",\"totalCompras\":").append(u.totalCompras());
+        return sb.append('}');
+    }
+}